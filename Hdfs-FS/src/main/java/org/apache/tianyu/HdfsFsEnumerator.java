@@ -1,59 +1,120 @@
-import java.io.BufferedReader;
+import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
-import java.net.URI;
-import java.text.ParseException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
-import java.util.TimeZone;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Stream;
-import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
-import org.apache.calcite.avatica.util.DateTimeUtils;
 import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.sql.type.SqlTypeName;
 import org.apache.calcite.util.Pair;
-import org.apache.commons.lang3.time.FastDateFormat;
-import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
-import org.apache.hadoop.fs.LocatedFileStatus;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.RemoteIterator;
 
+/**
+ * Enumerator that walks a directory tree and returns one row per file: the
+ * names of the directories above the file, one per Level column, then the
+ * file name.
+ *
+ * <p>Directories are listed one at a time as the walk reaches them, so rows
+ * stream and memory is bounded by the depth of the tree. The Level columns
+ * act as partition keys: a level fixed by a filter value is not listed but
+ * entered directly, and levels fixed consecutively are skipped over with a
+ * single lookup.</p>
+ *
+ * @param <E> Row type
+ */
 public class HdfsFsEnumerator<E> implements Enumerator<E> {
 
-  private static final FastDateFormat TIME_FORMAT_DATE;
-  private static final FastDateFormat TIME_FORMAT_TIME;
-  private static final FastDateFormat TIME_FORMAT_TIMESTAMP;
-
-  static {
-    final TimeZone gmt = TimeZone.getTimeZone("GMT");
-    TIME_FORMAT_DATE = FastDateFormat.getInstance("yyyy-MM-dd", gmt);
-    TIME_FORMAT_TIME = FastDateFormat.getInstance("HH:mm:ss", gmt);
-    TIME_FORMAT_TIMESTAMP =
-        FastDateFormat.getInstance("yyyy-MM-dd HH:mm:ss", gmt);
-  }
-
   private final AtomicBoolean cancelFlag;
   private final String[] filterValues;
   private final RowConverter<E> rowConverter;
-  private final List<List<String>> tableList;
-  private BufferedReader reader;
-  private int rowPointer = 0;
+  private final FileSystem fileSystem;
+  private final Path root;
+  private final int folderDepth;
+  private final Deque<Frame> stack = new ArrayDeque<>();
   private E current;
 
-  HdfsFsEnumerator(List<List<String>> tableList, AtomicBoolean cancelFlag, boolean stream,
+  /**
+   * Creates a HdfsFsEnumerator.
+   *
+   * @param filterValues Required value of each column, or null for none;
+   *                     the empty string selects files that are above that level
+   */
+  HdfsFsEnumerator(FileSystem fileSystem, Path root, int folderDepth, AtomicBoolean cancelFlag,
       String[] filterValues, RowConverter<E> rowConverter) {
     this.cancelFlag = cancelFlag;
     this.rowConverter = rowConverter;
     this.filterValues = filterValues;
-    this.tableList = tableList;
+    this.fileSystem = fileSystem;
+    this.root = root;
+    this.folderDepth = folderDepth;
+    reset();
+  }
+
+  private String filterValue(int column) {
+    return filterValues == null ? null : filterValues[column];
+  }
+
+  /**
+   * Returns whether a filter value can name a directory, that is, is a single
+   * path segment. A value such as "a/b" or ".." would otherwise lead outside
+   * the level it filters, even outside the table.
+   */
+  static boolean isPathSegment(String value) {
+    return !value.equals(".") && !value.equals("..") && value.indexOf('/') < 0
+        && value.indexOf('\\') < 0 && value.indexOf(':') < 0;
+  }
+
+  /**
+   * Starts listing a directory whose files are at the given depth. If the
+   * filter fixes the next levels, goes straight to the directory they name.
+   */
+  private void enter(Path path, int depth, String[] levels) throws IOException {
+    int target = depth;
+    while (target < folderDepth && filterValue(target) != null
+        && !filterValue(target).isEmpty()) {
+      if (!isPathSegment(filterValue(target))) {
+        // No directory has such a name, so no file matches.
+        return;
+      }
+      ++target;
+    }
+    if (target > depth) {
+      levels = Arrays.copyOf(levels, target);
+      for (int i = depth; i < target; i++) {
+        path = new Path(path, filterValues[i]);
+        levels[i] = filterValues[i];
+      }
+      try {
+        if (!fileSystem.getFileStatus(path).isDirectory()) {
+          return;
+        }
+      } catch (FileNotFoundException e) {
+        return;
+      }
+    }
+    stack.push(new Frame(target, levels, fileSystem.listStatusIterator(path)));
+  }
+
+  /**
+   * Returns whether a file at the given depth satisfies the filter: levels
+   * below it are empty, so must not be required to have a value.
+   */
+  private boolean matchesFile(int depth, String name) {
+    for (int i = depth; i < folderDepth; i++) {
+      final String filterValue = filterValue(i);
+      if (filterValue != null && !filterValue.isEmpty()) {
+        return false;
+      }
+    }
+    final String fileNameFilter = filterValue(folderDepth);
+    return fileNameFilter == null || fileNameFilter.equals(name);
   }
 
   /**
@@ -156,54 +217,82 @@ public Object[] convertStreamRow(String[] strings) {
 
   @Override
   public E current() {
-//    return current;
     return current;
   }
 
   @Override
   public boolean moveNext() {
-    if (rowPointer < tableList.size()) {
-      try {
-        outer:
-        for (; ; ) {
-          if (cancelFlag.get()) {
-            return false;
-          }
-          List<String> line = tableList.get(rowPointer);
-          String[] tmps = new String[tableList.get(rowPointer).size()];
-          String[] strings = line.toArray(tmps);
-
-          if (strings == null) {
-            current = null;
-            return false;
-          }
-          if (filterValues != null) {
-            for (int i = 0; i < strings.length; i++) {
-              String filterValue = filterValues[i];
-              if (filterValue != null) {
-                if (!filterValue.equals(strings[i])) {
-                  continue outer;
-                }
-              }
-            }
+    try {
+      for (; ; ) {
+        if (cancelFlag.get()) {
+          return false;
+        }
+        final Frame frame = stack.peek();
+        if (frame == null) {
+          current = null;
+          return false;
+        }
+        if (!frame.files.hasNext()) {
+          stack.pop();
+          continue;
+        }
+        final FileStatus file = frame.files.next();
+        final String name = file.getPath().getName();
+        if (file.isDirectory()) {
+          // A filter value of '' means that no file below this level matches.
+          if (frame.depth < folderDepth && filterValue(frame.depth) == null) {
+            final String[] levels = Arrays.copyOf(frame.levels, frame.depth + 1);
+            levels[frame.depth] = name;
+            enter(file.getPath(), frame.depth + 1, levels);
           }
-          current = rowConverter.convertRow(strings);
-          rowPointer += 1;
-          return true;
+          continue;
+        }
+        if (!matchesFile(frame.depth, name)) {
+          continue;
         }
+        final String[] strings = new String[folderDepth + 1];
+        Arrays.fill(strings, "");
+        System.arraycopy(frame.levels, 0, strings, 0, frame.depth);
+        strings[folderDepth] = name;
+        current = rowConverter.convertRow(strings);
+        return true;
       }
-      finally{}
+    } catch (IOException e) {
+      throw new RuntimeException(e);
     }
-    else return false;
   }
 
-
   @Override
   public void reset() {
-    throw new UnsupportedOperationException();
+    stack.clear();
+    current = null;
+    try {
+      enter(root, 0, new String[0]);
+    } catch (FileNotFoundException e) {
+      // An absent root directory has no files.
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
   }
 
   @Override
   public void close() {
+    stack.clear();
+  }
+
+  /**
+   * Directory being listed.
+   */
+  private static class Frame {
+    // depth of the files in this directory, and names of the directories above them
+    final int depth;
+    final String[] levels;
+    final RemoteIterator<FileStatus> files;
+
+    Frame(int depth, String[] levels, RemoteIterator<FileStatus> files) {
+      this.depth = depth;
+      this.levels = levels;
+      this.files = files;
+    }
   }
 }
@@ -0,0 +1,75 @@
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.schema.FilterableTable;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.type.SqlTypeFamily;
+import org.apache.hadoop.fs.FileSystem;
+
+/**
+ * Table of the files under an HDFS directory that uses equality filters on
+ * its columns to prune the directory walk.
+ *
+ * <p>It implements the {@link FilterableTable} interface, so Calcite gets
+ * data by calling the {@link #scan(DataContext, List)} method. A filter such
+ * as {@code Level1 = '2024' AND Level2 = '05'} lists only
+ * {@code <directory>/2024/05}; a filter on {@code fileName} is checked as
+ * files are listed.</p>
+ */
+public class HdfsFsFilterableTable extends HdfsFsTable implements FilterableTable {
+
+  public HdfsFsFilterableTable(FileSystem fileSystem, String directory, int folderDepth) {
+    super(fileSystem, directory, folderDepth);
+  }
+
+  public String toString() {
+    return "org.apache.tianyu.HdfsFsFilterableTable";
+  }
+
+  @Override
+  public Enumerable<Object[]> scan(DataContext root, List<RexNode> filters) {
+    final String[] filterValues = new String[fieldTypes.size()];
+    filters.removeIf(filter -> addFilter(filter, filterValues));
+    final int[] fields = HdfsFsEnumerator.identityList(fieldTypes.size());
+    final AtomicBoolean cancelFlag = DataContext.Variable.CANCEL_FLAG.get(root);
+    return new AbstractEnumerable<Object[]>() {
+      public Enumerator<Object[]> enumerator() {
+        return new HdfsFsEnumerator<>(fileSystem, getRoot(), folderDepth, cancelFlag,
+            filterValues, new HdfsFsEnumerator.ArrayRowConverter(fieldTypes, fields));
+      }
+    };
+  }
+
+  private boolean addFilter(RexNode filter, String[] filterValues) {
+    if (filter.isA(SqlKind.EQUALS)) {
+      final RexCall call = (RexCall) filter;
+      RexNode left = call.getOperands().get(0);
+      RexNode right = call.getOperands().get(1);
+      if (left instanceof RexLiteral) {
+        final RexNode swap = left;
+        left = right;
+        right = swap;
+      }
+      if (left instanceof RexInputRef
+          && right instanceof RexLiteral
+          && ((RexLiteral) right).getTypeName().getFamily() == SqlTypeFamily.CHARACTER) {
+        final int index = ((RexInputRef) left).getIndex();
+        final String value = ((RexLiteral) right).getValue2().toString();
+        if (filterValues[index] == null) {
+          filterValues[index] = value;
+          return true;
+        }
+        // A second value for the same column can only match if it is equal.
+        return filterValues[index].equals(value);
+      }
+    }
+    return false;
+  }
+}
@@ -1,15 +1,15 @@
-import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.calcite.DataContext;
 import org.apache.calcite.linq4j.AbstractEnumerable;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.schema.ScannableTable;
+import org.apache.hadoop.fs.FileSystem;
 
 public class HdfsFsScannableTable extends HdfsFsTable implements ScannableTable {
 
-  public HdfsFsScannableTable(String directory, int folderDepth, List<List<String>> tableList) {
-    super(directory, folderDepth, tableList);
+  public HdfsFsScannableTable(FileSystem fileSystem, String directory, int folderDepth) {
+    super(fileSystem, directory, folderDepth);
   }
 
   public String toString() {
@@ -22,7 +22,7 @@ public Enumerable<Object[]> scan(DataContext root) {
     final AtomicBoolean cancelFlag = DataContext.Variable.CANCEL_FLAG.get(root);
     return new AbstractEnumerable<Object[]>() {
       public Enumerator<Object[]> enumerator() {
-        return new HdfsFsEnumerator<>(tableList, cancelFlag, false, null,
+        return new HdfsFsEnumerator<>(fileSystem, getRoot(), folderDepth, cancelFlag, null,
             new HdfsFsEnumerator.ArrayRowConverter(fieldTypes, fields));
       }
     };
@@ -1,16 +1,11 @@
 import com.google.common.collect.ImmutableMap;
 import java.io.IOException;
 import java.net.URI;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 import org.apache.calcite.schema.Table;
 import org.apache.calcite.schema.impl.AbstractSchema;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
-import org.apache.hadoop.fs.LocatedFileStatus;
-import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.fs.RemoteIterator;
 
 public class HdfsFsSchema extends AbstractSchema {
 
@@ -28,16 +23,22 @@ public String getUserName() {
   private final String password;
   private final int folderDepth;
   private Map<String, Table> tableMap;
-  private final HdfsFsTable.Flavor flavor = HdfsFsTable.Flavor.SCANNABLE;
+  private final HdfsFsTable.Flavor flavor;
   private FileSystem fileSystem;
 
   public HdfsFsSchema(String host, int port, String directory, String userName,
       String password, int folderDepth) {
+    this(host, port, directory, userName, password, folderDepth, HdfsFsTable.Flavor.SCANNABLE);
+  }
+
+  public HdfsFsSchema(String host, int port, String directory, String userName,
+      String password, int folderDepth, HdfsFsTable.Flavor flavor) {
     super();
     this.directory = String.format("hdfs://%s:%s%s", host, port, directory);
     this.userName = userName;
     this.password = password;
     this.folderDepth = folderDepth;
+    this.flavor = flavor;
     Configuration configuration = new Configuration();
     try {
       fileSystem = FileSystem
@@ -65,42 +66,18 @@ public Map<String, Table> createTabelMap() {
     return builder.build();
   }
 
+  /**
+   * Creates the table of files. Nothing is listed until the table is
+   * scanned, and each scan lists the directory afresh.
+   */
   private Table createTable(String directory, int folderDepth) {
-    List<List<String>> tableList = generateTableList(fileSystem);
     switch (flavor) {
       case SCANNABLE:
-        return new HdfsFsScannableTable(directory, folderDepth, tableList);
+        return new HdfsFsScannableTable(fileSystem, directory, folderDepth);
+      case FILTERABLE:
+        return new HdfsFsFilterableTable(fileSystem, directory, folderDepth);
       default:
         throw new AssertionError("Unknown flavor " + this.flavor);
     }
   }
-
-
-  private List<List<String>> generateTableList(FileSystem fileSystem) {
-    List<List<String>> tableList = new ArrayList<>();
-    try {
-      RemoteIterator<LocatedFileStatus> files = fileSystem.listFiles(new Path(directory), true);
-      while (files.hasNext()) {
-        LocatedFileStatus file = files.next();
-        if (!file.isDirectory()) {
-          String path = file.getPath().toString().replace(directory, "");
-          if (path.split("/").length <= folderDepth + 1) {
-            List<String> row = new ArrayList<>();
-            for (int i = 0; i < folderDepth; i++) {
-              if (i < path.split("/").length - 1) {
-                row.add(path.split("/")[i]);
-              } else {
-                row.add("");
-              }
-            }
-            row.add(path.split("/")[path.split("/").length-1]);
-            tableList.add(row);
-          }
-        }
-      }
-    } catch (IOException e) {
-      e.printStackTrace();
-    }
-    return tableList;
-  }
 }
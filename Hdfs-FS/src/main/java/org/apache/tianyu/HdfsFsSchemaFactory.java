@@ -1,3 +1,4 @@
+import java.util.Locale;
 import java.util.Map;
 import org.apache.calcite.schema.Schema;
 import org.apache.calcite.schema.SchemaFactory;
@@ -22,6 +23,13 @@ public Schema create(SchemaPlus parentSchema, String name, Map<String, Object> o
     final String userName = (String) operand.get("userName");
     final String passWord = (String) operand.get("password");
     final int folderDepth = (Integer) operand.get("folderDepth");
-    return new HdfsFsSchema(host, port, directory, userName, passWord, folderDepth);
+    final String flavorName = (String) operand.get("flavor");
+    final HdfsFsTable.Flavor flavor;
+    if (flavorName == null) {
+      flavor = HdfsFsTable.Flavor.SCANNABLE;
+    } else {
+      flavor = HdfsFsTable.Flavor.valueOf(flavorName.toUpperCase(Locale.ROOT));
+    }
+    return new HdfsFsSchema(host, port, directory, userName, passWord, folderDepth, flavor);
   }
 }
@@ -1,21 +1,33 @@
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
 import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 
 public class HdfsFsTable extends AbstractTable {
 
   public final int folderDepth;
   public final String directory;
+  protected final FileSystem fileSystem;
   public List<HdfsFsFieldType> fieldTypes;
-  public List<List<String>> tableList;
+  private Statistic statistic;
 
-  HdfsFsTable(String directory, int folderDepth,List<List<String>> tableList) {
+  HdfsFsTable(FileSystem fileSystem, String directory, int folderDepth) {
+    this.fileSystem = fileSystem;
     this.directory = directory;
     this.folderDepth = folderDepth;
-    this.tableList=tableList;
+  }
+
+  protected Path getRoot() {
+    return new Path(directory);
   }
 
   @Override
@@ -30,10 +42,33 @@ public RelDataType getRowType(RelDataTypeFactory typeFactory) {
     }
   }
 
+  /**
+   * Returns the number of files under the directory, which the name node
+   * counts in one call, as the row count; it is an upper bound if some files
+   * are deeper than the Level columns. The Level columns and file name
+   * together are the path of a file, so form a key. Computed once per
+   * table.
+   */
+  @Override
+  public Statistic getStatistic() {
+    if (statistic == null) {
+      Double rowCount = null;
+      try {
+        rowCount = (double) fileSystem.getContentSummary(getRoot()).getFileCount();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+      statistic = Statistics.of(rowCount,
+          ImmutableList.of(ImmutableBitSet.range(folderDepth + 1)), ImmutableList.of(),
+          ImmutableList.of());
+    }
+    return statistic;
+  }
+
   /**
    * Various degrees of table "intelligence".
    */
   public enum Flavor {
-    SCANNABLE
+    SCANNABLE, FILTERABLE
   }
 }
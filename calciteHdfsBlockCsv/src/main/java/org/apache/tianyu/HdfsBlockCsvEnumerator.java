@@ -1,5 +1,322 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
 package org.apache.tianyu;
 
-public class HdfsBlockCsvEnumerator {
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.avatica.util.DateTimeUtils;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.util.Pair;
+import org.apache.commons.lang3.time.FastDateFormat;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.util.LineReader;
 
+/**
+ * Enumerator that reads the rows of one {@link HdfsBlockCsvSplit} of a CSV file.
+ *
+ * <p>A row belongs to the split in which its first byte lies. So, unless
+ * the split is the first of its file, the enumerator starts one byte before
+ * the split and discards everything up to and including the next line
+ * terminator; that is the tail of a row owned by the previous split, or just
+ * the terminator of that row if the split begins exactly on a row boundary.
+ * Conversely, the last row that starts inside the split is read to its end
+ * even if that is in the next block.</p>
+ *
+ * <p>Rows are delimited by line terminators, so quoted values must not
+ * contain line breaks.</p>
+ *
+ * @param <E> Row type
+ */
+public class HdfsBlockCsvEnumerator<E> implements Enumerator<E> {
+
+  private static final FastDateFormat TIME_FORMAT_DATE;
+  private static final FastDateFormat TIME_FORMAT_TIME;
+  private static final FastDateFormat TIME_FORMAT_TIMESTAMP;
+
+  static {
+    final TimeZone gmt = TimeZone.getTimeZone("GMT");
+    TIME_FORMAT_DATE = FastDateFormat.getInstance("yyyy-MM-dd", gmt);
+    TIME_FORMAT_TIME = FastDateFormat.getInstance("HH:mm:ss", gmt);
+    TIME_FORMAT_TIMESTAMP =
+        FastDateFormat.getInstance("yyyy-MM-dd HH:mm:ss", gmt);
+  }
+
+  private final AtomicBoolean cancelFlag;
+  private final RowConverter<E> rowConverter;
+  private final long end;
+  private final LineReader reader;
+  private final Text line = new Text();
+  private long position;
+  private E current;
+
+  HdfsBlockCsvEnumerator(FileSystem fileSystem, HdfsBlockCsvSplit split,
+      AtomicBoolean cancelFlag, RowConverter<E> rowConverter) {
+    this.cancelFlag = cancelFlag;
+    this.rowConverter = rowConverter;
+    this.end = split.end();
+    try {
+      final FSDataInputStream in = fileSystem.open(split.path);
+      if (split.start == 0) {
+        this.reader = new LineReader(in);
+        this.position = reader.readLine(line); // skip header row
+      } else {
+        in.seek(split.start - 1);
+        this.reader = new LineReader(in);
+        // skip the remainder of the row that started in the previous split
+        this.position = split.start - 1 + reader.readLine(line);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Error opening split " + split, e);
+    }
+  }
+
+  /**
+   * Returns an array of integers {0, ..., n - 1}.
+   */
+  static int[] identityList(int n) {
+    int[] integers = new int[n];
+    for (int i = 0; i < n; i++) {
+      integers[i] = i;
+    }
+    return integers;
+  }
+
+  /**
+   * Deduces the names and types of a table's columns by reading the first line of a CSV file.
+   */
+  static RelDataType deduceRowType(JavaTypeFactory typeFactory, FileSystem fileSystem,
+      Path path, List<HdfsBlockCsvFieldType> fieldTypes) {
+    final List<RelDataType> types = new ArrayList<>();
+    final List<String> names = new ArrayList<>();
+    try (BufferedReader br = new BufferedReader(
+        new InputStreamReader(fileSystem.open(path), StandardCharsets.UTF_8))) {
+      final String header = br.readLine();
+      final String[] strings = header == null
+          ? new String[]{"EmptyFileHasNoColumns:boolean"}
+          : header.split(",");
+      for (String string : strings) {
+        final String name;
+        final HdfsBlockCsvFieldType fieldType;
+        final int colon = string.indexOf(':');
+        if (colon >= 0) {
+          name = string.substring(0, colon);
+          String typeString = string.substring(colon + 1);
+          fieldType = HdfsBlockCsvFieldType.of(typeString);
+          if (fieldType == null) {
+            System.out.println("WARNING: Found unknown type: "
+                + typeString + " in file: " + path
+                + " for column: " + name
+                + ". Will assume the type of column is string");
+          }
+        } else {
+          name = string;
+          fieldType = null;
+        }
+        final RelDataType type;
+        if (fieldType == null) {
+          type = typeFactory.createSqlType(SqlTypeName.VARCHAR);
+        } else {
+          type = fieldType.toType(typeFactory);
+        }
+        names.add(name);
+        types.add(type);
+        if (fieldTypes != null) {
+          fieldTypes.add(fieldType);
+        }
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    if (names.isEmpty()) {
+      names.add("line");
+      types.add(typeFactory.createSqlType(SqlTypeName.VARCHAR));
+    }
+    return typeFactory.createStructType(Pair.zip(names, types));
+  }
+
+  /**
+   * Row converter.
+   *
+   * @param <E> element type
+   */
+  abstract static class RowConverter<E> {
+
+    abstract E convertRow(String[] rows);
+
+    protected Object convert(HdfsBlockCsvFieldType fieldType, String string) {
+      if (fieldType == null) {
+        return string;
+      }
+      switch (fieldType) {
+        case BOOLEAN:
+          if (string.length() == 0) {
+            return null;
+          }
+          return Boolean.parseBoolean(string);
+        case BYTE:
+          if (string.length() == 0) {
+            return null;
+          }
+          return Byte.parseByte(string);
+        case SHORT:
+          if (string.length() == 0) {
+            return null;
+          }
+          return Short.parseShort(string);
+        case INT:
+          if (string.length() == 0) {
+            return null;
+          }
+          return Integer.parseInt(string);
+        case LONG:
+          if (string.length() == 0) {
+            return null;
+          }
+          return Long.parseLong(string);
+        case FLOAT:
+          if (string.length() == 0) {
+            return null;
+          }
+          return Float.parseFloat(string);
+        case DOUBLE:
+          if (string.length() == 0) {
+            return null;
+          }
+          return Double.parseDouble(string);
+        case DATE:
+          if (string.length() == 0) {
+            return null;
+          }
+          try {
+            Date date = TIME_FORMAT_DATE.parse(string);
+            return (int) (date.getTime() / DateTimeUtils.MILLIS_PER_DAY);
+          } catch (ParseException e) {
+            return null;
+          }
+        case TIME:
+          if (string.length() == 0) {
+            return null;
+          }
+          try {
+            Date date = TIME_FORMAT_TIME.parse(string);
+            return (int) date.getTime();
+          } catch (ParseException e) {
+            return null;
+          }
+        case TIMESTAMP:
+          if (string.length() == 0) {
+            return null;
+          }
+          try {
+            Date date = TIME_FORMAT_TIMESTAMP.parse(string);
+            return date.getTime();
+          } catch (ParseException e) {
+            return null;
+          }
+        case STRING:
+        default:
+          return string;
+      }
+    }
+  }
+
+  /**
+   * Array row converter.
+   */
+  static class ArrayRowConverter extends RowConverter<Object[]> {
+
+    private final HdfsBlockCsvFieldType[] fieldTypes;
+    private final int[] fields;
+
+    ArrayRowConverter(List<HdfsBlockCsvFieldType> fieldTypes, int[] fields) {
+      this.fieldTypes = fieldTypes.toArray(new HdfsBlockCsvFieldType[0]);
+      this.fields = fields;
+    }
+
+    public Object[] convertRow(String[] strings) {
+      final Object[] objects = new Object[fields.length];
+      for (int i = 0; i < fields.length; i++) {
+        int field = fields[i];
+        objects[i] = convert(fieldTypes[field], strings[field]);
+      }
+      return objects;
+    }
+  }
+
+  @Override
+  public E current() {
+    return current;
+  }
+
+  @Override
+  public boolean moveNext() {
+    try {
+      for (; ; ) {
+        if (cancelFlag.get()) {
+          return false;
+        }
+        // A row that starts at or after the end of the split belongs to the
+        // next split.
+        if (position >= end) {
+          current = null;
+          return false;
+        }
+        final int consumed = reader.readLine(line);
+        if (consumed == 0) {
+          current = null;
+          return false;
+        }
+        position += consumed;
+        if (line.getLength() == 0) {
+          continue;
+        }
+        current = rowConverter.convertRow(line.toString().split(","));
+        return true;
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public void reset() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void close() {
+    try {
+      reader.close();
+    } catch (IOException e) {
+      throw new RuntimeException("Error closing CSV reader", e);
+    }
+  }
 }
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tianyu;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import org.apache.calcite.linq4j.Enumerator;
+
+/**
+ * Enumerator that drains several enumerators concurrently and returns their
+ * rows as one sequence.
+ *
+ * <p>Each input is opened and read on a thread of a fixed-size pool. Rows are
+ * handed to the consuming thread in batches through a bounded queue, so a
+ * slow consumer holds back the readers rather than letting them buffer a
+ * whole file. The order of rows across inputs is not defined.</p>
+ *
+ * @param <E> Row type
+ */
+public class HdfsBlockCsvMergeEnumerator<E> implements Enumerator<E> {
+
+  private static final int BATCH_SIZE = 1024;
+  private static final int QUEUE_BATCHES_PER_THREAD = 4;
+  private static final long POLL_MILLIS = 100;
+
+  /**
+   * Marks that one input is exhausted.
+   */
+  private static final Object END = new Object();
+
+  private final AtomicBoolean cancelFlag;
+  private final AtomicBoolean closed = new AtomicBoolean();
+  private final BlockingQueue<Object> queue;
+  private final ExecutorService executor;
+  private int running;
+  private Iterator<E> batch;
+  private E current;
+
+  HdfsBlockCsvMergeEnumerator(List<Supplier<Enumerator<E>>> inputs, int parallelism,
+      AtomicBoolean cancelFlag) {
+    this.cancelFlag = cancelFlag;
+    final int threads = Math.max(1, Math.min(parallelism, inputs.size()));
+    this.queue = new ArrayBlockingQueue<>(threads * QUEUE_BATCHES_PER_THREAD);
+    this.executor = Executors.newFixedThreadPool(threads,
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("hdfs-block-csv-%d").build());
+    this.running = inputs.size();
+    for (Supplier<Enumerator<E>> input : inputs) {
+      executor.execute(() -> drain(input));
+    }
+  }
+
+  /**
+   * Reads one input to the end, runs on a pool thread.
+   */
+  private void drain(Supplier<Enumerator<E>> input) {
+    try (Enumerator<E> enumerator = input.get()) {
+      List<E> rows = new ArrayList<>(BATCH_SIZE);
+      while (!closed.get() && enumerator.moveNext()) {
+        rows.add(enumerator.current());
+        if (rows.size() == BATCH_SIZE) {
+          offer(rows);
+          rows = new ArrayList<>(BATCH_SIZE);
+        }
+      }
+      if (!rows.isEmpty()) {
+        offer(rows);
+      }
+    } catch (Throwable e) {
+      offer(new Failure(e));
+    } finally {
+      offer(END);
+    }
+  }
+
+  /**
+   * Puts an item on the queue, giving up if the consumer has closed this
+   * enumerator and will never take it.
+   */
+  private void offer(Object item) {
+    try {
+      while (!closed.get()) {
+        if (queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public E current() {
+    return current;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public boolean moveNext() {
+    for (; ; ) {
+      if (cancelFlag.get()) {
+        close();
+        return false;
+      }
+      if (batch != null && batch.hasNext()) {
+        current = batch.next();
+        return true;
+      }
+      if (running == 0) {
+        current = null;
+        close();
+        return false;
+      }
+      final Object item;
+      try {
+        item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      }
+      if (item == null) {
+        continue;
+      }
+      if (item == END) {
+        --running;
+      } else if (item instanceof Failure) {
+        close();
+        throw new RuntimeException("Error reading split", ((Failure) item).cause);
+      } else {
+        batch = ((List<E>) item).iterator();
+      }
+    }
+  }
+
+  @Override
+  public void reset() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void close() {
+    if (closed.compareAndSet(false, true)) {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Error raised while reading an input, to be re-thrown by the consumer.
+   */
+  private static class Failure {
+    final Throwable cause;
+
+    Failure(Throwable cause) {
+      this.cause = cause;
+    }
+  }
+}
@@ -1,5 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
 package org.apache.tianyu;
 
-public class HdfsBlockCsvScannableTable {
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.SplittableTable;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
 
+/**
+ * Table based on a CSV file in HDFS whose blocks are scanned in parallel.
+ *
+ * <p>It implements the {@link ScannableTable} interface, so Calcite gets
+ * data by calling the {@link #scan(DataContext)} method.</p>
+ *
+ * <p>It also implements {@link SplittableTable}; each morsel is a subset of
+ * the file's blocks, so that several threads can each read their own
+ * blocks.</p>
+ */
+public class HdfsBlockCsvScannableTable extends HdfsBlockCsvTable
+    implements ScannableTable, SplittableTable {
+
+  private final int parallelism;
+
+  public HdfsBlockCsvScannableTable(FileSystem fileSystem, LocatedFileStatus file,
+      int parallelism) {
+    super(fileSystem, file);
+    this.parallelism = parallelism;
+  }
+
+  public String toString() {
+    return "HdfsBlockCsvScannableTable";
+  }
+
+  @Override
+  public Enumerable<Object[]> scan(DataContext root) {
+    final int[] fields = HdfsBlockCsvEnumerator.identityList(fieldTypes.size());
+    final AtomicBoolean cancelFlag = DataContext.Variable.CANCEL_FLAG.get(root);
+    final HdfsBlockCsvEnumerator.ArrayRowConverter rowConverter =
+        new HdfsBlockCsvEnumerator.ArrayRowConverter(fieldTypes, fields);
+    final List<HdfsBlockCsvSplit> splits = HdfsBlockCsvSplit.of(file);
+    return new AbstractEnumerable<Object[]>() {
+      public Enumerator<Object[]> enumerator() {
+        final List<Supplier<Enumerator<Object[]>>> inputs = new ArrayList<>();
+        for (HdfsBlockCsvSplit split : splits) {
+          inputs.add(() ->
+              new HdfsBlockCsvEnumerator<>(fileSystem, split, cancelFlag, rowConverter));
+        }
+        if (inputs.size() == 1) {
+          return inputs.get(0).get();
+        }
+        return new HdfsBlockCsvMergeEnumerator<>(inputs, parallelism, cancelFlag);
+      }
+    };
+  }
+
+  @Override
+  public Enumerable<Object[]> scan(DataContext root, int morsel, int morselCount) {
+    final int[] fields = HdfsBlockCsvEnumerator.identityList(fieldTypes.size());
+    final AtomicBoolean cancelFlag = DataContext.Variable.CANCEL_FLAG.get(root);
+    final HdfsBlockCsvEnumerator.ArrayRowConverter rowConverter =
+        new HdfsBlockCsvEnumerator.ArrayRowConverter(fieldTypes, fields);
+    final List<HdfsBlockCsvSplit> splits = new ArrayList<>();
+    final List<HdfsBlockCsvSplit> allSplits = HdfsBlockCsvSplit.of(file);
+    for (int i = morsel; i < allSplits.size(); i += morselCount) {
+      splits.add(allSplits.get(i));
+    }
+    return new AbstractEnumerable<Object[]>() {
+      public Enumerator<Object[]> enumerator() {
+        // The calling thread reads this morsel's blocks one after another
+        final List<Enumerable<Object[]>> inputs = new ArrayList<>();
+        for (HdfsBlockCsvSplit split : splits) {
+          inputs.add(new AbstractEnumerable<Object[]>() {
+            public Enumerator<Object[]> enumerator() {
+              return new HdfsBlockCsvEnumerator<>(fileSystem, split, cancelFlag,
+                  rowConverter);
+            }
+          });
+        }
+        return Linq4j.concat(inputs).enumerator();
+      }
+    };
+  }
 }
@@ -1,5 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
 package org.apache.tianyu;
 
-public class HdfsCsvMulSchema {
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
 
+/**
+ * Schema mapping each CSV file under an HDFS directory onto a table whose
+ * scan reads the file's blocks in parallel.
+ */
+public class HdfsBlockCsvSchema extends AbstractSchema {
+
+  private final String directory;
+  private final String userName;
+  private final String password;
+  private final int parallelism;
+  private final HdfsBlockCsvTable.Flavor flavor = HdfsBlockCsvTable.Flavor.SCANNABLE;
+  private FileSystem fileSystem;
+  private Map<String, Table> tableMap;
+
+  public HdfsBlockCsvSchema(String host, int port, String directory, String userName,
+      String password, int parallelism) {
+    super();
+    this.directory = String.format("hdfs://%s:%s%s", host, port, directory);
+    this.userName = userName;
+    this.password = password;
+    this.parallelism = parallelism;
+    Configuration configuration = new Configuration();
+    try {
+      this.fileSystem = FileSystem.get(URI.create(this.directory), configuration, this.userName);
+    } catch (InterruptedException e) {
+      e.printStackTrace();
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  public String getDirectory() {
+    return directory;
+  }
+
+  public FileSystem getFileSystem() {
+    return fileSystem;
+  }
+
+  @Override
+  protected Map<String, Table> getTableMap() {
+    if (tableMap == null) {
+      tableMap = createTableMap();
+    }
+    return tableMap;
+  }
+
+  public Map<String, Table> createTableMap() {
+    final ImmutableMap.Builder<String, Table> builder = ImmutableMap.builder();
+    try {
+      // listFiles returns LocatedFileStatus, so the block locations used to
+      // split each file come with the listing and need no extra round trip.
+      RemoteIterator<LocatedFileStatus> csvFiles = fileSystem.listFiles(new Path(directory), true);
+      while (csvFiles.hasNext()) {
+        LocatedFileStatus file = csvFiles.next();
+        if (!file.isDirectory() && file.getPath().toString().endsWith(".csv")) {
+          String path = file.getPath().toString().replace(directory, "");
+          builder.put(path, createTable(file));
+        }
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    return builder.build();
+  }
+
+  private Table createTable(LocatedFileStatus file) {
+    switch (flavor) {
+      case SCANNABLE:
+        return new HdfsBlockCsvScannableTable(fileSystem, file, parallelism);
+      default:
+        throw new AssertionError("Unknown flavor " + this.flavor);
+    }
+  }
 }
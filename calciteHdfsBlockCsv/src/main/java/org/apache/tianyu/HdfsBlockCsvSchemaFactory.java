@@ -1,5 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
 package org.apache.tianyu;
 
-public class HdfsBlockCsv {
+import java.util.Map;
+import org.apache.calcite.schema.Schema;
+import org.apache.calcite.schema.SchemaFactory;
+import org.apache.calcite.schema.SchemaPlus;
 
+/**
+ * Factory that creates a {@link HdfsBlockCsvSchema}.
+ *
+ * <p>Besides the connection operands shared with the other HDFS adapters
+ * ({@code host}, {@code port}, {@code directory}, {@code userName} and
+ * {@code password}), accepts an optional {@code parallelism} operand that
+ * bounds the number of blocks of a file that are read concurrently. It
+ * defaults to the number of available processors.</p>
+ */
+public class HdfsBlockCsvSchemaFactory implements SchemaFactory {
+
+  /**
+   * Public singleton, per factory contract.
+   */
+  public static final HdfsBlockCsvSchemaFactory Instance = new HdfsBlockCsvSchemaFactory();
+
+  private HdfsBlockCsvSchemaFactory() {
+
+  }
+
+  @Override
+  public Schema create(SchemaPlus parentSchema, String name, Map<String, Object> operand) {
+    final String host = (String) operand.get("host");
+    final int port = (Integer) operand.get("port");
+    final String directory = (String) operand.get("directory");
+    final String userName = (String) operand.get("userName");
+    final String passWord = (String) operand.get("password");
+    final Integer parallelism = (Integer) operand.get("parallelism");
+    return new HdfsBlockCsvSchema(host, port, directory, userName, passWord,
+        parallelism == null ? Runtime.getRuntime().availableProcessors() : parallelism);
+  }
 }
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tianyu;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Byte range of a CSV file that is read by one task of a block-parallel scan.
+ *
+ * <p>A split corresponds to one HDFS block. Its boundaries are byte offsets
+ * and do not in general fall on row boundaries; {@link HdfsBlockCsvEnumerator}
+ * assigns each row to the split in which the row starts.</p>
+ */
+public class HdfsBlockCsvSplit {
+
+  public final Path path;
+  public final long start;
+  public final long length;
+  public final String[] hosts;
+
+  HdfsBlockCsvSplit(Path path, long start, long length, String[] hosts) {
+    this.path = path;
+    this.start = start;
+    this.length = length;
+    this.hosts = hosts;
+  }
+
+  /**
+   * Returns the offset of the first byte after this split.
+   */
+  public long end() {
+    return start + length;
+  }
+
+  @Override
+  public String toString() {
+    return path + ":" + start + "+" + length;
+  }
+
+  /**
+   * Splits a file on its block boundaries. A file without block locations
+   * (for example an empty file) becomes a single split.
+   */
+  static List<HdfsBlockCsvSplit> of(LocatedFileStatus file) {
+    final List<HdfsBlockCsvSplit> splits = new ArrayList<>();
+    final BlockLocation[] blocks = file.getBlockLocations();
+    if (blocks == null || blocks.length == 0) {
+      splits.add(new HdfsBlockCsvSplit(file.getPath(), 0, file.getLen(), new String[0]));
+      return splits;
+    }
+    for (BlockLocation block : blocks) {
+      String[] hosts;
+      try {
+        hosts = block.getHosts();
+      } catch (IOException e) {
+        hosts = new String[0];
+      }
+      splits.add(
+          new HdfsBlockCsvSplit(file.getPath(), block.getOffset(), block.getLength(), hosts));
+    }
+    return splits;
+  }
+}
@@ -1,5 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
 package org.apache.tianyu;
 
-public class HdfsBlockCsvTable {
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
 
+/**
+ * Base class for table that reads a CSV file stored in HDFS.
+ */
+public class HdfsBlockCsvTable extends AbstractTable {
+
+  protected final FileSystem fileSystem;
+  protected final LocatedFileStatus file;
+  public List<HdfsBlockCsvFieldType> fieldTypes;
+
+  HdfsBlockCsvTable(FileSystem fileSystem, LocatedFileStatus file) {
+    this.fileSystem = fileSystem;
+    this.file = file;
+  }
+
+  public String getFileName() {
+    return file.getPath().toString();
+  }
+
+  @Override
+  public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+    if (fieldTypes == null) {
+      fieldTypes = new ArrayList<>();
+      return HdfsBlockCsvEnumerator.deduceRowType((JavaTypeFactory) typeFactory, fileSystem,
+          file.getPath(), fieldTypes);
+    } else {
+      return HdfsBlockCsvEnumerator.deduceRowType((JavaTypeFactory) typeFactory, fileSystem,
+          file.getPath(), null);
+    }
+  }
+
+  /**
+   * Various degrees of table "intelligence".
+   */
+  public enum Flavor {
+    SCANNABLE
+  }
 }
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tianyu;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Position up to which a CSV file that is being followed has been read,
+ * kept in a file so that a later query resumes there rather than reading
+ * the file from the start.
+ *
+ * <p>The position is the offset just after the last row that was returned,
+ * so a row that had been returned but not yet processed when the query
+ * stopped is not returned again. One query at a time should follow a file
+ * with a given checkpoint.</p>
+ */
+class HdfsCsvMulCheckpoint {
+
+  private final FileSystem fileSystem;
+  private final Path path;
+  private long written = -1;
+
+  HdfsCsvMulCheckpoint(FileSystem fileSystem, Path path) {
+    this.fileSystem = fileSystem;
+    this.path = path;
+  }
+
+  /**
+   * Returns the saved offset, or 0 if there is none.
+   */
+  long read() throws IOException {
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(fileSystem.open(path), StandardCharsets.UTF_8))) {
+      final String line = reader.readLine();
+      written = line == null ? 0 : Long.parseLong(line.trim());
+      return written;
+    } catch (FileNotFoundException | NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Saves an offset, replacing the previous one, unless it is already saved.
+   */
+  void write(long offset) throws IOException {
+    if (offset == written) {
+      return;
+    }
+    final Path tmp = path.suffix(".tmp");
+    try (Writer writer = new OutputStreamWriter(fileSystem.create(tmp, true),
+        StandardCharsets.UTF_8)) {
+      writer.write(offset + "\n");
+    }
+    // HDFS rename does not replace an existing file.
+    fileSystem.delete(path, false);
+    fileSystem.rename(tmp, path);
+    written = offset;
+  }
+}
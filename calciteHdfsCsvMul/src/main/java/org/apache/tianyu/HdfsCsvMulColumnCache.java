@@ -0,0 +1,335 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tianyu;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Cache of the converted values of CSV files, stored column by column in a
+ * sidecar file per CSV file.
+ *
+ * <p>The first scan of a file that has no up-to-date sidecar reads the text
+ * as usual and asks for the sidecar to be written in the background. Later
+ * scans read the sidecar instead, fetching only the columns that they
+ * project or filter on and parsing no text. A sidecar records the length and
+ * modification time of its CSV file and is ignored, and rewritten, once the
+ * file changes.</p>
+ *
+ * <p>A sidecar is a header, then row groups of up to
+ * {@value #ROW_GROUP_SIZE} rows, then a zero row count. The header holds a
+ * magic number, a version, the CSV file's length and modification time, the
+ * number of columns and each column's type. A row group holds its row count,
+ * the length of each column block, then the blocks. A block is a bitmap of
+ * null values followed by the non-null values: numbers, dates and times
+ * big-endian as by {@link DataOutputStream}, strings as a variable-length
+ * byte count and UTF-8 bytes.</p>
+ */
+class HdfsCsvMulColumnCache {
+
+  static final int ROW_GROUP_SIZE = 65536;
+
+  private static final int MAGIC = 0x48434d43;
+  private static final int VERSION = 1;
+
+  private static final ExecutorService BUILD_EXECUTOR =
+      Executors.newSingleThreadExecutor(
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("hdfs-csv-column-cache")
+              .build());
+
+  private final FileSystem fileSystem;
+  private final String directory;
+  private final Path cacheDirectory;
+  private final Set<Path> building = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Creates a cache.
+   *
+   * @param fileSystem File system of the CSV files and the sidecars
+   * @param directory Root directory of the CSV files
+   * @param cacheDirectory Directory under which the sidecars are written, in
+   *                       the same layout as the CSV files under
+   *                       {@code directory}
+   */
+  HdfsCsvMulColumnCache(FileSystem fileSystem, String directory, Path cacheDirectory) {
+    this.fileSystem = fileSystem;
+    this.directory = directory;
+    this.cacheDirectory = cacheDirectory;
+  }
+
+  private Path sidecar(FileStatus file) {
+    final String path = file.getPath().toString().replace(directory, "");
+    return new Path(cacheDirectory.toString() + path + ".col");
+  }
+
+  /**
+   * Returns an enumerator over the sidecar of a file, or null if it has no
+   * sidecar for its current contents, in which case one is written in the
+   * background.
+   */
+  <E> Enumerator<E> enumerator(FileStatus file, List<HdfsCsvMulFieldType> fieldTypes,
+      AtomicBoolean cancelFlag, List<HdfsCsvMulFilter> filters,
+      HdfsCsvMulEnumerator.RowConverter<E> rowConverter) throws IOException {
+    final FSDataInputStream in;
+    try {
+      in = fileSystem.open(sidecar(file));
+    } catch (FileNotFoundException e) {
+      scheduleBuild(file, fieldTypes);
+      return null;
+    }
+    try {
+      if (!readHeader(in, file, fieldTypes)) {
+        in.close();
+        scheduleBuild(file, fieldTypes);
+        return null;
+      }
+      return new HdfsCsvMulColumnEnumerator<>(in, fieldTypes, cancelFlag, filters,
+          rowConverter);
+    } catch (IOException | RuntimeException e) {
+      in.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Reads the header of a sidecar and returns whether it describes the
+   * current contents and columns of the CSV file.
+   */
+  private static boolean readHeader(FSDataInputStream in, FileStatus file,
+      List<HdfsCsvMulFieldType> fieldTypes) throws IOException {
+    if (in.readInt() != MAGIC || in.readInt() != VERSION
+        || in.readLong() != file.getLen()
+        || in.readLong() != file.getModificationTime()
+        || in.readInt() != fieldTypes.size()) {
+      return false;
+    }
+    for (HdfsCsvMulFieldType fieldType : fieldTypes) {
+      if (in.readByte() != typeCode(fieldType)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static byte typeCode(HdfsCsvMulFieldType fieldType) {
+    return (byte) (fieldType == null ? -1 : fieldType.ordinal());
+  }
+
+  private void scheduleBuild(FileStatus file, List<HdfsCsvMulFieldType> fieldTypes) {
+    final Path sidecar = sidecar(file);
+    if (building.add(sidecar)) {
+      BUILD_EXECUTOR.execute(() -> {
+        try {
+          build(file, fieldTypes, sidecar);
+        } catch (IOException | RuntimeException e) {
+          // Scans keep reading the text.
+          e.printStackTrace();
+        } finally {
+          building.remove(sidecar);
+        }
+      });
+    }
+  }
+
+  /**
+   * Converts every field of a CSV file and writes the sidecar, replacing any
+   * previous one.
+   */
+  private void build(FileStatus file, List<HdfsCsvMulFieldType> fieldTypes, Path sidecar)
+      throws IOException {
+    final HdfsCsvMulFieldType[] types = fieldTypes.toArray(new HdfsCsvMulFieldType[0]);
+    final HdfsCsvMulEnumerator.ArrayRowConverter converter =
+        new HdfsCsvMulEnumerator.ArrayRowConverter(fieldTypes,
+            HdfsCsvMulEnumerator.identityList(types.length));
+    final Path tmp = sidecar.suffix(".tmp");
+    try (HdfsCsvMulTokenizer tokenizer = new HdfsCsvMulTokenizer(
+        HdfsCsvMulEnumerator.openFile(fileSystem, file.getPath()));
+         DataOutputStream out = fileSystem.create(tmp, true)) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(file.getLen());
+      out.writeLong(file.getModificationTime());
+      out.writeInt(types.length);
+      for (HdfsCsvMulFieldType type : types) {
+        out.writeByte(typeCode(type));
+      }
+      tokenizer.next(); // skip header row
+      final List<Object[]> rows = new ArrayList<>(ROW_GROUP_SIZE);
+      while (tokenizer.next()) {
+        rows.add(converter.convertRow(tokenizer));
+        if (rows.size() == ROW_GROUP_SIZE) {
+          writeRowGroup(out, types, rows);
+          rows.clear();
+        }
+      }
+      if (!rows.isEmpty()) {
+        writeRowGroup(out, types, rows);
+      }
+      out.writeInt(0);
+    }
+    // HDFS rename does not replace an existing file.
+    fileSystem.delete(sidecar, false);
+    fileSystem.rename(tmp, sidecar);
+  }
+
+  private static void writeRowGroup(DataOutputStream out, HdfsCsvMulFieldType[] types,
+      List<Object[]> rows) throws IOException {
+    final byte[][] blocks = new byte[types.length][];
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream block = new DataOutputStream(bytes);
+    for (int c = 0; c < types.length; c++) {
+      bytes.reset();
+      final byte[] nulls = new byte[(rows.size() + 7) / 8];
+      for (int r = 0; r < rows.size(); r++) {
+        if (rows.get(r)[c] == null) {
+          nulls[r >> 3] |= 1 << (r & 7);
+        }
+      }
+      block.write(nulls);
+      for (Object[] row : rows) {
+        if (row[c] != null) {
+          writeValue(block, types[c], row[c]);
+        }
+      }
+      block.flush();
+      blocks[c] = bytes.toByteArray();
+    }
+    out.writeInt(rows.size());
+    for (byte[] b : blocks) {
+      out.writeInt(b.length);
+    }
+    for (byte[] b : blocks) {
+      out.write(b);
+    }
+  }
+
+  private static void writeValue(DataOutputStream out, HdfsCsvMulFieldType type, Object value)
+      throws IOException {
+    if (type == null) {
+      type = HdfsCsvMulFieldType.STRING;
+    }
+    switch (type) {
+      case BOOLEAN:
+        out.writeBoolean((Boolean) value);
+        break;
+      case BYTE:
+        out.writeByte(((Number) value).byteValue());
+        break;
+      case SHORT:
+        out.writeShort(((Number) value).shortValue());
+        break;
+      case INT:
+      case DATE:
+      case TIME:
+        out.writeInt(((Number) value).intValue());
+        break;
+      case LONG:
+      case TIMESTAMP:
+        out.writeLong(((Number) value).longValue());
+        break;
+      case FLOAT:
+        out.writeFloat(((Number) value).floatValue());
+        break;
+      case DOUBLE:
+        out.writeDouble(((Number) value).doubleValue());
+        break;
+      case STRING:
+      default:
+        final byte[] utf8 = value.toString().getBytes(StandardCharsets.UTF_8);
+        int length = utf8.length;
+        while ((length & ~0x7F) != 0) {
+          out.writeByte((length & 0x7F) | 0x80);
+          length >>>= 7;
+        }
+        out.writeByte(length);
+        out.write(utf8);
+    }
+  }
+
+  /**
+   * Decodes a column block written by {@link #writeRowGroup}.
+   */
+  static Object[] readBlock(byte[] block, HdfsCsvMulFieldType type, int rowCount) {
+    if (type == null) {
+      type = HdfsCsvMulFieldType.STRING;
+    }
+    final Object[] values = new Object[rowCount];
+    final ByteBuffer buffer = ByteBuffer.wrap(block);
+    buffer.position((rowCount + 7) / 8);
+    for (int r = 0; r < rowCount; r++) {
+      if ((block[r >> 3] & (1 << (r & 7))) != 0) {
+        continue;
+      }
+      switch (type) {
+        case BOOLEAN:
+          values[r] = buffer.get() != 0;
+          break;
+        case BYTE:
+          values[r] = buffer.get();
+          break;
+        case SHORT:
+          values[r] = buffer.getShort();
+          break;
+        case INT:
+        case DATE:
+        case TIME:
+          values[r] = buffer.getInt();
+          break;
+        case LONG:
+        case TIMESTAMP:
+          values[r] = buffer.getLong();
+          break;
+        case FLOAT:
+          values[r] = buffer.getFloat();
+          break;
+        case DOUBLE:
+          values[r] = buffer.getDouble();
+          break;
+        case STRING:
+        default:
+          int length = 0;
+          for (int shift = 0; ; shift += 7) {
+            final byte b = buffer.get();
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) {
+              break;
+            }
+          }
+          values[r] = new String(block, buffer.position(), length, StandardCharsets.UTF_8);
+          buffer.position(buffer.position() + length);
+      }
+    }
+    return values;
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tianyu;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.hadoop.fs.FSDataInputStream;
+
+/**
+ * Enumerator that reads the rows of a CSV file from its columnar sidecar.
+ *
+ * <p>Only the blocks of the columns that the row converter or a filter uses
+ * are read and decoded; the stream seeks past the others. Filters are
+ * applied to the decoded values before the row is converted.</p>
+ *
+ * @param <E> Row type
+ *
+ * @see HdfsCsvMulColumnCache
+ */
+class HdfsCsvMulColumnEnumerator<E> implements Enumerator<E> {
+
+  private final FSDataInputStream in;
+  private final HdfsCsvMulFieldType[] fieldTypes;
+  private final AtomicBoolean cancelFlag;
+  private final List<HdfsCsvMulFilter> filters;
+  private final HdfsCsvMulEnumerator.RowConverter<E> rowConverter;
+  private final boolean[] used;
+  private final Object[][] columns;
+  private final Object[] values;
+  private final int[] blockLengths;
+  private boolean closed;
+  private int rowCount;
+  private int row;
+  private E current;
+
+  /**
+   * Creates an enumerator over a sidecar whose header has been read.
+   */
+  HdfsCsvMulColumnEnumerator(FSDataInputStream in, List<HdfsCsvMulFieldType> fieldTypes,
+      AtomicBoolean cancelFlag, List<HdfsCsvMulFilter> filters,
+      HdfsCsvMulEnumerator.RowConverter<E> rowConverter) {
+    this.in = in;
+    this.fieldTypes = fieldTypes.toArray(new HdfsCsvMulFieldType[0]);
+    this.cancelFlag = cancelFlag;
+    this.filters = filters == null ? Collections.emptyList() : filters;
+    this.rowConverter = rowConverter;
+    this.used = new boolean[this.fieldTypes.length];
+    for (int field : rowConverter.fields()) {
+      used[field] = true;
+    }
+    for (HdfsCsvMulFilter filter : this.filters) {
+      used[filter.field] = true;
+    }
+    this.columns = new Object[this.fieldTypes.length][];
+    this.values = new Object[this.fieldTypes.length];
+    this.blockLengths = new int[this.fieldTypes.length];
+  }
+
+  /**
+   * Reads the next row group, returning false at the end of the sidecar.
+   */
+  private boolean readRowGroup() throws IOException {
+    rowCount = in.readInt();
+    row = 0;
+    if (rowCount == 0) {
+      return false;
+    }
+    for (int c = 0; c < blockLengths.length; c++) {
+      blockLengths[c] = in.readInt();
+    }
+    for (int c = 0; c < blockLengths.length; c++) {
+      if (used[c]) {
+        final byte[] block = new byte[blockLengths[c]];
+        in.readFully(block);
+        columns[c] = HdfsCsvMulColumnCache.readBlock(block, fieldTypes[c], rowCount);
+      } else {
+        in.seek(in.getPos() + blockLengths[c]);
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public E current() {
+    return current;
+  }
+
+  @Override
+  public boolean moveNext() {
+    try {
+      outer:
+      for (; ; ) {
+        if (cancelFlag.get() || closed) {
+          return false;
+        }
+        if (row == rowCount && !readRowGroup()) {
+          current = null;
+          close();
+          return false;
+        }
+        for (int c = 0; c < values.length; c++) {
+          if (used[c]) {
+            values[c] = columns[c][row];
+          }
+        }
+        ++row;
+        for (HdfsCsvMulFilter filter : filters) {
+          if (!filter.matches(values[filter.field])) {
+            continue outer;
+          }
+        }
+        current = rowConverter.convertRow(values);
+        return true;
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public void reset() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      in.close();
+    } catch (IOException e) {
+      throw new RuntimeException("Error closing column cache reader", e);
+    }
+  }
+}
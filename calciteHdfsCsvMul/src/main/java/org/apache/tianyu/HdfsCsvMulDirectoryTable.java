@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tianyu;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.runtime.RuntimeFilter;
+import org.apache.calcite.runtime.SqlFunctions;
+import org.apache.calcite.schema.ProjectableFilterableTable;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+
+/**
+ * Table based on the CSV files in one HDFS directory, which all have the
+ * same columns, for example the parts written by one job.
+ *
+ * <p>The columns are those of the first file, followed by a
+ * {@value #FILE_NAME_COLUMN} column holding the name of the file each row
+ * was read from. Comparisons and {@code LIKE} on that column are evaluated
+ * once per file, before it is opened, so a query that names some of the
+ * files reads only those. The remaining files are scanned concurrently, at
+ * most {@code parallelism} at a time, by a {@link HdfsCsvMulMergeEnumerator};
+ * the order of rows across files is not defined.</p>
+ */
+public class HdfsCsvMulDirectoryTable extends HdfsCsvMulTable
+    implements ProjectableFilterableTable {
+
+  public static final String FILE_NAME_COLUMN = "fileName";
+
+  private final List<FileStatus> files;
+  private final int parallelism;
+
+  /**
+   * Creates a HdfsCsvMulDirectoryTable.
+   *
+   * @param fileSystem File system
+   * @param files Files in the directory, the first of which defines the columns
+   * @param headerCache Cache of file headers
+   * @param columnCache Cache of converted values, or null
+   * @param statisticsCache Cache of table statistics
+   * @param parallelism Maximum number of files to read at the same time
+   */
+  public HdfsCsvMulDirectoryTable(FileSystem fileSystem, List<FileStatus> files,
+      HdfsCsvMulHeaderCache headerCache, HdfsCsvMulColumnCache columnCache,
+      HdfsCsvMulStatisticsCache statisticsCache, int parallelism) {
+    super(fileSystem, files.get(0), headerCache, columnCache, statisticsCache);
+    this.files = files;
+    this.parallelism = parallelism;
+  }
+
+  public String toString() {
+    return "HdfsCsvMulDirectoryTable";
+  }
+
+  @Override
+  public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+    return typeFactory.builder()
+        .addAll(super.getRowType(typeFactory).getFieldList())
+        .add(FILE_NAME_COLUMN, SqlTypeName.VARCHAR)
+        .build();
+  }
+
+  @Override
+  HdfsCsvMulStatistics statistics() {
+    if (fieldTypes == null) {
+      return null;
+    }
+    try {
+      return statisticsCache.get(file.getPath().getParent(), files, fieldTypes, true);
+    } catch (IOException e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  @Override
+  List<HdfsCsvMulFieldType> columnTypes() {
+    final List<HdfsCsvMulFieldType> types = new ArrayList<>(fieldTypes);
+    types.add(HdfsCsvMulFieldType.STRING);
+    return types;
+  }
+
+  @Override
+  public Enumerable<Object[]> scan(DataContext root, List<RexNode> filters, int[] projects) {
+    final List<HdfsCsvMulFilter> pushedFilters = new ArrayList<>();
+    final List<Predicate<String>> fileNameFilters = new ArrayList<>();
+    filters.removeIf(filter -> {
+      final Predicate<String> fileNameFilter = fileNameFilter(filter);
+      if (fileNameFilter != null) {
+        fileNameFilters.add(fileNameFilter);
+        return true;
+      }
+      final HdfsCsvMulFilter pushedFilter = HdfsCsvMulFilter.of(filter, fieldTypes);
+      if (pushedFilter == null) {
+        return false;
+      }
+      pushedFilters.add(pushedFilter);
+      return true;
+    });
+    for (int i = 0; i < fieldTypes.size(); i++) {
+      final RuntimeFilter runtimeFilter = RuntimeFilter.of(root, i);
+      if (runtimeFilter != null) {
+        pushedFilters.add(HdfsCsvMulFilter.of(i, fieldTypes.get(i), runtimeFilter));
+      }
+    }
+    final List<FileStatus> selectedFiles = new ArrayList<>();
+    for (FileStatus file : files) {
+      if (fileNameFilters.stream().allMatch(f -> f.test(file.getPath().getName()))) {
+        selectedFiles.add(file);
+      }
+    }
+    final int[] fields = projects == null
+        ? HdfsCsvMulEnumerator.identityList(fieldTypes.size() + 1)
+        : projects;
+    final AtomicBoolean cancelFlag = DataContext.Variable.CANCEL_FLAG.get(root);
+    return new AbstractEnumerable<Object[]>() {
+      public Enumerator<Object[]> enumerator() {
+        final List<Supplier<Enumerator<Object[]>>> inputs = new ArrayList<>();
+        for (FileStatus file : selectedFiles) {
+          inputs.add(() -> HdfsCsvMulDirectoryTable.this.enumerator(file, cancelFlag,
+              pushedFilters, new FileRowConverter(fieldTypes, fields, file.getPath().getName())));
+        }
+        switch (inputs.size()) {
+          case 0:
+            return Linq4j.emptyEnumerator();
+          case 1:
+            return inputs.get(0).get();
+          default:
+            return new HdfsCsvMulMergeEnumerator<>(inputs, parallelism, cancelFlag);
+        }
+      }
+    };
+  }
+
+  /**
+   * Converts a filter on the {@value #FILE_NAME_COLUMN} column into a test of
+   * a file name, or returns null if the filter is not a comparison or
+   * {@code LIKE} between that column and a literal.
+   */
+  private Predicate<String> fileNameFilter(RexNode filter) {
+    final int fileNameField = fieldTypes.size();
+    if (filter.isA(SqlKind.LIKE)) {
+      final List<RexNode> operands = ((RexCall) filter).getOperands();
+      if (operands.size() == 2
+          && operands.get(0) instanceof RexInputRef
+          && ((RexInputRef) operands.get(0)).getIndex() == fileNameField
+          && operands.get(1) instanceof RexLiteral) {
+        final String pattern = ((RexLiteral) operands.get(1)).getValueAs(String.class);
+        return pattern == null ? null : name -> SqlFunctions.like(name, pattern);
+      }
+      return null;
+    }
+    final HdfsCsvMulFilter comparison = HdfsCsvMulFilter.of(filter, columnTypes());
+    if (comparison == null || comparison.field != fileNameField) {
+      return null;
+    }
+    return comparison::matches;
+  }
+
+  /**
+   * Converts a row of one file of the directory, taking the value of the
+   * {@value #FILE_NAME_COLUMN} column from the file rather than the record.
+   */
+  private static class FileRowConverter extends HdfsCsvMulEnumerator.RowConverter<Object[]> {
+
+    private final HdfsCsvMulFieldType[] fieldTypes;
+    private final int[] projects;
+    private final int[] fields;
+    private final String fileName;
+
+    FileRowConverter(List<HdfsCsvMulFieldType> fieldTypes, int[] projects, String fileName) {
+      this.fieldTypes = fieldTypes.toArray(new HdfsCsvMulFieldType[0]);
+      this.projects = projects;
+      this.fields = Arrays.stream(projects)
+          .filter(project -> project < this.fieldTypes.length)
+          .toArray();
+      this.fileName = fileName;
+    }
+
+    int[] fields() {
+      return fields;
+    }
+
+    Object[] convertRow(Object[] values) {
+      final Object[] objects = new Object[projects.length];
+      for (int i = 0; i < projects.length; i++) {
+        final int field = projects[i];
+        objects[i] = field == fieldTypes.length ? fileName : values[field];
+      }
+      return objects;
+    }
+
+    Object[] convertRow(HdfsCsvMulTokenizer tokenizer) {
+      final Object[] objects = new Object[projects.length];
+      for (int i = 0; i < projects.length; i++) {
+        final int field = projects[i];
+        objects[i] = field == fieldTypes.length
+            ? fileName
+            : convert(fieldTypes[field], tokenizer, field);
+      }
+      return objects;
+    }
+  }
+}
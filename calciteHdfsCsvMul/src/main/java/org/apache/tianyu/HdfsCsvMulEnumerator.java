@@ -14,13 +14,14 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-import java.io.BufferedReader;
+package org.apache.tianyu;
+
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.TimeZone;
@@ -35,9 +36,16 @@
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Decompressor;
 
 public class HdfsCsvMulEnumerator<E> implements Enumerator<E> {
 
+  /** Milliseconds to wait before looking for rows appended to a followed file. */
+  static final long POLL_MILLIS = 2000;
+
   private static final FastDateFormat TIME_FORMAT_DATE;
   private static final FastDateFormat TIME_FORMAT_TIME;
   private static final FastDateFormat TIME_FORMAT_TIMESTAMP;
@@ -50,28 +58,162 @@
         FastDateFormat.getInstance("yyyy-MM-dd HH:mm:ss", gmt);
   }
 
+  private final FileSystem fileSystem;
+  private final Path path;
   private final AtomicBoolean cancelFlag;
-  private final String[] filterValues;
+  private final List<HdfsCsvMulFilter> filters;
   private final RowConverter<E> rowConverter;
-  private BufferedReader reader;
+  private final int fieldLimit;
+  private final boolean stream;
+  private final HdfsCsvMulCheckpoint checkpoint;
+  // offset in the file at which the tokenizer's stream starts, if following
+  private long streamOffset;
+  private HdfsCsvMulTokenizer tokenizer;
   private E current;
 
-  HdfsCsvMulEnumerator(String fileName, AtomicBoolean cancelFlag, boolean stream,
-      String[] filterValues, RowConverter<E> rowConverter) {
+  HdfsCsvMulEnumerator(FileSystem fileSystem, String fileName, AtomicBoolean cancelFlag,
+      boolean stream, List<HdfsCsvMulFilter> filters, RowConverter<E> rowConverter) {
+    this(fileSystem, fileName, cancelFlag, stream, null, filters, rowConverter);
+  }
+
+  /**
+   * Creates an enumerator. If {@code stream} is true, the enumerator follows
+   * the file: at its end, it waits for rows to be appended rather than
+   * finishing, and it starts from and saves its position to
+   * {@code checkpoint}, if not null. The file must not be compressed.
+   */
+  HdfsCsvMulEnumerator(FileSystem fileSystem, String fileName, AtomicBoolean cancelFlag,
+      boolean stream, HdfsCsvMulCheckpoint checkpoint, List<HdfsCsvMulFilter> filters,
+      RowConverter<E> rowConverter) {
+    this.fileSystem = fileSystem;
+    this.path = new Path(fileName);
     this.cancelFlag = cancelFlag;
+    this.stream = stream;
+    this.checkpoint = checkpoint;
     this.rowConverter = rowConverter;
-    this.filterValues = filterValues;
+    this.filters = filters == null ? Collections.emptyList() : filters;
+    // Only locate the fields up to the last one that is projected or filtered.
+    int fieldLimit = 0;
+    for (int field : rowConverter.fields()) {
+      fieldLimit = Math.max(fieldLimit, field + 1);
+    }
+    for (HdfsCsvMulFilter filter : this.filters) {
+      fieldLimit = Math.max(fieldLimit, filter.field + 1);
+    }
+    this.fieldLimit = fieldLimit;
+    this.tokenizer = open();
+  }
+
+  /**
+   * Opens the file and positions a tokenizer after its header row, or, if
+   * following the file, at the checkpoint. Closes the stream if that fails.
+   */
+  private HdfsCsvMulTokenizer open() {
+    if (!stream) {
+      return open(0);
+    }
+    long offset = 0;
+    if (checkpoint != null) {
+      try {
+        offset = checkpoint.read();
+        // The file has been replaced by a shorter one; start again.
+        if (offset > fileSystem.getFileStatus(path).getLen()) {
+          offset = 0;
+        }
+      } catch (IOException e) {
+        throw new RuntimeException("Error reading checkpoint of " + path, e);
+      }
+    }
+    return open(offset);
+  }
+
+  /**
+   * Opens the file and positions a tokenizer at an offset, which is the
+   * start of a record. At offset 0, skips the header row.
+   */
+  private HdfsCsvMulTokenizer open(long offset) {
+    HdfsCsvMulTokenizer tokenizer = null;
     try {
-      FileSystem fs = HdfsCsvMulSchema.getFileSystem();
-      InputStream in = null;
-      FSDataInputStream hdfsInStream = fs.open(new Path(fileName));
-      InputStreamReader isr = new InputStreamReader(hdfsInStream, "utf-8");
-      this.reader = new BufferedReader(isr);
-      this.reader.readLine();//skip header row
-    } catch (UnsupportedEncodingException e) {
-      e.printStackTrace();
+      if (stream) {
+        final FSDataInputStream in = fileSystem.open(path);
+        tokenizer = new HdfsCsvMulTokenizer(in);
+        if (offset > 0) {
+          in.seek(offset);
+        }
+        tokenizer.setFollowing(true);
+      } else {
+        tokenizer = new HdfsCsvMulTokenizer(openFile(fileSystem, path));
+      }
+      if (offset == 0) {
+        tokenizer.next(); // skip header row
+      }
+      tokenizer.setFieldLimit(fieldLimit);
+      streamOffset = offset;
+      return tokenizer;
     } catch (IOException e) {
-      e.printStackTrace();
+      if (tokenizer != null) {
+        try {
+          tokenizer.close();
+        } catch (IOException e2) {
+          e.addSuppressed(e2);
+        }
+      }
+      throw new RuntimeException("Error opening " + path, e);
+    }
+  }
+
+  /**
+   * Returns whether a file is a CSV file, possibly compressed with a codec
+   * known to the configuration, for example {@code x.csv} or
+   * {@code x.csv.gz}.
+   */
+  static boolean isCsvFile(CompressionCodecFactory codecs, Path path) {
+    String name = path.getName();
+    final CompressionCodec codec = codecs.getCodec(path);
+    if (codec != null) {
+      name = CompressionCodecFactory.removeSuffix(name, codec.getDefaultExtension());
+    }
+    return name.endsWith(".csv");
+  }
+
+  /**
+   * Opens a CSV file, decompressing it if its name ends with the extension of
+   * a codec known to the file system's configuration. Which codecs are
+   * available, for example {@code .snappy} and {@code .zst}, depends on the
+   * Hadoop version, native libraries and {@code io.compression.codecs}.
+   */
+  static InputStream openFile(FileSystem fileSystem, Path path) throws IOException {
+    return decompress(fileSystem, path, fileSystem.open(path));
+  }
+
+  /**
+   * Wraps a stream that has been opened on a file so that it returns the
+   * decompressed contents, as {@link #openFile} does. Closes the stream if
+   * that fails.
+   */
+  static InputStream decompress(FileSystem fileSystem, Path path, InputStream in)
+      throws IOException {
+    final CompressionCodec codec =
+        new CompressionCodecFactory(fileSystem.getConf()).getCodec(path);
+    if (codec == null) {
+      return in;
+    }
+    final Decompressor decompressor = CodecPool.getDecompressor(codec);
+    try {
+      return new FilterInputStream(codec.createInputStream(in, decompressor)) {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            CodecPool.returnDecompressor(decompressor);
+          }
+        }
+      };
+    } catch (IOException | RuntimeException e) {
+      CodecPool.returnDecompressor(decompressor);
+      in.close();
+      throw e;
     }
   }
 
@@ -87,53 +229,44 @@ static int[] identityList(int n) {
   }
 
   /**
-   * Deduces the names and types of a table's columns by reading the first line of a CSV file.
+   * Deduces the names and types of a table's columns from the header row of a CSV file.
    */
   static RelDataType deduceRowType(JavaTypeFactory typeFactory, String fileName,
-      List<HdfsCsvMulFieldType> fieldTypes) {
+      String[] header, List<HdfsCsvMulFieldType> fieldTypes) {
     final List<RelDataType> types = new ArrayList<>();
     final List<String> names = new ArrayList<>();
-    FileSystem fileSystem = HdfsCsvMulSchema.getFileSystem();
-    try {
-      FSDataInputStream hdfsInStream = fileSystem.open(new Path(fileName));
-      InputStreamReader isr = new InputStreamReader(hdfsInStream, "utf-8");
-      BufferedReader br = new BufferedReader(isr);
-      String[] strings = br.readLine().split(",");
-      if (strings == null) {
-        strings = new String[]{"EmptyFileHasNoColumns:boolean"};
-      }
-      for (String string : strings) {
-        final String name;
-        final HdfsCsvMulFieldType fieldType;
-        final int colon = string.indexOf(':');
-        if (colon >= 0) {
-          name = string.substring(0, colon);
-          String typeString = string.substring(colon + 1);
-          fieldType = HdfsCsvMulFieldType.of(typeString);
-          if (fieldType == null) {
-            System.out.println("WARNING: Found unknown type: "
-                + typeString + " in file: " + fileName
-                + " for column: " + name
-                + ". Will assume the type of column is string");
-          }
-        } else {
-          name = string;
-          fieldType = null;
-        }
-        final RelDataType type;
+    final String[] strings = header.length == 0
+        ? new String[]{"EmptyFileHasNoColumns:boolean"}
+        : header;
+    for (String string : strings) {
+      final String name;
+      final HdfsCsvMulFieldType fieldType;
+      final int colon = string.indexOf(':');
+      if (colon >= 0) {
+        name = string.substring(0, colon);
+        String typeString = string.substring(colon + 1);
+        fieldType = HdfsCsvMulFieldType.of(typeString);
         if (fieldType == null) {
-          type = typeFactory.createSqlType(SqlTypeName.VARCHAR);
-        } else {
-          type = fieldType.toType(typeFactory);
-        }
-        names.add(name);
-        types.add(type);
-        if (fieldTypes != null) {
-          fieldTypes.add(fieldType);
+          System.out.println("WARNING: Found unknown type: "
+              + typeString + " in file: " + fileName
+              + " for column: " + name
+              + ". Will assume the type of column is string");
         }
+      } else {
+        name = string;
+        fieldType = null;
+      }
+      final RelDataType type;
+      if (fieldType == null) {
+        type = typeFactory.createSqlType(SqlTypeName.VARCHAR);
+      } else {
+        type = fieldType.toType(typeFactory);
+      }
+      names.add(name);
+      types.add(type);
+      if (fieldTypes != null) {
+        fieldTypes.add(fieldType);
       }
-    } catch (IOException e) {
-      e.printStackTrace();
     }
     if (names.isEmpty()) {
       names.add("line");
@@ -149,81 +282,83 @@ static RelDataType deduceRowType(JavaTypeFactory typeFactory, String fileName,
    */
   abstract static class RowConverter<E> {
 
-    abstract E convertRow(String[] rows);
+    abstract E convertRow(HdfsCsvMulTokenizer tokenizer);
 
-    protected Object convert(HdfsCsvMulFieldType fieldType, String string) {
+    /**
+     * Converts a row of values that have already been converted, indexed by
+     * field ordinal; only the fields that {@link #fields} returns are set.
+     */
+    abstract E convertRow(Object[] values);
+
+    /**
+     * Returns the ordinals of the fields that {@link #convertRow} reads.
+     */
+    abstract int[] fields();
+
+    /**
+     * Converts a field of the tokenizer's current record. Values in the
+     * canonical format are parsed from the bytes; other date and time values
+     * fall back to a lenient parser.
+     */
+    protected Object convert(HdfsCsvMulFieldType fieldType, HdfsCsvMulTokenizer tokenizer,
+        int field) {
       if (fieldType == null) {
-        return string;
+        return tokenizer.getString(field);
+      }
+      if (fieldType != HdfsCsvMulFieldType.STRING && tokenizer.isEmpty(field)) {
+        return null;
       }
       switch (fieldType) {
         case BOOLEAN:
-          if (string.length() == 0) {
-            return null;
-          }
-          return Boolean.parseBoolean(string);
+          return tokenizer.getBoolean(field);
         case BYTE:
-          if (string.length() == 0) {
-            return null;
-          }
-          return Byte.parseByte(string);
+          return Byte.parseByte(tokenizer.getString(field));
         case SHORT:
-          if (string.length() == 0) {
-            return null;
-          }
-          return Short.parseShort(string);
+          return Short.parseShort(tokenizer.getString(field));
         case INT:
-          if (string.length() == 0) {
-            return null;
-          }
-          return Integer.parseInt(string);
+          return tokenizer.getInt(field);
         case LONG:
-          if (string.length() == 0) {
-            return null;
-          }
-          return Long.parseLong(string);
+          return tokenizer.getLong(field);
         case FLOAT:
-          if (string.length() == 0) {
-            return null;
-          }
-          return Float.parseFloat(string);
+          return Float.parseFloat(tokenizer.getString(field));
         case DOUBLE:
-          if (string.length() == 0) {
-            return null;
-          }
-          return Double.parseDouble(string);
+          return tokenizer.getDouble(field);
         case DATE:
-          if (string.length() == 0) {
-            return null;
-          }
           try {
-            Date date = TIME_FORMAT_DATE.parse(string);
-            return (int) (date.getTime() / DateTimeUtils.MILLIS_PER_DAY);
-          } catch (ParseException e) {
-            return null;
+            return tokenizer.getDate(field);
+          } catch (NumberFormatException e) {
+            try {
+              Date date = TIME_FORMAT_DATE.parse(tokenizer.getString(field));
+              return (int) (date.getTime() / DateTimeUtils.MILLIS_PER_DAY);
+            } catch (ParseException e2) {
+              return null;
+            }
           }
         case TIME:
-          if (string.length() == 0) {
-            return null;
-          }
           try {
-            Date date = TIME_FORMAT_TIME.parse(string);
-            return (int) date.getTime();
-          } catch (ParseException e) {
-            return null;
+            return tokenizer.getTime(field);
+          } catch (NumberFormatException e) {
+            try {
+              Date date = TIME_FORMAT_TIME.parse(tokenizer.getString(field));
+              return (int) date.getTime();
+            } catch (ParseException e2) {
+              return null;
+            }
           }
         case TIMESTAMP:
-          if (string.length() == 0) {
-            return null;
-          }
           try {
-            Date date = TIME_FORMAT_TIMESTAMP.parse(string);
-            return date.getTime();
-          } catch (ParseException e) {
-            return null;
+            return tokenizer.getTimestamp(field);
+          } catch (NumberFormatException e) {
+            try {
+              Date date = TIME_FORMAT_TIMESTAMP.parse(tokenizer.getString(field));
+              return date.getTime();
+            } catch (ParseException e2) {
+              return null;
+            }
           }
         case STRING:
         default:
-          return string;
+          return tokenizer.getString(field);
       }
     }
   }
@@ -250,29 +385,45 @@ static class ArrayRowConverter extends RowConverter<Object[]> {
       this.stream = stream;
     }
 
-    public Object[] convertRow(String[] strings) {
+    int[] fields() {
+      return fields;
+    }
+
+    public Object[] convertRow(HdfsCsvMulTokenizer tokenizer) {
       if (stream) {
-        return convertStreamRow(strings);
+        return convertStreamRow(tokenizer);
       } else {
-        return convertNormalRow(strings);
+        return convertNormalRow(tokenizer);
       }
     }
 
-    public Object[] convertNormalRow(String[] strings) {
+    public Object[] convertNormalRow(HdfsCsvMulTokenizer tokenizer) {
       final Object[] objects = new Object[fields.length];
       for (int i = 0; i < fields.length; i++) {
         int field = fields[i];
-        objects[i] = convert(fieldTypes[field], strings[field]);
+        objects[i] = convert(fieldTypes[field], tokenizer, field);
+      }
+      return objects;
+    }
+
+    public Object[] convertRow(Object[] values) {
+      final int offset = stream ? 1 : 0;
+      final Object[] objects = new Object[fields.length + offset];
+      if (stream) {
+        objects[0] = System.currentTimeMillis();
+      }
+      for (int i = 0; i < fields.length; i++) {
+        objects[i + offset] = values[fields[i]];
       }
       return objects;
     }
 
-    public Object[] convertStreamRow(String[] strings) {
+    public Object[] convertStreamRow(HdfsCsvMulTokenizer tokenizer) {
       final Object[] objects = new Object[fields.length + 1];
       objects[0] = System.currentTimeMillis();
       for (int i = 0; i < fields.length; i++) {
         int field = fields[i];
-        objects[i + 1] = convert(fieldTypes[field], strings[field]);
+        objects[i + 1] = convert(fieldTypes[field], tokenizer, field);
       }
       return objects;
     }
@@ -291,27 +442,24 @@ public boolean moveNext() {
         if (cancelFlag.get()) {
           return false;
         }
-        String line = reader.readLine();
-        String[] strings = null;
-        if (line != null) {
-          strings = line.split(",");
+        if (tokenizer == null) {
+          return false;
         }
-        if (strings == null) {
+        if (!tokenizer.next()) {
+          if (stream) {
+            follow();
+            continue;
+          }
           current = null;
-          reader.close();
+          close();
           return false;
         }
-        if (filterValues != null) {
-          for (int i = 0; i < strings.length; i++) {
-            String filterValue = filterValues[i];
-            if (filterValue != null) {
-              if (!filterValue.equals(strings[i])) {
-                continue outer;
-              }
-            }
+        for (HdfsCsvMulFilter filter : filters) {
+          if (!filter.matches(rowConverter, tokenizer)) {
+            continue outer;
           }
         }
-        current = rowConverter.convertRow(strings);
+        current = rowConverter.convertRow(tokenizer);
         return true;
       }
     } catch (IOException e) {
@@ -319,15 +467,47 @@ public boolean moveNext() {
     }
   }
 
+  /**
+   * Called when a followed file has no more complete rows. Saves the
+   * position, waits, and reopens the file there, because an open HDFS
+   * stream does not see blocks that are added to the file after it was
+   * opened.
+   */
+  private void follow() throws IOException {
+    final long offset = streamOffset + tokenizer.offset();
+    if (checkpoint != null) {
+      checkpoint.write(offset);
+    }
+    try {
+      Thread.sleep(POLL_MILLIS);
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+    final HdfsCsvMulTokenizer tokenizer = this.tokenizer;
+    this.tokenizer = null;
+    tokenizer.close();
+    this.tokenizer = open(offset);
+  }
+
   @Override
   public void reset() {
-    throw new UnsupportedOperationException();
+    close();
+    current = null;
+    tokenizer = open();
   }
 
   @Override
   public void close() {
+    if (tokenizer == null) {
+      return;
+    }
+    final HdfsCsvMulTokenizer tokenizer = this.tokenizer;
+    this.tokenizer = null;
     try {
-      reader.close();
+      if (checkpoint != null) {
+        checkpoint.write(streamOffset + tokenizer.offset());
+      }
+      tokenizer.close();
     } catch (IOException e) {
       throw new RuntimeException("Error closing CSV reader", e);
     }
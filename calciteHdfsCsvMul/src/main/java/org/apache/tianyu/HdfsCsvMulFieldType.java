@@ -14,6 +14,7 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
+package org.apache.tianyu;
 
 import java.util.HashMap;
 import java.util.Map;
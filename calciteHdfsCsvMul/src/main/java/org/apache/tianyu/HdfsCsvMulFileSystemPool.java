@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tianyu;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+
+/**
+ * Pool of HDFS clients shared by the schemas that connect to the same file
+ * system as the same user.
+ *
+ * <p>{@link FileSystem#get(URI, Configuration, String)} caches clients by
+ * user group information, which is created afresh for every call, so each
+ * schema would otherwise open its own client and never close it. Clients
+ * here are created with {@link FileSystem#newInstance}, so closing one does
+ * not affect a client held by other code, and are closed when the last
+ * {@link Lease} on them is closed.</p>
+ */
+class HdfsCsvMulFileSystemPool {
+
+  private static final Map<Key, Entry> ENTRIES = new HashMap<>();
+
+  private HdfsCsvMulFileSystemPool() {
+  }
+
+  /**
+   * Returns a lease on the client for a file system and user, creating the
+   * client if no schema holds one.
+   */
+  static Lease acquire(URI uri, String userName) throws IOException {
+    final Key key = new Key(uri, userName);
+    synchronized (ENTRIES) {
+      Entry entry = ENTRIES.get(key);
+      if (entry == null) {
+        final FileSystem fileSystem;
+        try {
+          fileSystem = FileSystem.newInstance(uri, new Configuration(), userName);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while connecting to " + uri, e);
+        }
+        entry = new Entry(fileSystem);
+        ENTRIES.put(key, entry);
+      }
+      ++entry.references;
+      return new Lease(key, entry.fileSystem);
+    }
+  }
+
+  private static void release(Key key) throws IOException {
+    final FileSystem fileSystem;
+    synchronized (ENTRIES) {
+      final Entry entry = ENTRIES.get(key);
+      if (--entry.references > 0) {
+        return;
+      }
+      ENTRIES.remove(key);
+      fileSystem = entry.fileSystem;
+    }
+    fileSystem.close();
+  }
+
+  /**
+   * Use of a pooled client. Closing the lease, not the client, gives it back
+   * to the pool.
+   */
+  static class Lease implements Closeable {
+    private final Key key;
+    private final FileSystem fileSystem;
+    private boolean closed;
+
+    private Lease(Key key, FileSystem fileSystem) {
+      this.key = key;
+      this.fileSystem = fileSystem;
+    }
+
+    FileSystem fileSystem() {
+      return fileSystem;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      if (!closed) {
+        closed = true;
+        release(key);
+      }
+    }
+  }
+
+  /**
+   * Pooled client and the number of leases on it.
+   */
+  private static class Entry {
+    final FileSystem fileSystem;
+    int references;
+
+    Entry(FileSystem fileSystem) {
+      this.fileSystem = fileSystem;
+    }
+  }
+
+  /**
+   * File system, identified by scheme and authority, and user.
+   */
+  private static class Key {
+    final String scheme;
+    final String authority;
+    final String userName;
+
+    Key(URI uri, String userName) {
+      this.scheme = uri.getScheme();
+      this.authority = uri.getAuthority();
+      this.userName = userName;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(scheme, authority, userName);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj == this
+          || obj instanceof Key
+          && Objects.equals(scheme, ((Key) obj).scheme)
+          && Objects.equals(authority, ((Key) obj).authority)
+          && Objects.equals(userName, ((Key) obj).userName);
+    }
+  }
+}
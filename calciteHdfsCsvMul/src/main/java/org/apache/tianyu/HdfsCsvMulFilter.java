@@ -0,0 +1,341 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tianyu;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.runtime.RuntimeFilter;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.type.SqlTypeFamily;
+import org.apache.calcite.sql.type.SqlTypeName;
+
+/**
+ * Comparison of one column of a CSV file with a literal, evaluated on the raw
+ * field bytes before the rest of the row is converted.
+ *
+ * <p>Only the column under test is converted; a row that fails the
+ * comparison is discarded without touching its other fields. As in SQL, a
+ * field that converts to null fails every comparison.</p>
+ *
+ * <p>A filter may instead test whether a {@link RuntimeFilter}, built from
+ * the keys of a join that reads this table, might contain the field.</p>
+ */
+class HdfsCsvMulFilter {
+  // integer types, narrowest first
+  private static final List<SqlTypeName> INTEGER_TYPES =
+      Arrays.asList(SqlTypeName.TINYINT, SqlTypeName.SMALLINT,
+          SqlTypeName.INTEGER, SqlTypeName.BIGINT);
+
+  final int field;
+  final SqlKind kind;
+  private final HdfsCsvMulFieldType fieldType;
+  final Comparable literal;
+  // UTF-8 encoding of a string literal
+  private final byte[] bytes;
+  private final boolean numeric;
+  private final boolean integral;
+  private final long longValue;
+  private final double doubleValue;
+  // filter built from the keys of a join, or null if this is a comparison
+  private final RuntimeFilter runtimeFilter;
+
+  private HdfsCsvMulFilter(int field, SqlKind kind, HdfsCsvMulFieldType fieldType,
+      Comparable literal, RuntimeFilter runtimeFilter) {
+    this.field = field;
+    this.kind = kind;
+    this.fieldType = fieldType;
+    this.literal = literal;
+    this.runtimeFilter = runtimeFilter;
+    this.numeric = literal instanceof Number;
+    this.bytes = literal instanceof String
+        ? ((String) literal).getBytes(StandardCharsets.UTF_8)
+        : null;
+    if (literal instanceof BigDecimal) {
+      final BigDecimal decimal = (BigDecimal) literal;
+      // A whole number outside the range of long would wrap in longValue()
+      this.integral = isLong(decimal)
+          && (decimal.signum() == 0 || decimal.stripTrailingZeros().scale() <= 0);
+      this.longValue = decimal.longValue();
+      this.doubleValue = decimal.doubleValue();
+    } else if (literal instanceof Number) {
+      this.integral = true;
+      this.longValue = ((Number) literal).longValue();
+      this.doubleValue = ((Number) literal).doubleValue();
+    } else {
+      this.integral = false;
+      this.longValue = 0;
+      this.doubleValue = 0;
+    }
+  }
+
+  /**
+   * Converts a filter condition into a {@code HdfsCsvMulFilter}, or returns
+   * null if the condition is not a comparison between a column and a literal
+   * of a type that can be evaluated on the raw text.
+   */
+  static HdfsCsvMulFilter of(RexNode filter, List<HdfsCsvMulFieldType> fieldTypes) {
+    if (!(filter instanceof RexCall)) {
+      return null;
+    }
+    final RexCall call = (RexCall) filter;
+    SqlKind kind = call.getKind();
+    switch (kind) {
+      case EQUALS:
+      case NOT_EQUALS:
+      case LESS_THAN:
+      case LESS_THAN_OR_EQUAL:
+      case GREATER_THAN:
+      case GREATER_THAN_OR_EQUAL:
+        break;
+      default:
+        return null;
+    }
+    RexNode left = call.getOperands().get(0);
+    RexNode right = call.getOperands().get(1);
+    if (left instanceof RexLiteral) {
+      final RexNode swap = left;
+      left = right;
+      right = swap;
+      kind = kind.reverse();
+    }
+    if (!(right instanceof RexLiteral)) {
+      return null;
+    }
+    if (left.isA(SqlKind.CAST)) {
+      if (!isIdentityCast((RexCall) left)) {
+        // The cast may change the value (for example, "05" cast to INTEGER
+        // equals 5), so the raw field cannot be compared with the literal.
+        return null;
+      }
+      left = ((RexCall) left).operands.get(0);
+    }
+    if (!(left instanceof RexInputRef)) {
+      return null;
+    }
+    final int index = ((RexInputRef) left).getIndex();
+    if (index >= fieldTypes.size()) {
+      // a virtual column, not a field of the file
+      return null;
+    }
+    final HdfsCsvMulFieldType fieldType = fieldTypes.get(index);
+    final Comparable literal = literal((RexLiteral) right, fieldType);
+    if (literal == null) {
+      return null;
+    }
+    return new HdfsCsvMulFilter(index, kind, fieldType, literal, null);
+  }
+
+  /**
+   * Creates a filter that passes rows whose field might be contained in a
+   * runtime filter; see {@link RuntimeFilter#of}.
+   */
+  static HdfsCsvMulFilter of(int field, HdfsCsvMulFieldType fieldType,
+      RuntimeFilter runtimeFilter) {
+    return new HdfsCsvMulFilter(field, null, fieldType, null, runtimeFilter);
+  }
+
+  /**
+   * Returns whether a cast returns every value of its operand unchanged: it
+   * converts to the same type without reducing precision or scale, or widens
+   * an integer type.
+   */
+  private static boolean isIdentityCast(RexCall cast) {
+    final RelDataType from = cast.operands.get(0).getType();
+    final RelDataType to = cast.getType();
+    final SqlTypeName fromName = from.getSqlTypeName();
+    final SqlTypeName toName = to.getSqlTypeName();
+    if (fromName != toName) {
+      final int fromRank = INTEGER_TYPES.indexOf(fromName);
+      return fromRank >= 0 && INTEGER_TYPES.indexOf(toName) >= fromRank;
+    }
+    if (to.getPrecision() != RelDataType.PRECISION_NOT_SPECIFIED
+        && (from.getPrecision() == RelDataType.PRECISION_NOT_SPECIFIED
+            || from.getPrecision() > to.getPrecision())) {
+      return false;
+    }
+    return from.getScale() == to.getScale();
+  }
+
+  private static boolean isLong(BigDecimal decimal) {
+    return decimal.compareTo(BigDecimal.valueOf(Long.MIN_VALUE)) >= 0
+        && decimal.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) <= 0;
+  }
+
+  private static boolean isString(HdfsCsvMulFieldType fieldType) {
+    return fieldType == null || fieldType == HdfsCsvMulFieldType.STRING;
+  }
+
+  /**
+   * Returns the value of a literal in the form produced by
+   * {@link HdfsCsvMulEnumerator.RowConverter#convert} for a column of the given
+   * type, or null if the two are not comparable.
+   */
+  private static Comparable literal(RexLiteral literal, HdfsCsvMulFieldType fieldType) {
+    if (literal.getValue() == null) {
+      return null;
+    }
+    if (isString(fieldType)) {
+      return literal.getTypeName().getFamily() == SqlTypeFamily.CHARACTER
+          ? (Comparable) literal.getValue2()
+          : null;
+    }
+    switch (fieldType) {
+      case BOOLEAN:
+        return literal.getValue2() instanceof Boolean ? (Comparable) literal.getValue2() : null;
+      case BYTE:
+      case SHORT:
+      case INT:
+      case LONG:
+        if (literal.getTypeName().getFamily() != SqlTypeFamily.NUMERIC) {
+          return null;
+        }
+        // Outside the range of long, neither a long nor a double comparison
+        // with the field is exact, so the filter is not pushed down.
+        final BigDecimal decimal = literal.getValueAs(BigDecimal.class);
+        return isLong(decimal) ? decimal : null;
+      case FLOAT:
+      case DOUBLE:
+        return literal.getTypeName().getFamily() == SqlTypeFamily.NUMERIC
+            ? literal.getValueAs(BigDecimal.class)
+            : null;
+      case DATE:
+        return literal.getTypeName() == SqlTypeName.DATE
+            ? (Comparable) literal.getValue2()
+            : null;
+      case TIME:
+        return literal.getTypeName() == SqlTypeName.TIME
+            ? (Comparable) literal.getValue2()
+            : null;
+      case TIMESTAMP:
+        return literal.getTypeName() == SqlTypeName.TIMESTAMP
+            ? (Comparable) literal.getValue2()
+            : null;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Returns whether a value, of the form produced by
+   * {@link HdfsCsvMulEnumerator.RowConverter#convert}, satisfies this filter.
+   */
+  boolean matches(Object value) {
+    if (runtimeFilter != null) {
+      return runtimeFilter.mightContain(value);
+    }
+    if (value == null) {
+      return false;
+    }
+    return test(compare(value));
+  }
+
+  /**
+   * Returns whether the result of comparing a value with the literal
+   * satisfies this filter.
+   */
+  private boolean test(int c) {
+    switch (kind) {
+      case EQUALS:
+        return c == 0;
+      case NOT_EQUALS:
+        return c != 0;
+      case LESS_THAN:
+        return c < 0;
+      case LESS_THAN_OR_EQUAL:
+        return c <= 0;
+      case GREATER_THAN:
+        return c > 0;
+      case GREATER_THAN_OR_EQUAL:
+        return c >= 0;
+      default:
+        throw new AssertionError(kind);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private int compare(Object value) {
+    if (numeric) {
+      final Number number = (Number) value;
+      if (integral && !(value instanceof Float || value instanceof Double)) {
+        return Long.compare(number.longValue(), longValue);
+      }
+      return Double.compare(number.doubleValue(), doubleValue);
+    }
+    return ((Comparable) value).compareTo(literal);
+  }
+
+  /**
+   * Tests the field in the tokenizer's current record. Strings are compared
+   * as bytes and numbers are parsed from the bytes without boxing; values of
+   * other types are converted first.
+   */
+  boolean matches(HdfsCsvMulEnumerator.RowConverter<?> converter,
+      HdfsCsvMulTokenizer tokenizer) {
+    if (runtimeFilter != null) {
+      return matchesRuntimeFilter(converter, tokenizer);
+    }
+    if (isString(fieldType)) {
+      return test(tokenizer.compare(field, bytes));
+    }
+    if (tokenizer.isEmpty(field)) {
+      return false;
+    }
+    switch (fieldType) {
+      case BYTE:
+      case SHORT:
+      case INT:
+      case LONG:
+        final long value = tokenizer.getLong(field);
+        return test(integral
+            ? Long.compare(value, longValue)
+            : Double.compare(value, doubleValue));
+      case DOUBLE:
+        return test(Double.compare(tokenizer.getDouble(field), doubleValue));
+      default:
+        return matches(converter.convert(fieldType, tokenizer, field));
+    }
+  }
+
+  /**
+   * Tests the field in the tokenizer's current record against the runtime
+   * filter. Integers are parsed from the bytes without boxing.
+   */
+  private boolean matchesRuntimeFilter(HdfsCsvMulEnumerator.RowConverter<?> converter,
+      HdfsCsvMulTokenizer tokenizer) {
+    if (fieldType != null) {
+      switch (fieldType) {
+        case BYTE:
+        case SHORT:
+        case INT:
+        case LONG:
+          return tokenizer.isEmpty(field)
+              ? runtimeFilter.mightContain(null)
+              : runtimeFilter.mightContain(tokenizer.getLong(field));
+        default:
+          break;
+      }
+    }
+    return runtimeFilter.mightContain(converter.convert(fieldType, tokenizer, field));
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tianyu;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.runtime.RuntimeFilter;
+import org.apache.calcite.schema.ProjectableFilterableTable;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+
+/**
+ * Table based on a CSV file in HDFS that parses only the columns a query
+ * uses and evaluates simple comparisons before converting a row.
+ *
+ * <p>It implements the {@link ProjectableFilterableTable} interface, so
+ * Calcite gets data by calling the {@link #scan(DataContext, List, int[])}
+ * method. Comparisons between a column and a literal are removed from the
+ * list of filters and applied by {@link HdfsCsvMulEnumerator}; any other
+ * filter is left for Calcite to apply. If a join reads the table, the
+ * enumerator also applies the runtime filters built from the join's other
+ * input, so that rows that cannot match are not converted.</p>
+ */
+public class HdfsCsvMulFilterableTable extends HdfsCsvMulTable
+    implements ProjectableFilterableTable {
+
+  public HdfsCsvMulFilterableTable(FileSystem fileSystem, FileStatus file,
+      HdfsCsvMulHeaderCache headerCache, HdfsCsvMulColumnCache columnCache,
+      HdfsCsvMulStatisticsCache statisticsCache) {
+    super(fileSystem, file, headerCache, columnCache, statisticsCache);
+  }
+
+  public String toString() {
+    return "HdfsCsvMulFilterableTable";
+  }
+
+  @Override
+  public Enumerable<Object[]> scan(DataContext root, List<RexNode> filters, int[] projects) {
+    final List<HdfsCsvMulFilter> pushedFilters = new ArrayList<>();
+    filters.removeIf(filter -> {
+      final HdfsCsvMulFilter pushedFilter = HdfsCsvMulFilter.of(filter, fieldTypes);
+      if (pushedFilter == null) {
+        return false;
+      }
+      pushedFilters.add(pushedFilter);
+      return true;
+    });
+    for (int i = 0; i < fieldTypes.size(); i++) {
+      final RuntimeFilter runtimeFilter = RuntimeFilter.of(root, i);
+      if (runtimeFilter != null) {
+        pushedFilters.add(HdfsCsvMulFilter.of(i, fieldTypes.get(i), runtimeFilter));
+      }
+    }
+    final int[] fields = projects == null
+        ? HdfsCsvMulEnumerator.identityList(fieldTypes.size())
+        : projects;
+    final AtomicBoolean cancelFlag = DataContext.Variable.CANCEL_FLAG.get(root);
+    return new AbstractEnumerable<Object[]>() {
+      public Enumerator<Object[]> enumerator() {
+        return HdfsCsvMulFilterableTable.this.enumerator(file, cancelFlag, pushedFilters,
+            new HdfsCsvMulEnumerator.ArrayRowConverter(fieldTypes, fields));
+      }
+    };
+  }
+}
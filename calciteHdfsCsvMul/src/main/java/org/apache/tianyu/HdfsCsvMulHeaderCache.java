@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tianyu;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Cache of the header rows of CSV files, keyed by path, length and
+ * modification time.
+ *
+ * <p>A header is read from its file the first time it is asked for, and
+ * again only if the file's length or modification time changes. If the cache
+ * has a file, entries are loaded from it on first use and new entries are
+ * written back a few seconds after they are read, so that later schema
+ * instances, in this or another process, do not open the CSV files at
+ * all.</p>
+ *
+ * <p>The cache file is itself a CSV file with one record per CSV file:
+ * path, length, modification time, then the fields of the header.</p>
+ */
+class HdfsCsvMulHeaderCache {
+
+  private static final long FLUSH_DELAY_SECONDS = 5;
+
+  private static final ScheduledExecutorService FLUSH_EXECUTOR =
+      Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("hdfs-csv-header-cache")
+              .build());
+
+  private final FileSystem fileSystem;
+  private final Path cacheFile;
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+  private volatile boolean loaded;
+
+  /**
+   * Creates a cache.
+   *
+   * @param fileSystem File system of the CSV files and the cache file
+   * @param cacheFile File that persists the cache, or null to keep it in memory
+   */
+  HdfsCsvMulHeaderCache(FileSystem fileSystem, Path cacheFile) {
+    this.fileSystem = fileSystem;
+    this.cacheFile = cacheFile;
+  }
+
+  /**
+   * Returns the fields of the header row of a file, reading it if it is not
+   * cached or the file has changed since it was cached.
+   */
+  String[] get(FileStatus file) throws IOException {
+    load();
+    final String path = file.getPath().toString();
+    final Entry entry = entries.get(path);
+    if (entry != null && entry.matches(file)) {
+      return entry.header;
+    }
+    final String[] header = readHeader(fileSystem, file.getPath());
+    entries.put(path, new Entry(file.getLen(), file.getModificationTime(), header));
+    scheduleFlush();
+    return header;
+  }
+
+  /**
+   * Reads the headers of all files that are not already cached, on up to
+   * {@code parallelism} threads, and writes the cache file.
+   */
+  void probe(Collection<FileStatus> files, int parallelism) throws IOException {
+    load();
+    final List<FileStatus> misses = new ArrayList<>();
+    for (FileStatus file : files) {
+      final Entry entry = entries.get(file.getPath().toString());
+      if (entry == null || !entry.matches(file)) {
+        misses.add(file);
+      }
+    }
+    if (misses.isEmpty()) {
+      return;
+    }
+    final ExecutorService executor = Executors.newFixedThreadPool(
+        Math.max(1, Math.min(parallelism, misses.size())),
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("hdfs-csv-header-%d").build());
+    try {
+      final List<Future<String[]>> futures = new ArrayList<>();
+      for (FileStatus file : misses) {
+        futures.add(executor.submit(() -> readHeader(fileSystem, file.getPath())));
+      }
+      for (int i = 0; i < misses.size(); i++) {
+        final FileStatus file = misses.get(i);
+        try {
+          entries.put(file.getPath().toString(),
+              new Entry(file.getLen(), file.getModificationTime(), futures.get(i).get()));
+        } catch (ExecutionException e) {
+          // Leave it to the table to report when it is used.
+          e.printStackTrace();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } finally {
+      executor.shutdownNow();
+    }
+    flush();
+  }
+
+  /**
+   * Reads the fields of the header row of a CSV file. An empty file has an
+   * empty header.
+   */
+  static String[] readHeader(FileSystem fileSystem, Path path) throws IOException {
+    try (HdfsCsvMulTokenizer tokenizer = new HdfsCsvMulTokenizer(
+        HdfsCsvMulEnumerator.openFile(fileSystem, path))) {
+      if (!tokenizer.next()) {
+        return new String[0];
+      }
+      final String[] header = new String[tokenizer.fieldCount()];
+      for (int i = 0; i < header.length; i++) {
+        header[i] = tokenizer.getString(i);
+      }
+      return header;
+    }
+  }
+
+  private void load() throws IOException {
+    if (loaded) {
+      return;
+    }
+    synchronized (this) {
+      if (loaded) {
+        return;
+      }
+      if (cacheFile != null) {
+        try (HdfsCsvMulTokenizer tokenizer =
+                 new HdfsCsvMulTokenizer(fileSystem.open(cacheFile))) {
+          while (tokenizer.next()) {
+            if (tokenizer.fieldCount() < 3) {
+              continue;
+            }
+            final String[] header = new String[tokenizer.fieldCount() - 3];
+            for (int i = 0; i < header.length; i++) {
+              header[i] = tokenizer.getString(i + 3);
+            }
+            entries.putIfAbsent(tokenizer.getString(0),
+                new Entry(tokenizer.getLong(1), tokenizer.getLong(2), header));
+          }
+        } catch (FileNotFoundException e) {
+          // No cache yet.
+        } catch (IOException | NumberFormatException e) {
+          // A damaged cache is rebuilt from the files.
+          e.printStackTrace();
+        }
+      }
+      loaded = true;
+    }
+  }
+
+  private void scheduleFlush() {
+    if (cacheFile != null && flushScheduled.compareAndSet(false, true)) {
+      FLUSH_EXECUTOR.schedule(() -> {
+        try {
+          if (flushScheduled.get()) {
+            flush();
+          }
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }, FLUSH_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+  }
+
+  /**
+   * Writes any entries added since the last flush, so that the cache file is
+   * up to date before the file system is closed.
+   */
+  void close() throws IOException {
+    if (flushScheduled.get()) {
+      flush();
+    }
+  }
+
+  /**
+   * Writes all entries to the cache file, replacing it.
+   */
+  synchronized void flush() throws IOException {
+    flushScheduled.set(false);
+    if (cacheFile == null) {
+      return;
+    }
+    final Path tmp = cacheFile.suffix(".tmp");
+    try (Writer writer = new OutputStreamWriter(fileSystem.create(tmp, true),
+        StandardCharsets.UTF_8)) {
+      final StringBuilder sb = new StringBuilder();
+      for (Map.Entry<String, Entry> e : entries.entrySet()) {
+        sb.setLength(0);
+        appendField(sb, e.getKey());
+        sb.append(',').append(e.getValue().length);
+        sb.append(',').append(e.getValue().modificationTime);
+        for (String field : e.getValue().header) {
+          sb.append(',');
+          appendField(sb, field);
+        }
+        writer.write(sb.append('\n').toString());
+      }
+    }
+    // HDFS rename does not replace an existing file.
+    fileSystem.delete(cacheFile, false);
+    fileSystem.rename(tmp, cacheFile);
+  }
+
+  /**
+   * Appends a field, quoted as in RFC 4180 if necessary.
+   */
+  private static void appendField(StringBuilder sb, String field) {
+    if (field.indexOf(',') < 0 && field.indexOf('"') < 0
+        && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+      sb.append(field);
+      return;
+    }
+    sb.append('"').append(field.replace("\"", "\"\"")).append('"');
+  }
+
+  /**
+   * Cached header of one file.
+   */
+  private static class Entry {
+    final long length;
+    final long modificationTime;
+    final String[] header;
+
+    Entry(long length, long modificationTime, String[] header) {
+      this.length = length;
+      this.modificationTime = modificationTime;
+      this.header = header;
+    }
+
+    boolean matches(FileStatus file) {
+      return length == file.getLen() && modificationTime == file.getModificationTime();
+    }
+  }
+}
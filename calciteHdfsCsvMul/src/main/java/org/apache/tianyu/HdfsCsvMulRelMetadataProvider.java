@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tianyu;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import org.apache.calcite.interpreter.Bindables;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.metadata.BuiltInMetadata;
+import org.apache.calcite.rel.metadata.ChainedRelMetadataProvider;
+import org.apache.calcite.rel.metadata.MetadataDef;
+import org.apache.calcite.rel.metadata.MetadataHandler;
+import org.apache.calcite.rel.metadata.ReflectiveRelMetadataProvider;
+import org.apache.calcite.rel.metadata.RelMdUtil;
+import org.apache.calcite.rel.metadata.RelMetadataProvider;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.ImmutableBitSet;
+
+/**
+ * Metadata provider that estimates the selectivity of predicates on, and
+ * the number of distinct values in, scans of {@link HdfsCsvMulTable}s from
+ * their sampled {@link HdfsCsvMulStatistics}.
+ *
+ * <p>Row counts need no provider; Calcite takes them from
+ * {@link HdfsCsvMulTable#getStatistic()}. A table unwraps to {@link #SOURCE},
+ * so a query prepared through a connection uses it ahead of the default
+ * provider whenever it scans a {@link HdfsCsvMulTable}. To use it elsewhere,
+ * say with a planner built by hand, put it ahead of the default provider:</p>
+ *
+ * <blockquote><pre>
+ * cluster.setMetadataProvider(
+ *     ChainedRelMetadataProvider.of(
+ *         ImmutableList.of(HdfsCsvMulRelMetadataProvider.SOURCE,
+ *             DefaultRelMetadataProvider.INSTANCE)));</pre></blockquote>
+ *
+ * <p>Scans of other tables, and scans that project a subset of the columns,
+ * get the same estimates as from the default provider.</p>
+ */
+public class HdfsCsvMulRelMetadataProvider {
+
+  public static final RelMetadataProvider SOURCE =
+      ChainedRelMetadataProvider.of(
+          ImmutableList.of(
+              ReflectiveRelMetadataProvider.reflectiveSource(
+                  BuiltInMethod.SELECTIVITY.method, new SelectivityHandler()),
+              ReflectiveRelMetadataProvider.reflectiveSource(
+                  BuiltInMethod.DISTINCT_ROW_COUNT.method, new DistinctRowCountHandler())));
+
+  private HdfsCsvMulRelMetadataProvider() {
+  }
+
+  /**
+   * Returns the table of a scan that returns all of its table's columns in
+   * order, if it is a {@link HdfsCsvMulTable}, otherwise null.
+   */
+  private static HdfsCsvMulTable table(TableScan scan) {
+    if (scan instanceof Bindables.BindableTableScan) {
+      final List<Integer> projects = ((Bindables.BindableTableScan) scan).projects;
+      for (int i = 0; i < projects.size(); i++) {
+        if (projects.get(i) != i) {
+          return null;
+        }
+      }
+    }
+    if (scan.getRowType().getFieldCount() != scan.getTable().getRowType().getFieldCount()) {
+      return null;
+    }
+    return scan.getTable().unwrap(HdfsCsvMulTable.class);
+  }
+
+  /**
+   * Handler for {@link BuiltInMetadata.Selectivity}.
+   */
+  public static class SelectivityHandler
+      implements MetadataHandler<BuiltInMetadata.Selectivity> {
+
+    @Override
+    public MetadataDef<BuiltInMetadata.Selectivity> getDef() {
+      return BuiltInMetadata.Selectivity.DEF;
+    }
+
+    public Double getSelectivity(TableScan rel, RelMetadataQuery mq, RexNode predicate) {
+      final HdfsCsvMulTable table = table(rel);
+      final HdfsCsvMulStatistics statistics = table == null ? null : table.statistics();
+      if (statistics == null || predicate == null) {
+        return RelMdUtil.guessSelectivity(predicate);
+      }
+      double selectivity = 1d;
+      for (RexNode conjunction : RelOptUtil.conjunctions(predicate)) {
+        selectivity *= statistics.selectivity(conjunction, table.columnTypes());
+      }
+      return selectivity;
+    }
+  }
+
+  /**
+   * Handler for {@link BuiltInMetadata.DistinctRowCount}.
+   */
+  public static class DistinctRowCountHandler
+      implements MetadataHandler<BuiltInMetadata.DistinctRowCount> {
+
+    @Override
+    public MetadataDef<BuiltInMetadata.DistinctRowCount> getDef() {
+      return BuiltInMetadata.DistinctRowCount.DEF;
+    }
+
+    public Double getDistinctRowCount(TableScan rel, RelMetadataQuery mq,
+        ImmutableBitSet groupKey, RexNode predicate) {
+      final Double rowCount = mq.getRowCount(rel);
+      final Double selected = rowCount == null
+          ? null
+          : rowCount * mq.getSelectivity(rel, predicate);
+      final HdfsCsvMulTable table = table(rel);
+      final HdfsCsvMulStatistics statistics = table == null ? null : table.statistics();
+      if (statistics == null) {
+        // as RelMdDistinctRowCount does for a scan
+        return RelMdUtil.areColumnsDefinitelyUnique(mq, rel, groupKey) ? selected : null;
+      }
+      double distinctCount = 1d;
+      for (int column : groupKey) {
+        distinctCount *= Math.max(1d, statistics.columns[column].distinctCount);
+      }
+      distinctCount = Math.min(distinctCount, statistics.rowCount);
+      if (predicate == null) {
+        return distinctCount;
+      }
+      return RelMdUtil.numDistinctVals(distinctCount, selected);
+    }
+  }
+}
@@ -14,6 +14,8 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
+package org.apache.tianyu;
+
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.calcite.DataContext;
 import org.apache.calcite.linq4j.AbstractEnumerable;
@@ -21,11 +23,15 @@
 import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.Linq4j;
 import org.apache.calcite.schema.ScannableTable;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
 
 public class HdfsCsvMulScannableTable extends HdfsCsvMulTable implements ScannableTable {
 
-  public HdfsCsvMulScannableTable(String fileName) {
-    super(fileName);
+  public HdfsCsvMulScannableTable(FileSystem fileSystem, FileStatus file,
+      HdfsCsvMulHeaderCache headerCache, HdfsCsvMulColumnCache columnCache,
+      HdfsCsvMulStatisticsCache statisticsCache) {
+    super(fileSystem, file, headerCache, columnCache, statisticsCache);
   }
 
   public String toString() {
@@ -38,7 +44,7 @@ public Enumerable<Object[]> scan(DataContext root) {
     final AtomicBoolean cancelFlag = DataContext.Variable.CANCEL_FLAG.get(root);
     return new AbstractEnumerable<Object[]>() {
       public Enumerator<Object[]> enumerator() {
-        return new HdfsCsvMulEnumerator<>(fileName, cancelFlag, false, null,
+        return HdfsCsvMulScannableTable.this.enumerator(file, cancelFlag, null,
             new HdfsCsvMulEnumerator.ArrayRowConverter(fieldTypes, fields));
       }
     };
@@ -14,54 +14,135 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
+package org.apache.tianyu;
+
 import com.google.common.collect.ImmutableMap;
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import org.apache.calcite.schema.Table;
 import org.apache.calcite.schema.impl.AbstractSchema;
-import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
-import org.apache.hadoop.fs.LocatedFileStatus;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
 
-public class HdfsCsvMulSchema extends AbstractSchema {
+/**
+ * Schema mapping each CSV file under an HDFS directory onto a table.
+ *
+ * <p>A CSV file may be compressed with any codec that the Hadoop
+ * configuration knows, for example {@code x.csv.gz}; it is decompressed as it
+ * is read. If the {@code columnCache} operand names a directory, the values
+ * of each file are also written there in a columnar
+ * {@link HdfsCsvMulColumnCache sidecar} after the file is first scanned, and
+ * later scans read the sidecar rather than the text.</p>
+ *
+ * <p>Tables estimate their row count and column statistics from a sample of
+ * rows when the planner first asks for them; if the {@code statisticsCache}
+ * operand names a directory, the estimates are kept there. The column
+ * statistics reach the planner through
+ * {@link HdfsCsvMulRelMetadataProvider}.</p>
+ *
+ * <p>With the {@link HdfsCsvMulTable.Flavor#DIRECTORY DIRECTORY} flavor, each
+ * directory that directly contains CSV files is instead mapped onto one
+ * {@link HdfsCsvMulDirectoryTable}, named by its path relative to
+ * {@code directory}, which reads up to {@code scanThreads} of its files at a
+ * time.</p>
+ *
+ * <p>With the {@link HdfsCsvMulTable.Flavor#STREAM STREAM} flavor, each
+ * uncompressed file is mapped onto an {@link HdfsCsvMulStreamTable}, which
+ * follows the file as it is appended to. If the {@code streamCheckpoints}
+ * operand names a directory, each stream saves its position there and the
+ * next stream of the same file resumes from it. Compressed files cannot be
+ * followed and are mapped onto scannable tables.</p>
+ *
+ * <p>Listing the directory fetches only file statuses; a table reads its
+ * file's header row when its row type is first needed. Headers are kept in an
+ * {@link HdfsCsvMulHeaderCache}, persisted to {@code headerCache} if that
+ * operand is set. If {@code headerProbeThreads} is positive, the headers of
+ * all files that are not in the cache are read on that many threads as soon
+ * as the tables are listed, which is faster when every table's columns are
+ * needed, for example by a JDBC metadata call.</p>
+ *
+ * <p>Schemas that connect to the same file system as the same user share one
+ * client from {@link HdfsCsvMulFileSystemPool}. Closing a schema gives its
+ * client back; the client is closed when no schema uses it.</p>
+ */
+public class HdfsCsvMulSchema extends AbstractSchema implements AutoCloseable {
 
   private final String directory;
   private final String userName;
   private final String password;
+  private final int headerProbeThreads;
+  private final int scanThreads;
+  private final HdfsCsvMulHeaderCache headerCache;
+  private final HdfsCsvMulColumnCache columnCache;
+  private final HdfsCsvMulStatisticsCache statisticsCache;
+  private final Path streamCheckpoints;
+  private final CompressionCodecFactory codecs;
   private Map<String, Table> tableMap;
 
-  public static FileSystem getFileSystem() {
-    return fileSystem;
-  }
-
-  private static FileSystem fileSystem;
-  private final HdfsCsvMulTable.Flavor flavor = HdfsCsvMulTable.Flavor.SCANNABLE;
+  private final HdfsCsvMulFileSystemPool.Lease lease;
+  private final FileSystem fileSystem;
+  private final HdfsCsvMulTable.Flavor flavor;
 
 
   public HdfsCsvMulSchema(String host, int port, String directory, String userName,
       String password) {
+    this(host, port, directory, userName, password, HdfsCsvMulTable.Flavor.SCANNABLE, null, 0,
+        Runtime.getRuntime().availableProcessors(), null, null, null);
+  }
+
+  public HdfsCsvMulSchema(String host, int port, String directory, String userName,
+      String password, HdfsCsvMulTable.Flavor flavor, String headerCache,
+      int headerProbeThreads, int scanThreads, String columnCache, String statisticsCache,
+      String streamCheckpoints) {
     super();
+    this.flavor = flavor;
     this.directory = String.format("hdfs://%s:%s%s", host, port, directory);
     this.userName = userName;
     this.password = password;
-    Configuration configuration = new Configuration();
+    this.headerProbeThreads = headerProbeThreads;
+    this.scanThreads = scanThreads;
     try {
-      this.fileSystem = FileSystem.get(URI.create(this.directory), configuration, this.userName);
-    } catch (InterruptedException e) {
-      e.printStackTrace();
+      this.lease = HdfsCsvMulFileSystemPool.acquire(URI.create(this.directory), this.userName);
     } catch (IOException e) {
-      e.printStackTrace();
+      throw new RuntimeException("Error connecting to " + this.directory, e);
     }
-
+    this.fileSystem = lease.fileSystem();
+    this.headerCache = new HdfsCsvMulHeaderCache(fileSystem,
+        headerCache == null ? null : new Path(headerCache));
+    this.columnCache = columnCache == null
+        ? null
+        : new HdfsCsvMulColumnCache(fileSystem, this.directory, new Path(columnCache));
+    this.statisticsCache = new HdfsCsvMulStatisticsCache(fileSystem, this.directory,
+        statisticsCache == null ? null : new Path(statisticsCache));
+    this.streamCheckpoints = streamCheckpoints == null ? null : new Path(streamCheckpoints);
+    this.codecs = new CompressionCodecFactory(fileSystem.getConf());
   }
 
   public String getDirectory() {
     return directory;
   }
 
+  public FileSystem getFileSystem() {
+    return fileSystem;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      headerCache.close();
+    } finally {
+      lease.close();
+    }
+  }
+
   @Override
   protected Map<String, Table> getTableMap() {
     if (tableMap == null) {
@@ -72,14 +153,18 @@ protected Map<String, Table> getTableMap() {
 
   public Map<String, Table> createTabelMap() {
     final ImmutableMap.Builder<String, Table> builder = ImmutableMap.builder();
+    final List<FileStatus> csvFiles = new ArrayList<>();
     try {
-      RemoteIterator<LocatedFileStatus> csvFiles = fileSystem.listFiles(new Path(directory), true);
-      while (csvFiles.hasNext()) {
-        LocatedFileStatus file = csvFiles.next();
-        if (!file.isDirectory() && file.getPath().toString().endsWith(".csv")) {
+      listCsvFiles(new Path(directory), csvFiles);
+      if (flavor == HdfsCsvMulTable.Flavor.DIRECTORY) {
+        createDirectoryTables(csvFiles, builder);
+      } else {
+        for (FileStatus file : csvFiles) {
           String path = file.getPath().toString().replace(directory, "");
-          final Table table = createTable(file.getPath().toString());
-          builder.put(path, table);
+          builder.put(path, createTable(file));
+        }
+        if (headerProbeThreads > 0) {
+          headerCache.probe(csvFiles, headerProbeThreads);
         }
       }
     } catch (IOException e) {
@@ -88,14 +173,81 @@ public Map<String, Table> createTabelMap() {
     return builder.build();
   }
 
-  private Table createTable(String fileName) {
+  /**
+   * Adds the CSV files in a directory tree to a list. Unlike
+   * {@link FileSystem#listFiles(Path, boolean)}, does not fetch block
+   * locations, which schema discovery does not need.
+   */
+  private void listCsvFiles(Path path, List<FileStatus> csvFiles) throws IOException {
+    final RemoteIterator<FileStatus> files = fileSystem.listStatusIterator(path);
+    while (files.hasNext()) {
+      final FileStatus file = files.next();
+      if (file.isDirectory()) {
+        listCsvFiles(file.getPath(), csvFiles);
+      } else if (HdfsCsvMulEnumerator.isCsvFile(codecs, file.getPath())) {
+        csvFiles.add(file);
+      }
+    }
+  }
+
+  /**
+   * Adds a table for each directory that contains CSV files. Only the header
+   * of the first file of a directory, in name order, is ever read.
+   */
+  private void createDirectoryTables(List<FileStatus> csvFiles,
+      ImmutableMap.Builder<String, Table> builder) throws IOException {
+    final Map<Path, List<FileStatus>> directories = new TreeMap<>();
+    for (FileStatus file : csvFiles) {
+      directories.computeIfAbsent(file.getPath().getParent(), d -> new ArrayList<>())
+          .add(file);
+    }
+    final List<FileStatus> firstFiles = new ArrayList<>();
+    for (Map.Entry<Path, List<FileStatus>> entry : directories.entrySet()) {
+      final List<FileStatus> files = entry.getValue();
+      files.sort(Comparator.comparing(file -> file.getPath().getName()));
+      String path = entry.getKey().toString().replace(directory, "");
+      builder.put(path.isEmpty() ? "/" : path,
+          new HdfsCsvMulDirectoryTable(fileSystem, files, headerCache, columnCache,
+              statisticsCache, scanThreads));
+      firstFiles.add(files.get(0));
+    }
+    if (headerProbeThreads > 0) {
+      headerCache.probe(firstFiles, headerProbeThreads);
+    }
+  }
+
+  private Table createTable(FileStatus file) {
     switch (flavor) {
       case SCANNABLE:
-        return new HdfsCsvMulScannableTable(fileName);
+        return new HdfsCsvMulScannableTable(fileSystem, file, headerCache, columnCache,
+            statisticsCache);
+      case FILTERABLE:
+        return new HdfsCsvMulFilterableTable(fileSystem, file, headerCache, columnCache,
+            statisticsCache);
+      case STREAM:
+        if (codecs.getCodec(file.getPath()) != null) {
+          return new HdfsCsvMulScannableTable(fileSystem, file, headerCache, columnCache,
+              statisticsCache);
+        }
+        return new HdfsCsvMulStreamTable(fileSystem, file, headerCache, statisticsCache,
+            checkpoint(file));
       default:
         throw new AssertionError("Unknown flavor " + this.flavor);
     }
   }
 
+  /**
+   * Returns the checkpoint of the stream of a file, or null if streams do
+   * not save their position.
+   */
+  private HdfsCsvMulCheckpoint checkpoint(FileStatus file) {
+    if (streamCheckpoints == null) {
+      return null;
+    }
+    final String relative = file.getPath().toString().replace(directory, "");
+    return new HdfsCsvMulCheckpoint(fileSystem,
+        new Path(streamCheckpoints.toString() + relative + ".offset"));
+  }
+
 
 }
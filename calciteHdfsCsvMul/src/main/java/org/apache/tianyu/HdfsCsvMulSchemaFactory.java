@@ -14,6 +14,9 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
+package org.apache.tianyu;
+
+import java.util.Locale;
 import java.util.Map;
 import org.apache.calcite.schema.Schema;
 import org.apache.calcite.schema.SchemaFactory;
@@ -24,6 +27,12 @@
  */
 public class HdfsCsvMulSchemaFactory implements SchemaFactory {
 
+  /**
+   * Name of the column that is implicitly created in a CSV stream table
+   * to hold the data arrival time.
+   */
+  static final String ROWTIME_COLUMN_NAME = "ROWTIME";
+
   /**
    * Public singleton, per factory contract.
    */
@@ -40,6 +49,20 @@ public Schema create(SchemaPlus parentSchema, String name, Map<String, Object> o
     final String directory = (String) operand.get("directory");
     final String userName=(String) operand.get("userName");
     final String passWord=(String) operand.get("password");
-    return new HdfsCsvMulSchema(host,port,directory,userName,passWord);
+    final String flavorName = (String) operand.get("flavor");
+    final HdfsCsvMulTable.Flavor flavor;
+    if (flavorName == null) {
+      flavor = HdfsCsvMulTable.Flavor.SCANNABLE;
+    } else {
+      flavor = HdfsCsvMulTable.Flavor.valueOf(flavorName.toUpperCase(Locale.ROOT));
+    }
+    final String headerCache = (String) operand.get("headerCache");
+    final Integer headerProbeThreads = (Integer) operand.get("headerProbeThreads");
+    final Integer scanThreads = (Integer) operand.get("scanThreads");
+    return new HdfsCsvMulSchema(host,port,directory,userName,passWord,flavor,headerCache,
+        headerProbeThreads == null ? 0 : headerProbeThreads,
+        scanThreads == null ? Runtime.getRuntime().availableProcessors() : scanThreads,
+        (String) operand.get("columnCache"), (String) operand.get("statisticsCache"),
+        (String) operand.get("streamCheckpoints"));
   }
 }
@@ -0,0 +1,366 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tianyu;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.calcite.rel.metadata.RelMdUtil;
+import org.apache.calcite.rex.RexNode;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+
+/**
+ * Estimated row count and column statistics of a table of CSV files,
+ * computed from a sample of the rows of the first file.
+ *
+ * <p>The sample is taken from {@value #SEGMENTS} evenly spaced offsets in the
+ * file, so that it is not biased by the order of the rows, or from the start
+ * of a compressed file. The row count is the total size of the files divided
+ * by the average length of the rows sampled; for a compressed file, the
+ * length is measured before decompression. If the sample covers the whole
+ * file, the count is exact for that file.</p>
+ *
+ * <p>For each column, the number of distinct values is estimated from the
+ * frequencies in the sample by the Duj1 estimator of Haas and Stokes, and the
+ * minimum and maximum of numeric, date and time values are recorded. Because
+ * they come from a sample, none of these statistics is used to prove that a
+ * column is unique.</p>
+ */
+class HdfsCsvMulStatistics {
+
+  static final int SAMPLE_ROWS = 20000;
+  private static final int SEGMENTS = 8;
+
+  final long length;
+  final long modificationTime;
+  final int fileCount;
+  final double rowCount;
+  final Column[] columns;
+
+  private HdfsCsvMulStatistics(long length, long modificationTime, int fileCount,
+      double rowCount, Column[] columns) {
+    this.length = length;
+    this.modificationTime = modificationTime;
+    this.fileCount = fileCount;
+    this.rowCount = rowCount;
+    this.columns = columns;
+  }
+
+  /**
+   * Returns whether these statistics were computed from the current contents
+   * of a list of files.
+   */
+  boolean matches(List<FileStatus> files) {
+    return files.size() == fileCount
+        && totalLength(files) == length
+        && lastModificationTime(files) == modificationTime;
+  }
+
+  private static long totalLength(List<FileStatus> files) {
+    long length = 0;
+    for (FileStatus file : files) {
+      length += file.getLen();
+    }
+    return length;
+  }
+
+  private static long lastModificationTime(List<FileStatus> files) {
+    long modificationTime = 0;
+    for (FileStatus file : files) {
+      modificationTime = Math.max(modificationTime, file.getModificationTime());
+    }
+    return modificationTime;
+  }
+
+  /**
+   * Returns the estimated fraction of rows that satisfy one conjunct of a
+   * predicate, falling back to Calcite's guess if it is not a comparison
+   * between a column and a literal.
+   *
+   * @param conjunction Condition, over the columns of the table
+   * @param fieldTypes Types of the columns of the table
+   */
+  double selectivity(RexNode conjunction, List<HdfsCsvMulFieldType> fieldTypes) {
+    final HdfsCsvMulFilter filter = HdfsCsvMulFilter.of(conjunction, fieldTypes);
+    if (filter == null || filter.field >= columns.length) {
+      return RelMdUtil.guessSelectivity(conjunction);
+    }
+    final Column column = columns[filter.field];
+    if (column.distinctCount < 1) {
+      return RelMdUtil.guessSelectivity(conjunction);
+    }
+    final double oneValue = 1d / column.distinctCount;
+    switch (filter.kind) {
+      case EQUALS:
+        return oneValue;
+      case NOT_EQUALS:
+        return 1d - oneValue;
+      default:
+        if (column.min == null || !(filter.literal instanceof Number)) {
+          return RelMdUtil.guessSelectivity(conjunction);
+        }
+        final double value = ((Number) filter.literal).doubleValue();
+        final double below = column.max > column.min
+            ? (value - column.min) / (column.max - column.min)
+            : value > column.min ? 1d : 0d;
+        final double fraction;
+        switch (filter.kind) {
+          case LESS_THAN:
+          case LESS_THAN_OR_EQUAL:
+            fraction = below;
+            break;
+          default:
+            fraction = 1d - below;
+        }
+        // The range was sampled, so never rule out every row.
+        return Math.max(oneValue, Math.min(1d, fraction));
+    }
+  }
+
+  /**
+   * Samples the first of a list of files, which all have the given columns.
+   *
+   * @param fileSystem File system
+   * @param files Files of the table
+   * @param fieldTypes Types of the columns of the files
+   * @param fileNameColumn Whether the table has a column holding the name of
+   *                       each row's file, after the columns of the files
+   */
+  static HdfsCsvMulStatistics sample(FileSystem fileSystem, List<FileStatus> files,
+      List<HdfsCsvMulFieldType> fieldTypes, boolean fileNameColumn) throws IOException {
+    final FileStatus file = files.get(0);
+    final Path path = file.getPath();
+    final boolean compressed =
+        new CompressionCodecFactory(fileSystem.getConf()).getCodec(path) != null;
+    // A compressed file can only be read from the start.
+    final int segments = compressed ? 1 : SEGMENTS;
+    final Sample sample = new Sample(fieldTypes);
+    boolean complete = true;
+    long sampleLength = 0;
+    for (int segment = 0; segment < segments; segment++) {
+      long offset = file.getLen() * segment / segments;
+      final long end = file.getLen() * (segment + 1) / segments;
+      if (segment == segments - 1 && segment > 0 && sample.rows > 0) {
+        // Read the last rows of the file, where a sorted column has its
+        // largest values.
+        final double rowLength = (double) sampleLength / sample.rows;
+        offset = Math.max(offset,
+            file.getLen() - (long) (rowLength * SAMPLE_ROWS / segments * 0.9));
+      }
+      try (FSDataInputStream in = fileSystem.open(path);
+           HdfsCsvMulTokenizer tokenizer = new HdfsCsvMulTokenizer(
+               compressed ? HdfsCsvMulEnumerator.decompress(fileSystem, path, in) : in)) {
+        if (offset > 0) {
+          in.seek(offset);
+        }
+        // skip the header row, or the rest of the row that the offset is in
+        tokenizer.next();
+        long position = offset + tokenizer.recordLength();
+        int rows = 0;
+        for (; ; ) {
+          if (rows == SAMPLE_ROWS / segments) {
+            complete = false;
+            break;
+          }
+          if ((!compressed && position >= end) || !tokenizer.next()) {
+            break;
+          }
+          sample.add(tokenizer);
+          ++rows;
+          position += tokenizer.recordLength();
+          sampleLength += tokenizer.recordLength();
+        }
+        if (compressed) {
+          // compressed bytes read, including what the tokenizer read ahead
+          sampleLength = complete ? file.getLen() : in.getPos();
+        }
+      }
+    }
+    final long length = totalLength(files);
+    final double rowCount;
+    if (complete) {
+      rowCount = (double) sample.rows * length / Math.max(file.getLen(), 1);
+    } else {
+      rowCount = (double) sample.rows * length / Math.max(sampleLength, 1);
+    }
+    final int n = fieldTypes.size();
+    final Column[] columns = new Column[fileNameColumn ? n + 1 : n];
+    for (int i = 0; i < n; i++) {
+      columns[i] = sample.column(i, rowCount);
+    }
+    if (fileNameColumn) {
+      columns[n] = new Column(files.size(), null, null);
+    }
+    return new HdfsCsvMulStatistics(length, lastModificationTime(files), files.size(),
+        rowCount, columns);
+  }
+
+  /**
+   * Values of the rows sampled from a file.
+   */
+  private static class Sample {
+    final HdfsCsvMulEnumerator.ArrayRowConverter converter;
+    final List<Map<Object, Integer>> counts = new ArrayList<>();
+    final int[] nonNull;
+    final double[] min;
+    final double[] max;
+    int rows;
+
+    Sample(List<HdfsCsvMulFieldType> fieldTypes) {
+      final int n = fieldTypes.size();
+      this.converter = new HdfsCsvMulEnumerator.ArrayRowConverter(fieldTypes,
+          HdfsCsvMulEnumerator.identityList(n));
+      this.nonNull = new int[n];
+      this.min = new double[n];
+      this.max = new double[n];
+      for (int i = 0; i < n; i++) {
+        counts.add(new HashMap<>());
+        min[i] = Double.POSITIVE_INFINITY;
+        max[i] = Double.NEGATIVE_INFINITY;
+      }
+    }
+
+    void add(HdfsCsvMulTokenizer tokenizer) {
+      final Object[] row = converter.convertRow(tokenizer);
+      ++rows;
+      for (int i = 0; i < row.length; i++) {
+        final Object value = row[i];
+        if (value == null) {
+          continue;
+        }
+        ++nonNull[i];
+        counts.get(i).merge(value, 1, Integer::sum);
+        if (value instanceof Number) {
+          final double d = ((Number) value).doubleValue();
+          min[i] = Math.min(min[i], d);
+          max[i] = Math.max(max[i], d);
+        }
+      }
+    }
+
+    /**
+     * Estimates the statistics of a column in a table with the given number
+     * of rows.
+     */
+    Column column(int i, double rowCount) {
+      final double nonNullCount = rows == 0 ? 0d : rowCount * nonNull[i] / rows;
+      return new Column(distinctCount(counts.get(i), nonNull[i], nonNullCount),
+          min[i] <= max[i] ? min[i] : null,
+          min[i] <= max[i] ? max[i] : null);
+    }
+  }
+
+  /**
+   * Estimates the number of distinct values in a column from the frequencies
+   * of the non-null values in a sample, using the Duj1 estimator
+   * {@code n d / (n - f1 + f1 n / N)}, where {@code n} is the number of values
+   * sampled, {@code d} the number of distinct values among them, {@code f1}
+   * the number of values that occur once and {@code N} the number of values
+   * in the column.
+   */
+  private static double distinctCount(Map<Object, Integer> counts, int sampleValues,
+      double valueCount) {
+    final int d = counts.size();
+    if (sampleValues == 0 || sampleValues >= valueCount) {
+      return d;
+    }
+    int f1 = 0;
+    for (int count : counts.values()) {
+      if (count == 1) {
+        ++f1;
+      }
+    }
+    final double estimate =
+        (double) sampleValues * d / (sampleValues - f1 + f1 * sampleValues / valueCount);
+    return Math.max(d, Math.min(valueCount, estimate));
+  }
+
+  /**
+   * Writes these statistics to a file: a line with the total length, last
+   * modification time, number of files and row count, then a line per column
+   * with the number of distinct values, minimum and maximum.
+   */
+  void write(FileSystem fileSystem, Path path) throws IOException {
+    final Path tmp = path.suffix(".tmp");
+    try (Writer writer = new OutputStreamWriter(fileSystem.create(tmp, true),
+        StandardCharsets.UTF_8)) {
+      writer.write(length + "," + modificationTime + "," + fileCount + "," + rowCount + "\n");
+      for (Column column : columns) {
+        writer.write(column.distinctCount + ","
+            + (column.min == null ? "" : column.min) + ","
+            + (column.max == null ? "" : column.max) + "\n");
+      }
+    }
+    // HDFS rename does not replace an existing file.
+    fileSystem.delete(path, false);
+    fileSystem.rename(tmp, path);
+  }
+
+  /**
+   * Reads statistics written by {@link #write}, or returns null if the file
+   * is not in that format.
+   */
+  static HdfsCsvMulStatistics read(FileSystem fileSystem, Path path) throws IOException {
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(fileSystem.open(path), StandardCharsets.UTF_8))) {
+      final String first = reader.readLine();
+      if (first == null) {
+        return null;
+      }
+      final String[] table = first.split(",", -1);
+      final List<Column> columns = new ArrayList<>();
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        final String[] column = line.split(",", -1);
+        columns.add(
+            new Column(Double.parseDouble(column[0]),
+                column[1].isEmpty() ? null : Double.valueOf(column[1]),
+                column[2].isEmpty() ? null : Double.valueOf(column[2])));
+      }
+      return new HdfsCsvMulStatistics(Long.parseLong(table[0]), Long.parseLong(table[1]),
+          Integer.parseInt(table[2]), Double.parseDouble(table[3]),
+          columns.toArray(new Column[0]));
+    } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Statistics of one column.
+   */
+  static class Column {
+    final double distinctCount;
+    final Double min;
+    final Double max;
+
+    Column(double distinctCount, Double min, Double max) {
+      this.distinctCount = distinctCount;
+      this.min = min;
+      this.max = max;
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tianyu;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Cache of the {@link HdfsCsvMulStatistics} of tables, kept in memory and,
+ * if there is a cache directory, in a sidecar file per table.
+ *
+ * <p>Statistics are sampled the first time the planner asks for them, and
+ * again only once a table's files change. The sidecar of a file table is
+ * its path under the cache directory with {@code .stats} appended; the
+ * sidecar of a directory table is {@code .stats} in the corresponding
+ * directory.</p>
+ */
+class HdfsCsvMulStatisticsCache {
+
+  private final FileSystem fileSystem;
+  private final String directory;
+  private final Path cacheDirectory;
+  private final Map<String, HdfsCsvMulStatistics> entries = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a cache.
+   *
+   * @param fileSystem File system of the CSV files and the sidecars
+   * @param directory Root directory of the CSV files
+   * @param cacheDirectory Directory under which the sidecars are written, or
+   *                       null to keep statistics in memory
+   */
+  HdfsCsvMulStatisticsCache(FileSystem fileSystem, String directory, Path cacheDirectory) {
+    this.fileSystem = fileSystem;
+    this.directory = directory;
+    this.cacheDirectory = cacheDirectory;
+  }
+
+  /**
+   * Returns the statistics of a table.
+   *
+   * @param path File or directory of the table
+   * @param files Files of the table
+   * @param fieldTypes Types of the columns of the files
+   * @param fileNameColumn Whether the table has a file name column
+   */
+  HdfsCsvMulStatistics get(Path path, List<FileStatus> files,
+      List<HdfsCsvMulFieldType> fieldTypes, boolean fileNameColumn) throws IOException {
+    final String key = path.toString();
+    final HdfsCsvMulStatistics cached = entries.get(key);
+    if (cached != null && cached.matches(files)) {
+      return cached;
+    }
+    final int columnCount = fileNameColumn ? fieldTypes.size() + 1 : fieldTypes.size();
+    final Path sidecar = cacheDirectory == null
+        ? null
+        : new Path(cacheDirectory.toString() + key.replace(directory, "")
+            + (fileNameColumn ? "/.stats" : ".stats"));
+    if (sidecar != null) {
+      try {
+        final HdfsCsvMulStatistics statistics = HdfsCsvMulStatistics.read(fileSystem, sidecar);
+        if (statistics != null
+            && statistics.matches(files)
+            && statistics.columns.length == columnCount) {
+          entries.put(key, statistics);
+          return statistics;
+        }
+      } catch (FileNotFoundException e) {
+        // not sampled yet
+      }
+    }
+    final HdfsCsvMulStatistics statistics =
+        HdfsCsvMulStatistics.sample(fileSystem, files, fieldTypes, fileNameColumn);
+    entries.put(key, statistics);
+    if (sidecar != null) {
+      try {
+        statistics.write(fileSystem, sidecar);
+      } catch (IOException e) {
+        // The statistics are still good for this process.
+        e.printStackTrace();
+      }
+    }
+    return statistics;
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tianyu;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
+import org.apache.calcite.schema.StreamableTable;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.util.Pair;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+
+/**
+ * Table based on a CSV file that is still being appended to, which can be
+ * queried as a stream, for example {@code SELECT STREAM * FROM "/logs/a.csv"}.
+ *
+ * <p>The stream follows the file: it returns the rows that are in the file
+ * and then, rather than finishing, waits for more. Each row has a
+ * {@code ROWTIME} column, the time at which it was read, before the columns
+ * of the file. If the table has an {@link HdfsCsvMulCheckpoint}, the stream
+ * starts where the previous stream of the table stopped.</p>
+ */
+public class HdfsCsvMulStreamTable extends HdfsCsvMulTable
+    implements ScannableTable, StreamableTable {
+
+  private final HdfsCsvMulCheckpoint checkpoint;
+
+  public HdfsCsvMulStreamTable(FileSystem fileSystem, FileStatus file,
+      HdfsCsvMulHeaderCache headerCache, HdfsCsvMulStatisticsCache statisticsCache,
+      HdfsCsvMulCheckpoint checkpoint) {
+    super(fileSystem, file, headerCache, null, statisticsCache);
+    this.checkpoint = checkpoint;
+  }
+
+  public String toString() {
+    return "HdfsCsvMulStreamTable";
+  }
+
+  @Override
+  public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+    final List<Pair<String, RelDataType>> fields = new ArrayList<>();
+    fields.add(
+        Pair.of(HdfsCsvMulSchemaFactory.ROWTIME_COLUMN_NAME,
+            typeFactory.createSqlType(SqlTypeName.TIMESTAMP)));
+    for (RelDataTypeField field : super.getRowType(typeFactory).getFieldList()) {
+      fields.add(Pair.of(field.getName(), field.getType()));
+    }
+    return typeFactory.createStructType(fields);
+  }
+
+  @Override
+  public Statistic getStatistic() {
+    // The stream is unbounded, and rows arrive in ROWTIME order.
+    return Statistics.of(null, ImmutableList.of(), ImmutableList.of(),
+        ImmutableList.of(RelCollations.of(0)));
+  }
+
+  @Override
+  HdfsCsvMulStatistics statistics() {
+    // Sampled statistics would not describe the rows still to come, and their
+    // columns do not include ROWTIME.
+    return null;
+  }
+
+  @Override
+  public Enumerable<Object[]> scan(DataContext root) {
+    final int[] fields = HdfsCsvMulEnumerator.identityList(fieldTypes.size());
+    final AtomicBoolean cancelFlag = DataContext.Variable.CANCEL_FLAG.get(root);
+    return new AbstractEnumerable<Object[]>() {
+      public Enumerator<Object[]> enumerator() {
+        return new HdfsCsvMulEnumerator<>(fileSystem, fileName, cancelFlag, true,
+            checkpoint, null, new HdfsCsvMulEnumerator.ArrayRowConverter(fieldTypes, fields,
+                true));
+      }
+    };
+  }
+
+  @Override
+  public Table stream() {
+    return this;
+  }
+}
@@ -14,31 +14,131 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
+package org.apache.tianyu;
+
+import java.io.IOException;
+import com.google.common.collect.ImmutableList;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.rel.metadata.RelMetadataProvider;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
 import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
 
 public class HdfsCsvMulTable extends AbstractTable {
 
   public final String fileName;
+  protected final FileSystem fileSystem;
+  protected final FileStatus file;
+  private final HdfsCsvMulHeaderCache headerCache;
+  private final HdfsCsvMulColumnCache columnCache;
+  protected final HdfsCsvMulStatisticsCache statisticsCache;
   public List<HdfsCsvMulFieldType> fieldTypes;
+  private String[] header;
+
+  HdfsCsvMulTable(FileSystem fileSystem, FileStatus file, HdfsCsvMulHeaderCache headerCache,
+      HdfsCsvMulColumnCache columnCache, HdfsCsvMulStatisticsCache statisticsCache) {
+    this.fileName = file.getPath().toString();
+    this.fileSystem = fileSystem;
+    this.file = file;
+    this.headerCache = headerCache;
+    this.columnCache = columnCache;
+    this.statisticsCache = statisticsCache;
+  }
+
+  @Override
+  public Statistic getStatistic() {
+    final HdfsCsvMulStatistics statistics = statistics();
+    return statistics == null
+        ? Statistics.UNKNOWN
+        : Statistics.of(statistics.rowCount, ImmutableList.of());
+  }
+
+  /**
+   * Supplies {@link HdfsCsvMulRelMetadataProvider#SOURCE} as this table's
+   * {@link RelMetadataProvider}, so that queries that scan it estimate
+   * selectivity and distinct counts from its column statistics.
+   */
+  @Override
+  public <C> C unwrap(Class<C> aClass) {
+    if (aClass == RelMetadataProvider.class) {
+      return aClass.cast(HdfsCsvMulRelMetadataProvider.SOURCE);
+    }
+    return super.unwrap(aClass);
+  }
+
+  /**
+   * Returns the statistics of this table, sampling them if they are not
+   * cached, or null if the row type is not known yet or sampling fails.
+   */
+  HdfsCsvMulStatistics statistics() {
+    if (fieldTypes == null) {
+      return null;
+    }
+    try {
+      return statisticsCache.get(file.getPath(), Collections.singletonList(file), fieldTypes,
+          false);
+    } catch (IOException e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+  /**
+   * Returns the types of the columns of this table, which may include
+   * columns that are not in the file.
+   */
+  List<HdfsCsvMulFieldType> columnTypes() {
+    return fieldTypes;
+  }
 
-  HdfsCsvMulTable(String fileName) {
-    this.fileName = fileName;
+  /**
+   * Returns an enumerator over the rows of a file, which reads the file's
+   * columnar sidecar if there is a column cache and the sidecar is up to
+   * date, and otherwise parses the text.
+   */
+  <E> Enumerator<E> enumerator(FileStatus file, AtomicBoolean cancelFlag,
+      List<HdfsCsvMulFilter> filters, HdfsCsvMulEnumerator.RowConverter<E> rowConverter) {
+    if (columnCache != null) {
+      final Enumerator<E> enumerator;
+      try {
+        enumerator = columnCache.enumerator(file, fieldTypes, cancelFlag, filters, rowConverter);
+      } catch (IOException e) {
+        throw new RuntimeException("Error reading column cache of " + file.getPath(), e);
+      }
+      if (enumerator != null) {
+        return enumerator;
+      }
+    }
+    return new HdfsCsvMulEnumerator<>(fileSystem, file.getPath().toString(), cancelFlag,
+        false, filters, rowConverter);
   }
 
   @Override
   public RelDataType getRowType(RelDataTypeFactory typeFactory) {
-    final RelDataTypeFactory.Builder builder = typeFactory.builder();
+    // The header is read on first use, not when the schema lists its tables.
+    if (header == null) {
+      try {
+        header = headerCache.get(file);
+      } catch (IOException e) {
+        throw new RuntimeException("Error reading header of " + fileName, e);
+      }
+    }
     if (fieldTypes == null) {
       fieldTypes = new ArrayList<>();
       return HdfsCsvMulEnumerator.deduceRowType((JavaTypeFactory) typeFactory, fileName,
-          fieldTypes);
+          header, fieldTypes);
     } else {
-      return HdfsCsvMulEnumerator.deduceRowType((JavaTypeFactory) typeFactory, fileName, null);
+      return HdfsCsvMulEnumerator.deduceRowType((JavaTypeFactory) typeFactory, fileName,
+          header, null);
     }
   }
 
@@ -46,6 +146,6 @@ public RelDataType getRowType(RelDataTypeFactory typeFactory) {
    * Various degrees of table "intelligence".
    */
   public enum Flavor {
-    SCANNABLE
+    SCANNABLE, FILTERABLE, DIRECTORY, STREAM
   }
 }
@@ -0,0 +1,488 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tianyu;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.apache.calcite.avatica.util.DateTimeUtils;
+
+/**
+ * Streaming CSV tokenizer that works on the bytes of a stream.
+ *
+ * <p>Each call to {@link #next()} finds the next record in a reusable buffer
+ * and records the start and end offset of each field; nothing is allocated
+ * per record. Numeric, date and time fields are parsed directly from the
+ * bytes, and only {@link #getString(int)} decodes text. Input is assumed to
+ * be UTF-8.</p>
+ *
+ * <p>Quoting follows RFC 4180: a field that starts with a double quote may
+ * contain commas, line breaks and quotes written as two double quotes. The
+ * quotes are removed in place, so the offsets of a quoted field cover its
+ * value only. Records end with LF or CRLF; blank lines are skipped.</p>
+ */
+class HdfsCsvMulTokenizer implements Closeable {
+
+  private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+  private static final byte QUOTE = '"';
+  private static final byte COMMA = ',';
+  private static final byte LF = '\n';
+  private static final byte CR = '\r';
+
+  /**
+   * Largest mantissa that, like every power of ten up to 10^22, is exactly
+   * representable as a double; a quotient of two such numbers is correctly
+   * rounded.
+   */
+  private static final long MAX_EXACT_MANTISSA = 1L << 53;
+  private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+      1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+  };
+
+  private final InputStream in;
+  private byte[] buffer;
+  // valid bytes are buffer[0 .. limit); the current record starts at recordStart
+  private int limit;
+  // offset in the stream of buffer[0]
+  private long bufferOffset;
+  private boolean following;
+  private int recordStart;
+  private int position;
+  private boolean eof;
+  private int[] starts = new int[16];
+  private int[] ends = new int[16];
+  private int fieldCount;
+  private int fieldLimit = Integer.MAX_VALUE;
+
+  HdfsCsvMulTokenizer(InputStream in) {
+    this(in, DEFAULT_BUFFER_SIZE);
+  }
+
+  HdfsCsvMulTokenizer(InputStream in, int bufferSize) {
+    this.in = in;
+    this.buffer = new byte[bufferSize];
+  }
+
+  /**
+   * Sets the number of leading fields of each record that are located;
+   * fields beyond it are treated as missing.
+   */
+  void setFieldLimit(int fieldLimit) {
+    this.fieldLimit = fieldLimit;
+  }
+
+  /**
+   * Sets whether the stream is a file that is still being written. If so, a
+   * last record that has no line terminator is not returned, because the
+   * rest of it may not have been written yet.
+   */
+  void setFollowing(boolean following) {
+    this.following = following;
+  }
+
+  /**
+   * Moves to the next record. Returns false at the end of the stream.
+   */
+  boolean next() throws IOException {
+    for (; ; ) {
+      final int recordEnd = findRecordEnd();
+      if (recordEnd < 0) {
+        fieldCount = 0;
+        return false;
+      }
+      if (recordEnd > recordStart) {
+        tokenize(recordEnd);
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Ensures that the whole of the next record is in the buffer and returns
+   * the offset of its end, excluding the line terminator, or -1 if there are
+   * no more records.
+   */
+  private int findRecordEnd() throws IOException {
+    recordStart = position;
+    int scan = position;
+    // As in tokenize, only a quote at the start of a field opens a quoted
+    // field, and within it a doubled quote is an escaped quote.
+    boolean fieldStart = true;
+    boolean quoted = false;
+    boolean quotePending = false;
+    for (; ; ) {
+      if (scan == limit) {
+        final int shift = recordStart;
+        final boolean filled = fill();
+        scan -= shift;
+        if (!filled) {
+          if (scan == recordStart || following) {
+            position = recordStart;
+            return -1;
+          }
+          // last record has no line terminator
+          position = scan;
+          return scan;
+        }
+      }
+      final byte b = buffer[scan];
+      if (quotePending) {
+        // the quote before this byte either closed the field or escaped
+        // this one
+        quotePending = false;
+        quoted = b == QUOTE;
+      } else if (quoted) {
+        quotePending = b == QUOTE;
+        ++scan;
+        continue;
+      }
+      if (!quoted) {
+        if (b == QUOTE && fieldStart) {
+          quoted = true;
+        } else if (b == LF) {
+          position = scan + 1;
+          return scan > recordStart && buffer[scan - 1] == CR ? scan - 1 : scan;
+        }
+        fieldStart = b == COMMA;
+      }
+      ++scan;
+    }
+  }
+
+  /**
+   * Moves the current record to the start of the buffer, growing the buffer
+   * if the record fills it, and reads more bytes. Returns false if the stream
+   * is exhausted.
+   */
+  private boolean fill() throws IOException {
+    if (recordStart > 0) {
+      System.arraycopy(buffer, recordStart, buffer, 0, limit - recordStart);
+      bufferOffset += recordStart;
+      limit -= recordStart;
+      position -= recordStart;
+      recordStart = 0;
+    }
+    if (eof) {
+      return false;
+    }
+    if (limit == buffer.length) {
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+    for (; ; ) {
+      final int n = in.read(buffer, limit, buffer.length - limit);
+      if (n < 0) {
+        eof = true;
+        return false;
+      }
+      if (n > 0) {
+        limit += n;
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Locates the fields of the record in {@code buffer[recordStart ..
+   * recordEnd)}, removing the quotes of quoted fields.
+   */
+  private void tokenize(int recordEnd) {
+    fieldCount = 0;
+    int p = recordStart;
+    while (fieldCount < fieldLimit) {
+      if (fieldCount == starts.length) {
+        starts = Arrays.copyOf(starts, fieldCount * 2);
+        ends = Arrays.copyOf(ends, fieldCount * 2);
+      }
+      int end;
+      if (p < recordEnd && buffer[p] == QUOTE) {
+        // Copy the value over the opening quote, collapsing escaped quotes;
+        // anything between the closing quote and the comma is kept as is.
+        int write = p;
+        int read = p + 1;
+        boolean quoted = true;
+        while (read < recordEnd) {
+          final byte b = buffer[read];
+          if (quoted && b == QUOTE) {
+            if (read + 1 < recordEnd && buffer[read + 1] == QUOTE) {
+              buffer[write++] = QUOTE;
+              read += 2;
+            } else {
+              quoted = false;
+              ++read;
+            }
+          } else if (!quoted && b == COMMA) {
+            break;
+          } else {
+            buffer[write++] = b;
+            ++read;
+          }
+        }
+        starts[fieldCount] = p;
+        ends[fieldCount] = write;
+        end = read;
+      } else {
+        end = p;
+        while (end < recordEnd && buffer[end] != COMMA) {
+          ++end;
+        }
+        starts[fieldCount] = p;
+        ends[fieldCount] = end;
+      }
+      ++fieldCount;
+      if (end >= recordEnd) {
+        break;
+      }
+      p = end + 1;
+    }
+  }
+
+  /**
+   * Returns the number of bytes that the current record takes up in the
+   * stream, including its line terminator.
+   */
+  int recordLength() {
+    return position - recordStart;
+  }
+
+  /**
+   * Returns the offset in the stream just after the current record, where
+   * the next record starts; after {@link #next} has returned false, the
+   * offset just after the last complete record.
+   */
+  long offset() {
+    return bufferOffset + position;
+  }
+
+  /**
+   * Returns the number of fields located in the current record.
+   */
+  int fieldCount() {
+    return fieldCount;
+  }
+
+  /**
+   * Returns whether a field is empty or missing from the current record.
+   */
+  boolean isEmpty(int field) {
+    return field >= fieldCount || starts[field] == ends[field];
+  }
+
+  /**
+   * Decodes a field as a string; a missing field is the empty string.
+   */
+  String getString(int field) {
+    if (field >= fieldCount) {
+      return "";
+    }
+    return new String(buffer, starts[field], ends[field] - starts[field],
+        StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Compares a field with UTF-8 encoded bytes, treating bytes as unsigned.
+   * This is code point order, which differs from {@link String#compareTo}
+   * only for characters outside the Basic Multilingual Plane.
+   */
+  int compare(int field, byte[] bytes) {
+    final int start = field >= fieldCount ? 0 : starts[field];
+    final int length = field >= fieldCount ? 0 : ends[field] - start;
+    final int n = Math.min(length, bytes.length);
+    for (int i = 0; i < n; i++) {
+      final int c = (buffer[start + i] & 0xff) - (bytes[i] & 0xff);
+      if (c != 0) {
+        return c;
+      }
+    }
+    return length - bytes.length;
+  }
+
+  boolean getBoolean(int field) {
+    final int start = starts[field];
+    return ends[field] - start == 4
+        && (buffer[start] | 0x20) == 't'
+        && (buffer[start + 1] | 0x20) == 'r'
+        && (buffer[start + 2] | 0x20) == 'u'
+        && (buffer[start + 3] | 0x20) == 'e';
+  }
+
+  int getInt(int field) {
+    final long value = getLong(field);
+    if (value != (int) value) {
+      return Integer.parseInt(getString(field));
+    }
+    return (int) value;
+  }
+
+  /**
+   * Parses a field as a long. Plain decimal digits are parsed from the bytes;
+   * anything else is left to {@link Long#parseLong(String)}, which also
+   * reports malformed values.
+   */
+  long getLong(int field) {
+    int p = starts[field];
+    final int end = ends[field];
+    boolean negative = false;
+    if (p < end && (buffer[p] == '-' || buffer[p] == '+')) {
+      negative = buffer[p] == '-';
+      ++p;
+    }
+    if (p == end || end - p > 19) {
+      return Long.parseLong(getString(field));
+    }
+    long value = 0;
+    for (; p < end; p++) {
+      final int digit = buffer[p] - '0';
+      if (digit < 0 || digit > 9) {
+        return Long.parseLong(getString(field));
+      }
+      value = value * 10 + digit;
+    }
+    if (value < 0) {
+      // 19 digits less than 2^64 wrap at most once; let parseLong decide
+      // between Long.MIN_VALUE and overflow
+      return Long.parseLong(getString(field));
+    }
+    return negative ? -value : value;
+  }
+
+  /**
+   * Parses a field as a double. Decimals without an exponent whose digits fit
+   * in 53 bits are parsed from the bytes, with the same result as
+   * {@link Double#parseDouble(String)}; anything else is left to that method.
+   */
+  double getDouble(int field) {
+    int p = starts[field];
+    final int end = ends[field];
+    boolean negative = false;
+    if (p < end && (buffer[p] == '-' || buffer[p] == '+')) {
+      negative = buffer[p] == '-';
+      ++p;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int scale = 0;
+    boolean point = false;
+    for (; p < end; p++) {
+      final byte b = buffer[p];
+      if (b == '.' && !point) {
+        point = true;
+        continue;
+      }
+      final int digit = b - '0';
+      if (digit < 0 || digit > 9 || digits == 18) {
+        return Double.parseDouble(getString(field));
+      }
+      mantissa = mantissa * 10 + digit;
+      ++digits;
+      if (point) {
+        ++scale;
+      }
+    }
+    if (digits == 0 || mantissa > MAX_EXACT_MANTISSA) {
+      return Double.parseDouble(getString(field));
+    }
+    final double value = (double) mantissa / POWERS_OF_TEN[scale];
+    return negative ? -value : value;
+  }
+
+  /**
+   * Parses a field of the form {@code yyyy-MM-dd} as the number of days since
+   * the epoch.
+   *
+   * @throws NumberFormatException if the field is not of that form
+   */
+  int getDate(int field) {
+    final int start = starts[field];
+    if (ends[field] - start != 10) {
+      throw new NumberFormatException();
+    }
+    return date(start);
+  }
+
+  /**
+   * Parses a field of the form {@code HH:mm:ss} as milliseconds since
+   * midnight.
+   *
+   * @throws NumberFormatException if the field is not of that form
+   */
+  int getTime(int field) {
+    final int start = starts[field];
+    if (ends[field] - start != 8) {
+      throw new NumberFormatException();
+    }
+    return time(start);
+  }
+
+  /**
+   * Parses a field of the form {@code yyyy-MM-dd HH:mm:ss} as milliseconds
+   * since the epoch.
+   *
+   * @throws NumberFormatException if the field is not of that form
+   */
+  long getTimestamp(int field) {
+    final int start = starts[field];
+    if (ends[field] - start != 19 || buffer[start + 10] != ' ') {
+      throw new NumberFormatException();
+    }
+    return date(start) * DateTimeUtils.MILLIS_PER_DAY + time(start + 11);
+  }
+
+  private int date(int p) {
+    if (buffer[p + 4] != '-' || buffer[p + 7] != '-') {
+      throw new NumberFormatException();
+    }
+    final int year = digits(p, 4);
+    final int month = digits(p + 5, 2);
+    final int day = digits(p + 8, 2);
+    if (month < 1 || month > 12 || day < 1 || day > 31) {
+      throw new NumberFormatException();
+    }
+    return DateTimeUtils.ymdToUnixDate(year, month, day);
+  }
+
+  private int time(int p) {
+    if (buffer[p + 2] != ':' || buffer[p + 5] != ':') {
+      throw new NumberFormatException();
+    }
+    final int hour = digits(p, 2);
+    final int minute = digits(p + 3, 2);
+    final int second = digits(p + 6, 2);
+    return (int) (hour * DateTimeUtils.MILLIS_PER_HOUR
+        + minute * DateTimeUtils.MILLIS_PER_MINUTE
+        + second * DateTimeUtils.MILLIS_PER_SECOND);
+  }
+
+  private int digits(int p, int n) {
+    int value = 0;
+    for (int i = p; i < p + n; i++) {
+      final int digit = buffer[i] - '0';
+      if (digit < 0 || digit > 9) {
+        throw new NumberFormatException();
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tianyu;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares {@link HdfsCsvMulTokenizer} with the String-based parsing it
+ * replaced, {@code BufferedReader.readLine} followed by {@code split(",")},
+ * on a wide in-memory CSV file.
+ *
+ * <p>Run with the GC profiler to see allocation per operation.</p>
+ */
+@Fork(value = 1, jvmArgsPrepend = "-Xmx512m")
+@Measurement(iterations = 7, time = 1, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Threads(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HdfsCsvMulTokenizerBenchmark {
+
+  /**
+   * Types of the columns, repeated to make up {@link #columns} columns.
+   */
+  private static final HdfsCsvMulFieldType[] TYPES = {
+      HdfsCsvMulFieldType.INT, HdfsCsvMulFieldType.LONG, HdfsCsvMulFieldType.DOUBLE,
+      HdfsCsvMulFieldType.DATE, HdfsCsvMulFieldType.STRING
+  };
+
+  @Param({ "40" })
+  int columns;
+
+  @Param({ "10000" })
+  int rows;
+
+  /**
+   * Number of leading columns that are converted, as if projected by a
+   * query.
+   */
+  @Param({ "3", "40" })
+  int projected;
+
+  byte[] bytes;
+
+  @Setup
+  public void setup() {
+    final Random random = new Random(424242);
+    final StringBuilder sb = new StringBuilder();
+    for (int r = 0; r < rows; r++) {
+      for (int c = 0; c < columns; c++) {
+        if (c > 0) {
+          sb.append(',');
+        }
+        switch (TYPES[c % TYPES.length]) {
+          case INT:
+            sb.append(random.nextInt());
+            break;
+          case LONG:
+            sb.append(random.nextLong());
+            break;
+          case DOUBLE:
+            sb.append(random.nextInt(1000000) / 100D);
+            break;
+          case DATE:
+            sb.append(String.format("20%02d-%02d-%02d", random.nextInt(30),
+                1 + random.nextInt(12), 1 + random.nextInt(28)));
+            break;
+          default:
+            sb.append("value").append(random.nextInt(1000));
+        }
+      }
+      sb.append('\n');
+    }
+    bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public void split(Blackhole blackhole) throws IOException {
+    final BufferedReader reader = new BufferedReader(
+        new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+    for (String line; (line = reader.readLine()) != null; ) {
+      final String[] strings = line.split(",");
+      for (int c = 0; c < projected; c++) {
+        switch (TYPES[c % TYPES.length]) {
+          case INT:
+            blackhole.consume(Integer.parseInt(strings[c]));
+            break;
+          case LONG:
+            blackhole.consume(Long.parseLong(strings[c]));
+            break;
+          case DOUBLE:
+            blackhole.consume(Double.parseDouble(strings[c]));
+            break;
+          case DATE:
+            blackhole.consume(java.sql.Date.valueOf(strings[c]).getTime());
+            break;
+          default:
+            blackhole.consume(strings[c]);
+        }
+      }
+    }
+  }
+
+  @Benchmark
+  public void tokenize(Blackhole blackhole) throws IOException {
+    final HdfsCsvMulTokenizer tokenizer =
+        new HdfsCsvMulTokenizer(new ByteArrayInputStream(bytes));
+    tokenizer.setFieldLimit(projected);
+    while (tokenizer.next()) {
+      for (int c = 0; c < projected; c++) {
+        switch (TYPES[c % TYPES.length]) {
+          case INT:
+            blackhole.consume(tokenizer.getInt(c));
+            break;
+          case LONG:
+            blackhole.consume(tokenizer.getLong(c));
+            break;
+          case DOUBLE:
+            blackhole.consume(tokenizer.getDouble(c));
+            break;
+          case DATE:
+            blackhole.consume(tokenizer.getDate(c));
+            break;
+          default:
+            blackhole.consume(tokenizer.getString(c));
+        }
+      }
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(HdfsCsvMulTokenizerBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .detectJvmArgs()
+        .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -28,6 +28,7 @@
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Modifier;
+import java.util.Map;
 import java.util.TimeZone;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -89,6 +90,24 @@ enum Variable {
      * When no timeout is set, the value is 0 or not present. */
     TIMEOUT("timeout", Long.class),
 
+    /** Which morsel of a {@link org.apache.calcite.schema.SplittableTable}
+     * the current thread should scan, between 0 and
+     * {@link #MORSEL_COUNT} - 1. When not present, the whole table is
+     * scanned. */
+    MORSEL("morsel", Integer.class),
+
+    /** Number of morsels into which a
+     * {@link org.apache.calcite.schema.SplittableTable} is divided. */
+    MORSEL_COUNT("morselCount", Integer.class),
+
+    /** Filters on the columns of the table that is being scanned, built
+     * from the keys of one input of a hash join whose other input reads the
+     * table; a map from column ordinal to
+     * {@link org.apache.calcite.runtime.RuntimeFilter}. Adapters should
+     * call {@link org.apache.calcite.runtime.RuntimeFilter#of} rather than
+     * read the map directly. */
+    RUNTIME_FILTERS("runtimeFilters", Map.class),
+
     /** Advisor that suggests completion hints for SQL statements. */
     SQL_ADVISOR("sqlAdvisor", SqlAdvisor.class),
 
@@ -21,6 +21,7 @@
 import org.apache.calcite.linq4j.AbstractEnumerable;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
 import org.apache.calcite.linq4j.Ord;
 import org.apache.calcite.linq4j.QueryProvider;
 import org.apache.calcite.linq4j.Queryable;
@@ -30,12 +31,16 @@
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.rel.type.RelProtoDataType;
-import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.runtime.Batches;
+import org.apache.calcite.runtime.ColumnBatch;
+import org.apache.calcite.schema.ColumnarTable;
 import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.SplittableTable;
 import org.apache.calcite.schema.Statistic;
 import org.apache.calcite.schema.Statistics;
 import org.apache.calcite.schema.impl.AbstractTableQueryable;
 import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.ImmutableIntList;
 import org.apache.calcite.util.Pair;
 
 import com.google.common.base.Supplier;
@@ -55,7 +60,8 @@
  * values in the column; see {@link Representation} and
  * {@link RepresentationType}.
  */
-class ArrayTable extends AbstractQueryableTable implements ScannableTable {
+class ArrayTable extends AbstractQueryableTable
+    implements ColumnarTable, SplittableTable {
   private final RelProtoDataType protoRowType;
   private final Supplier<Content> supplier;
 
@@ -91,6 +97,38 @@ public Enumerator<Object[]> enumerator() {
     };
   }
 
+  public Enumerable<Object[]> scan(DataContext root, final int morsel,
+      final int morselCount) {
+    return new AbstractEnumerable<Object[]>() {
+      public Enumerator<Object[]> enumerator() {
+        // Morsel i contains rows [size * i / count, size * (i + 1) / count)
+        final Content content = supplier.get();
+        final long size = content.size;
+        return content.arrayEnumerator((int) (size * morsel / morselCount),
+            (int) (size * (morsel + 1) / morselCount));
+      }
+    };
+  }
+
+  public Enumerable<ColumnBatch> scanBatches(final DataContext root) {
+    final Primitive[] types =
+        Batches.columnTypes(root.getTypeFactory(),
+            getRowType(root.getTypeFactory()));
+    return new AbstractEnumerable<ColumnBatch>() {
+      public Enumerator<ColumnBatch> enumerator() {
+        final Content content = supplier.get();
+        final int batchCount =
+            (content.size + ColumnBatch.DEFAULT_SIZE - 1)
+                / ColumnBatch.DEFAULT_SIZE;
+        return Linq4j.transform(
+            Linq4j.enumerator(ImmutableIntList.identity(batchCount)),
+            b -> content.batch(b * ColumnBatch.DEFAULT_SIZE,
+                Math.min((b + 1) * ColumnBatch.DEFAULT_SIZE, content.size),
+                types));
+      }
+    };
+  }
+
   public <T> Queryable<T> asQueryable(final QueryProvider queryProvider,
       SchemaPlus schema, String tableName) {
     return new AbstractTableQueryable<T>(queryProvider, schema, this,
@@ -824,12 +862,43 @@ public <T> Enumerator<T> enumerator() {
       if (columns.size() == 1) {
         return (Enumerator<T>) new ObjectEnumerator(size, columns.get(0));
       } else {
-        return (Enumerator<T>) new ArrayEnumerator(size, columns);
+        return (Enumerator<T>) new ArrayEnumerator(0, size, columns);
       }
     }
 
     public Enumerator<Object[]> arrayEnumerator() {
-      return new ArrayEnumerator(size, columns);
+      return new ArrayEnumerator(0, size, columns);
+    }
+
+    /** Returns an enumerator over the rows from {@code start} (inclusive) to
+     * {@code end} (exclusive); each element is an array. */
+    public Enumerator<Object[]> arrayEnumerator(int start, int end) {
+      return new ArrayEnumerator(start, end, columns);
+    }
+
+    /** Returns the rows from {@code start} (inclusive) to {@code end}
+     * (exclusive) as a batch. A column that is stored in a primitive array of
+     * the column's type is copied; other columns are decoded value by
+     * value. */
+    ColumnBatch batch(int start, int end, Primitive[] types) {
+      final int count = end - start;
+      final Object[] batchColumns = new Object[types.length];
+      final long[][] nulls = new long[types.length][];
+      for (int c = 0; c < types.length; c++) {
+        final Column column = columns.get(c);
+        batchColumns[c] = ColumnBatch.newColumn(types[c], count);
+        if (column.representation instanceof PrimitiveArray
+            && ((PrimitiveArray) column.representation).primitive == types[c]
+            && ((PrimitiveArray) column.representation).p == types[c]) {
+          System.arraycopy(column.dataSet, start, batchColumns[c], 0, count);
+        } else {
+          for (int i = 0; i < count; i++) {
+            Batches.set(types[c], batchColumns, nulls, c, i, count,
+                column.representation.getObject(column.dataSet, start + i));
+          }
+        }
+      }
+      return new ColumnBatch(batchColumns, nulls, count);
     }
 
     /** Enumerator over a table with a single column; each element
@@ -865,13 +934,16 @@ public void close() {
     /** Enumerator over a table with more than one column; each element
      * returned is an array. */
     private static class ArrayEnumerator implements Enumerator<Object[]> {
-      final int rowCount;
+      final int start;
+      final int end;
       final List<Column> columns;
-      int i = -1;
+      int i;
 
-      ArrayEnumerator(int rowCount, List<Column> columns) {
-        this.rowCount = rowCount;
+      ArrayEnumerator(int start, int end, List<Column> columns) {
+        this.start = start;
+        this.end = end;
         this.columns = columns;
+        this.i = start - 1;
       }
 
       public Object[] current() {
@@ -884,11 +956,11 @@ public Object[] current() {
       }
 
       public boolean moveNext() {
-        return ++i < rowCount;
+        return ++i < end;
       }
 
       public void reset() {
-        i = -1;
+        i = start - 1;
       }
 
       public void close() {
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.InvalidRelException;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.AggregateCall;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.runtime.Batches;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import java.util.List;
+
+/**
+ * Implementation of {@link org.apache.calcite.rel.core.Aggregate} in
+ * {@link BatchConvention batch calling convention}.
+ *
+ * <p>It supports only a simple GROUP BY and the aggregate functions
+ * {@code COUNT}, {@code SUM}, {@code $SUM0}, {@code MIN} and {@code MAX},
+ * without {@code DISTINCT} or {@code FILTER}. It hashes each row to a group,
+ * and then accumulates each function with a loop over the column arrays of
+ * the batch; see {@link org.apache.calcite.runtime.Batches#aggregate}.
+ */
+public class BatchAggregate extends Aggregate implements BatchRel {
+  public BatchAggregate(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, ImmutableBitSet groupSet,
+      List<ImmutableBitSet> groupSets, List<AggregateCall> aggCalls)
+      throws InvalidRelException {
+    super(cluster, traitSet, input, false, groupSet, groupSets, aggCalls);
+    assert getConvention() instanceof BatchConvention;
+    if (getGroupType() != Group.SIMPLE) {
+      throw new InvalidRelException("grouping sets not supported");
+    }
+    final JavaTypeFactory typeFactory =
+        (JavaTypeFactory) cluster.getTypeFactory();
+    for (AggregateCall aggCall : aggCalls) {
+      if (!isSupported(typeFactory, input.getRowType(), aggCall)) {
+        throw new InvalidRelException(
+            "aggregate call " + aggCall + " not supported");
+      }
+    }
+  }
+
+  /** Returns whether {@link org.apache.calcite.runtime.Batches#aggregate}
+   * can compute an aggregate call. */
+  static boolean isSupported(JavaTypeFactory typeFactory,
+      RelDataType inputRowType, AggregateCall aggCall) {
+    if (aggCall.isDistinct()
+        || aggCall.filterArg >= 0
+        || aggCall.getArgList().size() > 1
+        || !aggCall.getCollation().getFieldCollations().isEmpty()) {
+      return false;
+    }
+    switch (aggCall.getAggregation().getKind()) {
+    case COUNT:
+      return true;
+    case MIN:
+    case MAX:
+      return aggCall.getArgList().size() == 1;
+    case SUM:
+    case SUM0:
+      if (aggCall.getArgList().size() != 1) {
+        return false;
+      }
+      // Sums of non-primitive values are computed using BigDecimal
+      final RelDataType type =
+          inputRowType.getFieldList().get(aggCall.getArgList().get(0))
+              .getType();
+      return Batches.columnType(typeFactory, type) != Primitive.OTHER
+          || type.getSqlTypeName() == SqlTypeName.DECIMAL;
+    default:
+      return false;
+    }
+  }
+
+  @Override public BatchAggregate copy(RelTraitSet traitSet, RelNode input,
+      boolean indicator, ImmutableBitSet groupSet,
+      List<ImmutableBitSet> groupSets, List<AggregateCall> aggCalls) {
+    assert !indicator;
+    try {
+      return new BatchAggregate(getCluster(), traitSet, input, groupSet,
+          groupSets, aggCalls);
+    } catch (InvalidRelException e) {
+      // Semantic error not possible. Must be a bug. Convert to
+      // internal error.
+      throw new AssertionError(e);
+    }
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    return super.computeSelfCost(planner, mq)
+        .multiplyBy(BatchConvention.COST_MULTIPLIER);
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    final JavaTypeFactory typeFactory = implementor.getTypeFactory();
+    final BlockBuilder builder = new BlockBuilder();
+    final Result result =
+        implementor.visitChild(this, 0, (EnumerableRel) getInput(), pref);
+    final PhysType physType =
+        PhysTypeImpl.of(typeFactory, getRowType(), JavaRowFormat.ARRAY, false);
+    final String[] functions = new String[aggCalls.size()];
+    final int[] args = new int[aggCalls.size()];
+    for (int a = 0; a < functions.length; a++) {
+      final AggregateCall aggCall = aggCalls.get(a);
+      functions[a] = aggCall.getAggregation().getKind().name();
+      args[a] = aggCall.getArgList().isEmpty()
+          ? -1
+          : aggCall.getArgList().get(0);
+    }
+    final Expression inputEnumerable =
+        builder.append("inputEnumerable", result.block, false);
+    builder.add(
+        Expressions.return_(null,
+            Expressions.call(BuiltInMethod.BATCHES_AGGREGATE.method,
+                inputEnumerable,
+                Expressions.constant(groupSet.toArray()),
+                Expressions.constant(functions),
+                Expressions.constant(args),
+                Expressions.constant(
+                    Batches.columnTypes(typeFactory, getRowType())))));
+    return implementor.result(physType, builder.toBlock());
+  }
+}
+
+// End BatchAggregate.java
@@ -0,0 +1,359 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.linq4j.tree.ParameterExpression;
+import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelOptPredicateList;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelCollationTraitDef;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Calc;
+import org.apache.calcite.rel.metadata.RelMdCollation;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexProgram;
+import org.apache.calcite.rex.RexSimplify;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.runtime.Batches;
+import org.apache.calcite.runtime.ColumnBatch;
+import org.apache.calcite.util.BuiltInMethod;
+
+import com.google.common.collect.ImmutableList;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.calcite.adapter.enumerable.EnumUtils.NO_EXPRS;
+
+/**
+ * Implementation of {@link org.apache.calcite.rel.core.Calc} in
+ * {@link BatchConvention batch calling convention}.
+ *
+ * <p>The generated code processes a batch at a time. For each batch, it
+ * loops over the rows; if the program only filters, it builds a selection
+ * vector and returns the same columns; otherwise it evaluates each
+ * projection into a new column array.
+ */
+public class BatchCalc extends Calc implements BatchRel {
+  /** Creates a BatchCalc.
+   *
+   * <p>Use {@link #create} unless you know what you're doing. */
+  public BatchCalc(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, RexProgram program) {
+    super(cluster, traitSet, input, program);
+    assert getConvention() instanceof BatchConvention;
+    assert !program.containsAggs();
+  }
+
+  /** Creates a BatchCalc. */
+  public static BatchCalc create(RelNode input, RexProgram program) {
+    final RelOptCluster cluster = input.getCluster();
+    final RelMetadataQuery mq = cluster.getMetadataQuery();
+    final RelTraitSet traitSet = cluster.traitSet()
+        .replace(BatchConvention.INSTANCE)
+        .replaceIfs(RelCollationTraitDef.INSTANCE,
+            () -> RelMdCollation.calc(mq, input, program));
+    return new BatchCalc(cluster, traitSet, input, program);
+  }
+
+  @Override public BatchCalc copy(RelTraitSet traitSet, RelNode child,
+      RexProgram program) {
+    return new BatchCalc(getCluster(), traitSet, child, program);
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    return super.computeSelfCost(planner, mq)
+        .multiplyBy(BatchConvention.COST_MULTIPLIER);
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    final JavaTypeFactory typeFactory = implementor.getTypeFactory();
+    final BlockBuilder builder = new BlockBuilder();
+    final EnumerableRel child = (EnumerableRel) getInput();
+    final Result result = implementor.visitChild(this, 0, child, pref);
+    final PhysType physType =
+        PhysTypeImpl.of(typeFactory, getRowType(), JavaRowFormat.ARRAY, false);
+
+    final RexBuilder rexBuilder = getCluster().getRexBuilder();
+    final RelMetadataQuery mq = RelMetadataQuery.instance();
+    final RelOptPredicateList predicates = mq.getPulledUpPredicates(child);
+    final RexSimplify simplify =
+        new RexSimplify(rexBuilder, predicates, RexUtil.EXECUTOR);
+    final RexProgram program =
+        implementor.stashLiterals(
+            this.program.normalize(rexBuilder, simplify));
+
+    // public Object apply(Object input) {
+    //   final ColumnBatch batch = (ColumnBatch) input;
+    //   final int[] selection = batch.selection;
+    //   final int count = batch.count;
+    //   int k = 0;
+    //   for (int j = 0; j < count; j++) {
+    //     final int i = selection == null ? j : selection[j];
+    //     <<filter and project row i>>
+    //   }
+    //   return <<batch of k rows>>;
+    // }
+    final ParameterExpression input_ =
+        Expressions.parameter(Object.class, "input");
+    final ParameterExpression batch_ =
+        Expressions.parameter(ColumnBatch.class, "batch");
+    final BlockBuilder body = new BlockBuilder(false);
+    body.add(
+        Expressions.declare(Modifier.FINAL, batch_,
+            Expressions.convert_(input_, ColumnBatch.class)));
+    final Expression selection_ =
+        body.append("selection", Expressions.field(batch_, "selection"));
+    final Expression count_ =
+        body.append("count", Expressions.field(batch_, "count"));
+    final ParameterExpression k_ = Expressions.parameter(int.class, "k");
+    body.add(Expressions.declare(0, k_, Expressions.constant(0)));
+    final ParameterExpression j_ = Expressions.parameter(int.class, "j");
+    final BlockBuilder loop = new BlockBuilder(true, body);
+    final Expression i_ =
+        loop.append("i",
+            Expressions.condition(
+                Expressions.equal(selection_, Expressions.constant(null)),
+                j_,
+                Expressions.arrayIndex(selection_, j_)));
+    final BatchInputGetter inputGetter =
+        new BatchInputGetter(typeFactory, child.getRowType(), body, batch_,
+            i_);
+
+    final Expression condition = program.getCondition() == null
+        ? null
+        : RexToLixTranslator.translateCondition(program, typeFactory, loop,
+            inputGetter, implementor.allCorrelateVariables,
+            implementor.getConformance());
+    final Expression returnValue;
+    if (condition != null && program.projectsOnlyIdentity()) {
+      // The program only filters. Keep the columns, and return a selection
+      // vector of the rows that pass.
+      final Expression newSelection_ =
+          body.append("newSelection",
+              Expressions.newArrayBounds(int.class, 1, count_));
+      loop.add(
+          Expressions.ifThen(condition,
+              Expressions.statement(
+                  Expressions.assign(
+                      Expressions.arrayIndex(newSelection_,
+                          Expressions.postIncrementAssign(k_)),
+                      i_))));
+      returnValue =
+          Expressions.call(batch_, "select", newSelection_, k_);
+    } else {
+      final List<RelDataType> outputTypes =
+          RelOptUtil.getFieldTypeList(getRowType());
+      final Primitive[] columnTypes =
+          Batches.columnTypes(typeFactory, getRowType());
+      final Expression[] columns = new Expression[columnTypes.length];
+      final Expression[] nulls = new Expression[columnTypes.length];
+      for (int c = 0; c < columnTypes.length; c++) {
+        final Primitive columnType = columnTypes[c];
+        columns[c] =
+            body.append("out" + c,
+                Expressions.newArrayBounds(
+                    columnType == Primitive.OTHER
+                        ? Object.class
+                        : columnType.primitiveClass,
+                    1, count_));
+        nulls[c] = columnType != Primitive.OTHER
+            && outputTypes.get(c).isNullable()
+            ? body.append("outNulls" + c,
+                Expressions.call(ColumnBatch.class, "newNulls", count_))
+            : Expressions.constant(null, long[].class);
+      }
+      final BlockBuilder project = new BlockBuilder(true, loop);
+      final List<Expression> expressions =
+          RexToLixTranslator.translateProjects(program, typeFactory,
+              implementor.getConformance(), project, physType,
+              DataContext.ROOT, inputGetter,
+              implementor.allCorrelateVariables);
+      for (int c = 0; c < columnTypes.length; c++) {
+        final Primitive columnType = columnTypes[c];
+        final Expression target = Expressions.arrayIndex(columns[c], k_);
+        final Expression e = expressions.get(c);
+        if (columnType == Primitive.OTHER) {
+          project.add(
+              Expressions.statement(Expressions.assign(target, e)));
+        } else if (nulls[c] instanceof ParameterExpression) {
+          final Expression v =
+              project.append("value" + c,
+                  RexToLixTranslator.convert(e, columnType.boxClass));
+          project.add(
+              Expressions.ifThenElse(
+                  Expressions.equal(v, Expressions.constant(null)),
+                  Expressions.statement(
+                      Expressions.call(ColumnBatch.class, "setNull",
+                          nulls[c], k_)),
+                  Expressions.statement(
+                      Expressions.assign(target,
+                          Expressions.unbox(v, columnType)))));
+        } else {
+          project.add(
+              Expressions.statement(
+                  Expressions.assign(target,
+                      RexToLixTranslator.convert(e,
+                          columnType.primitiveClass))));
+        }
+      }
+      project.add(Expressions.statement(Expressions.postIncrementAssign(k_)));
+      if (condition == null) {
+        loop.add(project.toBlock());
+      } else {
+        loop.add(Expressions.ifThen(condition, project.toBlock()));
+      }
+      returnValue =
+          Expressions.new_(ColumnBatch.class,
+              Expressions.newArrayInit(Object.class, columns),
+              Expressions.newArrayInit(long.class, 2, nulls),
+              k_);
+    }
+    inputGetter.declareColumns();
+    body.add(
+        Expressions.for_(
+            Expressions.declare(0, j_, Expressions.constant(0)),
+            Expressions.lessThan(j_, count_),
+            Expressions.preIncrementAssign(j_),
+            loop.toBlock()));
+    body.add(Expressions.return_(null, returnValue));
+
+    final Expression inputEnumerable =
+        builder.append("inputEnumerable", result.block, false);
+    // An anonymous class, rather than a lambda, gives the optimizer somewhere
+    // to put constant expressions that it moves out of the loop
+    final Expression function =
+        Expressions.new_(Function1.class, NO_EXPRS,
+            Expressions.list(
+                Expressions.methodDecl(Modifier.PUBLIC, Object.class,
+                    "apply", ImmutableList.of(input_), body.toBlock())));
+    builder.add(
+        Expressions.return_(null,
+            Expressions.call(inputEnumerable,
+                BuiltInMethod.SELECT.method, function)));
+    return implementor.result(physType, builder.toBlock());
+  }
+
+  public RexProgram getProgram() {
+    return program;
+  }
+
+  /** Implementation of {@link RexToLixTranslator.InputGetter} that reads
+   * the value of a field in the current row of a batch. */
+  private static class BatchInputGetter
+      implements RexToLixTranslator.InputGetter {
+    private final JavaTypeFactory typeFactory;
+    private final RelDataType rowType;
+    private final BlockBuilder body;
+    private final ParameterExpression batch;
+    private final Expression i;
+    private final Primitive[] columnTypes;
+    private final Map<Integer, ParameterExpression> columns = new HashMap<>();
+    private final Map<Integer, ParameterExpression> nulls = new HashMap<>();
+
+    BatchInputGetter(JavaTypeFactory typeFactory, RelDataType rowType,
+        BlockBuilder body, ParameterExpression batch, Expression i) {
+      this.typeFactory = typeFactory;
+      this.rowType = rowType;
+      this.body = body;
+      this.batch = batch;
+      this.i = i;
+      this.columnTypes = Batches.columnTypes(typeFactory, rowType);
+    }
+
+    public Expression field(BlockBuilder list, int index, Type storageType) {
+      final RelDataType type = rowType.getFieldList().get(index).getType();
+      final Primitive columnType = columnTypes[index];
+      final Type javaType = typeFactory.getJavaClass(type);
+      final Expression column =
+          columns.computeIfAbsent(index, c ->
+              Expressions.parameter(
+                  columnType == Primitive.OTHER
+                      ? Object[].class
+                      : Array.newInstance(columnType.primitiveClass, 0)
+                          .getClass(),
+                  "column" + c));
+      final Expression value = Expressions.arrayIndex(column, i);
+      if (columnType == Primitive.OTHER) {
+        // Convert the same way as PhysTypeImpl.fieldReference, which treats
+        // java.sql.Date specially so that a null date does not fail
+        if (storageType == null) {
+          return RexToLixTranslator.convert(value, javaType);
+        }
+        return RexToLixTranslator.convert(value,
+            javaType == java.sql.Date.class ? javaType : value.getType(),
+            storageType);
+      }
+      final Expression e;
+      if (type.isNullable()) {
+        final Expression columnNulls =
+            nulls.computeIfAbsent(index, c ->
+                Expressions.parameter(long[].class, "nulls" + c));
+        e = Expressions.condition(
+            Expressions.call(ColumnBatch.class, "isNull", columnNulls, i),
+            Expressions.constant(null, columnType.boxClass),
+            Expressions.box(value, columnType));
+      } else {
+        e = value;
+      }
+      return storageType == null
+          ? e
+          : RexToLixTranslator.convert(e, storageType);
+    }
+
+    /** Declares, at the start of the function, the column arrays and null
+     * bitmaps that {@link #field} has used. */
+    void declareColumns() {
+      for (Map.Entry<Integer, ParameterExpression> entry
+          : columns.entrySet()) {
+        body.add(
+            Expressions.declare(Modifier.FINAL, entry.getValue(),
+                Expressions.convert_(
+                    Expressions.arrayIndex(
+                        Expressions.field(batch, "columns"),
+                        Expressions.constant(entry.getKey())),
+                    entry.getValue().getType())));
+      }
+      for (Map.Entry<Integer, ParameterExpression> entry : nulls.entrySet()) {
+        body.add(
+            Expressions.declare(Modifier.FINAL, entry.getValue(),
+                Expressions.arrayIndex(
+                    Expressions.field(batch, "nulls"),
+                    Expressions.constant(entry.getKey()))));
+      }
+    }
+  }
+}
+
+// End BatchCalc.java
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.plan.Convention;
+import org.apache.calcite.plan.ConventionTraitDef;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTrait;
+import org.apache.calcite.plan.RelTraitDef;
+import org.apache.calcite.plan.RelTraitSet;
+
+/**
+ * Calling convention whose relational expressions return their results as
+ * an {@link org.apache.calcite.linq4j.Enumerable} of
+ * {@link org.apache.calcite.runtime.ColumnBatch}, each holding up to
+ * {@link org.apache.calcite.runtime.ColumnBatch#DEFAULT_SIZE} rows as
+ * primitive arrays.
+ *
+ * <p>Operators in this convention process a batch at a time, in loops over
+ * arrays, rather than calling {@code moveNext()} and {@code current()} for
+ * each row and boxing its values. They are used only if the
+ * {@link org.apache.calcite.config.CalciteConnectionProperty#VECTORIZE}
+ * connection property is true.
+ *
+ * @see BatchRules
+ */
+public enum BatchConvention implements Convention {
+  INSTANCE;
+
+  /** Cost of a batch node relative to the equivalent enumerable node. */
+  public static final double COST_MULTIPLIER = 0.25d;
+
+  @Override public String toString() {
+    return getName();
+  }
+
+  public Class getInterface() {
+    return BatchRel.class;
+  }
+
+  public String getName() {
+    return "BATCH";
+  }
+
+  public RelTraitDef getTraitDef() {
+    return ConventionTraitDef.INSTANCE;
+  }
+
+  public boolean satisfies(RelTrait trait) {
+    return this == trait;
+  }
+
+  public void register(RelOptPlanner planner) {}
+
+  public boolean canConvertConvention(Convention toConvention) {
+    return false;
+  }
+
+  public boolean useAbstractConvertersForConversion(RelTraitSet fromTraits,
+      RelTraitSet toTraits) {
+    return false;
+  }
+}
+
+// End BatchConvention.java
@@ -0,0 +1,32 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+/**
+ * Relational expression in the
+ * {@link BatchConvention batch calling convention}.
+ *
+ * <p>It is implemented in the same way as an {@link EnumerableRel}, except
+ * that the code it generates evaluates to an
+ * {@link org.apache.calcite.linq4j.Enumerable} of
+ * {@link org.apache.calcite.runtime.ColumnBatch}, and so only another
+ * {@code BatchRel} or a {@link BatchToEnumerableConverter} can consume it.
+ */
+public interface BatchRel extends EnumerableRel {
+}
+
+// End BatchRel.java
@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.plan.Convention;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.InvalidRelException;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterRule;
+import org.apache.calcite.rel.core.RelFactories;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.logical.LogicalAggregate;
+import org.apache.calcite.rel.logical.LogicalFilter;
+import org.apache.calcite.rel.logical.LogicalProject;
+import org.apache.calcite.rel.logical.LogicalTableScan;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexOver;
+import org.apache.calcite.rex.RexProgram;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.tools.RelBuilderFactory;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Rules that convert logical relational expressions to the
+ * {@link BatchConvention batch calling convention}, and that convert between
+ * that convention and the
+ * {@link EnumerableConvention enumerable calling convention}.
+ *
+ * <p>The planner uses them if the
+ * {@link org.apache.calcite.config.CalciteConnectionProperty#VECTORIZE}
+ * connection property is true.
+ */
+public abstract class BatchRules {
+  private BatchRules() {}
+
+  public static final RelOptRule BATCH_TABLE_SCAN_RULE =
+      new BatchTableScanRule(LogicalTableScan.class, Convention.NONE,
+          RelFactories.LOGICAL_BUILDER, "BatchTableScanRule");
+
+  /** Rule that converts an {@link EnumerableTableScan}, which
+   * {@link org.apache.calcite.prepare.RelOptTableImpl#toRel} creates for a
+   * {@link org.apache.calcite.schema.QueryableTable}, to a
+   * {@link BatchTableScan}. */
+  public static final RelOptRule BATCH_ENUMERABLE_TABLE_SCAN_RULE =
+      new BatchTableScanRule(EnumerableTableScan.class,
+          EnumerableConvention.INSTANCE, RelFactories.LOGICAL_BUILDER,
+          "BatchTableScanRule:enumerable");
+
+  public static final RelOptRule BATCH_FILTER_RULE =
+      new BatchFilterRule(RelFactories.LOGICAL_BUILDER);
+
+  public static final RelOptRule BATCH_PROJECT_RULE =
+      new BatchProjectRule(RelFactories.LOGICAL_BUILDER);
+
+  public static final RelOptRule BATCH_AGGREGATE_RULE =
+      new BatchAggregateRule(RelFactories.LOGICAL_BUILDER);
+
+  public static final RelOptRule BATCH_TO_ENUMERABLE_RULE =
+      new BatchToEnumerableConverterRule(RelFactories.LOGICAL_BUILDER);
+
+  public static final RelOptRule ENUMERABLE_TO_BATCH_RULE =
+      new EnumerableToBatchConverterRule(RelFactories.LOGICAL_BUILDER);
+
+  /** All rules for the batch calling convention. */
+  public static final List<RelOptRule> RULES =
+      ImmutableList.of(BATCH_TABLE_SCAN_RULE,
+          BATCH_ENUMERABLE_TABLE_SCAN_RULE,
+          BATCH_FILTER_RULE,
+          BATCH_PROJECT_RULE,
+          BATCH_AGGREGATE_RULE,
+          BATCH_TO_ENUMERABLE_RULE,
+          ENUMERABLE_TO_BATCH_RULE);
+
+  /** Returns whether a table can be scanned into batches. A column that is a
+   * collection or record is excluded, because
+   * {@link EnumerableTableScan} converts its values to lists, and a
+   * {@link ScannableTable} returns them unconverted. */
+  private static boolean canScan(TableScan scan) {
+    if (scan.getTable().unwrap(ScannableTable.class) == null) {
+      return false;
+    }
+    for (RelDataTypeField field : scan.getRowType().getFieldList()) {
+      final RelDataType type = field.getType();
+      if (type.isStruct() || type.getComponentType() != null
+          || type.getSqlTypeName() == SqlTypeName.MAP) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns whether a {@link BatchCalc} can evaluate the expressions of a
+   * relational expression. It cannot evaluate windowed aggregates or
+   * sub-queries, or refer to the rows of other relational expressions
+   * through correlating variables. */
+  private static boolean canCalc(RelNode rel, List<RexNode> exprs) {
+    return RelOptUtil.getVariablesUsed(rel).isEmpty()
+        && !RexOver.containsOver(exprs, null)
+        && RexUtil.SubQueryFinder.find(exprs) == null;
+  }
+
+  /** Rule that converts a {@link TableScan} of a {@link ScannableTable} to a
+   * {@link BatchTableScan}. */
+  public static class BatchTableScanRule extends ConverterRule {
+    /**
+     * Creates a BatchTableScanRule.
+     *
+     * @param clazz Class of table scan to convert
+     * @param in Convention of the table scans to convert
+     * @param relBuilderFactory Builder for relational expressions
+     * @param description Description of rule
+     */
+    public BatchTableScanRule(Class<? extends TableScan> clazz, Convention in,
+        RelBuilderFactory relBuilderFactory, String description) {
+      super(clazz,
+          (Predicate<TableScan>) BatchRules::canScan,
+          in, BatchConvention.INSTANCE, relBuilderFactory, description);
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      final TableScan scan = (TableScan) rel;
+      return BatchTableScan.create(scan.getCluster(), scan.getTable());
+    }
+  }
+
+  /** Rule that converts a {@link LogicalFilter} to a {@link BatchCalc}. */
+  public static class BatchFilterRule extends ConverterRule {
+    /**
+     * Creates a BatchFilterRule.
+     *
+     * @param relBuilderFactory Builder for relational expressions
+     */
+    public BatchFilterRule(RelBuilderFactory relBuilderFactory) {
+      super(LogicalFilter.class,
+          (Predicate<LogicalFilter>) filter ->
+              canCalc(filter, ImmutableList.of(filter.getCondition())),
+          Convention.NONE, BatchConvention.INSTANCE, relBuilderFactory,
+          "BatchFilterRule");
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      final LogicalFilter filter = (LogicalFilter) rel;
+      final RelNode input =
+          convert(filter.getInput(), BatchConvention.INSTANCE);
+      final RexBuilder rexBuilder = filter.getCluster().getRexBuilder();
+      final RexProgram program =
+          RexProgram.create(input.getRowType(),
+              rexBuilder.identityProjects(input.getRowType()),
+              filter.getCondition(), filter.getRowType(), rexBuilder);
+      return BatchCalc.create(input, program);
+    }
+  }
+
+  /** Rule that converts a {@link LogicalProject} to a {@link BatchCalc}. */
+  public static class BatchProjectRule extends ConverterRule {
+    /**
+     * Creates a BatchProjectRule.
+     *
+     * @param relBuilderFactory Builder for relational expressions
+     */
+    public BatchProjectRule(RelBuilderFactory relBuilderFactory) {
+      super(LogicalProject.class,
+          (Predicate<LogicalProject>) project ->
+              canCalc(project, project.getProjects()),
+          Convention.NONE, BatchConvention.INSTANCE, relBuilderFactory,
+          "BatchProjectRule");
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      final LogicalProject project = (LogicalProject) rel;
+      final RelNode input =
+          convert(project.getInput(), BatchConvention.INSTANCE);
+      final RexProgram program =
+          RexProgram.create(input.getRowType(), project.getProjects(), null,
+              project.getRowType(), project.getCluster().getRexBuilder());
+      return BatchCalc.create(input, program);
+    }
+  }
+
+  /** Rule that converts a {@link LogicalAggregate} to a
+   * {@link BatchAggregate}, if it uses only the aggregate functions that
+   * {@link BatchAggregate} supports. */
+  public static class BatchAggregateRule extends ConverterRule {
+    /**
+     * Creates a BatchAggregateRule.
+     *
+     * @param relBuilderFactory Builder for relational expressions
+     */
+    public BatchAggregateRule(RelBuilderFactory relBuilderFactory) {
+      super(LogicalAggregate.class, (Predicate<RelNode>) r -> true,
+          Convention.NONE, BatchConvention.INSTANCE, relBuilderFactory,
+          "BatchAggregateRule");
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      final LogicalAggregate agg = (LogicalAggregate) rel;
+      if (agg.indicator) {
+        return null;
+      }
+      try {
+        return new BatchAggregate(rel.getCluster(),
+            agg.getTraitSet().replace(BatchConvention.INSTANCE),
+            convert(agg.getInput(), BatchConvention.INSTANCE),
+            agg.getGroupSet(), agg.getGroupSets(), agg.getAggCallList());
+      } catch (InvalidRelException e) {
+        EnumerableRules.LOGGER.debug(e.toString());
+        return null;
+      }
+    }
+  }
+
+  /** Rule that converts any relational expression in batch calling
+   * convention to enumerable calling convention by creating a
+   * {@link BatchToEnumerableConverter}. */
+  public static class BatchToEnumerableConverterRule extends ConverterRule {
+    /**
+     * Creates a BatchToEnumerableConverterRule.
+     *
+     * @param relBuilderFactory Builder for relational expressions
+     */
+    public BatchToEnumerableConverterRule(
+        RelBuilderFactory relBuilderFactory) {
+      super(RelNode.class,
+          (Predicate<RelNode>) r -> !(r instanceof EnumerableToBatchConverter),
+          BatchConvention.INSTANCE, EnumerableConvention.INSTANCE,
+          relBuilderFactory, "BatchToEnumerableConverterRule");
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      return BatchToEnumerableConverter.create(rel);
+    }
+  }
+
+  /** Rule that converts any relational expression in enumerable calling
+   * convention to batch calling convention by creating an
+   * {@link EnumerableToBatchConverter}. */
+  public static class EnumerableToBatchConverterRule extends ConverterRule {
+    /**
+     * Creates an EnumerableToBatchConverterRule.
+     *
+     * @param relBuilderFactory Builder for relational expressions
+     */
+    public EnumerableToBatchConverterRule(
+        RelBuilderFactory relBuilderFactory) {
+      super(RelNode.class,
+          (Predicate<RelNode>) r -> !(r instanceof BatchToEnumerableConverter),
+          EnumerableConvention.INSTANCE, BatchConvention.INSTANCE,
+          relBuilderFactory, "EnumerableToBatchConverterRule");
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      return EnumerableToBatchConverter.create(rel);
+    }
+  }
+}
+
+// End BatchRules.java
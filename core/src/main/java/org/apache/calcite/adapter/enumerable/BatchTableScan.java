@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelCollationTraitDef;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.runtime.Batches;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.util.BuiltInMethod;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Implementation of {@link org.apache.calcite.rel.core.TableScan} in
+ * {@link BatchConvention batch calling convention}.
+ *
+ * <p>The table must implement {@link ScannableTable}. If it also implements
+ * {@link org.apache.calcite.schema.ColumnarTable}, the scan reads its
+ * batches directly; otherwise the scan converts the table's rows into
+ * batches.
+ */
+public class BatchTableScan extends TableScan implements BatchRel {
+  /** Creates a BatchTableScan.
+   *
+   * <p>Use {@link #create} unless you know what you're doing. */
+  public BatchTableScan(RelOptCluster cluster, RelTraitSet traitSet,
+      RelOptTable table) {
+    super(cluster, traitSet, table);
+    assert getConvention() instanceof BatchConvention;
+    assert table.unwrap(ScannableTable.class) != null;
+  }
+
+  /** Creates a BatchTableScan.
+   *
+   * <p>Batches are returned in the order of the table's rows, so the scan
+   * has the table's collations. */
+  public static BatchTableScan create(RelOptCluster cluster,
+      RelOptTable relOptTable) {
+    final Table table = relOptTable.unwrap(Table.class);
+    final RelTraitSet traitSet =
+        cluster.traitSetOf(BatchConvention.INSTANCE)
+            .replaceIfs(RelCollationTraitDef.INSTANCE,
+                () -> table.getStatistic().getCollations());
+    return new BatchTableScan(cluster, traitSet, relOptTable);
+  }
+
+  @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+    assert inputs.isEmpty();
+    return new BatchTableScan(getCluster(), traitSet, table);
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    return super.computeSelfCost(planner, mq)
+        .multiplyBy(BatchConvention.COST_MULTIPLIER);
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    final JavaTypeFactory typeFactory = implementor.getTypeFactory();
+    final BlockBuilder builder = new BlockBuilder();
+    final PhysType physType =
+        PhysTypeImpl.of(typeFactory, getRowType(), JavaRowFormat.ARRAY, false);
+    final List<Expression> names = new ArrayList<>();
+    for (String name : table.getQualifiedName()) {
+      names.add(Expressions.constant(name));
+    }
+    final Expression table_ =
+        builder.append("table",
+            Expressions.call(BuiltInMethod.SCHEMAS_TABLE.method,
+                DataContext.ROOT,
+                Expressions.newArrayInit(String.class, names)));
+    builder.add(
+        Expressions.return_(null,
+            Expressions.call(BuiltInMethod.BATCHES_SCAN.method,
+                table_,
+                DataContext.ROOT,
+                Expressions.constant(
+                    Batches.columnTypes(typeFactory, getRowType())))));
+    return implementor.result(physType, builder.toBlock());
+  }
+}
+
+// End BatchTableScan.java
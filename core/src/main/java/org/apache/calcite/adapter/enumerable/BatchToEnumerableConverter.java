@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.linq4j.tree.ParameterExpression;
+import org.apache.calcite.plan.ConventionTraitDef;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterImpl;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.util.BuiltInMethod;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Relational expression that converts the batches that an input in
+ * {@link BatchConvention batch calling convention} produces into rows.
+ */
+public class BatchToEnumerableConverter extends ConverterImpl
+    implements EnumerableRel {
+  /** Creates a BatchToEnumerableConverter.
+   *
+   * <p>Use {@link #create} unless you know what you're doing. */
+  public BatchToEnumerableConverter(RelOptCluster cluster,
+      RelTraitSet traits, RelNode input) {
+    super(cluster, ConventionTraitDef.INSTANCE, traits, input);
+    assert getConvention() instanceof EnumerableConvention;
+    assert input.getConvention() instanceof BatchConvention;
+  }
+
+  /** Creates a BatchToEnumerableConverter. */
+  public static BatchToEnumerableConverter create(RelNode input) {
+    return new BatchToEnumerableConverter(input.getCluster(),
+        input.getTraitSet().replace(EnumerableConvention.INSTANCE), input);
+  }
+
+  @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+    return new BatchToEnumerableConverter(getCluster(), traitSet,
+        sole(inputs));
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    // Boxing every value of every row is most of the work that a batch plan
+    // saves, so a plan must do more than a scan to be worth converting
+    return super.computeSelfCost(planner, mq).multiplyBy(0.8d);
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    final JavaTypeFactory typeFactory = implementor.getTypeFactory();
+    final BlockBuilder builder = new BlockBuilder();
+    final Result result =
+        implementor.visitChild(this, 0, (EnumerableRel) getInput(), pref);
+    final PhysType physType =
+        PhysTypeImpl.of(typeFactory, getRowType(), JavaRowFormat.ARRAY);
+    final Expression batches = builder.append("batches", result.block);
+    Expression rows =
+        Expressions.call(BuiltInMethod.BATCHES_TO_ROWS.method, batches);
+    if (physType.getFormat() != JavaRowFormat.ARRAY) {
+      // Consumers such as EnumerableCollect assume that a row with one
+      // field is a scalar, so unwrap each array
+      final ParameterExpression row_ =
+          Expressions.parameter(Object[].class, "row");
+      final List<Expression> values = new ArrayList<>();
+      for (int i = 0; i < getRowType().getFieldCount(); i++) {
+        values.add(Expressions.arrayIndex(row_, Expressions.constant(i)));
+      }
+      rows =
+          Expressions.call(rows, BuiltInMethod.SELECT.method,
+              Expressions.lambda(Function1.class, physType.record(values),
+                  row_));
+    }
+    builder.add(Expressions.return_(null, rows));
+    return implementor.result(physType, builder.toBlock());
+  }
+}
+
+// End BatchToEnumerableConverter.java
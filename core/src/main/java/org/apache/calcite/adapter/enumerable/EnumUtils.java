@@ -17,8 +17,11 @@
 package org.apache.calcite.adapter.enumerable;
 
 import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.config.CalciteConnectionConfig;
+import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
 import org.apache.calcite.linq4j.Ord;
 import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.linq4j.function.LongFunction1;
 import org.apache.calcite.linq4j.tree.BlockStatement;
 import org.apache.calcite.linq4j.tree.ConstantUntypedNull;
 import org.apache.calcite.linq4j.tree.Expression;
@@ -26,16 +29,23 @@
 import org.apache.calcite.linq4j.tree.MethodDeclaration;
 import org.apache.calcite.linq4j.tree.ParameterExpression;
 import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.linq4j.tree.Types;
+import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.sql.SemiJoinType;
 import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.ImmutableIntList;
+import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.SaffronProperties;
 import org.apache.calcite.util.Util;
 
 import com.google.common.collect.ImmutableList;
 
+import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
@@ -176,6 +186,150 @@ static Expression joinSelector(JoinRelType joinType, PhysType physType,
         parameters);
   }
 
+  /** Returns whether an operator may write rows of a given physical type to
+   * disk; that is, whether the row and each of its fields are
+   * {@link Serializable}. */
+  static boolean canSpill(JavaTypeFactory typeFactory, PhysType physType) {
+    final Type rowType = physType.getJavaRowType();
+    if (!(rowType instanceof JavaTypeFactoryImpl.SyntheticRecordType
+        || rowType == Object[].class
+        || isSerializable(rowType))) {
+      return false;
+    }
+    for (RelDataTypeField field : physType.getRowType().getFieldList()) {
+      if (!isSerializable(typeFactory.getJavaClass(field.getType()))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isSerializable(Type type) {
+    return type instanceof Class
+        && (((Class) type).isPrimitive()
+            || Serializable.class.isAssignableFrom((Class) type));
+  }
+
+  /** Returns the number of rows of a relational expression that an operator
+   * may hold in memory before it spills them to disk, or -1 if the operator
+   * should not spill.
+   *
+   * <p>An operator spills only if the estimated size of its input is within
+   * a factor of four of the memory budget (row count estimates are rough,
+   * and checking a limit costs little if the input fits after all), and if
+   * the budget, which is set by {@link CalciteConnectionConfig#memoryBudget()}
+   * or {@link SaffronProperties#enumerableMemoryBudget()}, is positive. */
+  static long maxRowsInMemory(RelMetadataQuery mq, RelNode rel) {
+    final CalciteConnectionConfig config =
+        rel.getCluster().getPlanner().getContext()
+            .unwrap(CalciteConnectionConfig.class);
+    long budget = config == null ? -1L : config.memoryBudget();
+    if (budget < 0) {
+      budget = defaultMemoryBudget();
+    }
+    if (budget <= 0) {
+      return -1;
+    }
+    final Double rowCount = mq.getRowCount(rel);
+    if (rowCount == null) {
+      return -1;
+    }
+    final double rowSize = rowSize(mq, rel);
+    if (rowCount * rowSize * 4d < budget) {
+      return -1;
+    }
+    return Math.max((long) (budget / rowSize), 1L);
+  }
+
+  /** Returns the number of bytes of rows that an operator may hold in memory
+   * before it spills them to disk, as set by
+   * {@link SaffronProperties#enumerableMemoryBudget()}. */
+  static long defaultMemoryBudget() {
+    return SaffronProperties.INSTANCE.enumerableMemoryBudget().get() * 1024L
+        * 1024L;
+  }
+
+  /** Returns the estimated size, in bytes, of a row of a relational
+   * expression. If the size of rows is unknown, assumes 16 bytes per
+   * field. */
+  static double rowSize(RelMetadataQuery mq, RelNode rel) {
+    final Double averageRowSize = mq.getAverageRowSize(rel);
+    return averageRowSize == null
+        ? rel.getRowType().getFieldCount() * 16d
+        : Math.max(averageRowSize, 1d);
+  }
+
+  /** Generates an array of functions, one per key field, that convert the
+   * fields of a row to {@code long} values, for the methods such as
+   * {@link org.apache.calcite.linq4j.EnumerableDefaults#primitiveJoin} that
+   * compare keys without boxing them; or returns null if a field is not of a
+   * primitive type that those methods can compare.
+   *
+   * <p>Integers are widened to {@code long}, and doubles are converted by
+   * {@link Double#doubleToLongBits}, so that two keys are equal if and only
+   * if their boxed values are equal. */
+  static Expression longKeySelectors(PhysType physType, List<Integer> fields) {
+    final List<Expression> selectors = new ArrayList<>();
+    for (int field : fields) {
+      final Class fieldClass = physType.fieldClass(field);
+      final Class keyClass = keyClass(fieldClass);
+      if (keyClass == null) {
+        return null;
+      }
+      final ParameterExpression row =
+          Expressions.parameter(physType.getJavaRowType(), "v1");
+      final Expression value =
+          Types.castIfNecessary(fieldClass,
+              physType.fieldReference(row, field));
+      final Expression key = keyClass == double.class
+          ? Expressions.call(Double.class, "doubleToLongBits", value)
+          : Expressions.convert_(value, long.class);
+      selectors.add(Expressions.lambda(LongFunction1.class, key, row));
+    }
+    return Expressions.newArrayInit(LongFunction1.class, selectors);
+  }
+
+  /** Returns whether {@link #longKeySelectors} can generate key selectors
+   * for the given fields of two physical types, and would convert pairs of
+   * equal values to the same key. */
+  static boolean haveLongKeys(PhysType physType0, List<Integer> fields0,
+      PhysType physType1, List<Integer> fields1) {
+    for (Pair<Integer, Integer> pair : Pair.zip(fields0, fields1)) {
+      final Class keyClass = keyClass(physType0.fieldClass(pair.left));
+      if (keyClass == null
+          || keyClass != keyClass(physType1.fieldClass(pair.right))) {
+        return false;
+      }
+    }
+    return !fields0.isEmpty();
+  }
+
+  /** Returns whether {@link #longKeySelectors} can generate key selectors
+   * for every field of the rows of {@code physType0}, and whether those
+   * selectors also apply to the rows of {@code physType1}. */
+  static boolean haveLongRows(PhysType physType0, PhysType physType1) {
+    final List<Integer> fields =
+        ImmutableIntList.identity(physType0.getRowType().getFieldCount());
+    return physType0.getJavaRowType().equals(physType1.getJavaRowType())
+        && haveLongKeys(physType0, fields, physType1, fields);
+  }
+
+  /** Returns the class to which {@link #longKeySelectors} converts a field
+   * before it converts it to {@code long}: {@code long} for integers,
+   * {@code double} for doubles, or null if it cannot convert the field. */
+  private static Class keyClass(Class fieldClass) {
+    if (fieldClass == int.class
+        || fieldClass == long.class
+        || fieldClass == short.class
+        || fieldClass == byte.class) {
+      return long.class;
+    }
+    if (fieldClass == double.class) {
+      return double.class;
+    }
+    return null;
+  }
+
   /** Converts from internal representation to JDBC representation used by
    * arguments of user-defined functions. For example, converts date values from
    * {@code int} to {@link java.sql.Date}. */
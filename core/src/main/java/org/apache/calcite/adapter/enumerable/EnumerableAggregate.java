@@ -44,6 +44,7 @@
 import org.apache.calcite.sql.SqlAggFunction;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.ImmutableIntList;
 import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.Util;
 
@@ -399,17 +400,15 @@ public RexToLixTranslator rowTranslator() {
                       Expressions.call(lambdaFactory,
                           BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_SINGLE_GROUP_RESULT_SELECTOR.method,
                           resultSelector)))));
-    } else if (aggCalls.isEmpty()
+    } else if (!isInputSorted()
+        && aggCalls.isEmpty()
         && groupSet.equals(
             ImmutableBitSet.range(child.getRowType().getFieldCount()))) {
       builder.add(
           Expressions.return_(
               null,
-              Expressions.call(
-                  inputPhysType.convertTo(childExp, physType),
-                  BuiltInMethod.DISTINCT.method,
-                  Expressions.<Expression>list()
-                      .appendIfNotNull(physType.comparer()))));
+              distinct(inputPhysType.convertTo(childExp, physType),
+                  physType)));
     } else {
       final Expression keySelector_ =
           builder.append("keySelector",
@@ -422,23 +421,98 @@ public RexToLixTranslator rowTranslator() {
                   resultBlock.toBlock(),
                   key_,
                   acc_));
+      final Expressions.FluentList<Expression> arguments =
+          Expressions.list(keySelector_,
+              Expressions.call(lambdaFactory,
+                  BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_INITIALIZER.method),
+              Expressions.call(lambdaFactory,
+                  BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_ADDER.method),
+              Expressions.call(lambdaFactory,
+                  BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_RESULT_SELECTOR.method,
+                  resultSelector_));
+      final Expression comparer = keyPhysType.comparer();
+      if (isInputSorted()) {
+        builder.add(
+            Expressions.return_(null,
+                Expressions.call(BuiltInMethod.SORTED_GROUP_BY.method,
+                    Expressions.<Expression>list(childExp)
+                        .appendAll(arguments)
+                        .append(comparer == null
+                            ? Expressions.constant(null)
+                            : comparer))));
+        return implementor.result(physType, builder.toBlock());
+      }
       builder.add(
           Expressions.return_(null,
-              Expressions.call(childExp,
-                  BuiltInMethod.GROUP_BY2.method,
-                  Expressions.list(keySelector_,
-                      Expressions.call(lambdaFactory,
-                          BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_INITIALIZER.method),
-                      Expressions.call(lambdaFactory,
-                          BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_ADDER.method),
-                      Expressions.call(lambdaFactory,
-                          BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_RESULT_SELECTOR.method,
-                          resultSelector_))
-                      .appendIfNotNull(keyPhysType.comparer()))));
+              groupBy(implementor, childExp, inputPhysType, arguments,
+                  comparer)));
     }
     return implementor.result(physType, builder.toBlock());
   }
 
+  /** Returns whether the input is sorted on the group keys, so that rows in
+   * the same group are adjacent and groups can be computed one at a time. */
+  protected boolean isInputSorted() {
+    return false;
+  }
+
+  /** Returns an expression that groups the rows of {@code input}.
+   * {@code arguments} are the key selector, accumulator initializer,
+   * accumulator adder and result selector. */
+  private Expression groupBy(EnumerableRelImplementor implementor,
+      Expression input, PhysType inputPhysType,
+      Expressions.FluentList<Expression> arguments, Expression comparer) {
+    // If there may be too many groups to hold in memory, and input rows
+    // can be written to disk, use an aggregation that writes the rows of
+    // the groups that do not fit to disk, and aggregates them later.
+    final long maxGroups =
+        EnumUtils.maxRowsInMemory(getCluster().getMetadataQuery(), this);
+    final boolean spill = maxGroups >= 0
+        && EnumUtils.canSpill(implementor.getTypeFactory(), inputPhysType);
+    // If every key is of a primitive type, find groups without boxing keys
+    final List<Integer> groupList = groupSet.asList();
+    if (EnumUtils.haveLongKeys(inputPhysType, groupList, inputPhysType,
+        groupList)) {
+      return Expressions.call(BuiltInMethod.PRIMITIVE_GROUP_BY.method,
+          input,
+          arguments.get(0),
+          EnumUtils.longKeySelectors(inputPhysType, groupList),
+          arguments.get(1),
+          arguments.get(2),
+          arguments.get(3),
+          Expressions.constant(spill ? maxGroups : -1L));
+    }
+    if (spill) {
+      return Expressions.call(BuiltInMethod.SPILLABLE_GROUP_BY.method,
+          Expressions.<Expression>list(input)
+              .appendAll(arguments)
+              .append(comparer == null
+                  ? Expressions.constant(null)
+                  : comparer)
+              .append(Expressions.constant(maxGroups)));
+    }
+    return Expressions.call(input,
+        BuiltInMethod.GROUP_BY2.method,
+        arguments.appendIfNotNull(comparer));
+  }
+
+  /** Returns an expression that removes duplicate rows from {@code input}.
+   * If every field is of a primitive type, compares rows without boxing
+   * their fields. */
+  private static Expression distinct(Expression input, PhysType physType) {
+    if (EnumUtils.haveLongRows(physType, physType)) {
+      return Expressions.call(BuiltInMethod.PRIMITIVE_DISTINCT.method,
+          input,
+          EnumUtils.longKeySelectors(physType,
+              ImmutableIntList.identity(
+                  physType.getRowType().getFieldCount())));
+    }
+    return Expressions.call(input,
+        BuiltInMethod.DISTINCT.method,
+        Expressions.<Expression>list()
+            .appendIfNotNull(physType.comparer()));
+  }
+
   private static boolean hasOrderedCall(List<AggImpState> aggs) {
     for (AggImpState agg : aggs) {
       if (!agg.call.collation.equals(RelCollations.EMPTY)) {
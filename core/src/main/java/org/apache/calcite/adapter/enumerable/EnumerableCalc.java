@@ -147,7 +147,9 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     final RelOptPredicateList predicates = mq.getPulledUpPredicates(child);
     final RexSimplify simplify =
         new RexSimplify(rexBuilder, predicates, RexUtil.EXECUTOR);
-    final RexProgram program = this.program.normalize(rexBuilder, simplify);
+    final RexProgram program =
+        implementor.stashLiterals(
+            this.program.normalize(rexBuilder, simplify));
 
     BlockStatement moveNextBody;
     if (program.getCondition() == null) {
@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.interpreter.Bindables;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.InvalidRelException;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelCollationTraitDef;
+import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelWriter;
+import org.apache.calcite.rel.SingleRel;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.AggregateCall;
+import org.apache.calcite.schema.SplittableTable;
+import org.apache.calcite.sql.SqlAggFunction;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.ImmutableIntList;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Relational expression in
+ * {@link EnumerableConvention enumerable calling convention} that runs its
+ * input on several threads and gathers the results.
+ *
+ * <p>Its input is a pipeline of {@link EnumerableCalc},
+ * {@link EnumerableFilter} and {@link EnumerableProject} operators, possibly
+ * topped by an {@link EnumerableAggregate} that computes partial results, over
+ * an {@link EnumerableMorselScan}. The table is divided into morsels, and
+ * each thread repeatedly takes the next morsel and runs the pipeline over it.
+ * The order of the output rows is not defined.
+ *
+ * <p>Plans are not created with gathers by rules; {@link #parallelize} adds
+ * them to a plan that has already been optimized.
+ */
+public class EnumerableGather extends SingleRel implements EnumerableRel {
+  /** Number of threads that run the input. */
+  public final int parallelism;
+
+  /** Creates an EnumerableGather.
+   *
+   * <p>Use {@link #create} unless you know what you're doing. */
+  public EnumerableGather(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, int parallelism) {
+    super(cluster, traitSet, input);
+    assert getConvention() instanceof EnumerableConvention;
+    assert parallelism > 1;
+    this.parallelism = parallelism;
+  }
+
+  /** Creates an EnumerableGather. */
+  public static EnumerableGather create(RelNode input, int parallelism) {
+    final RelOptCluster cluster = input.getCluster();
+    return new EnumerableGather(cluster,
+        cluster.traitSetOf(EnumerableConvention.INSTANCE), input,
+        parallelism);
+  }
+
+  @Override public EnumerableGather copy(RelTraitSet traitSet,
+      List<RelNode> inputs) {
+    return new EnumerableGather(getCluster(), traitSet, sole(inputs),
+        parallelism);
+  }
+
+  @Override public RelWriter explainTerms(RelWriter pw) {
+    return super.explainTerms(pw)
+        .item("parallelism", parallelism);
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    final BlockBuilder builder = new BlockBuilder();
+    final Result result =
+        implementor.visitChild(this, 0, (EnumerableRel) getInput(), pref);
+    final PhysType physType =
+        PhysTypeImpl.of(implementor.getTypeFactory(), getRowType(),
+            result.format);
+
+    // The input's code becomes the body of a function whose parameter, also
+    // called "root", is a data context that says which morsel to scan.
+    final Expression pipeline =
+        builder.append("pipeline",
+            Expressions.lambda(Function1.class, result.block,
+                DataContext.ROOT));
+    builder.add(
+        Expressions.return_(null,
+            Expressions.call(BuiltInMethod.GATHER.method,
+                DataContext.ROOT,
+                pipeline,
+                Expressions.constant(parallelism))));
+    return implementor.result(physType, builder.toBlock());
+  }
+
+  /** Rewrites a plan so that pipelines that scan a {@link SplittableTable}
+   * run on {@code parallelism} threads.
+   *
+   * <p>A pipeline is a chain of {@link EnumerableCalc},
+   * {@link EnumerableFilter} and {@link EnumerableProject} operators over a
+   * scan of the whole table, either an {@link EnumerableTableScan} or an
+   * {@link EnumerableInterpreter} over a
+   * {@link org.apache.calcite.interpreter.Bindables.BindableTableScan}. Each
+   * pipeline whose output is not required
+   * to be sorted is replaced by an {@link EnumerableGather}. If an
+   * {@link EnumerableAggregate} reads from the pipeline, and its aggregate
+   * functions can be rolled up, each thread computes a partial aggregate, and
+   * a final aggregate above the gather combines them.
+   *
+   * <p>If {@code parallelism} is 1 or less, returns the plan unchanged. */
+  public static RelNode parallelize(RelNode rel, int parallelism) {
+    if (parallelism <= 1) {
+      return rel;
+    }
+    if (rel instanceof EnumerableAggregate
+        && !(rel instanceof EnumerableSortedAggregate)) {
+      final RelNode rel2 =
+          splitAggregate((EnumerableAggregate) rel, parallelism);
+      if (rel2 != null) {
+        return rel2;
+      }
+    }
+    if (scannedTable(rel) == null && isUnsorted(rel)) {
+      final RelNode pipeline = morselPipeline(rel);
+      if (pipeline != null) {
+        return create(pipeline, parallelism);
+      }
+    }
+    final List<RelNode> inputs = new ArrayList<>();
+    boolean changed = false;
+    for (RelNode input : rel.getInputs()) {
+      final RelNode input2 = parallelize(input, parallelism);
+      changed |= input2 != input;
+      inputs.add(input2);
+    }
+    return changed ? rel.copy(rel.getTraitSet(), inputs) : rel;
+  }
+
+  /** Returns whether a relational expression's output is not required to be
+   * sorted. */
+  private static boolean isUnsorted(RelNode rel) {
+    final List<RelCollation> collations =
+        rel.getTraitSet().getTraits(RelCollationTraitDef.INSTANCE);
+    if (collations != null) {
+      for (RelCollation collation : collations) {
+        if (!collation.getFieldCollations().isEmpty()) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /** Returns a copy of a pipeline in which the table scan reads one morsel,
+   * or null if {@code rel} is not a pipeline over a
+   * {@link SplittableTable}. */
+  private static RelNode morselPipeline(RelNode rel) {
+    final RelOptTable table = scannedTable(rel);
+    if (table != null) {
+      if (table.unwrap(SplittableTable.class) == null) {
+        return null;
+      }
+      return EnumerableMorselScan.create(rel.getCluster(), table);
+    }
+    if (rel instanceof EnumerableCalc
+        || rel instanceof EnumerableFilter
+        || rel instanceof EnumerableProject) {
+      // A correlating variable would refer to a row of an operator outside
+      // the pipeline
+      if (!RelOptUtil.getVariablesUsed(rel).isEmpty()) {
+        return null;
+      }
+      final RelNode input = morselPipeline(rel.getInput(0));
+      if (input == null) {
+        return null;
+      }
+      return rel.copy(rel.getTraitSet().replace(RelCollations.EMPTY),
+          ImmutableList.of(input));
+    }
+    return null;
+  }
+
+  /** Returns the table if a relational expression reads all rows and columns
+   * of a table, otherwise null. */
+  private static RelOptTable scannedTable(RelNode rel) {
+    if (rel instanceof EnumerableTableScan) {
+      return rel.getTable();
+    }
+    if (rel instanceof EnumerableInterpreter
+        && rel.getInput(0) instanceof Bindables.BindableTableScan) {
+      final Bindables.BindableTableScan scan =
+          (Bindables.BindableTableScan) rel.getInput(0);
+      if (scan.filters.isEmpty()
+          && scan.projects.equals(
+              ImmutableIntList.identity(
+                  scan.getTable().getRowType().getFieldCount()))) {
+        return scan.getTable();
+      }
+    }
+    return null;
+  }
+
+  /** Splits an aggregate over a pipeline into a partial aggregate that runs
+   * in parallel over each morsel, and a final aggregate that combines the
+   * partial results; or returns null if that is not possible. */
+  private static RelNode splitAggregate(EnumerableAggregate aggregate,
+      int parallelism) {
+    if (aggregate.getGroupType() != Aggregate.Group.SIMPLE) {
+      return null;
+    }
+    final int groupCount = aggregate.getGroupCount();
+    final List<AggregateCall> finalCalls = new ArrayList<>();
+    for (AggregateCall call : aggregate.getAggCallList()) {
+      if (call.isDistinct()
+          || !call.getCollation().getFieldCollations().isEmpty()) {
+        return null;
+      }
+      final SqlAggFunction rollup = rollup(call.getAggregation());
+      if (rollup == null) {
+        return null;
+      }
+      finalCalls.add(
+          AggregateCall.create(rollup, false, false,
+              ImmutableList.of(groupCount + finalCalls.size()), -1,
+              call.getType(), call.getName()));
+    }
+    final RelNode pipeline = morselPipeline(aggregate.getInput());
+    if (pipeline == null) {
+      return null;
+    }
+    final RelNode partial =
+        aggregate.copy(aggregate.getTraitSet(), pipeline,
+            aggregate.indicator, aggregate.getGroupSet(), null,
+            aggregate.getAggCallList());
+    try {
+      return new EnumerableAggregate(aggregate.getCluster(),
+          aggregate.getTraitSet(), create(partial, parallelism), false,
+          ImmutableBitSet.range(groupCount), null, finalCalls);
+    } catch (InvalidRelException e) {
+      return null;
+    }
+  }
+
+  /** Returns the function that combines partial results of an aggregate
+   * function, or null if partial results cannot be combined. */
+  private static SqlAggFunction rollup(SqlAggFunction aggregation) {
+    switch (aggregation.getKind()) {
+    case COUNT:
+      return SqlStdOperatorTable.SUM0;
+    case SUM:
+    case SUM0:
+    case MIN:
+    case MAX:
+      return aggregation;
+    default:
+      return null;
+    }
+  }
+}
+
+// End EnumerableGather.java
@@ -18,6 +18,7 @@
 
 import org.apache.calcite.DataContext;
 import org.apache.calcite.avatica.Helper;
+import org.apache.calcite.avatica.util.DateTimeUtils;
 import org.apache.calcite.interpreter.Compiler;
 import org.apache.calcite.interpreter.InterpretableConvention;
 import org.apache.calcite.interpreter.InterpretableRel;
@@ -28,8 +29,21 @@
 import org.apache.calcite.linq4j.AbstractEnumerable;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.function.Deterministic;
+import org.apache.calcite.linq4j.function.NonDeterministic;
+import org.apache.calcite.linq4j.tree.BinaryExpression;
 import org.apache.calcite.linq4j.tree.ClassDeclaration;
+import org.apache.calcite.linq4j.tree.ConstantExpression;
+import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.linq4j.tree.FieldDeclaration;
+import org.apache.calcite.linq4j.tree.MethodCallExpression;
+import org.apache.calcite.linq4j.tree.NewArrayExpression;
+import org.apache.calcite.linq4j.tree.NewExpression;
+import org.apache.calcite.linq4j.tree.ParameterExpression;
+import org.apache.calcite.linq4j.tree.TernaryExpression;
+import org.apache.calcite.linq4j.tree.UnaryExpression;
+import org.apache.calcite.linq4j.tree.VisitorImpl;
 import org.apache.calcite.plan.ConventionTraitDef;
 import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.plan.RelTraitSet;
@@ -41,8 +55,18 @@
 import org.apache.calcite.runtime.Hook;
 import org.apache.calcite.runtime.Typed;
 import org.apache.calcite.runtime.Utilities;
+import org.apache.calcite.schema.Schemas;
+import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.SaffronProperties;
 import org.apache.calcite.util.Util;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 import org.codehaus.commons.compiler.CompileException;
 import org.codehaus.commons.compiler.CompilerFactoryFactory;
 import org.codehaus.commons.compiler.IClassBodyEvaluator;
@@ -50,8 +74,14 @@
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Relational expression that converts an enumerable input to interpretable
@@ -62,6 +92,19 @@
  */
 public class EnumerableInterpretable extends ConverterImpl
     implements InterpretableRel {
+  /** Cache of compiled classes, keyed by generated source code and by
+   * whether the class returns scalars; null if caching is disabled.
+   *
+   * <p>A generated class receives all non-literal values through the
+   * {@link DataContext}, so one instance can be bound many times, by
+   * different statements and on different threads. Classes that have a
+   * static field that may hold state, such as the generator of
+   * {@code RAND(seed)}, are not cached, because the state belongs to one
+   * statement; constants, such as a {@code BigDecimal} literal, are fine. */
+  private static final Cache<Pair<String, Boolean>, Bindable> BINDABLE_CACHE =
+      createBindableCache(
+          SaffronProperties.INSTANCE.bindableCacheMaximumSize().get());
+
   protected EnumerableInterpretable(RelOptCluster cluster, RelNode input) {
     super(cluster, ConventionTraitDef.INSTANCE,
         cluster.traitSetOf(InterpretableConvention.INSTANCE), input);
@@ -78,7 +121,9 @@ public Node implement(final InterpreterImplementor implementor) {
         EnumerableRel.Prefer.ARRAY);
     final ArrayBindable arrayBindable = box(bindable);
     final Enumerable<Object[]> enumerable =
-        arrayBindable.bind(implementor.dataContext);
+        arrayBindable.bind(
+            Schemas.withVariables(implementor.dataContext,
+                implementor.internalParameters));
     return new EnumerableNode(enumerable, implementor.compiler, this);
   }
 
@@ -116,8 +161,65 @@ static ArrayBindable getArrayBindable(ClassDeclaration expr, String s,
     return box(bindable);
   }
 
+  private static Cache<Pair<String, Boolean>, Bindable> createBindableCache(
+      int size) {
+    if (size == 0) {
+      return null;
+    }
+    final CacheBuilder<Object, Object> builder =
+        CacheBuilder.newBuilder().recordStats();
+    if (size > 0) {
+      builder.maximumSize(size);
+    }
+    return builder.build();
+  }
+
+  /** Returns the hit and miss counts of the cache of compiled classes, or
+   * null if caching is disabled. */
+  public static CacheStats getBindableCacheStats() {
+    return BINDABLE_CACHE == null ? null : BINDABLE_CACHE.stats();
+  }
+
+  /** Removes all compiled classes from the cache. */
+  public static void clearBindableCache() {
+    if (BINDABLE_CACHE != null) {
+      BINDABLE_CACHE.invalidateAll();
+    }
+  }
+
+  /** Returns a compiled instance of a generated class, from the cache if the
+   * same source code has been compiled before. */
   static Bindable getBindable(ClassDeclaration expr, String s, int fieldCount)
       throws CompileException, IOException {
+    if (BINDABLE_CACHE == null || hasStatefulField(expr)) {
+      return compile(expr, s, fieldCount);
+    }
+    try {
+      return BINDABLE_CACHE.get(Pair.of(s, fieldCount == 1),
+          () -> compile(expr, s, fieldCount));
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof CompileException) {
+        throw (CompileException) cause;
+      }
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new RuntimeException(cause);
+    } catch (UncheckedExecutionException | ExecutionError e) {
+      Util.throwIfUnchecked(e.getCause());
+      throw e;
+    }
+  }
+
+  private static boolean hasStatefulField(ClassDeclaration expr) {
+    final StatefulFieldDetector detector = new StatefulFieldDetector();
+    expr.accept(detector);
+    return detector.found;
+  }
+
+  private static Bindable compile(ClassDeclaration expr, String s,
+      int fieldCount) throws CompileException, IOException {
     ICompilerFactory compilerFactory;
     try {
       compilerFactory = CompilerFactoryFactory.getDefaultCompilerFactory();
@@ -179,6 +281,97 @@ public void close() {
     };
   }
 
+  /** Visitor that finds whether a class declares a static field that may
+   * hold state.
+   *
+   * <p>A static field is stateless if it is final and its initializer is
+   * built only from constants, immutable objects (those of a class all of
+   * whose methods are deterministic) and calls to deterministic methods. The
+   * fields that {@link org.apache.calcite.linq4j.tree.DeterministicCodeOptimizer}
+   * creates for constant expressions are usually stateless; but it also
+   * creates fields for objects, such as {@code RandomFunction}, whose
+   * constructor is deterministic but whose methods are not. */
+  private static class StatefulFieldDetector extends VisitorImpl<Void> {
+    private static final Set<Class> DETERMINISTIC_CLASSES =
+        ImmutableSet.of(Boolean.class, Byte.class, Character.class,
+            Short.class, Integer.class, Long.class, Float.class, Double.class,
+            BigInteger.class, BigDecimal.class, String.class, Math.class,
+            DateTimeUtils.class);
+
+    boolean found;
+
+    @Override public Void visit(FieldDeclaration fieldDeclaration) {
+      if (Modifier.isStatic(fieldDeclaration.modifier)
+          && (!Modifier.isFinal(fieldDeclaration.modifier)
+              || !isStateless(fieldDeclaration.initializer))) {
+        found = true;
+      }
+      return null;
+    }
+
+    private static boolean isStateless(Expression expression) {
+      if (expression instanceof ConstantExpression
+          || expression instanceof ParameterExpression) {
+        // A parameter is another static field, which is checked in turn
+        return true;
+      }
+      if (expression instanceof UnaryExpression) {
+        return isStateless(((UnaryExpression) expression).expression);
+      }
+      if (expression instanceof BinaryExpression) {
+        final BinaryExpression binary = (BinaryExpression) expression;
+        return isStateless(binary.expression0)
+            && isStateless(binary.expression1);
+      }
+      if (expression instanceof TernaryExpression) {
+        final TernaryExpression ternary = (TernaryExpression) expression;
+        return isStateless(ternary.expression0)
+            && isStateless(ternary.expression1)
+            && isStateless(ternary.expression2);
+      }
+      if (expression instanceof NewExpression) {
+        final NewExpression new_ = (NewExpression) expression;
+        return new_.memberDeclarations == null
+            && new_.type instanceof Class
+            && isImmutable((Class) new_.type)
+            && allStateless(new_.arguments);
+      }
+      if (expression instanceof NewArrayExpression) {
+        final NewArrayExpression newArray = (NewArrayExpression) expression;
+        return newArray.expressions != null
+            && allStateless(newArray.expressions);
+      }
+      if (expression instanceof MethodCallExpression) {
+        final MethodCallExpression call = (MethodCallExpression) expression;
+        return (call.targetExpression == null
+                || isStateless(call.targetExpression))
+            && isDeterministic(call.method)
+            && allStateless(call.expressions);
+      }
+      return false;
+    }
+
+    private static boolean allStateless(List<Expression> expressions) {
+      for (Expression expression : expressions) {
+        if (!isStateless(expression)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static boolean isImmutable(Class clazz) {
+      return DETERMINISTIC_CLASSES.contains(clazz)
+          || clazz.isAnnotationPresent(Deterministic.class);
+    }
+
+    private static boolean isDeterministic(Method method) {
+      return isImmutable(method.getDeclaringClass())
+          && !method.isAnnotationPresent(NonDeterministic.class)
+          || method.isAnnotationPresent(Deterministic.class);
+    }
+  }
+
   /** Interpreter node that reads from an {@link Enumerable}.
    *
    * <p>From the interpreter's perspective, it is a leaf node. */
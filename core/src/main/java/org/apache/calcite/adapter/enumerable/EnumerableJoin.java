@@ -16,6 +16,12 @@
  */
 package org.apache.calcite.adapter.enumerable;
 
+import org.apache.calcite.DataContext;
+import org.apache.calcite.config.CalciteConnectionConfig;
+import org.apache.calcite.interpreter.Bindables;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Ord;
+import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.linq4j.tree.Expressions;
@@ -33,18 +39,29 @@
 import org.apache.calcite.rel.core.JoinRelType;
 import org.apache.calcite.rel.metadata.RelMdCollation;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexInputRef;
 import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexProgram;
+import org.apache.calcite.runtime.RuntimeFilter;
+import org.apache.calcite.sql.type.SqlTypeFamily;
 import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.ImmutableBitSet;
 import org.apache.calcite.util.ImmutableIntList;
 import org.apache.calcite.util.Util;
 
 import com.google.common.collect.ImmutableList;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 /** Implementation of {@link org.apache.calcite.rel.core.Join} in
  * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}. */
 public class EnumerableJoin extends EquiJoin implements EnumerableRel {
+  /** Runtime filters are built if one input is estimated to have at most
+   * this fraction of the other input's distinct keys. */
+  private static final double RUNTIME_FILTER_RATIO = 0.5d;
+
   /** Creates an EnumerableJoin.
    *
    * <p>Use {@link #create} unless you know what you're doing. */
@@ -100,6 +117,13 @@ public static EnumerableJoin create(
         leftKeys, rightKeys, variablesSet, joinType);
   }
 
+  /** Returns whether a join whose build side is a given relational
+   * expression may write its inputs to disk. Such a join returns its rows
+   * one partition at a time, so does not keep the order of its left input. */
+  public static boolean maySpill(RelMetadataQuery mq, RelNode right) {
+    return EnumUtils.maxRowsInMemory(mq, right) >= 0;
+  }
+
   @Deprecated // to be removed before 2.0
   public static EnumerableJoin create(
       RelNode left,
@@ -189,44 +213,255 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     BlockBuilder builder = new BlockBuilder();
     final Result leftResult =
         implementor.visitChild(this, 0, (EnumerableRel) left, pref);
+    // If one input has few of the other's keys, it populates a runtime filter
+    // on each key, and the filter discards rows of the other input that
+    // cannot match. The right input is read first, to build the hash table;
+    // if the left input populates the filters, it is buffered and read
+    // before the right input.
+    final int source = runtimeFilterSource();
+    final List<Expression> runtimeFilters = new ArrayList<>();
+    for (int i = 0; source >= 0 && i < leftKeys.size(); i++) {
+      runtimeFilters.add(
+          builder.append("runtimeFilter",
+              Expressions.new_(RuntimeFilter.class), false));
+    }
     Expression leftExpression =
-        builder.append(
-            "left", leftResult.block);
+        input(builder, "left", left, leftResult, leftKeys,
+            source == 1 ? runtimeFilters : ImmutableList.of());
     final Result rightResult =
         implementor.visitChild(this, 1, (EnumerableRel) right, pref);
     Expression rightExpression =
-        builder.append(
-            "right", rightResult.block);
+        input(builder, "right", right, rightResult, rightKeys,
+            source == 0 ? runtimeFilters : ImmutableList.of());
+    final List<Expression> leftKeySelectors = new ArrayList<>();
+    final List<Expression> rightKeySelectors = new ArrayList<>();
+    for (int i = 0; i < runtimeFilters.size(); i++) {
+      leftKeySelectors.add(
+          leftResult.physType.generateAccessor(
+              ImmutableList.of(leftKeys.get(i))));
+      rightKeySelectors.add(
+          rightResult.physType.generateAccessor(
+              ImmutableList.of(rightKeys.get(i))));
+    }
+    if (source == 1) {
+      for (Ord<Expression> runtimeFilter : Ord.zip(runtimeFilters)) {
+        rightExpression =
+            builder.append("right",
+                Expressions.call(runtimeFilter.e,
+                    BuiltInMethod.RUNTIME_FILTER_COLLECT.method,
+                    rightExpression, rightKeySelectors.get(runtimeFilter.i)));
+      }
+      leftExpression =
+          builder.append("left",
+              Expressions.call(BuiltInMethod.RUNTIME_FILTER_FILTER.method,
+                  leftExpression,
+                  Expressions.newArrayInit(RuntimeFilter.class,
+                      runtimeFilters),
+                  Expressions.newArrayInit(Function1.class,
+                      leftKeySelectors)));
+    } else if (source == 0) {
+      // Read the left input once, populating the filters on all keys
+      final Expression filters =
+          builder.append("runtimeFilters",
+              Expressions.newArrayInit(RuntimeFilter.class, runtimeFilters));
+      leftExpression =
+          builder.append("left",
+              Expressions.call(BuiltInMethod.RUNTIME_FILTER_BUFFER.method,
+                  leftExpression, filters,
+                  Expressions.newArrayInit(Function1.class,
+                      leftKeySelectors)));
+      rightExpression =
+          builder.append("right",
+              Expressions.call(BuiltInMethod.RUNTIME_FILTER_FILTER.method,
+                  rightExpression, filters,
+                  Expressions.newArrayInit(Function1.class,
+                      rightKeySelectors)));
+    }
     final PhysType physType =
         PhysTypeImpl.of(
             implementor.getTypeFactory(), getRowType(), pref.preferArray());
     final PhysType keyPhysType =
         leftResult.physType.project(
             leftKeys, JavaRowFormat.LIST);
+    final Expression selector =
+        EnumUtils.joinSelector(joinType,
+            physType,
+            ImmutableList.of(
+                leftResult.physType, rightResult.physType));
+    final Expressions.FluentList<Expression> arguments =
+        Expressions.list(
+            rightExpression,
+            leftResult.physType.generateAccessor(leftKeys),
+            rightResult.physType.generateAccessor(rightKeys),
+            selector)
+            .append(
+                Util.first(keyPhysType.comparer(),
+                    Expressions.constant(null)))
+            .append(
+                Expressions.constant(joinType.generatesNullsOnLeft()))
+            .append(
+                Expressions.constant(
+                    joinType.generatesNullsOnRight()));
+
+    // If the build side (the right input) may not fit in memory, and both
+    // inputs can be written to disk, use a join that partitions its inputs
+    // to disk once the build side exceeds the memory budget.
+    final long maxInnerRows =
+        EnumUtils.maxRowsInMemory(getCluster().getMetadataQuery(), right);
+    if (maxInnerRows >= 0
+        && EnumUtils.canSpill(implementor.getTypeFactory(),
+            leftResult.physType)
+        && EnumUtils.canSpill(implementor.getTypeFactory(),
+            rightResult.physType)) {
+      return implementor.result(
+          physType,
+          builder.append(
+              Expressions.call(
+                  BuiltInMethod.SPILLABLE_JOIN.method,
+                  Expressions.<Expression>list(leftExpression)
+                      .appendAll(arguments)
+                      .append(Expressions.constant(maxInnerRows))))
+              .toBlock());
+    }
+    // If the keys are primitive, use a hash table that does not box them.
+    if (EnumUtils.haveLongKeys(leftResult.physType, leftKeys,
+        rightResult.physType, rightKeys)) {
+      return implementor.result(
+          physType,
+          builder.append(
+              Expressions.call(
+                  BuiltInMethod.PRIMITIVE_JOIN.method,
+                  leftExpression,
+                  rightExpression,
+                  EnumUtils.longKeySelectors(leftResult.physType, leftKeys),
+                  EnumUtils.longKeySelectors(rightResult.physType, rightKeys),
+                  selector,
+                  Expressions.constant(joinType.generatesNullsOnLeft()),
+                  Expressions.constant(joinType.generatesNullsOnRight())))
+              .toBlock());
+    }
     return implementor.result(
         physType,
         builder.append(
             Expressions.call(
                 leftExpression,
                 BuiltInMethod.JOIN.method,
-                Expressions.list(
-                    rightExpression,
-                    leftResult.physType.generateAccessor(leftKeys),
-                    rightResult.physType.generateAccessor(rightKeys),
-                    EnumUtils.joinSelector(joinType,
-                        physType,
-                        ImmutableList.of(
-                            leftResult.physType, rightResult.physType)))
-                    .append(
-                        Util.first(keyPhysType.comparer(),
-                            Expressions.constant(null)))
-                    .append(
-                        Expressions.constant(joinType.generatesNullsOnLeft()))
-                    .append(
-                        Expressions.constant(
-                            joinType.generatesNullsOnRight())))).toBlock());
+                arguments)).toBlock());
   }
 
+  /** Returns which input populates a runtime filter on each key: 1 if the
+   * right input, 0 if the left input, -1 if there are no runtime filters.
+   *
+   * <p>A runtime filter discards rows of one input whose key is not in the
+   * other. That is only possible if the join does not generate nulls for
+   * rows of the filtered input that do not match, and is only worthwhile if
+   * the other input is estimated to contain few of its keys. */
+  private int runtimeFilterSource() {
+    if (leftKeys.isEmpty()) {
+      return -1;
+    }
+    final CalciteConnectionConfig config =
+        getCluster().getPlanner().getContext()
+            .unwrap(CalciteConnectionConfig.class);
+    if (config != null && !config.runtimeFilter()) {
+      return -1;
+    }
+    final RelMetadataQuery mq = getCluster().getMetadataQuery();
+    final double leftKeyCount = keyCount(mq, left, leftKeys);
+    final double rightKeyCount = keyCount(mq, right, rightKeys);
+    if (!joinType.generatesNullsOnRight()
+        && rightKeyCount <= leftKeyCount * RUNTIME_FILTER_RATIO) {
+      return 1;
+    }
+    if (!joinType.generatesNullsOnLeft()
+        && leftKeyCount <= rightKeyCount * RUNTIME_FILTER_RATIO) {
+      return 0;
+    }
+    return -1;
+  }
+
+  /** Returns the estimated number of distinct keys of an input, or, if that
+   * is not known, its number of rows. */
+  private static double keyCount(RelMetadataQuery mq, RelNode input,
+      ImmutableIntList keys) {
+    final Double keyCount =
+        mq.getDistinctRowCount(input, ImmutableBitSet.of(keys), null);
+    return keyCount != null ? keyCount : mq.getRowCount(input);
+  }
+
+  /** Generates code for an input that runtime filters will be applied to.
+   *
+   * <p>If the input is a pipeline over a table scan, and join keys are
+   * columns of the table, the input runs in a data context in which
+   * {@link RuntimeFilter#of} returns the runtime filters on those columns, so
+   * that the table can skip rows before it converts them. */
+  private Expression input(BlockBuilder builder, String name, RelNode input,
+      Result result, ImmutableIntList keys, List<Expression> runtimeFilters) {
+    Expression dataContext = DataContext.ROOT;
+    for (Ord<Expression> runtimeFilter : Ord.zip(runtimeFilters)) {
+      final int column = scanColumn(input, keys.get(runtimeFilter.i));
+      if (column >= 0) {
+        dataContext =
+            Expressions.call(BuiltInMethod.RUNTIME_FILTER_WITH_FILTER.method,
+                dataContext, Expressions.constant(column), runtimeFilter.e);
+      }
+    }
+    if (dataContext == DataContext.ROOT) {
+      return builder.append(name, result.block);
+    }
+    final Expression pipeline =
+        builder.append("pipeline",
+            Expressions.lambda(Function1.class, result.block,
+                DataContext.ROOT));
+    return builder.append(name,
+        Expressions.convert_(
+            Expressions.call(pipeline, BuiltInMethod.FUNCTION1_APPLY.method,
+                dataContext),
+            Enumerable.class));
+  }
+
+  /** If a relational expression is a chain of calcs, filters and projects
+   * over a table scan, and a field is a column of the table, returns the
+   * ordinal of the column in the table; otherwise returns -1.
+   *
+   * <p>Only columns of types that adapters represent in the same way as the
+   * enumerable convention (numbers, strings and booleans) qualify. */
+  private static int scanColumn(RelNode rel, int field) {
+    final SqlTypeFamily family =
+        rel.getRowType().getFieldList().get(field).getType().getSqlTypeName()
+            .getFamily();
+    if (family != SqlTypeFamily.NUMERIC
+        && family != SqlTypeFamily.CHARACTER
+        && family != SqlTypeFamily.BOOLEAN) {
+      return -1;
+    }
+    for (;;) {
+      if (rel instanceof EnumerableTableScan) {
+        return field;
+      }
+      if (rel instanceof EnumerableInterpreter
+          && rel.getInput(0) instanceof Bindables.BindableTableScan) {
+        return ((Bindables.BindableTableScan) rel.getInput(0)).projects
+            .get(field);
+      }
+      final RexNode e;
+      if (rel instanceof EnumerableCalc) {
+        final RexProgram program = ((EnumerableCalc) rel).getProgram();
+        e = program.expandLocalRef(program.getProjectList().get(field));
+      } else if (rel instanceof EnumerableProject) {
+        e = ((EnumerableProject) rel).getProjects().get(field);
+      } else if (rel instanceof EnumerableFilter) {
+        e = RexInputRef.of(field, rel.getRowType());
+      } else {
+        return -1;
+      }
+      if (!(e instanceof RexInputRef)) {
+        return -1;
+      }
+      field = ((RexInputRef) e).getIndex();
+      rel = rel.getInput(0);
+    }
+  }
 }
 
 // End EnumerableJoin.java
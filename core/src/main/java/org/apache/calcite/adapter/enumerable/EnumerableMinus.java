@@ -25,6 +25,7 @@
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.Minus;
 import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.ImmutableIntList;
 
 import java.util.List;
 
@@ -45,6 +46,8 @@ public EnumerableMinus copy(RelTraitSet traitSet, List<RelNode> inputs,
   public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     final BlockBuilder builder = new BlockBuilder();
     Expression minusExp = null;
+    PhysType physType0 = null;
+    boolean primitive = true;
     for (Ord<RelNode> ord : Ord.zip(inputs)) {
       EnumerableRel input = (EnumerableRel) ord.e;
       final Result result = implementor.visitChild(this, ord.i, input, pref);
@@ -55,7 +58,18 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
 
       if (minusExp == null) {
         minusExp = childExp;
+        physType0 = result.physType;
+      } else if (primitive
+          && EnumUtils.haveLongRows(physType0, result.physType)) {
+        // Compare rows by their primitive fields, without boxing them
+        minusExp =
+            Expressions.call(BuiltInMethod.PRIMITIVE_EXCEPT.method,
+                minusExp, childExp,
+                EnumUtils.longKeySelectors(physType0,
+                    ImmutableIntList.identity(
+                        getRowType().getFieldCount())));
       } else {
+        primitive = false;
         minusExp =
             Expressions.call(minusExp,
                 BuiltInMethod.EXCEPT.method,
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.linq4j.tree.Blocks;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.schema.SplittableTable;
+
+import java.util.List;
+
+/**
+ * Implementation of {@link org.apache.calcite.rel.core.TableScan} in
+ * {@link EnumerableConvention enumerable calling convention} that reads one
+ * morsel of a {@link SplittableTable}.
+ *
+ * <p>It occurs only within the input of an {@link EnumerableGather}, which
+ * runs its input once per morsel and sets the
+ * {@link org.apache.calcite.DataContext.Variable#MORSEL} and
+ * {@link org.apache.calcite.DataContext.Variable#MORSEL_COUNT} variables to
+ * say which morsel to read.
+ */
+public class EnumerableMorselScan extends TableScan implements EnumerableRel {
+  /** Creates an EnumerableMorselScan.
+   *
+   * <p>Use {@link #create} unless you know what you are doing. */
+  public EnumerableMorselScan(RelOptCluster cluster, RelTraitSet traitSet,
+      RelOptTable table) {
+    super(cluster, traitSet, table);
+    assert getConvention() instanceof EnumerableConvention;
+    assert table.unwrap(SplittableTable.class) != null;
+  }
+
+  /** Creates an EnumerableMorselScan. */
+  public static EnumerableMorselScan create(RelOptCluster cluster,
+      RelOptTable table) {
+    return new EnumerableMorselScan(cluster,
+        cluster.traitSetOf(EnumerableConvention.INSTANCE), table);
+  }
+
+  @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+    assert inputs.isEmpty();
+    return new EnumerableMorselScan(getCluster(), traitSet, table);
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    // Rows are arrays, even if there is only one column
+    final PhysType physType =
+        PhysTypeImpl.of(implementor.getTypeFactory(), getRowType(),
+            JavaRowFormat.ARRAY, false);
+    final Expression expression =
+        table.getExpression(SplittableTable.class);
+    return implementor.result(physType, Blocks.toBlock(expression));
+  }
+}
+
+// End EnumerableMorselScan.java
@@ -38,11 +38,21 @@
 import org.apache.calcite.linq4j.tree.Statement;
 import org.apache.calcite.linq4j.tree.Types;
 import org.apache.calcite.linq4j.tree.VisitorImpl;
+import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexDynamicParam;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexLocalRef;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexProgram;
+import org.apache.calcite.rex.RexUtil;
 import org.apache.calcite.runtime.Bindable;
+import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.validate.SqlConformance;
 import org.apache.calcite.sql.validate.SqlConformanceEnum;
 import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.SaffronProperties;
 
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
@@ -53,6 +63,7 @@
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -74,6 +85,10 @@ public class EnumerableRelImplementor extends JavaRelImplementor {
       new HashMap<>();
   private final Map<Object, ParameterExpression> stashedParameters =
       new IdentityHashMap<>();
+  /** Values of {@link #stashedParameters}, in the order they were created,
+   * so that equivalent plans generate the same code. */
+  private final List<ParameterExpression> stashedParameterList =
+      new ArrayList<>();
 
   protected final Function1<String, RexToLixTranslator.InputGetter> allCorrelateVariables =
       this::getCorrelVariableGetter;
@@ -126,15 +141,21 @@ public ClassDeclaration implementRoot(EnumerableRel rootRel,
 
     // This creates the following code
     // final Integer v1stashed = (Integer) root.get("v1stashed")
+    // or, for a primitive,
+    // final int v1stashed = ((Integer) root.get("v1stashed")).intValue()
     // It is convenient for passing non-literal "compile-time" constants
     final Collection<Statement> stashed =
-        Collections2.transform(stashedParameters.values(),
-            input -> Expressions.declare(Modifier.FINAL, input,
-                Expressions.convert_(
-                    Expressions.call(DataContext.ROOT,
-                        BuiltInMethod.DATA_CONTEXT_GET.method,
-                        Expressions.constant(input.name)),
-                    input.type)));
+        Collections2.transform(stashedParameterList,
+            input -> {
+              final Expression value =
+                  Expressions.convert_(
+                      Expressions.call(DataContext.ROOT,
+                          BuiltInMethod.DATA_CONTEXT_GET.method,
+                          Expressions.constant(input.name)),
+                      Primitive.box(input.type));
+              return Expressions.declare(Modifier.FINAL, input,
+                  Primitive.is(input.type) ? Expressions.unbox(value) : value);
+            });
 
     final BlockStatement block = Expressions.block(
         Iterables.concat(
@@ -428,6 +449,119 @@ public <T> Expression stash(T input, Class<? super T> clazz) {
     final ParameterExpression x = Expressions.variable(clazz, name);
     map.put(name, input);
     stashedParameters.put(input, x);
+    stashedParameterList.add(x);
+    return x;
+  }
+
+  /**
+   * Returns a program in which each literal that is compared to another
+   * expression, as in {@code deptno = 10}, is replaced with a variable
+   * stashed for the executor, so that programs that differ only in such
+   * literals generate the same code, and can share a compiled class.
+   *
+   * <p>Other literals are kept, so that calls whose arguments are all
+   * constant are still evaluated once. So are null, boolean and symbol
+   * literals.
+   *
+   * @see SaffronProperties#hoistLiterals()
+   */
+  public RexProgram stashLiterals(RexProgram program) {
+    if (!SaffronProperties.INSTANCE.hoistLiterals().get()) {
+      return program;
+    }
+    final List<RexNode> exprList = program.getExprList();
+    final Set<Integer> compared = new HashSet<>();
+    for (RexNode expr : exprList) {
+      if (expr.isA(SqlKind.COMPARISON)
+          && ((RexCall) expr).getOperands().size() == 2) {
+        final RexNode left = ((RexCall) expr).getOperands().get(0);
+        final RexNode right = ((RexCall) expr).getOperands().get(1);
+        addComparedLiteral(program, left, right, compared);
+        addComparedLiteral(program, right, left, compared);
+      }
+    }
+    final List<RexNode> exprs = new ArrayList<>();
+    boolean changed = false;
+    for (RexNode expr : exprList) {
+      if (expr instanceof RexLiteral && compared.contains(exprs.size())) {
+        final ParameterExpression x = stashLiteral((RexLiteral) expr);
+        if (x != null) {
+          exprs.add(new StashedLiteral(expr.getType(), x));
+          changed = true;
+          continue;
+        }
+      }
+      exprs.add(expr);
+    }
+    if (!changed) {
+      return program;
+    }
+    return new RexProgram(program.getInputRowType(), exprs,
+        program.getProjectList(), program.getCondition(),
+        program.getOutputRowType());
+  }
+
+  /** Adds the index of {@code operand} to {@code compared} if it is a
+   * literal and {@code other} depends on the input of the program. */
+  private static void addComparedLiteral(RexProgram program, RexNode operand,
+      RexNode other, Set<Integer> compared) {
+    if (operand instanceof RexLocalRef && other instanceof RexLocalRef) {
+      final int index = ((RexLocalRef) operand).getIndex();
+      if (program.getExprList().get(index) instanceof RexLiteral
+          && RexUtil.containsInputRef(
+              program.expandLocalRef((RexLocalRef) other))) {
+        compared.add(index);
+      }
+    }
+  }
+
+  private ParameterExpression stashLiteral(RexLiteral literal) {
+    if (literal.isNull()) {
+      return null;
+    }
+    final Object value;
+    final Type type;
+    switch (literal.getType().getSqlTypeName()) {
+    case DECIMAL:
+      value = literal.getValueAs(BigDecimal.class);
+      type = getTypeFactory().getJavaClass(literal.getType());
+      if (type != BigDecimal.class) {
+        return null;
+      }
+      break;
+    case TINYINT:
+    case SMALLINT:
+    case INTEGER:
+    case BIGINT:
+    case REAL:
+    case FLOAT:
+    case DOUBLE:
+    case CHAR:
+    case VARCHAR:
+    case DATE:
+    case TIME:
+    case TIMESTAMP:
+      final Expression constant =
+          RexToLixTranslator.translateLiteral(literal, literal.getType(),
+              getTypeFactory(), RexImpTable.NullAs.NOT_POSSIBLE);
+      if (!(constant instanceof ConstantExpression)) {
+        return null;
+      }
+      value = ((ConstantExpression) constant).value;
+      type = constant.getType();
+      break;
+    default:
+      return null;
+    }
+    final ParameterExpression cached = stashedParameters.get(literal);
+    if (cached != null) {
+      return cached;
+    }
+    final String name = "v" + map.size() + "stashed";
+    final ParameterExpression x = Expressions.variable(type, name);
+    map.put(name, value);
+    stashedParameters.put(literal, x);
+    stashedParameterList.add(x);
     return x;
   }
 
@@ -463,6 +597,17 @@ public SqlConformance getConformance() {
         SqlConformanceEnum.DEFAULT);
   }
 
+  /** Literal that has been replaced, by {@link #stashLiterals}, with a
+   * variable that holds its value at run time. */
+  static class StashedLiteral extends RexDynamicParam {
+    final ParameterExpression variable;
+
+    StashedLiteral(RelDataType type, ParameterExpression variable) {
+      super(type, -1);
+      this.variable = variable;
+    }
+  }
+
   /** Visitor that finds types in an {@link Expression} tree. */
   private static class TypeFinder extends VisitorImpl<Void> {
     private final Collection<Type> types;
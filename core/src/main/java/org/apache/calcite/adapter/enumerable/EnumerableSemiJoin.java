@@ -128,6 +128,19 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
         builder.append(
             "right", rightResult.block);
     final PhysType physType = leftResult.physType;
+    if (EnumUtils.haveLongKeys(leftResult.physType, leftKeys,
+        rightResult.physType, rightKeys)) {
+      return implementor.result(
+          physType,
+          builder.append(
+              Expressions.call(
+                  BuiltInMethod.PRIMITIVE_SEMI_JOIN.method,
+                  leftExpression,
+                  rightExpression,
+                  EnumUtils.longKeySelectors(leftResult.physType, leftKeys),
+                  EnumUtils.longKeySelectors(rightResult.physType, rightKeys)))
+              .toBlock());
+    }
     return implementor.result(
         physType,
         builder.append(
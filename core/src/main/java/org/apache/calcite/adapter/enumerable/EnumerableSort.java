@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.adapter.enumerable;
 
+import org.apache.calcite.config.CalciteConnectionConfig;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.linq4j.tree.Expressions;
@@ -29,7 +30,12 @@
 import org.apache.calcite.util.Pair;
 
 /** Implementation of {@link org.apache.calcite.rel.core.Sort} in
- * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}. */
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}.
+ *
+ * <p>If its rows can be written to disk, the sort holds at most
+ * {@link org.apache.calcite.config.CalciteConnectionConfig#sortMemoryBudget()}
+ * bytes of rows in memory; if its input is larger, it sorts the input in
+ * runs, writes each run to a temporary file, and merges the runs. */
 public class EnumerableSort extends Sort implements EnumerableRel {
   /**
    * Creates an EnumerableSort.
@@ -81,16 +87,56 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
         inputPhysType.generateCollationKey(
             collation.getFieldCollations());
 
-    builder.add(
-        Expressions.return_(null,
-            Expressions.call(childExp,
-                BuiltInMethod.ORDER_BY.method,
-                Expressions.list(
-                    builder.append("keySelector", pair.left))
-                    .appendIfNotNull(
-                        builder.appendIfNotNull("comparator", pair.right)))));
+    final long maxRowsInMemory =
+        EnumUtils.canSpill(implementor.getTypeFactory(), inputPhysType)
+            ? maxRowsInMemory()
+            : -1L;
+    if (maxRowsInMemory > 0) {
+      builder.add(
+          Expressions.return_(null,
+              Expressions.call(
+                  BuiltInMethod.SPILLABLE_ORDER_BY.method,
+                  childExp,
+                  builder.append("keySelector", pair.left),
+                  pair.right == null
+                      ? Expressions.constant(null)
+                      : builder.append("comparator", pair.right),
+                  Expressions.constant(maxRowsInMemory))));
+    } else {
+      builder.add(
+          Expressions.return_(null,
+              Expressions.call(childExp,
+                  BuiltInMethod.ORDER_BY.method,
+                  Expressions.list(
+                      builder.append("keySelector", pair.left))
+                      .appendIfNotNull(
+                          builder.appendIfNotNull("comparator",
+                              pair.right)))));
+    }
     return implementor.result(physType, builder.toBlock());
   }
+
+  /** Returns the number of rows that this sort may hold in memory before it
+   * writes them to disk, or -1 if it should never write to disk.
+   *
+   * <p>The memory budget is the connection's
+   * {@link CalciteConnectionConfig#sortMemoryBudget()}, or if that is
+   * negative, {@link org.apache.calcite.util.SaffronProperties#enumerableMemoryBudget()}. */
+  private long maxRowsInMemory() {
+    final CalciteConnectionConfig config =
+        getCluster().getPlanner().getContext()
+            .unwrap(CalciteConnectionConfig.class);
+    long budget = config == null ? -1L : config.sortMemoryBudget();
+    if (budget < 0) {
+      budget = EnumUtils.defaultMemoryBudget();
+    }
+    if (budget <= 0) {
+      return -1L;
+    }
+    final double rowSize =
+        EnumUtils.rowSize(getCluster().getMetadataQuery(), getInput());
+    return Math.max((long) (budget / rowSize), 1L);
+  }
 }
 
 // End EnumerableSort.java
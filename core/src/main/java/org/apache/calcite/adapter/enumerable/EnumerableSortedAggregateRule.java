@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.plan.Convention;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.InvalidRelException;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterRule;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.AggregateCall;
+import org.apache.calcite.rel.logical.LogicalAggregate;
+
+/**
+ * Rule to convert a {@link org.apache.calcite.rel.logical.LogicalAggregate}
+ * to an {@link EnumerableSortedAggregate}, whose input is sorted on the group
+ * keys.
+ *
+ * <p>The rule asks for an input with that collation; the planner can satisfy
+ * it with an input that is sorted already, or by sorting.
+ *
+ * <p>The rule applies only if the group keys are a single, non-empty set,
+ * and each aggregate function can be computed incrementally, one row at a
+ * time; see {@link #canImplement(AggregateCall)}.
+ */
+class EnumerableSortedAggregateRule extends ConverterRule {
+  EnumerableSortedAggregateRule() {
+    super(LogicalAggregate.class, Convention.NONE,
+        EnumerableConvention.INSTANCE, "EnumerableSortedAggregateRule");
+  }
+
+  public RelNode convert(RelNode rel) {
+    final LogicalAggregate agg = (LogicalAggregate) rel;
+    if (agg.getGroupType() != Aggregate.Group.SIMPLE
+        || agg.getGroupSet().isEmpty()) {
+      return null;
+    }
+    for (AggregateCall aggCall : agg.getAggCallList()) {
+      if (!canImplement(aggCall)) {
+        return null;
+      }
+    }
+    final RelTraitSet inputTraitSet =
+        agg.getInput().getTraitSet().replace(EnumerableConvention.INSTANCE)
+            .replace(
+                EnumerableSortedAggregate.inputCollation(agg.getGroupSet()));
+    try {
+      return EnumerableSortedAggregate.create(
+          convert(agg.getInput(), inputTraitSet),
+          agg.getGroupSet(),
+          agg.getAggCallList());
+    } catch (InvalidRelException e) {
+      EnumerableRules.LOGGER.debug(e.toString());
+      return null;
+    }
+  }
+
+  /** Returns whether a sorted aggregate can compute an aggregate call: the
+   * call must not be DISTINCT, which would need the set of values seen in
+   * the group, and its function must have an implementor that accumulates
+   * one row at a time. */
+  static boolean canImplement(AggregateCall aggCall) {
+    return !aggCall.isDistinct()
+        && RexImpTable.INSTANCE.get(aggCall.getAggregation(), false) != null;
+  }
+}
+
+// End EnumerableSortedAggregateRule.java
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.linq4j.tree.ParameterExpression;
+import org.apache.calcite.plan.ConventionTraitDef;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterImpl;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.runtime.Batches;
+import org.apache.calcite.util.BuiltInMethod;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Relational expression that converts the rows of an input in
+ * {@link EnumerableConvention enumerable calling convention} into batches,
+ * so that operators in {@link BatchConvention batch calling convention} can
+ * consume them.
+ */
+public class EnumerableToBatchConverter extends ConverterImpl
+    implements BatchRel {
+  /** Creates an EnumerableToBatchConverter.
+   *
+   * <p>Use {@link #create} unless you know what you're doing. */
+  public EnumerableToBatchConverter(RelOptCluster cluster,
+      RelTraitSet traits, RelNode input) {
+    super(cluster, ConventionTraitDef.INSTANCE, traits, input);
+    assert getConvention() instanceof BatchConvention;
+    assert input.getConvention() instanceof EnumerableConvention;
+  }
+
+  /** Creates an EnumerableToBatchConverter. */
+  public static EnumerableToBatchConverter create(RelNode input) {
+    return new EnumerableToBatchConverter(input.getCluster(),
+        input.getTraitSet().replace(BatchConvention.INSTANCE), input);
+  }
+
+  @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+    return new EnumerableToBatchConverter(getCluster(), traitSet,
+        sole(inputs));
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    return super.computeSelfCost(planner, mq).multiplyBy(0.8d);
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    final JavaTypeFactory typeFactory = implementor.getTypeFactory();
+    final BlockBuilder builder = new BlockBuilder();
+    final Result result =
+        implementor.visitChild(this, 0, (EnumerableRel) getInput(), pref);
+    final PhysType physType =
+        PhysTypeImpl.of(typeFactory, getRowType(), JavaRowFormat.ARRAY, false);
+    Expression rows = builder.append("rows", result.block);
+    if (result.format != JavaRowFormat.ARRAY) {
+      // PhysType.convertTo does nothing to a row with one field, because it
+      // regards both formats as scalar; but Batches.fromRows needs arrays
+      final ParameterExpression row_ =
+          Expressions.parameter(result.physType.getJavaRowType(), "row");
+      final List<Expression> values = new ArrayList<>();
+      for (int i = 0; i < getRowType().getFieldCount(); i++) {
+        values.add(
+            Expressions.box(result.physType.fieldReference(row_, i)));
+      }
+      rows =
+          Expressions.call(rows, BuiltInMethod.SELECT.method,
+              Expressions.lambda(Function1.class,
+                  Expressions.newArrayInit(Object.class, values), row_));
+    }
+    builder.add(
+        Expressions.return_(null,
+            Expressions.call(BuiltInMethod.BATCHES_FROM_ROWS.method,
+                rows,
+                Expressions.constant(
+                    Batches.columnTypes(typeFactory, getRowType())))));
+    return implementor.result(physType, builder.toBlock());
+  }
+}
+
+// End EnumerableToBatchConverter.java
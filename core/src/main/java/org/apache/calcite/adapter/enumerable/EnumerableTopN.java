@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Sort;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.Pair;
+
+/** Implementation of {@link org.apache.calcite.rel.core.Sort} that has a
+ * {@code fetch} (and possibly an {@code offset}) in
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention enumerable calling convention}.
+ *
+ * <p>Rather than sorting its whole input, it keeps the first
+ * {@code offset + fetch} rows in a bounded heap, so it uses O(k) memory and
+ * O(n log k) time, where k is {@code offset + fetch}. */
+public class EnumerableTopN extends Sort implements EnumerableRel {
+  /**
+   * Creates an EnumerableTopN.
+   *
+   * <p>Use {@link #create} unless you know what you're doing.
+   */
+  public EnumerableTopN(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, RelCollation collation, RexNode offset, RexNode fetch) {
+    super(cluster, traitSet, input, collation, offset, fetch);
+    assert getConvention() instanceof EnumerableConvention;
+    assert getConvention() == input.getConvention();
+    assert fetch != null;
+  }
+
+  /** Creates an EnumerableTopN. */
+  public static EnumerableTopN create(RelNode child, RelCollation collation,
+      RexNode offset, RexNode fetch) {
+    final RelOptCluster cluster = child.getCluster();
+    final RelTraitSet traitSet =
+        cluster.traitSetOf(EnumerableConvention.INSTANCE)
+            .replace(collation);
+    return new EnumerableTopN(cluster, traitSet, child, collation, offset,
+        fetch);
+  }
+
+  @Override public EnumerableTopN copy(
+      RelTraitSet traitSet,
+      RelNode newInput,
+      RelCollation newCollation,
+      RexNode offset,
+      RexNode fetch) {
+    return new EnumerableTopN(getCluster(), traitSet, newInput, newCollation,
+        offset, fetch);
+  }
+
+  @Override public RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    // Each input row is compared with the top of a heap that holds at most
+    // (offset + fetch) rows; Sort's cost would be based on the number of rows
+    // that are emitted, and would not grow with the input.
+    //
+    // The planner compares costs by row count alone. Counting the rows that
+    // are emitted from the heap at half weight makes this dearer than an
+    // EnumerableLimit of an input that is already sorted, which reads only
+    // the rows it emits, and cheaper than an EnumerableLimit of an
+    // EnumerableSort, which reads every input row and then the rows it emits.
+    final double inputRowCount = mq.getRowCount(getInput());
+    final double rowCount = mq.getRowCount(this);
+    final double heapSize = Math.max(rowCount, 1d)
+        + (offset instanceof RexLiteral ? RexLiteral.intValue(offset) : 0d);
+    final double bytesPerRow = getRowType().getFieldCount() * 4;
+    final double cpu =
+        inputRowCount * (Math.log(heapSize) / Math.log(2d) + 1d) * bytesPerRow;
+    return planner.getCostFactory()
+        .makeCost(inputRowCount + rowCount / 2d, cpu, 0);
+  }
+
+  public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    final BlockBuilder builder = new BlockBuilder();
+    final EnumerableRel child = (EnumerableRel) getInput();
+    final Result result = implementor.visitChild(this, 0, child, pref);
+    final PhysType physType =
+        PhysTypeImpl.of(
+            implementor.getTypeFactory(),
+            getRowType(),
+            result.format);
+    Expression childExp =
+        builder.append("child", result.block);
+
+    PhysType inputPhysType = result.physType;
+    final Pair<Expression, Expression> pair =
+        inputPhysType.generateCollationKey(
+            collation.getFieldCollations());
+
+    final Expression comparator = pair.right == null
+        ? Expressions.constant(null)
+        : builder.append("comparator", pair.right);
+    builder.add(
+        Expressions.return_(null,
+            Expressions.call(
+                BuiltInMethod.TOP_N.method,
+                childExp,
+                builder.append("keySelector", pair.left),
+                comparator,
+                offset == null
+                    ? Expressions.constant(0)
+                    : EnumerableLimit.getExpression(offset),
+                EnumerableLimit.getExpression(fetch))));
+    return implementor.result(physType, builder.toBlock());
+  }
+}
+
+// End EnumerableTopN.java
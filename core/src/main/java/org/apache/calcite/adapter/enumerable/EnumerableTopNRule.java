@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.plan.Convention;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterRule;
+import org.apache.calcite.rel.core.Sort;
+
+/**
+ * Rule to convert an {@link org.apache.calcite.rel.core.Sort} that has a
+ * sort key and a {@code fetch} to an {@link EnumerableTopN}.
+ *
+ * <p>The planner may also convert such a {@code Sort} to an
+ * {@link EnumerableLimit} on top of an {@link EnumerableSort} (see
+ * {@link EnumerableLimitRule}), and chooses between the two based on
+ * cost.
+ */
+class EnumerableTopNRule extends ConverterRule {
+  EnumerableTopNRule() {
+    super(Sort.class, Convention.NONE, EnumerableConvention.INSTANCE,
+        "EnumerableTopNRule");
+  }
+
+  public RelNode convert(RelNode rel) {
+    final Sort sort = (Sort) rel;
+    if (sort.fetch == null
+        || sort.getCollation().getFieldCollations().isEmpty()) {
+      return null;
+    }
+    final RelNode input = sort.getInput();
+    return EnumerableTopN.create(
+        convert(
+            input,
+            input.getTraitSet().replace(EnumerableConvention.INSTANCE)),
+        sort.getCollation(),
+        sort.offset,
+        sort.fetch);
+  }
+}
+
+// End EnumerableTopNRule.java
@@ -25,6 +25,7 @@
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.Union;
 import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.ImmutableIntList;
 
 import java.util.List;
 
@@ -44,6 +45,8 @@ public EnumerableUnion copy(RelTraitSet traitSet, List<RelNode> inputs,
   public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     final BlockBuilder builder = new BlockBuilder();
     Expression unionExp = null;
+    PhysType physType0 = null;
+    boolean primitive = true;
     for (Ord<RelNode> ord : Ord.zip(inputs)) {
       EnumerableRel input = (EnumerableRel) ord.e;
       final Result result = implementor.visitChild(this, ord.i, input, pref);
@@ -54,10 +57,23 @@ public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
 
       if (unionExp == null) {
         unionExp = childExp;
+        physType0 = result.physType;
+      } else if (all) {
+        unionExp =
+            Expressions.call(unionExp, BuiltInMethod.CONCAT.method, childExp);
+      } else if (primitive
+          && EnumUtils.haveLongRows(physType0, result.physType)) {
+        // Compare rows by their primitive fields, without boxing them
+        unionExp =
+            Expressions.call(BuiltInMethod.PRIMITIVE_UNION.method,
+                unionExp, childExp,
+                EnumUtils.longKeySelectors(physType0,
+                    ImmutableIntList.identity(
+                        getRowType().getFieldCount())));
       } else {
-        unionExp = all
-            ? Expressions.call(unionExp, BuiltInMethod.CONCAT.method, childExp)
-            : Expressions.call(unionExp,
+        primitive = false;
+        unionExp =
+            Expressions.call(unionExp,
                 BuiltInMethod.UNION.method,
                 Expressions.list(childExp)
                     .appendIfNotNull(result.physType.comparer()));
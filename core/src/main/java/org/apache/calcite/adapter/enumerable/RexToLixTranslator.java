@@ -727,11 +727,12 @@ private Expression translateParameter(RexDynamicParam expr,
     if (storageType == null) {
       storageType = typeFactory.getJavaClass(expr.getType());
     }
-    return nullAs.handle(
-        convert(
-            Expressions.call(root, BuiltInMethod.DATA_CONTEXT_GET.method,
-                Expressions.constant("?" + expr.getIndex())),
-            storageType));
+    final Expression value =
+        expr instanceof EnumerableRelImplementor.StashedLiteral
+            ? ((EnumerableRelImplementor.StashedLiteral) expr).variable
+            : Expressions.call(root, BuiltInMethod.DATA_CONTEXT_GET.method,
+                Expressions.constant("?" + expr.getIndex()));
+    return nullAs.handle(convert(value, storageType));
   }
 
   /** Translates a literal.
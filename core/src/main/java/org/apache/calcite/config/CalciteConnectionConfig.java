@@ -70,6 +70,20 @@ public interface CalciteConnectionConfig extends ConnectionConfig {
   <T> T typeSystem(Class<T> typeSystemClass, T defaultTypeSystem);
   /** @see CalciteConnectionProperty#CONFORMANCE */
   SqlConformance conformance();
+  /** @see CalciteConnectionProperty#SORT_MEMORY_BUDGET */
+  long sortMemoryBudget();
+  /** @see CalciteConnectionProperty#MEMORY_BUDGET */
+  long memoryBudget();
+  /** @see CalciteConnectionProperty#PARALLELISM */
+  int parallelism();
+  /** @see CalciteConnectionProperty#VECTORIZE */
+  boolean vectorize();
+  /** @see CalciteConnectionProperty#RUNTIME_FILTER */
+  boolean runtimeFilter();
+  /** @see CalciteConnectionProperty#PLANNER_TIME_LIMIT */
+  long plannerTimeLimit();
+  /** @see CalciteConnectionProperty#PLANNER_RULE_LIMIT */
+  int plannerRuleLimit();
   /** @see CalciteConnectionProperty#TIME_ZONE */
   @Override String timeZone();
 }
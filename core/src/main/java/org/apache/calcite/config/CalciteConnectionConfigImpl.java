@@ -184,6 +184,39 @@ public SqlConformance conformance() {
         .getEnum(SqlConformanceEnum.class);
   }
 
+  public long sortMemoryBudget() {
+    return CalciteConnectionProperty.SORT_MEMORY_BUDGET.wrap(properties)
+        .getLong();
+  }
+
+  public long memoryBudget() {
+    return CalciteConnectionProperty.MEMORY_BUDGET.wrap(properties)
+        .getLong();
+  }
+
+  public int parallelism() {
+    return CalciteConnectionProperty.PARALLELISM.wrap(properties).getInt();
+  }
+
+  public boolean vectorize() {
+    return CalciteConnectionProperty.VECTORIZE.wrap(properties).getBoolean();
+  }
+
+  public boolean runtimeFilter() {
+    return CalciteConnectionProperty.RUNTIME_FILTER.wrap(properties)
+        .getBoolean();
+  }
+
+  public long plannerTimeLimit() {
+    return CalciteConnectionProperty.PLANNER_TIME_LIMIT.wrap(properties)
+        .getLong();
+  }
+
+  public int plannerRuleLimit() {
+    return CalciteConnectionProperty.PLANNER_RULE_LIMIT.wrap(properties)
+        .getInt();
+  }
+
   @Override public String timeZone() {
     return CalciteConnectionProperty.TIME_ZONE.wrap(properties)
             .getString();
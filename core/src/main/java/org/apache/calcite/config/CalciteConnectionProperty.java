@@ -144,7 +144,52 @@ public enum CalciteConnectionProperty implements ConnectionProperty {
   TYPE_SYSTEM("typeSystem", Type.PLUGIN, null, false),
 
   /** SQL conformance level. */
-  CONFORMANCE("conformance", Type.ENUM, SqlConformanceEnum.DEFAULT, false);
+  CONFORMANCE("conformance", Type.ENUM, SqlConformanceEnum.DEFAULT, false),
+
+  /** Number of bytes of rows that a sort may hold in memory before it writes
+   * sorted runs to temporary files and merges them. If 0, sorts never write
+   * to disk. If negative (the default), the value of the
+   * "saffron.enumerable.memory.budget" property is used. */
+  SORT_MEMORY_BUDGET("sortMemoryBudget", Type.NUMBER, -1L, false),
+
+  /** Number of bytes of rows that a hash join or aggregate may hold in memory
+   * before it writes rows to temporary files. If 0, they never write to disk.
+   * If negative (the default), the value of the
+   * "saffron.enumerable.memory.budget" property is used. */
+  MEMORY_BUDGET("memoryBudget", Type.NUMBER, -1L, false),
+
+  /** Number of threads that may execute a query. If greater than 1,
+   * pipelines that scan a
+   * {@link org.apache.calcite.schema.SplittableTable} are divided into
+   * morsels, which several threads process at the same time. Default 1. */
+  PARALLELISM("parallelism", Type.NUMBER, 1, false),
+
+  /** Whether to evaluate filters, projections and aggregates over batches
+   * of columns, using operators in the batch calling convention
+   * ({@link org.apache.calcite.adapter.enumerable.BatchConvention}), if they
+   * are cheaper than operating on rows.
+   * Default false. */
+  VECTORIZE("vectorize", Type.BOOLEAN, false, false),
+
+  /** Whether a hash join one of whose inputs is estimated to contain few of
+   * the other's keys builds a
+   * {@link org.apache.calcite.runtime.RuntimeFilter} from that input's keys,
+   * which discards rows of the other input that cannot match, and which a
+   * table that the other input scans can apply while it reads rows.
+   * Default true. */
+  RUNTIME_FILTER("runtimeFilter", Type.BOOLEAN, true, false),
+
+  /** Maximum number of milliseconds that the Volcano planner may spend
+   * planning a query. When the limit has been reached, the planner returns
+   * the cheapest plan that it has found so far, or if it has not yet found a
+   * plan, the first plan that it finds. If 0 (the default), there is no
+   * limit. */
+  PLANNER_TIME_LIMIT("plannerTimeLimit", Type.NUMBER, 0L, false),
+
+  /** Maximum number of rules that the Volcano planner may fire while planning
+   * a query. Applied in the same way as {@link #PLANNER_TIME_LIMIT}. If 0
+   * (the default), there is no limit. */
+  PLANNER_RULE_LIMIT("plannerRuleLimit", Type.NUMBER, 0, false);
 
   private final String camelName;
   private final Type type;
@@ -154,7 +154,7 @@ public CalciteConnectionConfig config() {
   }
 
   public Context createPrepareContext() {
-    return new ContextImpl(this);
+    return new ContextImpl(this, null);
   }
 
   /** Called after the constructor has completed and the model has been
@@ -494,9 +494,13 @@ static class ContextImpl implements CalcitePrepare.Context {
     private final CalciteConnectionImpl connection;
     private final CalciteSchema mutableRootSchema;
     private final CalciteSchema rootSchema;
+    /** Flag that is set if the statement being prepared is canceled, or
+     * null. */
+    private final AtomicBoolean cancelFlag;
 
-    ContextImpl(CalciteConnectionImpl connection) {
+    ContextImpl(CalciteConnectionImpl connection, AtomicBoolean cancelFlag) {
       this.connection = Objects.requireNonNull(connection);
+      this.cancelFlag = cancelFlag;
       long now = System.currentTimeMillis();
       SchemaVersion schemaVersion = new LongSchemaVersion(now);
       this.mutableRootSchema = connection.rootSchema;
@@ -536,7 +540,11 @@ public CalciteConnectionConfig config() {
     }
 
     public DataContext getDataContext() {
-      return connection.createDataContext(ImmutableMap.of(),
+      return connection.createDataContext(
+          cancelFlag == null
+              ? ImmutableMap.of()
+              : ImmutableMap.of(DataContext.Variable.CANCEL_FLAG.camelName,
+                  cancelFlag),
           rootSchema);
     }
 
@@ -592,7 +600,7 @@ public Object get(String name) {
     }
 
     public Context createPrepareContext() {
-      return connection.createPrepareContext();
+      return new ContextImpl(connection, cancelFlag);
     }
 
     public CalciteConnection getConnection() {
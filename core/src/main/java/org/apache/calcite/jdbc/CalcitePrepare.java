@@ -38,6 +38,7 @@
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.runtime.ArrayBindable;
 import org.apache.calcite.runtime.Bindable;
+import org.apache.calcite.schema.Schemas;
 import org.apache.calcite.schema.Table;
 import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.SqlNode;
@@ -352,7 +353,8 @@ public CalciteSignature(String sql,
     }
 
     public Enumerable<T> enumerable(DataContext dataContext) {
-      Enumerable<T> enumerable = bindable.bind(dataContext);
+      Enumerable<T> enumerable =
+          bindable.bind(Schemas.withVariables(dataContext, internalParameters));
       if (maxRowCount >= 0) {
         // Apply limit. In JDBC 0 means "no limit". But for us, -1 means
         // "no limit", and 0 is a valid limit.
@@ -25,6 +25,7 @@
 import org.apache.calcite.plan.RelTrait;
 import org.apache.calcite.plan.RelTraitSet;
 import org.apache.calcite.rel.AbstractRelNode;
+import org.apache.calcite.rel.RelDigest;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelWriter;
 import org.apache.calcite.rel.core.CorrelationId;
@@ -112,7 +113,7 @@ public class RelSubset extends AbstractRelNode {
     this.boosted = false;
     assert traits.allSimple();
     computeBestCost(cluster.getPlanner());
-    recomputeDigest();
+    recomputeRelDigest();
   }
 
   //~ Methods ----------------------------------------------------------------
@@ -187,6 +188,10 @@ public double estimateRowCount(RelMetadataQuery mq) {
     pw.done(input);
   }
 
+  @Override protected RelDigest computeRelDigest() {
+    return RelDigest.of(RelSubset.class, traitSet, set.id);
+  }
+
   @Override protected String computeDigest() {
     StringBuilder digest = new StringBuilder("Subset#");
     digest.append(set.id);
@@ -21,7 +21,6 @@
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelNodes;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
-import org.apache.calcite.util.ChunkList;
 import org.apache.calcite.util.Util;
 import org.apache.calcite.util.trace.CalciteTrace;
 
@@ -42,6 +41,7 @@
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -274,15 +274,23 @@ private int countChildren(RelSubset subset) {
   void updateImportance(RelSubset subset, Double importance) {
     subsetImportances.put(subset, importance);
 
+    // Take the matches out of the queues while their importance is still the
+    // one by which they are ordered; the queues put them back, with their new
+    // importance, when a match is next popped.
+    final List<VolcanoRuleMatch> matches = new ArrayList<>();
     for (PhaseMatchList matchList : matchListMap.values()) {
       Multimap<RelSubset, VolcanoRuleMatch> relMatchMap =
           matchList.matchMap;
       if (relMatchMap.containsKey(subset)) {
         for (VolcanoRuleMatch match : relMatchMap.get(subset)) {
-          match.clearCachedImportance();
+          matchList.invalidate(match);
+          matches.add(match);
         }
       }
     }
+    for (VolcanoRuleMatch match : matches) {
+      match.clearCachedImportance();
+    }
   }
 
   /**
@@ -323,9 +331,9 @@ void updateImportance(RelSubset subset, Double importance) {
    * the rule referenced by the match.
    */
   void addMatch(VolcanoRuleMatch match) {
-    final String matchName = match.toString();
+    final List<Object> matchKey = match.getKey();
     for (PhaseMatchList matchList : matchListMap.values()) {
-      if (!matchList.names.add(matchName)) {
+      if (!matchList.names.add(matchKey)) {
         // Identical match has already been added.
         continue;
       }
@@ -339,9 +347,9 @@ void addMatch(VolcanoRuleMatch match) {
         }
       }
 
-      LOGGER.trace("{} Rule-match queued: {}", matchList.phase.toString(), matchName);
+      LOGGER.trace("{} Rule-match queued: {}", matchList.phase, match);
 
-      matchList.list.add(match);
+      matchList.add(match);
 
       matchList.matchMap.put(
           planner.getSubset(match.rels[0]), match);
@@ -438,19 +446,16 @@ VolcanoRuleMatch popMatch(VolcanoPlannerPhase phase) {
           + " after phase complete");
     }
 
-    final List<VolcanoRuleMatch> matchList = phaseMatchList.list;
     VolcanoRuleMatch match;
     for (;;) {
-      if (matchList.isEmpty()) {
+      match = phaseMatchList.poll();
+      if (match == null) {
         return null;
       }
       if (LOGGER.isTraceEnabled()) {
-        matchList.sort(MATCH_COMPARATOR);
-        match = matchList.remove(0);
-
         StringBuilder b = new StringBuilder();
         b.append("Sorted rule queue:");
-        for (VolcanoRuleMatch match2 : matchList) {
+        for (VolcanoRuleMatch match2 : phaseMatchList.sortedMatches()) {
           final double importance = match2.computeImportance();
           b.append("\n");
           b.append(match2);
@@ -459,21 +464,6 @@ VolcanoRuleMatch popMatch(VolcanoPlannerPhase phase) {
         }
 
         LOGGER.trace(b.toString());
-      } else {
-        // If we're not tracing, it's not worth the effort of sorting the
-        // list to find the minimum.
-        match = null;
-        int bestPos = -1;
-        int i = -1;
-        for (VolcanoRuleMatch match2 : matchList) {
-          ++i;
-          if (match == null
-              || MATCH_COMPARATOR.compare(match2, match) < 0) {
-            bestPos = i;
-            match = match2;
-          }
-        }
-        match = matchList.remove(bestPos);
       }
 
       if (skipMatch(match)) {
@@ -648,6 +638,17 @@ public int compare(VolcanoRuleMatch match1,
    * PhaseMatchList represents a set of {@link VolcanoRuleMatch rule-matches}
    * for a particular
    * {@link VolcanoPlannerPhase phase of the planner's execution}.
+   *
+   * <p>The rule-matches are held in a binary heap ordered by
+   * {@link #MATCH_COMPARATOR}, so that adding a rule-match and removing the
+   * most important one take logarithmic time. A rule-match is ordered by its
+   * cached importance; before that changes, {@link #invalidate} removes the
+   * rule-match from the heap, and the next {@link #poll} puts it back.
+   *
+   * <p>Rule-matches enter the heap, and so compute their importance, only
+   * when {@link #poll} is called. The matches are therefore ordered by the
+   * same importances, and ties are broken the same way (by the order in which
+   * they were added), as if {@link #poll} were to scan all of them.
    */
   private static class PhaseMatchList {
     /**
@@ -656,21 +657,35 @@ private static class PhaseMatchList {
     final VolcanoPlannerPhase phase;
 
     /**
-     * Current list of VolcanoRuleMatches for this phase. New rule-matches
-     * are appended to the end of this list. When removing a rule-match, the
-     * list is sorted and the highest importance rule-match removed. It is
-     * important for performance that this list remain mostly sorted.
-     *
-     * <p>Use a hunkList because {@link java.util.ArrayList} does not implement
-     * remove(0) efficiently.</p>
+     * Binary heap of the entries whose importance is known. The most
+     * important is at position 0; the children of the entry at position
+     * {@code i} are at positions {@code 2i + 1} and {@code 2i + 2}.
+     */
+    private final List<Entry> heap = new ArrayList<>();
+
+    /**
+     * Entries that have been added, or whose importance has changed, since
+     * {@link #poll} was last called, and are not in {@link #heap}.
      */
-    final List<VolcanoRuleMatch> list = new ChunkList<>();
+    private final List<Entry> pending = new ArrayList<>();
 
     /**
-     * A set of rule-match names contained in {@link #list}. Allows fast
-     * detection of duplicate rule-matches.
+     * Entry of each rule-match that is in {@link #heap} or
+     * {@link #pending}.
      */
-    final Set<String> names = new HashSet<>();
+    private final Map<VolcanoRuleMatch, Entry> entries =
+        new IdentityHashMap<>();
+
+    /**
+     * Number of rule-matches that have been added; the ordinal of the next.
+     */
+    private int ordinal;
+
+    /**
+     * A set of the {@link VolcanoRuleMatch#getKey() keys} of rule-matches
+     * that have been added. Allows fast detection of duplicate rule-matches.
+     */
+    final Set<List<Object>> names = new HashSet<>();
 
     /**
      * Multi-map of RelSubset to VolcanoRuleMatches. Used to
@@ -687,10 +702,138 @@ private static class PhaseMatchList {
     }
 
     void clear() {
-      list.clear();
+      heap.clear();
+      pending.clear();
+      entries.clear();
       names.clear();
       matchMap.clear();
     }
+
+    /** Adds a rule-match. */
+    void add(VolcanoRuleMatch match) {
+      final Entry entry = new Entry(match, ordinal++);
+      entries.put(match, entry);
+      pending.add(entry);
+    }
+
+    /** Removes a rule-match from the heap, if it is there, because its
+     * importance is about to change. */
+    void invalidate(VolcanoRuleMatch match) {
+      final Entry entry = entries.get(match);
+      if (entry != null && entry.index >= 0) {
+        removeAt(entry.index);
+        pending.add(entry);
+      }
+    }
+
+    /** Removes the most important rule-match and returns it, or returns null
+     * if there are no rule-matches. */
+    VolcanoRuleMatch poll() {
+      flush();
+      if (heap.isEmpty()) {
+        return null;
+      }
+      final Entry entry = heap.get(0);
+      removeAt(0);
+      entries.remove(entry.match);
+      return entry.match;
+    }
+
+    /** Returns the rule-matches, most important first. */
+    List<VolcanoRuleMatch> sortedMatches() {
+      flush();
+      final List<Entry> list = new ArrayList<>(heap);
+      list.sort(Entry::compareTo);
+      final List<VolcanoRuleMatch> matches = new ArrayList<>();
+      for (Entry entry : list) {
+        matches.add(entry.match);
+      }
+      return matches;
+    }
+
+    /** Moves the pending entries into the heap. */
+    private void flush() {
+      for (Entry entry : pending) {
+        entry.index = heap.size();
+        heap.add(entry);
+        siftUp(entry.index);
+      }
+      pending.clear();
+    }
+
+    private void removeAt(int i) {
+      final Entry entry = heap.get(i);
+      entry.index = -1;
+      final Entry last = heap.remove(heap.size() - 1);
+      if (last != entry) {
+        set(i, last);
+        siftDown(i);
+        siftUp(last.index);
+      }
+    }
+
+    private void siftUp(int i) {
+      final Entry entry = heap.get(i);
+      while (i > 0) {
+        final int parent = (i - 1) >>> 1;
+        final Entry parentEntry = heap.get(parent);
+        if (entry.compareTo(parentEntry) >= 0) {
+          break;
+        }
+        set(i, parentEntry);
+        i = parent;
+      }
+      set(i, entry);
+    }
+
+    private void siftDown(int i) {
+      final Entry entry = heap.get(i);
+      final int size = heap.size();
+      for (;;) {
+        int child = 2 * i + 1;
+        if (child >= size) {
+          break;
+        }
+        if (child + 1 < size
+            && heap.get(child + 1).compareTo(heap.get(child)) < 0) {
+          ++child;
+        }
+        final Entry childEntry = heap.get(child);
+        if (entry.compareTo(childEntry) <= 0) {
+          break;
+        }
+        set(i, childEntry);
+        i = child;
+      }
+      set(i, entry);
+    }
+
+    private void set(int i, Entry entry) {
+      heap.set(i, entry);
+      entry.index = i;
+    }
+  }
+
+  /** Entry in the heap of a {@link PhaseMatchList}. */
+  private static class Entry implements Comparable<Entry> {
+    final VolcanoRuleMatch match;
+    /** Order in which the rule-match was added; breaks ties. */
+    final int ordinal;
+    /** Position in the heap, or -1 if not in the heap. */
+    int index = -1;
+
+    Entry(VolcanoRuleMatch match, int ordinal) {
+      this.match = match;
+      this.ordinal = ordinal;
+    }
+
+    public int compareTo(Entry o) {
+      final int c = MATCH_COMPARATOR.compare(match, o.match);
+      if (c != 0) {
+        return c;
+      }
+      return Integer.compare(ordinal, o.ordinal);
+    }
   }
 }
 
@@ -40,6 +40,7 @@
 import org.apache.calcite.plan.RelTraitDef;
 import org.apache.calcite.plan.RelTraitSet;
 import org.apache.calcite.prepare.CalcitePrepareImpl;
+import org.apache.calcite.rel.RelDigest;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelVisitor;
 import org.apache.calcite.rel.convert.Converter;
@@ -135,6 +136,27 @@ public class VolcanoPlanner extends AbstractRelOptPlanner {
    */
   protected boolean impatient = false;
 
+  /**
+   * Maximum number of milliseconds that {@link #findBestExp()} may spend, or
+   * 0 if there is no limit.
+   *
+   * <p>When the limit has been reached, the planner stops firing rules as
+   * soon as it has found a plan for the root, and returns the cheapest plan
+   * found so far.
+   */
+  private long timeLimit;
+
+  /**
+   * Maximum number of rules that {@link #findBestExp()} may fire, or 0 if
+   * there is no limit. Applied in the same way as {@link #timeLimit}.
+   */
+  private int ruleLimit;
+
+  /**
+   * Statistics about the most recent call to {@link #findBestExp()}, or null.
+   */
+  private VolcanoPlannerStatistics statistics;
+
   /**
    * Operands that apply to a given class of {@link RelNode}.
    *
@@ -151,7 +173,7 @@ public class VolcanoPlanner extends AbstractRelOptPlanner {
   final List<RelSet> allSets = new ArrayList<>();
 
   /**
-   * Canonical map from {@link String digest} to the unique
+   * Canonical map from {@link RelDigest digest} to the unique
    * {@link RelNode relational expression} with that digest.
    *
    * <p>Row type is part of the key for the rare occasion that similar
@@ -159,7 +181,7 @@ public class VolcanoPlanner extends AbstractRelOptPlanner {
    * {@code Project(child=rel#1, a=null)} where a is a null INTEGER or a
    * null VARCHAR(10).
    */
-  private final Map<String, RelNode> mapDigestToRel =
+  private final Map<RelDigest, RelNode> mapDigestToRel =
       new HashMap<>();
 
   /**
@@ -277,6 +299,12 @@ public VolcanoPlanner(RelOptCostFactory costFactory, //
     super(costFactory == null ? VolcanoCost.FACTORY : costFactory, //
         externalContext);
     this.zeroCost = this.costFactory.makeZeroCost();
+    final CalciteConnectionConfig config =
+        context.unwrap(CalciteConnectionConfig.class);
+    if (config != null) {
+      this.timeLimit = config.plannerTimeLimit();
+      this.ruleLimit = config.plannerRuleLimit();
+    }
   }
 
   //~ Methods ----------------------------------------------------------------
@@ -565,6 +593,10 @@ public RelOptPlanner chooseDelegate() {
    * number of iterations necessary to first reach an implementable plan or 25
    * iterations whichever is larger).</li>
    * <li>For non-ambitious planners: When an implementable plan is found.</li>
+   * <li>When the planner has run for longer than its
+   * {@link #setTimeLimit(long) time limit}, or fired more rules than its
+   * {@link #setRuleLimit(int) rule limit}, and an implementable plan has been
+   * found. The remaining phases are skipped.</li>
    * </ol>
    *
    * <p>Furthermore, after every 10 iterations without an implementable plan,
@@ -577,9 +609,12 @@ public RelOptPlanner chooseDelegate() {
    * query
    */
   public RelNode findBestExp() {
+    final VolcanoPlannerStatistics.Builder stats =
+        new VolcanoPlannerStatistics.Builder();
     ensureRootConverters();
     registerMaterializations();
     int cumulativeTicks = 0;
+    boolean limitReached = false;
     for (VolcanoPlannerPhase phase : VolcanoPlannerPhase.values()) {
       setInitialImportance();
 
@@ -627,6 +662,13 @@ public RelNode findBestExp() {
           injectImportanceBoost();
         }
 
+        if (!root.bestCost.isInfinite() && isLimitReached(stats)) {
+          // We have run out of time or rule firings. Take the current best.
+          limitReached = true;
+          break;
+        }
+        checkCancel();
+
         LOGGER.debug("PLANNER = {}; TICK = {}/{}; PHASE = {}; COST = {}",
             this, cumulativeTicks, tick, phase.toString(), root.bestCost);
 
@@ -636,7 +678,9 @@ public RelNode findBestExp() {
         }
 
         assert match.getRule().matches(match);
+        final long start = System.nanoTime();
         match.onMatch();
+        stats.ruleFired(match.getRule(), System.nanoTime() - start);
 
         // The root may have been merged with another
         // subset. Find the new root subset.
@@ -644,6 +688,10 @@ public RelNode findBestExp() {
       }
 
       ruleQueue.phaseCompleted(phase);
+      if (limitReached) {
+        LOGGER.debug("Planner reached its limit in phase {}", phase);
+        break;
+      }
     }
     if (LOGGER.isTraceEnabled()) {
       StringWriter sw = new StringWriter();
@@ -653,6 +701,8 @@ public RelNode findBestExp() {
       LOGGER.trace(sw.toString());
     }
     RelNode cheapest = root.buildCheapestPlan(this);
+    statistics = stats.build(allSets, limitReached);
+    LOGGER.debug("Planner statistics: {}", statistics);
     if (LOGGER.isDebugEnabled()) {
       LOGGER.debug(
           "Cheapest plan:\n{}", RelOptUtil.toString(cheapest, SqlExplainLevel.ALL_ATTRIBUTES));
@@ -662,6 +712,13 @@ public RelNode findBestExp() {
     return cheapest;
   }
 
+  /** Returns whether this planner has run for longer than its time limit, or
+   * fired more rules than its rule limit. */
+  private boolean isLimitReached(VolcanoPlannerStatistics.Builder stats) {
+    return ruleLimit > 0 && stats.ruleFiringCount() >= ruleLimit
+        || timeLimit > 0 && stats.elapsedNanos() >= timeLimit * 1_000_000L;
+  }
+
   /** Informs {@link JaninoRelMetadataProvider} about the different kinds of
    * {@link RelNode} that we will be dealing with. It will reduce the number
    * of times that we need to re-generate the provider. */
@@ -1397,12 +1454,17 @@ private void dumpGraphviz(PrintWriter pw) {
    * @param rel Relational expression
    */
   void rename(RelNode rel) {
-    final String oldDigest = rel.getDigest();
+    final RelDigest oldDigest = rel.getRelDigest();
+    final String oldDigestString =
+        LOGGER.isTraceEnabled() ? rel.getDigest() : null;
     if (fixUpInputs(rel)) {
       final RelNode removed = mapDigestToRel.remove(oldDigest);
       assert removed == rel;
-      final String newDigest = rel.recomputeDigest();
-      LOGGER.trace("Rename #{} from '{}' to '{}'", rel.getId(), oldDigest, newDigest);
+      final RelDigest newDigest = rel.recomputeRelDigest();
+      if (LOGGER.isTraceEnabled()) {
+        LOGGER.trace("Rename #{} from '{}' to '{}'", rel.getId(),
+            oldDigestString, rel.getDigest());
+      }
       final RelNode equivRel = mapDigestToRel.put(newDigest, rel);
       if (equivRel != null) {
         assert equivRel != rel;
@@ -1462,7 +1524,7 @@ void reregister(
     // Is there an equivalent relational expression? (This might have
     // just occurred because the relational expression's child was just
     // found to be equivalent to another set.)
-    RelNode equivRel = mapDigestToRel.get(rel.getDigest());
+    RelNode equivRel = mapDigestToRel.get(rel.getRelDigest());
     if (equivRel != null && equivRel != rel) {
       assert equivRel.getClass() == rel.getClass();
       assert equivRel.getTraitSet().equals(rel.getTraitSet());
@@ -1672,7 +1734,7 @@ private RelSubset registerImpl(
 
     // If it is equivalent to an existing expression, return the set that
     // the equivalent expression belongs to.
-    String key = rel.getDigest();
+    RelDigest key = rel.getRelDigest();
     RelNode equivExp = mapDigestToRel.get(key);
     if (equivExp == null) {
       // do nothing
@@ -1686,7 +1748,7 @@ private RelSubset registerImpl(
       RelSet equivSet = getSet(equivExp);
       if (equivSet != null) {
         LOGGER.trace(
-            "Register: rel#{} is equivalent to {}", rel.getId(), equivExp.getDescription());
+            "Register: rel#{} is equivalent to {}", rel.getId(), equivExp);
         return registerSubset(set, getSubset(equivExp));
       }
     }
@@ -1698,9 +1760,11 @@ private RelSubset registerImpl(
       if ((set != null)
           && (set != childSet)
           && (set.equivalentSet == null)) {
-        LOGGER.trace(
-            "Register #{} {} (and merge sets, because it is a conversion)",
-            rel.getId(), rel.getDigest());
+        if (LOGGER.isTraceEnabled()) {
+          LOGGER.trace(
+              "Register #{} {} (and merge sets, because it is a conversion)",
+              rel.getId(), rel.getDigest());
+        }
         merge(set, childSet);
         registerCount++;
 
@@ -1709,8 +1773,7 @@ private RelSubset registerImpl(
         // check whether we are now equivalent to an existing
         // expression.
         if (fixUpInputs(rel)) {
-          rel.recomputeDigest();
-          key = rel.getDigest();
+          key = rel.recomputeRelDigest();
           RelNode equivRel = mapDigestToRel.get(key);
           if ((equivRel != rel) && (equivRel != null)) {
             assert RelOptUtil.equal(
@@ -1762,7 +1825,7 @@ private RelSubset registerImpl(
     final RelNode xx = mapDigestToRel.put(key, rel);
     assert xx == null || xx == rel : rel.getDigest();
 
-    LOGGER.trace("Register {} in {}", rel.getDescription(), subset.getDescription());
+    LOGGER.trace("Register {} in {}", rel, subset);
 
     // This relational expression may have been registered while we
     // recursively registered its children. If this is the case, we're done.
@@ -1928,6 +1991,44 @@ public void setLocked(boolean locked) {
     this.locked = locked;
   }
 
+  /**
+   * Sets the maximum time that {@link #findBestExp()} may spend. When the
+   * limit has been reached, the planner returns the cheapest plan that it has
+   * found so far, or if it has not found a plan, the first plan that it finds.
+   *
+   * <p>The default is the value of the
+   * {@link org.apache.calcite.config.CalciteConnectionProperty#PLANNER_TIME_LIMIT}
+   * property in the planner's context, or 0.
+   *
+   * @param timeLimit Time limit in milliseconds, or 0 for no limit
+   */
+  public void setTimeLimit(long timeLimit) {
+    this.timeLimit = timeLimit;
+  }
+
+  /**
+   * Sets the maximum number of rules that {@link #findBestExp()} may fire.
+   * When the limit has been reached, the planner behaves as when it reaches
+   * its {@link #setTimeLimit(long) time limit}.
+   *
+   * <p>The default is the value of the
+   * {@link org.apache.calcite.config.CalciteConnectionProperty#PLANNER_RULE_LIMIT}
+   * property in the planner's context, or 0.
+   *
+   * @param ruleLimit Maximum number of rule firings, or 0 for no limit
+   */
+  public void setRuleLimit(int ruleLimit) {
+    this.ruleLimit = ruleLimit;
+  }
+
+  /**
+   * Returns statistics about the most recent call to {@link #findBestExp()},
+   * or null if it has not been called.
+   */
+  public VolcanoPlannerStatistics getStatistics() {
+    return statistics;
+  }
+
   public void ensureRegistered(
       RelNode rel,
       RelNode equivRel,
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.plan.volcano;
+
+import org.apache.calcite.plan.RelOptRule;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Statistics about a call to {@link VolcanoPlanner#findBestExp()}.
+ *
+ * @see VolcanoPlanner#getStatistics()
+ */
+public class VolcanoPlannerStatistics {
+  /** Number of rules fired. */
+  public final int ruleFiringCount;
+
+  /** Number of equivalence sets at the end of planning. */
+  public final int setCount;
+
+  /** Number of subsets at the end of planning. */
+  public final int subsetCount;
+
+  /** Number of relational expressions registered, not counting subsets. */
+  public final int relCount;
+
+  /** Time spent planning, in nanoseconds. */
+  public final long elapsedNanos;
+
+  /** Whether the planner stopped because it reached its time or rule-firing
+   * limit, rather than because it had no more rules to fire. */
+  public final boolean limitReached;
+
+  /** Statistics of each rule that fired, keyed by the rule's description,
+   * in the order that the rules first fired. */
+  public final ImmutableMap<String, RuleStatistics> ruleStatistics;
+
+  VolcanoPlannerStatistics(int ruleFiringCount, int setCount,
+      int subsetCount, int relCount, long elapsedNanos, boolean limitReached,
+      ImmutableMap<String, RuleStatistics> ruleStatistics) {
+    this.ruleFiringCount = ruleFiringCount;
+    this.setCount = setCount;
+    this.subsetCount = subsetCount;
+    this.relCount = relCount;
+    this.elapsedNanos = elapsedNanos;
+    this.limitReached = limitReached;
+    this.ruleStatistics = ruleStatistics;
+  }
+
+  @Override public String toString() {
+    final StringBuilder b = new StringBuilder();
+    b.append(
+        String.format(Locale.ROOT,
+            "rules fired: %d, sets: %d, subsets: %d, rels: %d, "
+                + "time: %.3f ms, limit reached: %s",
+            ruleFiringCount, setCount, subsetCount, relCount,
+            elapsedNanos / 1E6, limitReached));
+    final List<Map.Entry<String, RuleStatistics>> entries =
+        new ArrayList<>(ruleStatistics.entrySet());
+    entries.sort((e0, e1) ->
+        Long.compare(e1.getValue().elapsedNanos, e0.getValue().elapsedNanos));
+    for (Map.Entry<String, RuleStatistics> entry : entries) {
+      b.append(
+          String.format(Locale.ROOT, "\n  %s: fired %d, time %.3f ms",
+              entry.getKey(), entry.getValue().count,
+              entry.getValue().elapsedNanos / 1E6));
+    }
+    return b.toString();
+  }
+
+  /** Statistics of one rule. */
+  public static class RuleStatistics {
+    /** Number of times the rule fired. */
+    public final int count;
+
+    /** Time spent firing the rule, in nanoseconds, including the time to
+     * register the expressions that it created. */
+    public final long elapsedNanos;
+
+    RuleStatistics(int count, long elapsedNanos) {
+      this.count = count;
+      this.elapsedNanos = elapsedNanos;
+    }
+  }
+
+  /** Accumulates statistics while a planner runs. */
+  static class Builder {
+    private final long start = System.nanoTime();
+    private final Map<String, long[]> rules = new LinkedHashMap<>();
+    private int ruleFiringCount;
+
+    /** Returns the number of rules fired so far. */
+    int ruleFiringCount() {
+      return ruleFiringCount;
+    }
+
+    /** Returns the time since planning started, in nanoseconds. */
+    long elapsedNanos() {
+      return System.nanoTime() - start;
+    }
+
+    /** Records that a rule has fired. */
+    void ruleFired(RelOptRule rule, long elapsedNanos) {
+      ++ruleFiringCount;
+      final long[] counts =
+          rules.computeIfAbsent(rule.toString(), k -> new long[2]);
+      ++counts[0];
+      counts[1] += elapsedNanos;
+    }
+
+    VolcanoPlannerStatistics build(List<RelSet> sets, boolean limitReached) {
+      int subsetCount = 0;
+      int relCount = 0;
+      for (RelSet set : sets) {
+        subsetCount += set.subsets.size();
+        relCount += set.rels.size();
+      }
+      final ImmutableMap.Builder<String, RuleStatistics> ruleStatistics =
+          ImmutableMap.builder();
+      for (Map.Entry<String, long[]> entry : rules.entrySet()) {
+        ruleStatistics.put(entry.getKey(),
+            new RuleStatistics((int) entry.getValue()[0],
+                entry.getValue()[1]));
+      }
+      return new VolcanoPlannerStatistics(ruleFiringCount, sets.size(),
+          subsetCount, relCount, elapsedNanos(), limitReached,
+          ruleStatistics.build());
+    }
+  }
+}
+
+// End VolcanoPlannerStatistics.java
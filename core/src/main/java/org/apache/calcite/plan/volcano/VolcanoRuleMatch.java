@@ -22,6 +22,7 @@
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.util.Litmus;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -56,15 +57,38 @@ class VolcanoRuleMatch extends VolcanoRuleCall {
     // for now -- that the set is the same as the root relexp.
     targetSet = volcanoPlanner.getSet(rels[0]);
     assert targetSet != null : rels[0].toString() + " isn't in a set";
-    digest = computeDigest();
   }
 
   //~ Methods ----------------------------------------------------------------
 
   public String toString() {
+    if (digest == null) {
+      digest = computeDigest();
+    }
     return digest;
   }
 
+  /**
+   * Returns a key that identifies this rule match. Two rule matches are
+   * equivalent if and only if their keys are equal.
+   *
+   * <p>The key consists of the same information as the digest, namely the
+   * rule and the id and digest of each relational expression, but uses
+   * {@link RelNode#getRelDigest() structural digests}, so that no string
+   * needs to be built.
+   *
+   * @return key of this rule match
+   */
+  List<Object> getKey() {
+    final Object[] key = new Object[1 + 2 * rels.length];
+    key[0] = getRule().toString();
+    for (int i = 0; i < rels.length; i++) {
+      key[1 + 2 * i] = rels[i].getId();
+      key[2 + 2 * i] = rels[i].getRelDigest();
+    }
+    return Arrays.asList(key);
+  }
+
   /**
    * Clears the cached importance value of this rule match. The importance
    * will be re-calculated next time {@link #getImportance()} is called.
@@ -153,9 +177,11 @@ private String computeDigest() {
   /**
    * Recomputes the digest of this VolcanoRuleMatch. It is necessary when sets
    * have merged since the match was created.
+   *
+   * <p>The digest is computed when it is next needed.
    */
   public void recomputeDigest() {
-    digest = computeDigest();
+    digest = null;
   }
 
   /**
@@ -16,6 +16,8 @@
  */
 package org.apache.calcite.prepare;
 
+import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.enumerable.BatchRules;
 import org.apache.calcite.adapter.enumerable.EnumerableBindable;
 import org.apache.calcite.adapter.enumerable.EnumerableCalc;
 import org.apache.calcite.adapter.enumerable.EnumerableConvention;
@@ -132,6 +134,7 @@
 import org.apache.calcite.sql2rel.SqlToRelConverter;
 import org.apache.calcite.sql2rel.StandardConvertletTable;
 import org.apache.calcite.tools.Frameworks;
+import org.apache.calcite.util.CancelFlag;
 import org.apache.calcite.util.ImmutableIntList;
 import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.Util;
@@ -152,6 +155,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.apache.calcite.util.Static.RESOURCE;
 
@@ -203,8 +207,10 @@ public class CalcitePrepareImpl implements CalcitePrepare {
           EnumerableRules.ENUMERABLE_PROJECT_RULE,
           EnumerableRules.ENUMERABLE_FILTER_RULE,
           EnumerableRules.ENUMERABLE_AGGREGATE_RULE,
+          EnumerableRules.ENUMERABLE_SORTED_AGGREGATE_RULE,
           EnumerableRules.ENUMERABLE_SORT_RULE,
           EnumerableRules.ENUMERABLE_LIMIT_RULE,
+          EnumerableRules.ENUMERABLE_TOP_N_RULE,
           EnumerableRules.ENUMERABLE_COLLECT_RULE,
           EnumerableRules.ENUMERABLE_UNCOLLECT_RULE,
           EnumerableRules.ENUMERABLE_UNION_RULE,
@@ -516,7 +522,12 @@ protected RelOptPlanner createPlanner(
       org.apache.calcite.plan.Context externalContext,
       RelOptCostFactory costFactory) {
     if (externalContext == null) {
-      externalContext = Contexts.of(prepareContext.config());
+      // If the statement is canceled, the planner stops at its next rule
+      final AtomicBoolean cancelFlag =
+          DataContext.Variable.CANCEL_FLAG.get(prepareContext.getDataContext());
+      externalContext = cancelFlag == null
+          ? Contexts.of(prepareContext.config())
+          : Contexts.of(prepareContext.config(), new CancelFlag(cancelFlag));
     }
     final VolcanoPlanner planner =
         new VolcanoPlanner(costFactory, externalContext);
@@ -552,6 +563,11 @@ protected RelOptPlanner createPlanner(
         planner.addRule(rule);
       }
       planner.addRule(EnumerableInterpreterRule.INSTANCE);
+      if (prepareContext.config().vectorize()) {
+        for (RelOptRule rule : BatchRules.RULES) {
+          planner.addRule(rule);
+        }
+      }
     }
 
     if (enableBindable && ENABLE_ENUMERABLE) {
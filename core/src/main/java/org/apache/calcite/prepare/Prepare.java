@@ -38,6 +38,11 @@
 import org.apache.calcite.rel.RelVisitor;
 import org.apache.calcite.rel.core.TableScan;
 import org.apache.calcite.rel.logical.LogicalTableModify;
+import org.apache.calcite.rel.metadata.ChainedRelMetadataProvider;
+import org.apache.calcite.rel.metadata.DefaultRelMetadataProvider;
+import org.apache.calcite.rel.metadata.JaninoRelMetadataProvider;
+import org.apache.calcite.rel.metadata.RelMetadataProvider;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeField;
 import org.apache.calcite.rex.RexExecutorImpl;
@@ -171,6 +176,12 @@ protected RelRoot optimize(RelRoot root,
     // rules. The problem occurs when plans are created via RelBuilder, not
     // the usual process (SQL and SqlToRelConverter.Config.isConvertTableAccess
     // = true).
+    //
+    // A table may also supply a metadata provider, say to estimate the
+    // selectivity of predicates from statistics of its columns, by unwrapping
+    // to RelMetadataProvider; metadata of this query comes from it ahead of
+    // the default provider.
+    final List<RelMetadataProvider> metadataProviders = new ArrayList<>();
     final RelVisitor visitor = new RelVisitor() {
       @Override public void visit(RelNode node, int ordinal, RelNode parent) {
         if (node instanceof TableScan) {
@@ -179,15 +190,48 @@ protected RelRoot optimize(RelRoot root,
               ViewExpanders.simpleContext(cluster);
           final RelNode r = node.getTable().toRel(context);
           planner.registerClass(r);
+          final RelMetadataProvider metadataProvider =
+              node.getTable().unwrap(RelMetadataProvider.class);
+          if (metadataProvider != null
+              && !metadataProviders.contains(metadataProvider)) {
+            metadataProviders.add(metadataProvider);
+          }
         }
         super.visit(node, ordinal, parent);
       }
     };
     visitor.go(root.rel);
 
-    final Program program = getProgram();
-    final RelNode rootRel4 = program.run(
-        planner, root.rel, desiredTraits, materializationList, latticeList);
+    final JaninoRelMetadataProvider previousProviders =
+        RelMetadataQuery.THREAD_PROVIDERS.get();
+    final RelMetadataProvider metadataProvider;
+    if (metadataProviders.isEmpty()) {
+      metadataProvider = DefaultRelMetadataProvider.INSTANCE;
+    } else {
+      metadataProvider =
+          ChainedRelMetadataProvider.of(
+              ImmutableList.<RelMetadataProvider>builder()
+                  .addAll(metadataProviders)
+                  .add(DefaultRelMetadataProvider.INSTANCE)
+                  .build());
+      RelMetadataQuery.THREAD_PROVIDERS.set(
+          JaninoRelMetadataProvider.of(metadataProvider));
+      root.rel.getCluster().invalidateMetadataQuery();
+    }
+
+    final Program program = getProgram(metadataProvider);
+    final RelNode rootRel4;
+    try {
+      rootRel4 = program.run(
+          planner, root.rel, desiredTraits, materializationList, latticeList);
+      // Create the query's metadata query while its tables' providers are
+      // set, so that explaining and implementing the plan still use them
+      rootRel4.getCluster().getMetadataQuery();
+    } finally {
+      // The providers of this query's tables must not leak into the next
+      // query that this thread prepares
+      RelMetadataQuery.THREAD_PROVIDERS.set(previousProviders);
+    }
     if (LOGGER.isDebugEnabled()) {
       LOGGER.debug("Plan after physical tweaks: {}",
           RelOptUtil.toString(rootRel4, SqlExplainLevel.ALL_ATTRIBUTES));
@@ -197,6 +241,12 @@ protected RelRoot optimize(RelRoot root,
   }
 
   protected Program getProgram() {
+    return getProgram(DefaultRelMetadataProvider.INSTANCE);
+  }
+
+  /** Returns the program that optimizes a query, given the metadata provider
+   * of its tables. */
+  protected Program getProgram(RelMetadataProvider metadataProvider) {
     // Allow a test to override the default program.
     final Holder<Program> holder = Holder.of(null);
     Hook.PROGRAM.run(holder);
@@ -204,7 +254,7 @@ protected Program getProgram() {
       return holder.get();
     }
 
-    return Programs.standard();
+    return Programs.standard(metadataProvider);
   }
 
   protected RelTraitSet getDesiredRootTraitSet(RelRoot root) {
@@ -47,6 +47,7 @@
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.schema.SchemaVersion;
 import org.apache.calcite.schema.Schemas;
+import org.apache.calcite.schema.SplittableTable;
 import org.apache.calcite.schema.StreamableTable;
 import org.apache.calcite.schema.Table;
 import org.apache.calcite.schema.TranslatableTable;
@@ -149,8 +150,10 @@ private static Function<Class, Expression> getClassExpressionFunction(
     } else if (table instanceof ScannableTable
         || table instanceof FilterableTable
         || table instanceof ProjectableFilterableTable) {
+      // A scan of one morsel asks for SplittableTable; other scans get the
+      // expression for the table's own class
       return clazz -> Schemas.tableExpression(schema, Object[].class, tableName,
-          table.getClass());
+          clazz == SplittableTable.class ? clazz : table.getClass());
     } else if (table instanceof StreamableTable) {
       return getClassExpressionFunction(schema, tableName,
           ((StreamableTable) table).stream());
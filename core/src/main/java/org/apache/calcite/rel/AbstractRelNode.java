@@ -65,10 +65,29 @@ public abstract class AbstractRelNode implements RelNode {
 
   private static final Logger LOGGER = CalciteTrace.getPlannerTracer();
 
+  /** Whether each class overrides {@link #computeDigest()}. If it does, the
+   * structural digest of its instances is based on the string digest. */
+  private static final ClassValue<Boolean> OVERRIDES_COMPUTE_DIGEST =
+      new ClassValue<Boolean>() {
+        @Override protected Boolean computeValue(Class<?> type) {
+          for (Class<?> c = type; c != AbstractRelNode.class;
+               c = c.getSuperclass()) {
+            try {
+              c.getDeclaredMethod("computeDigest");
+              return true;
+            } catch (NoSuchMethodException e) {
+              // try the super-class
+            }
+          }
+          return false;
+        }
+      };
+
   //~ Instance fields --------------------------------------------------------
 
   /**
-   * Description, consists of id plus digest.
+   * Description, consists of id plus digest. Computed on demand, from the
+   * digest.
    */
   private String desc;
 
@@ -81,13 +100,19 @@ public abstract class AbstractRelNode implements RelNode {
    * A short description of this relational expression's type, inputs, and
    * other properties. The string uniquely identifies the node; another node
    * is equivalent if and only if it has the same value. Computed by
-   * {@link #computeDigest}, assigned by {@link #onRegister}, returned by
-   * {@link #getDigest()}.
+   * {@link #computeDigest}, on demand after {@link #onRegister} has assigned
+   * {@link #relDigest}, and returned by {@link #getDigest()}.
    *
    * @see #desc
    */
   protected String digest;
 
+  /**
+   * Structural digest, which the planner uses to identify equivalent
+   * expressions. Assigned by {@link #onRegister}; null until then.
+   */
+  private RelDigest relDigest;
+
   private final RelOptCluster cluster;
 
   /**
@@ -111,9 +136,9 @@ public AbstractRelNode(RelOptCluster cluster, RelTraitSet traitSet) {
     this.cluster = cluster;
     this.traitSet = traitSet;
     this.id = NEXT_ID.getAndIncrement();
-    this.digest = getRelTypeName() + "#" + id;
-    this.desc = digest;
-    LOGGER.trace("new {}", digest);
+    if (LOGGER.isTraceEnabled()) {
+      LOGGER.trace("new {}", getDigest());
+    }
   }
 
   //~ Methods ----------------------------------------------------------------
@@ -347,18 +372,21 @@ public RelNode onRegister(RelOptPlanner planner) {
     if (!Util.equalShallow(oldInputs, inputs)) {
       r = copy(getTraitSet(), inputs);
     }
-    r.recomputeDigest();
+    r.recomputeRelDigest();
     assert r.isValid(Litmus.THROW, null);
     return r;
   }
 
   public String recomputeDigest() {
-    String tempDigest = computeDigest();
-    assert tempDigest != null : "computeDigest() should be non-null";
+    recomputeRelDigest();
+    return getDigest();
+  }
 
-    this.desc = "rel#" + id + ":" + tempDigest;
-    this.digest = tempDigest;
-    return this.digest;
+  public RelDigest recomputeRelDigest() {
+    relDigest = computeRelDigest();
+    digest = relDigest.string;
+    desc = null;
+    return relDigest;
   }
 
   public void replaceInput(
@@ -368,21 +396,73 @@ public void replaceInput(
   }
 
   public String toString() {
-    return desc;
+    return getDescription();
   }
 
   public final String getDescription() {
+    if (desc == null) {
+      desc = relDigest == null
+          ? getDigest()
+          : "rel#" + id + ":" + getDigest();
+    }
     return desc;
   }
 
   public final String getDigest() {
+    if (digest == null) {
+      if (relDigest == null) {
+        digest = getRelTypeName() + "#" + id;
+      } else {
+        digest = computeDigest();
+        assert digest != null : "computeDigest() should be non-null";
+      }
+    }
     return digest;
   }
 
+  public final RelDigest getRelDigest() {
+    if (relDigest == null) {
+      return RelDigest.of(getDigest());
+    }
+    return relDigest;
+  }
+
+  /**
+   * Returns the structural digest of this relational expression: the one
+   * assigned when it was registered or, if it has not been registered, the
+   * one that {@link #computeRelDigest()} computes now.
+   *
+   * <p>Unlike {@link #getRelDigest()}, which for an unregistered expression
+   * is based on a string that contains its id, it is equal to the digest of
+   * any equivalent expression, and respects a sub-class's override of
+   * {@link #computeDigest()} or {@link #computeRelDigest()}.
+   *
+   * @return Structural digest of this relational expression
+   */
+  public final RelDigest getOrComputeRelDigest() {
+    return relDigest != null ? relDigest : computeRelDigest();
+  }
+
   public RelOptTable getTable() {
     return null;
   }
 
+  /**
+   * Computes the structural digest. Does not modify this object.
+   *
+   * <p>The default implementation collects the terms and values that
+   * {@link #explain} writes; if the class overrides {@link #computeDigest()},
+   * it uses the string digest.
+   *
+   * @return Structural digest
+   */
+  protected RelDigest computeRelDigest() {
+    if (OVERRIDES_COMPUTE_DIGEST.get(getClass())) {
+      return RelDigest.of(computeDigest());
+    }
+    return RelDigest.of(this);
+  }
+
   /**
    * Computes the digest. Does not modify this object.
    *
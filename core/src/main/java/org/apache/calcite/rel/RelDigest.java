@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel;
+
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.SqlExplainLevel;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Structural digest of a relational expression.
+ *
+ * <p>Two relational expressions are equivalent if and only if their digests
+ * are equal. A digest consists of the class and traits of an expression, and
+ * the terms and values that its {@link RelNode#explain} method writes at
+ * level {@link SqlExplainLevel#DIGEST_ATTRIBUTES}. Inputs are compared by
+ * identity, and the other values by value; the hash code is computed
+ * once, when the digest is created.
+ *
+ * <p>It serves the same purpose as the string returned by
+ * {@link RelNode#getDigest()}, but does not require a string to be built, so
+ * is cheaper to compute, hash and compare. A digest is immutable; if an
+ * expression's inputs change, it gets a new digest.
+ */
+public final class RelDigest {
+  private final Class clazz;
+  private final RelTraitSet traitSet;
+  /** Terms and values, alternately. */
+  private final Object[] items;
+  private final int hash;
+  /** String digest, if this digest was created from one; otherwise null. */
+  final String string;
+
+  private RelDigest(Class clazz, RelTraitSet traitSet, Object[] items,
+      String string) {
+    this.clazz = clazz;
+    this.traitSet = traitSet;
+    this.items = items;
+    this.string = string;
+    int h = Objects.hash(clazz, traitSet);
+    for (Object item : items) {
+      h = h * 31 + hash(item);
+    }
+    this.hash = h;
+  }
+
+  /** Creates the digest of a relational expression, from the terms and
+   * values that it explains. */
+  public static RelDigest of(RelNode rel) {
+    final Collector collector = new Collector();
+    rel.explain(collector);
+    assert collector.items != null;
+    return new RelDigest(rel.getClass(), rel.getTraitSet(),
+        collector.items, null);
+  }
+
+  /** Creates a digest from a string digest; two such digests are equal if
+   * and only if the strings are equal. */
+  public static RelDigest of(String digest) {
+    return new RelDigest(null, null, new Object[] {digest}, digest);
+  }
+
+  /** Creates a digest from a class, traits and values. */
+  public static RelDigest of(Class clazz, RelTraitSet traitSet,
+      Object... values) {
+    final Object[] items = new Object[values.length];
+    for (int i = 0; i < values.length; i++) {
+      items[i] = encode(values[i]);
+    }
+    return new RelDigest(clazz, traitSet, items, null);
+  }
+
+  @Override public int hashCode() {
+    return hash;
+  }
+
+  @Override public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof RelDigest)) {
+      return false;
+    }
+    final RelDigest that = (RelDigest) obj;
+    if (hash != that.hash
+        || clazz != that.clazz
+        || !Objects.equals(traitSet, that.traitSet)
+        || items.length != that.items.length) {
+      return false;
+    }
+    for (int i = 0; i < items.length; i++) {
+      final Object item = items[i];
+      if (item instanceof RelNode
+          ? item != that.items[i]
+          : !Objects.equals(item, that.items[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override public String toString() {
+    if (string != null) {
+      return string;
+    }
+    return (clazz == null ? "" : clazz.getSimpleName() + traitSet)
+        + Arrays.toString(items);
+  }
+
+  private static int hash(Object item) {
+    return item instanceof RelNode
+        ? System.identityHashCode(item)
+        : Objects.hashCode(item);
+  }
+
+  /** Converts a value to a form whose {@link Object#equals} and
+   * {@link Object#hashCode} agree with its string representation in a
+   * string digest.
+   *
+   * <p>Relational expressions are compared by identity; values of types
+   * whose {@code equals} is consistent with {@code toString} are used as is;
+   * other values, including {@link RexNode}, are represented by their string,
+   * which for a {@code RexNode} is cached. */
+  private static Object encode(Object value) {
+    if (value == null
+        || value instanceof RelNode
+        || value instanceof String
+        || value instanceof Integer
+        || value instanceof Long
+        || value instanceof Boolean
+        || value instanceof Enum
+        || value instanceof ImmutableBitSet) {
+      return value;
+    }
+    if (value instanceof List) {
+      final List<?> list = (List<?>) value;
+      final List<Object> encoded = new ArrayList<>(list.size());
+      for (Object o : list) {
+        encoded.add(encode(o));
+      }
+      return encoded;
+    }
+    return value.toString();
+  }
+
+  /** Writer that collects the terms and values of one relational
+   * expression. */
+  private static class Collector implements RelWriter {
+    private final List<Object> values = new ArrayList<>();
+    Object[] items;
+
+    public void explain(RelNode rel, List<Pair<String, Object>> valueList) {
+      throw new UnsupportedOperationException();
+    }
+
+    public SqlExplainLevel getDetailLevel() {
+      return SqlExplainLevel.DIGEST_ATTRIBUTES;
+    }
+
+    public RelWriter input(String term, RelNode input) {
+      values.add(term);
+      values.add(input);
+      return this;
+    }
+
+    public RelWriter item(String term, Object value) {
+      values.add(term);
+      values.add(encode(value));
+      return this;
+    }
+
+    public RelWriter itemIf(String term, Object value, boolean condition) {
+      if (condition) {
+        item(term, value);
+      }
+      return this;
+    }
+
+    public RelWriter done(RelNode node) {
+      items = values.toArray();
+      values.clear();
+      return this;
+    }
+
+    public boolean nest() {
+      return false;
+    }
+  }
+}
+
+// End RelDigest.java
@@ -310,6 +310,32 @@ public interface RelNode extends RelOptNode, Cloneable {
    */
   String recomputeDigest();
 
+  /**
+   * Returns the structural digest of this relational expression. Two
+   * relational expressions are equivalent if and only if their structural
+   * digests are equal; unlike {@link #getDigest()}, it does not require a
+   * string to be built.
+   *
+   * <p>The default implementation is based on {@link #getDigest()}.
+   *
+   * @return Structural digest of this relational expression
+   */
+  default RelDigest getRelDigest() {
+    return RelDigest.of(getDigest());
+  }
+
+  /**
+   * Computes the structural digest, assigns it, and returns it. For planner
+   * use only.
+   *
+   * <p>The default implementation calls {@link #recomputeDigest()}.
+   *
+   * @return Structural digest of this relational expression
+   */
+  default RelDigest recomputeRelDigest() {
+    return RelDigest.of(recomputeDigest());
+  }
+
   /**
    * Replaces the <code>ordinalInParent</code><sup>th</sup> input. You must
    * override this method if you override {@link #getInputs}.
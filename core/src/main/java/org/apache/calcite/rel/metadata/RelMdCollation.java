@@ -16,11 +16,14 @@
  */
 package org.apache.calcite.rel.metadata;
 
+import org.apache.calcite.adapter.enumerable.BatchToEnumerableConverter;
 import org.apache.calcite.adapter.enumerable.EnumerableCorrelate;
 import org.apache.calcite.adapter.enumerable.EnumerableJoin;
 import org.apache.calcite.adapter.enumerable.EnumerableMergeJoin;
 import org.apache.calcite.adapter.enumerable.EnumerableSemiJoin;
+import org.apache.calcite.adapter.enumerable.EnumerableSortedAggregate;
 import org.apache.calcite.adapter.enumerable.EnumerableThetaJoin;
+import org.apache.calcite.adapter.enumerable.EnumerableToBatchConverter;
 import org.apache.calcite.linq4j.Ord;
 import org.apache.calcite.plan.RelOptTable;
 import org.apache.calcite.plan.hep.HepRelVertex;
@@ -164,6 +167,14 @@ public ImmutableList<RelCollation> collations(EnumerableSemiJoin join,
     );
   }
 
+  public ImmutableList<RelCollation> collations(
+      EnumerableSortedAggregate aggregate, RelMetadataQuery mq) {
+    // Groups are emitted in the order of the input, which is sorted on the
+    // group keys
+    return ImmutableList.of(
+        EnumerableSortedAggregate.outputCollation(aggregate.getGroupSet()));
+  }
+
   public ImmutableList<RelCollation> collations(Sort sort,
       RelMetadataQuery mq) {
     return ImmutableList.copyOf(
@@ -193,6 +204,17 @@ public ImmutableList<RelCollation> collations(Values values,
         values(mq, values.getRowType(), values.getTuples()));
   }
 
+  public ImmutableList<RelCollation> collations(
+      BatchToEnumerableConverter rel, RelMetadataQuery mq) {
+    // Converting between batches and rows preserves the order of the rows
+    return mq.collations(rel.getInput());
+  }
+
+  public ImmutableList<RelCollation> collations(
+      EnumerableToBatchConverter rel, RelMetadataQuery mq) {
+    return mq.collations(rel.getInput());
+  }
+
   public ImmutableList<RelCollation> collations(HepRelVertex rel,
       RelMetadataQuery mq) {
     return mq.collations(rel.getCurrentRel());
@@ -419,6 +441,9 @@ public static List<RelCollation> mergeJoin(RelMetadataQuery mq,
    */
   public static List<RelCollation> enumerableJoin(RelMetadataQuery mq,
       RelNode left, RelNode right, JoinRelType joinType) {
+    if (EnumerableJoin.maySpill(mq, right)) {
+      return ImmutableList.of();
+    }
     return enumerableJoin0(mq, left, right, joinType);
   }
 
@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.rel.metadata;
 
+import org.apache.calcite.adapter.enumerable.EnumerableInterpreter;
 import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.plan.volcano.RelSubset;
 import org.apache.calcite.rel.RelNode;
@@ -119,6 +120,11 @@ public Double getDistinctRowCount(Exchange rel, RelMetadataQuery mq,
     return mq.getDistinctRowCount(rel.getInput(), groupKey, predicate);
   }
 
+  public Double getDistinctRowCount(EnumerableInterpreter rel,
+      RelMetadataQuery mq, ImmutableBitSet groupKey, RexNode predicate) {
+    return mq.getDistinctRowCount(rel.getInput(), groupKey, predicate);
+  }
+
   public Double getDistinctRowCount(Filter rel, RelMetadataQuery mq,
       ImmutableBitSet groupKey, RexNode predicate) {
     if (predicate == null || predicate.isAlwaysTrue()) {
@@ -93,7 +93,11 @@ public Double averageRowSize(RelNode rel, RelMetadataQuery mq) {
     for (Pair<Double, RelDataTypeField> p
         : Pair.zip(averageColumnSizes, fields)) {
       if (p.left == null) {
-        d += averageFieldValueSize(p.right);
+        final Double fieldValueSize = averageFieldValueSize(p.right);
+        if (fieldValueSize == null) {
+          return null;
+        }
+        d += fieldValueSize;
       } else {
         d += p.left;
       }
@@ -157,7 +161,8 @@ public List<Double> averageColumnSizes(Values rel, RelMetadataQuery mq) {
 
   public List<Double> averageColumnSizes(TableScan rel, RelMetadataQuery mq) {
     final List<RelDataTypeField> fields = rel.getRowType().getFieldList();
-    final ImmutableList.Builder<Double> list = ImmutableList.builder();
+    final ImmutableNullableList.Builder<Double> list =
+        ImmutableNullableList.builder();
     for (RelDataTypeField field : fields) {
       list.add(averageTypeValueSize(field.getType()));
     }
@@ -167,7 +172,8 @@ public List<Double> averageColumnSizes(TableScan rel, RelMetadataQuery mq) {
   public List<Double> averageColumnSizes(Aggregate rel, RelMetadataQuery mq) {
     final List<Double> inputColumnSizes =
         mq.getAverageColumnSizesNotNull(rel.getInput());
-    final ImmutableList.Builder<Double> list = ImmutableList.builder();
+    final ImmutableNullableList.Builder<Double> list =
+        ImmutableNullableList.builder();
     for (int key : rel.getGroupSet()) {
       list.add(inputColumnSizes.get(key));
     }
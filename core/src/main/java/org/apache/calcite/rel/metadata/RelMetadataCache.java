@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.metadata;
+
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.rel.AbstractRelNode;
+import org.apache.calcite.rel.RelDigest;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.util.ImmutableNullableList;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * Cache of metadata values that is shared between queries.
+ *
+ * <p>Each {@link RelMetadataQuery} has its own cache, which lives as long as
+ * the query. Values that depend only on the statistics of a table, such as
+ * the row count of a {@link TableScan}, are the same in every query that
+ * scans that table, so a planner that plans many queries over the same
+ * schema can re-use them rather than computing them again.
+ *
+ * <p>A value is shared only if all of the following hold:
+ *
+ * <ul>
+ * <li>it is of a kind of metadata that is deterministic given the
+ *   statistics of the table, such as row count, selectivity or unique keys
+ *   (but not, say, cost, which depends on the planner);
+ * <li>the relational expression is a {@link TableScan}, and has no inputs;
+ * <li>no argument is a {@link RexNode}, such as the predicate of
+ *   selectivity, which belongs to the query that created it;
+ * <li>the table's {@link Statistic#getVersion() statistics version} is not
+ *   null.
+ * </ul>
+ *
+ * <p>The key of a shared value consists of the kind of metadata, its
+ * arguments, the structural {@link RelDigest digest} (see
+ * {@link AbstractRelNode#getOrComputeRelDigest()}) and row type of the
+ * scan, the {@link Table} object, the statistics version, and the metadata
+ * provider. Thus a value is never used by a query whose table has different
+ * statistics, or whose planner computes metadata differently. When a table's
+ * statistics change, it must return a new version; values of the old version
+ * are no longer used, and are eventually evicted.
+ *
+ * <p>The cache is bounded, and is safe for use by concurrent planners.
+ * Its size is set by the "calcite.metadata.cache.size" system property
+ * (default 10,000); 0 disables it.
+ */
+public class RelMetadataCache {
+  /** The cache used by {@link RelMetadataQuery} instances. */
+  public static final RelMetadataCache INSTANCE =
+      new RelMetadataCache(
+          Integer.getInteger("calcite.metadata.cache.size", 10_000));
+
+  /** Kinds of metadata whose values depend only on the relational
+   * expression, its arguments, and the statistics of its table. */
+  private static final ImmutableSet<Class> CACHEABLE_METADATA =
+      ImmutableSet.of(BuiltInMetadata.RowCount.class,
+          BuiltInMetadata.MaxRowCount.class,
+          BuiltInMetadata.MinRowCount.class,
+          BuiltInMetadata.DistinctRowCount.class,
+          BuiltInMetadata.Selectivity.class,
+          BuiltInMetadata.PopulationSize.class,
+          BuiltInMetadata.UniqueKeys.class,
+          BuiltInMetadata.ColumnUniqueness.class);
+
+  private final long maximumSize;
+  private final Cache<List, Object> cache;
+
+  /** Creates a cache that holds at most {@code maximumSize} values. */
+  public RelMetadataCache(long maximumSize) {
+    this.maximumSize = maximumSize;
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(Math.max(maximumSize, 0))
+        .build();
+  }
+
+  /** Returns the shared value for a key of a {@link RelMetadataQuery}'s
+   * cache, or null if there is none or the key cannot be shared. */
+  Object get(JaninoRelMetadataProvider provider, List key) {
+    final List sharedKey = sharedKey(provider, key);
+    return sharedKey == null ? null : cache.getIfPresent(sharedKey);
+  }
+
+  /** Records the value of a key of a {@link RelMetadataQuery}'s cache, if the
+   * key can be shared. */
+  void put(JaninoRelMetadataProvider provider, List key, Object value) {
+    final List sharedKey = sharedKey(provider, key);
+    if (sharedKey != null) {
+      cache.put(sharedKey, value);
+    }
+  }
+
+  /** Removes all values. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /** Returns the approximate number of values. */
+  public long size() {
+    return cache.size();
+  }
+
+  /** Converts a key of a {@link RelMetadataQuery}'s cache into a key that
+   * is valid across queries, or returns null if the value cannot be shared.
+   *
+   * <p>The key has the form (metadata, rel, arguments...), where metadata is
+   * a {@link MetadataDef} or the {@link Method} that was called; see the code
+   * generated by {@link JaninoRelMetadataProvider}. Keys of other forms are
+   * not shared. */
+  private List sharedKey(JaninoRelMetadataProvider provider, List key) {
+    if (maximumSize <= 0
+        || provider == null
+        || key.size() < 2
+        || !(key.get(1) instanceof TableScan)) {
+      return null;
+    }
+    final Object metadata = key.get(0);
+    final Class metadataClass;
+    if (metadata instanceof MetadataDef) {
+      metadataClass = ((MetadataDef) metadata).metadataClass;
+    } else if (metadata instanceof Method) {
+      metadataClass = ((Method) metadata).getDeclaringClass();
+    } else {
+      return null;
+    }
+    if (!CACHEABLE_METADATA.contains(metadataClass)) {
+      return null;
+    }
+    final List args = key.subList(2, key.size());
+    for (Object arg : args) {
+      if (arg instanceof RexNode) {
+        return null;
+      }
+    }
+    final TableScan rel = (TableScan) key.get(1);
+    if (!rel.getInputs().isEmpty()) {
+      return null;
+    }
+    final RelOptTable relOptTable = rel.getTable();
+    final Table table =
+        relOptTable == null ? null : relOptTable.unwrap(Table.class);
+    if (table == null) {
+      return null;
+    }
+    final Object version = table.getStatistic().getVersion();
+    if (version == null) {
+      return null;
+    }
+    // Arguments may be null, such as the predicate of selectivity
+    final ImmutableNullableList.Builder<Object> b =
+        ImmutableNullableList.builder();
+    b.add(provider, metadata, rel.getOrComputeRelDigest(), rel.getRowType(),
+        table, version,
+        // The row count of a RelOptTable may override its table's statistics
+        relOptTable.getRowCount());
+    b.addAll(args);
+    return b.build();
+  }
+}
+
+// End RelMetadataCache.java
@@ -75,8 +75,11 @@
  * plugin mechanism.
  */
 public class RelMetadataQuery {
-  /** Set of active metadata queries, and cache of previous results. */
-  public final Map<List, Object> map = new HashMap<>();
+  /** Set of active metadata queries, and cache of previous results.
+   *
+   * <p>Values that can be shared between queries are also looked up in, and
+   * written to, {@link RelMetadataCache#INSTANCE}. */
+  public final Map<List, Object> map = new SharedCacheMap();
 
   public final JaninoRelMetadataProvider metadataProvider;
 
@@ -907,6 +910,27 @@ private static Double validateResult(Double result) {
     return result;
   }
 
+  /** Map that consults the shared metadata cache if it does not contain a
+   * key, and writes computed values through to it. */
+  private class SharedCacheMap extends HashMap<List, Object> {
+    @Override public Object get(Object key) {
+      Object v = super.get(key);
+      if (v == null && key instanceof List) {
+        v = RelMetadataCache.INSTANCE.get(metadataProvider, (List) key);
+        if (v != null) {
+          super.put((List) key, v);
+        }
+      }
+      return v;
+    }
+
+    @Override public Object put(List key, Object value) {
+      if (value != NullSentinel.ACTIVE) {
+        RelMetadataCache.INSTANCE.put(metadataProvider, key, value);
+      }
+      return super.put(key, value);
+    }
+  }
 }
 
 // End RelMetadataQuery.java
@@ -0,0 +1,461 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.rules;
+
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.core.RelFactories;
+import org.apache.calcite.rel.metadata.RelMdUtil;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexPermuteInputsShuttle;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.tools.RelBuilder;
+import org.apache.calcite.tools.RelBuilderFactory;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.mapping.Mappings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Planner rule that finds an optimal ordering for join operators, including
+ * bushy orderings, using dynamic programming.
+ *
+ * <p>It is triggered by the pattern {@link MultiJoin}, and uses the DPccp
+ * algorithm of Moerkotte and Neumann ("Analysis of Two Existing and One New
+ * Dynamic Programming Algorithm for the Generation of Optimal Bushy Join
+ * Trees without Cross Products", VLDB 2006). DPccp enumerates only pairs of
+ * connected sub-graphs of the join graph that are connected to each other,
+ * so it never considers a cross product, and for star and chain queries it
+ * considers far fewer pairs than a dynamic program over all subsets.
+ *
+ * <p>The cost of a plan is the sum of the number of rows produced by each of
+ * its joins. The number of rows of a set of factors is the product of the
+ * row counts of the factors, as given by {@link RelMetadataQuery}, and of the
+ * selectivities of the join conditions between them. The selectivity of an
+ * equi-join condition is estimated from the number of distinct values of its
+ * columns; that of any other condition is guessed.
+ *
+ * <p>A condition that references more than two factors is treated as if it
+ * connected each pair of them, and is applied at the lowest join that
+ * contains all of them. A condition that references one factor is applied
+ * to that factor before it is joined.
+ *
+ * <p>It falls back to other rules in the following cases:
+ *
+ * <ul>
+ * <li>if the {@code MultiJoin} has more than {@link #maxFactors} inputs, or
+ *   its join graph is not connected, it uses the greedy algorithm of
+ *   {@link MultiJoinOptimizeBushyRule};
+ * <li>if the {@code MultiJoin} contains an outer join, it uses
+ *   {@link LoptOptimizeJoinRule}, which knows how to re-order joins without
+ *   moving factors into or out of an outer join.
+ * </ul>
+ *
+ * @see org.apache.calcite.tools.Programs#dpJoinOrder
+ */
+public class MultiJoinOptimizeDpRule extends RelOptRule {
+  /** Default value of {@link #maxFactors}. */
+  public static final int DEFAULT_MAX_FACTORS = 12;
+
+  public static final MultiJoinOptimizeDpRule INSTANCE =
+      new MultiJoinOptimizeDpRule(RelFactories.LOGICAL_BUILDER,
+          DEFAULT_MAX_FACTORS);
+
+  /** Maximum number of inputs for which to use dynamic programming; larger
+   * joins are ordered by the greedy algorithm. */
+  private final int maxFactors;
+
+  private final MultiJoinOptimizeBushyRule greedyRule;
+  private final LoptOptimizeJoinRule outerJoinRule;
+
+  /** Creates a MultiJoinOptimizeDpRule. */
+  public MultiJoinOptimizeDpRule(RelBuilderFactory relBuilderFactory,
+      int maxFactors) {
+    super(operand(MultiJoin.class, any()), relBuilderFactory, null);
+    if (maxFactors < 2 || maxFactors >= Long.SIZE) {
+      throw new IllegalArgumentException("maxFactors must be between 2 and "
+          + (Long.SIZE - 1) + ": " + maxFactors);
+    }
+    this.maxFactors = maxFactors;
+    this.greedyRule = new MultiJoinOptimizeBushyRule(relBuilderFactory);
+    this.outerJoinRule = new LoptOptimizeJoinRule(relBuilderFactory);
+  }
+
+  @Override public void onMatch(RelOptRuleCall call) {
+    final MultiJoin multiJoinRel = call.rel(0);
+    if (multiJoinRel.isFullOuterJoin()
+        || !multiJoinRel.getJoinTypes().stream()
+            .allMatch(joinType -> joinType == JoinRelType.INNER)) {
+      outerJoinRule.onMatch(call);
+      return;
+    }
+    final LoptMultiJoin multiJoin = new LoptMultiJoin(multiJoinRel);
+    final int n = multiJoin.getNumJoinFactors();
+    if (n > maxFactors) {
+      greedyRule.onMatch(call);
+      return;
+    }
+
+    final RexBuilder rexBuilder = multiJoinRel.getCluster().getRexBuilder();
+    final RelMetadataQuery mq = call.getMetadataQuery();
+
+    // Classify the conditions by the number of factors they reference.
+    final List<List<RexNode>> factorConditions = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      factorConditions.add(new ArrayList<>());
+    }
+    final List<RexNode> constantConditions = new ArrayList<>();
+    final List<Edge> edges = new ArrayList<>();
+    final long[] neighbors = new long[n];
+    for (RexNode node : multiJoin.getJoinFilters()) {
+      final ImmutableBitSet factors = multiJoin.createEdge(node).factors;
+      switch (factors.cardinality()) {
+      case 0:
+        constantConditions.add(node);
+        break;
+      case 1:
+        factorConditions.get(factors.nextSetBit(0)).add(node);
+        break;
+      default:
+        final long mask = toMask(factors);
+        for (int factor : factors) {
+          neighbors[factor] |= mask & ~(1L << factor);
+        }
+        edges.add(
+            new Edge(node, mask, selectivity(multiJoin, mq, node)));
+      }
+    }
+
+    // Plans of single factors.
+    final Map<Long, Plan> plans = new HashMap<>();
+    for (int i = 0; i < n; i++) {
+      double rowCount = mq.getRowCount(multiJoin.getJoinFactor(i));
+      for (RexNode condition : factorConditions.get(i)) {
+        rowCount *= RelMdUtil.guessSelectivity(condition);
+      }
+      plans.put(1L << i, new Plan(rowCount, 0d, 0L, 0L));
+    }
+
+    // Enumerate the pairs of connected sub-graphs, then build plans for them
+    // in order of size, so that the plans of both sides of a pair are
+    // complete before the pair is considered.
+    final Enumerator enumerator = new Enumerator(n, neighbors);
+    enumerator.solve();
+    for (int size = 2; size <= n; size++) {
+      final long[] pairs = enumerator.pairs[size];
+      for (int i = 0; i < enumerator.counts[size]; i += 2) {
+        consider(plans, edges, pairs[i], pairs[i + 1]);
+      }
+    }
+
+    final long all = (1L << n) - 1;
+    if (!plans.containsKey(all)) {
+      // The join graph is not connected; DPccp does not consider cross
+      // products.
+      greedyRule.onMatch(call);
+      return;
+    }
+
+    final RelBuilder relBuilder = call.builder();
+    final Pair<RelNode, Mappings.TargetMapping> top =
+        build(all, plans, edges, factorConditions, multiJoin, relBuilder,
+            rexBuilder);
+    relBuilder.push(top.left)
+        .project(relBuilder.fields(top.right))
+        .filter(constantConditions);
+    final RexNode postJoinFilter = multiJoinRel.getPostJoinFilter();
+    if (postJoinFilter != null) {
+      relBuilder.filter(postJoinFilter);
+    }
+    call.transformTo(relBuilder.build());
+  }
+
+  /** Considers joining two sets of factors, and records the plan if it is
+   * the cheapest so far for their union. */
+  private static void consider(Map<Long, Plan> plans, List<Edge> edges,
+      long factors1, long factors2) {
+    final Plan plan1 = plans.get(factors1);
+    final Plan plan2 = plans.get(factors2);
+    assert plan1 != null && plan2 != null;
+    final long factors = factors1 | factors2;
+    Plan plan = plans.get(factors);
+    if (plan == null) {
+      // The row count does not depend on how the factors are joined, so
+      // compute it only once.
+      double rowCount = plan1.rowCount * plan2.rowCount;
+      for (Edge edge : edges) {
+        if (isJoinedBy(edge, factors1, factors2)) {
+          rowCount *= edge.selectivity;
+        }
+      }
+      plan = new Plan(rowCount, Double.POSITIVE_INFINITY, 0L, 0L);
+      plans.put(factors, plan);
+    }
+    final double cost = plan.rowCount + plan1.cost + plan2.cost;
+    // Record the first candidate whatever its cost. If row counts overflow
+    // to infinity, or are NaN, no cost is less than another, but the set of
+    // factors still needs a plan.
+    if (plan.left == 0L || cost < plan.cost) {
+      // Put the input with fewer rows on the left, as
+      // MultiJoinOptimizeBushyRule does.
+      plan.cost = cost;
+      if (plan1.rowCount <= plan2.rowCount) {
+        plan.left = factors1;
+        plan.right = factors2;
+      } else {
+        plan.left = factors2;
+        plan.right = factors1;
+      }
+    }
+  }
+
+  /** Returns whether a condition is applied when joining two sets of
+   * factors; that is, whether it references only factors in the union of
+   * the sets, and factors in both sets. */
+  private static boolean isJoinedBy(Edge edge, long factors1, long factors2) {
+    return (edge.factors & ~(factors1 | factors2)) == 0
+        && (edge.factors & factors1) != 0
+        && (edge.factors & factors2) != 0;
+  }
+
+  /** Creates the relational expression for the best plan of a set of
+   * factors, and a mapping from the fields of the {@code MultiJoin} to its
+   * fields. */
+  private static Pair<RelNode, Mappings.TargetMapping> build(long factors,
+      Map<Long, Plan> plans, List<Edge> edges,
+      List<List<RexNode>> factorConditions, LoptMultiJoin multiJoin,
+      RelBuilder relBuilder, RexBuilder rexBuilder) {
+    if (Long.bitCount(factors) == 1) {
+      final int i = Long.numberOfTrailingZeros(factors);
+      final RelNode rel = multiJoin.getJoinFactor(i);
+      final Mappings.TargetMapping mapping =
+          Mappings.offsetSource(
+              Mappings.createIdentity(rel.getRowType().getFieldCount()),
+              multiJoin.getJoinStart(i),
+              multiJoin.getNumTotalFields());
+      final List<RexNode> conditions = new ArrayList<>();
+      for (RexNode condition : factorConditions.get(i)) {
+        conditions.add(
+            condition.accept(new RexPermuteInputsShuttle(mapping, rel)));
+      }
+      return Pair.of(relBuilder.push(rel).filter(conditions).build(),
+          mapping);
+    }
+    final Plan plan = plans.get(factors);
+    final Pair<RelNode, Mappings.TargetMapping> leftPair =
+        build(plan.left, plans, edges, factorConditions, multiJoin,
+            relBuilder, rexBuilder);
+    final Pair<RelNode, Mappings.TargetMapping> rightPair =
+        build(plan.right, plans, edges, factorConditions, multiJoin,
+            relBuilder, rexBuilder);
+    final RelNode left = leftPair.left;
+    final RelNode right = rightPair.left;
+    final Mappings.TargetMapping mapping =
+        Mappings.merge(leftPair.right,
+            Mappings.offsetTarget(rightPair.right,
+                left.getRowType().getFieldCount()));
+    final List<RexNode> conditions = new ArrayList<>();
+    for (Edge edge : edges) {
+      if (isJoinedBy(edge, plan.left, plan.right)) {
+        conditions.add(edge.condition);
+      }
+    }
+    final RexNode condition =
+        RexUtil.composeConjunction(rexBuilder, conditions);
+    final RelNode join = relBuilder.push(left)
+        .push(right)
+        .join(JoinRelType.INNER,
+            condition.accept(new RexPermuteInputsShuttle(mapping, left, right)))
+        .build();
+    return Pair.of(join, mapping);
+  }
+
+  /** Estimates the selectivity of a join condition.
+   *
+   * <p>For an equi-join condition {@code a = b}, it is
+   * {@code 1 / max(ndv(a), ndv(b))}, where {@code ndv(x)} is the number of
+   * distinct values of column {@code x} in its factor. */
+  private static double selectivity(LoptMultiJoin multiJoin,
+      RelMetadataQuery mq, RexNode condition) {
+    if (condition.getKind() == SqlKind.EQUALS) {
+      final List<RexNode> operands = ((RexCall) condition).getOperands();
+      if (operands.get(0) instanceof RexInputRef
+          && operands.get(1) instanceof RexInputRef) {
+        final Double ndv0 =
+            distinctRowCount(multiJoin, mq, (RexInputRef) operands.get(0));
+        final Double ndv1 =
+            distinctRowCount(multiJoin, mq, (RexInputRef) operands.get(1));
+        if (ndv0 != null && ndv1 != null) {
+          final double ndv = Math.max(ndv0, ndv1);
+          if (ndv >= 1d) {
+            return 1d / ndv;
+          }
+        }
+      }
+    }
+    return RelMdUtil.guessSelectivity(condition);
+  }
+
+  private static Double distinctRowCount(LoptMultiJoin multiJoin,
+      RelMetadataQuery mq, RexInputRef ref) {
+    final int factor = multiJoin.findRef(ref.getIndex());
+    final int column = ref.getIndex() - multiJoin.getJoinStart(factor);
+    return mq.getDistinctRowCount(multiJoin.getJoinFactor(factor),
+        ImmutableBitSet.of(column), null);
+  }
+
+  private static long toMask(ImmutableBitSet bits) {
+    long mask = 0L;
+    for (int bit : bits) {
+      mask |= 1L << bit;
+    }
+    return mask;
+  }
+
+  /** Join condition that references two or more factors. */
+  private static class Edge {
+    final RexNode condition;
+    /** Factors referenced by the condition, as a bit mask. */
+    final long factors;
+    final double selectivity;
+
+    Edge(RexNode condition, long factors, double selectivity) {
+      this.condition = condition;
+      this.factors = factors;
+      this.selectivity = selectivity;
+    }
+  }
+
+  /** Best plan found so far for a set of factors. */
+  private static class Plan {
+    final double rowCount;
+    double cost;
+    /** Factors of the left and right inputs; 0 if the plan is a single
+     * factor. */
+    long left;
+    long right;
+
+    Plan(double rowCount, double cost, long left, long right) {
+      this.rowCount = rowCount;
+      this.cost = cost;
+      this.left = left;
+      this.right = right;
+    }
+  }
+
+  /** Enumerates the pairs of connected sub-graphs of a join graph that are
+   * connected to each other (csg-cmp pairs), as described in the DPccp
+   * paper, and collects them by the size of their union.
+   *
+   * <p>Vertex sets are bit masks; {@code B(i)} denotes the set of vertices
+   * whose ordinal is less than or equal to {@code i}. */
+  private static class Enumerator {
+    private final int n;
+    private final long[] neighbors;
+    /** For each size, the pairs whose union has that size, flattened. */
+    final long[][] pairs;
+    final int[] counts;
+
+    Enumerator(int n, long[] neighbors) {
+      this.n = n;
+      this.neighbors = neighbors;
+      this.pairs = new long[n + 1][];
+      this.counts = new int[n + 1];
+      for (int i = 0; i <= n; i++) {
+        pairs[i] = new long[16];
+      }
+    }
+
+    void solve() {
+      for (int i = n - 1; i >= 0; i--) {
+        final long s = 1L << i;
+        emitCsg(s);
+        enumerateCsgRec(s, below(i));
+      }
+    }
+
+    /** Returns B(i), the set of vertices whose ordinal is at most i. */
+    private static long below(int i) {
+      return (1L << (i + 1)) - 1;
+    }
+
+    /** Returns the vertices adjacent to a set, excluding the set itself. */
+    private long neighborhood(long s) {
+      long result = 0L;
+      for (long bits = s; bits != 0; bits &= bits - 1) {
+        result |= neighbors[Long.numberOfTrailingZeros(bits)];
+      }
+      return result & ~s;
+    }
+
+    private void enumerateCsgRec(long s1, long x) {
+      final long neighborhood = neighborhood(s1) & ~x;
+      for (long s = neighborhood; s != 0; s = (s - 1) & neighborhood) {
+        emitCsg(s1 | s);
+      }
+      for (long s = neighborhood; s != 0; s = (s - 1) & neighborhood) {
+        enumerateCsgRec(s1 | s, x | neighborhood);
+      }
+    }
+
+    private void emitCsg(long s1) {
+      final long x = s1 | below(Long.numberOfTrailingZeros(s1));
+      final long neighborhood = neighborhood(s1) & ~x;
+      for (int i = Long.SIZE - 1 - Long.numberOfLeadingZeros(neighborhood);
+           i >= 0; i--) {
+        if ((neighborhood & (1L << i)) != 0) {
+          final long s2 = 1L << i;
+          emitCsgCmp(s1, s2);
+          enumerateCmpRec(s1, s2, x | (below(i) & neighborhood));
+        }
+      }
+    }
+
+    private void enumerateCmpRec(long s1, long s2, long x) {
+      final long neighborhood = neighborhood(s2) & ~x;
+      for (long s = neighborhood; s != 0; s = (s - 1) & neighborhood) {
+        emitCsgCmp(s1, s2 | s);
+      }
+      for (long s = neighborhood; s != 0; s = (s - 1) & neighborhood) {
+        enumerateCmpRec(s1, s2 | s, x | neighborhood);
+      }
+    }
+
+    private void emitCsgCmp(long s1, long s2) {
+      final int size = Long.bitCount(s1 | s2);
+      if (counts[size] + 2 > pairs[size].length) {
+        pairs[size] = Arrays.copyOf(pairs[size], pairs[size].length * 2);
+      }
+      pairs[size][counts[size]++] = s1;
+      pairs[size][counts[size]++] = s2;
+    }
+  }
+}
+
+// End MultiJoinOptimizeDpRule.java
@@ -0,0 +1,642 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.schema.ColumnarTable;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.Table;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Utilities for processing {@link Enumerable} collections of
+ * {@link ColumnBatch}.
+ *
+ * <p>The generated code for operators in the batch calling convention calls
+ * these methods for work that is not specific to a particular query, such as
+ * converting between rows and batches.
+ */
+public class Batches {
+  private Batches() {}
+
+  /** Returns the batches of a table, using
+   * {@link ColumnarTable#scanBatches} if the table supports it, otherwise
+   * converting its rows to batches. */
+  public static Enumerable<ColumnBatch> scan(Table table, DataContext root,
+      Primitive[] types) {
+    if (table instanceof ColumnarTable) {
+      return ((ColumnarTable) table).scanBatches(root);
+    }
+    return fromRows(((ScannableTable) table).scan(root), types);
+  }
+
+  /** Converts rows into batches of {@link ColumnBatch#DEFAULT_SIZE} rows.
+   *
+   * @param rows Rows, each an array of column values
+   * @param types Type of each column; {@link Primitive#OTHER} for columns
+   *              that are not primitive
+   */
+  public static Enumerable<ColumnBatch> fromRows(
+      final Enumerable<Object[]> rows, final Primitive[] types) {
+    return new AbstractEnumerable<ColumnBatch>() {
+      public Enumerator<ColumnBatch> enumerator() {
+        final Enumerator<Object[]> enumerator = rows.enumerator();
+        return new Enumerator<ColumnBatch>() {
+          ColumnBatch current;
+
+          public ColumnBatch current() {
+            return current;
+          }
+
+          public boolean moveNext() {
+            final int size = ColumnBatch.DEFAULT_SIZE;
+            final Object[] columns = new Object[types.length];
+            final long[][] nulls = new long[types.length][];
+            for (int c = 0; c < types.length; c++) {
+              columns[c] = ColumnBatch.newColumn(types[c], size);
+            }
+            int count = 0;
+            while (count < size && enumerator.moveNext()) {
+              final Object[] row = enumerator.current();
+              for (int c = 0; c < types.length; c++) {
+                set(types[c], columns, nulls, c, count, size, row[c]);
+              }
+              ++count;
+            }
+            if (count == 0) {
+              current = null;
+              return false;
+            }
+            current = new ColumnBatch(columns, nulls, count);
+            return true;
+          }
+
+          public void reset() {
+            enumerator.reset();
+          }
+
+          public void close() {
+            enumerator.close();
+          }
+        };
+      }
+    };
+  }
+
+  /** Converts batches into rows, each an array of column values. */
+  public static Enumerable<Object[]> toRows(
+      final Enumerable<ColumnBatch> batches) {
+    return new AbstractEnumerable<Object[]>() {
+      public Enumerator<Object[]> enumerator() {
+        final Enumerator<ColumnBatch> enumerator = batches.enumerator();
+        return new Enumerator<Object[]>() {
+          ColumnBatch batch;
+          int j;
+
+          public Object[] current() {
+            final Object[] row = new Object[batch.columns.length];
+            for (int c = 0; c < row.length; c++) {
+              row[c] = batch.get(c, j);
+            }
+            return row;
+          }
+
+          public boolean moveNext() {
+            while (batch == null || ++j >= batch.count) {
+              if (!enumerator.moveNext()) {
+                batch = null;
+                return false;
+              }
+              batch = enumerator.current();
+              j = -1;
+            }
+            return true;
+          }
+
+          public void reset() {
+            enumerator.reset();
+            batch = null;
+          }
+
+          public void close() {
+            enumerator.close();
+          }
+        };
+      }
+    };
+  }
+
+  /** Returns how values of a given type are stored in a column of a
+   * {@link ColumnBatch}: as a primitive array if the Java type, or the type
+   * that it boxes, is primitive; otherwise {@link Primitive#OTHER}, meaning
+   * an {@code Object[]}. */
+  public static Primitive columnType(JavaTypeFactory typeFactory,
+      RelDataType type) {
+    final Primitive primitive =
+        Primitive.ofBoxOr(typeFactory.getJavaClass(type));
+    return primitive == null || primitive == Primitive.VOID
+        ? Primitive.OTHER
+        : primitive;
+  }
+
+  /** Returns how each field of a row type is stored in a
+   * {@link ColumnBatch}. */
+  public static Primitive[] columnTypes(JavaTypeFactory typeFactory,
+      RelDataType rowType) {
+    final List<RelDataTypeField> fields = rowType.getFieldList();
+    final Primitive[] types = new Primitive[fields.size()];
+    for (int i = 0; i < types.length; i++) {
+      types[i] = columnType(typeFactory, fields.get(i).getType());
+    }
+    return types;
+  }
+
+  /** Sets a value in column {@code c} of a batch that has room for
+   * {@code size} rows, creating the column's null bitmap when the first null
+   * value arrives. */
+  public static void set(Primitive type, Object[] columns, long[][] nulls,
+      int c, int i, int size, Object value) {
+    if (value == null && type != Primitive.OTHER && nulls[c] == null) {
+      nulls[c] = ColumnBatch.newNulls(size);
+    }
+    ColumnBatch.set(type, columns[c], nulls[c], i, value);
+  }
+
+  /** Computes aggregate functions over batches, grouping by zero or more
+   * columns, and returns batches of results. Each result row consists of
+   * the group key columns followed by one column per aggregate function.
+   *
+   * <p>Rows are assigned to groups using a hash table, which does not box
+   * keys if the group key is a single {@code int} or {@code long} column;
+   * the aggregate functions are then computed by loops over the primitive
+   * arrays of each batch.
+   *
+   * @param input Input batches
+   * @param groupKeys Ordinals of group key columns
+   * @param functions Aggregate function of each call: "COUNT", "SUM",
+   *                  "SUM0", "MIN" or "MAX"
+   * @param args Ordinal of the argument of each call, or -1 for
+   *             {@code COUNT(*)}
+   * @param types Type of each result column
+   */
+  public static Enumerable<ColumnBatch> aggregate(
+      final Enumerable<ColumnBatch> input, final int[] groupKeys,
+      final String[] functions, final int[] args, final Primitive[] types) {
+    return new AbstractEnumerable<ColumnBatch>() {
+      public Enumerator<ColumnBatch> enumerator() {
+        final BatchAggregator aggregator =
+            new BatchAggregator(groupKeys, functions, args, types);
+        try (Enumerator<ColumnBatch> enumerator = input.enumerator()) {
+          while (enumerator.moveNext()) {
+            aggregator.add(enumerator.current());
+          }
+        }
+        return Linq4j.enumerator(aggregator.results());
+      }
+    };
+  }
+
+  /** Computes aggregate functions over batches; see {@link #aggregate}. */
+  private static class BatchAggregator {
+    /** Key of the single group of an aggregate without GROUP BY. */
+    private static final Object EMPTY_KEY = new Object();
+
+    private final int[] groupKeys;
+    private final Primitive[] types;
+    private final Accumulator[] accumulators;
+    /** Group of each key, if the group key is not a single {@code int} or
+     * {@code long} column. */
+    private final Map<Object, Integer> groups = new HashMap<>();
+    /** Group of each non-null key, if the group key is a single {@code int}
+     * or {@code long} column. */
+    private final LongGroupIds longGroups = new LongGroupIds();
+    /** Group of the null key of a single {@code int} or {@code long} column,
+     * or -1. */
+    private int nullGroup = -1;
+    private final List<Object> keys = new ArrayList<>();
+    private int capacity;
+
+    BatchAggregator(int[] groupKeys, String[] functions, int[] args,
+        Primitive[] types) {
+      this.groupKeys = groupKeys;
+      this.types = types;
+      this.accumulators = new Accumulator[functions.length];
+      for (int a = 0; a < functions.length; a++) {
+        accumulators[a] =
+            new Accumulator(Function.valueOf(functions[a]), args[a]);
+      }
+      if (groupKeys.length == 0) {
+        // Without GROUP BY, there is one group even if there are no rows
+        groups.put(EMPTY_KEY, 0);
+        keys.add(EMPTY_KEY);
+        grow(1);
+      }
+    }
+
+    /** Adds the rows of a batch to the accumulators. */
+    void add(ColumnBatch batch) {
+      final int[] rowGroups;
+      if (groupKeys.length == 0) {
+        rowGroups = null;
+      } else {
+        rowGroups = new int[batch.count];
+        final int[] selection = batch.selection;
+        final Object column = batch.columns[groupKeys[0]];
+        final long[] nulls = batch.nulls[groupKeys[0]];
+        if (groupKeys.length == 1 && column instanceof int[]) {
+          final int[] values = (int[]) column;
+          for (int j = 0; j < batch.count; j++) {
+            final int i = selection == null ? j : selection[j];
+            rowGroups[j] = ColumnBatch.isNull(nulls, i)
+                ? nullGroup()
+                : longGroup(values[i], batch, j);
+          }
+        } else if (groupKeys.length == 1 && column instanceof long[]) {
+          final long[] values = (long[]) column;
+          for (int j = 0; j < batch.count; j++) {
+            final int i = selection == null ? j : selection[j];
+            rowGroups[j] = ColumnBatch.isNull(nulls, i)
+                ? nullGroup()
+                : longGroup(values[i], batch, j);
+          }
+        } else {
+          for (int j = 0; j < batch.count; j++) {
+            final Object key = key(batch, j);
+            Integer g = groups.get(key);
+            if (g == null) {
+              g = addGroup(key);
+              groups.put(key, g);
+            }
+            rowGroups[j] = g;
+          }
+        }
+      }
+      for (Accumulator accumulator : accumulators) {
+        accumulator.add(batch, rowGroups);
+      }
+    }
+
+    /** Returns the group of a non-null value of a single {@code int} or
+     * {@code long} group key column, adding a group if necessary. */
+    private int longGroup(long value, ColumnBatch batch, int j) {
+      final int g = longGroups.getOrAdd(value, keys.size());
+      if (g == keys.size()) {
+        addGroup(batch.get(groupKeys[0], j));
+      }
+      return g;
+    }
+
+    /** Returns the group of the null value of a single {@code int} or
+     * {@code long} group key column, adding a group if necessary. */
+    private int nullGroup() {
+      if (nullGroup < 0) {
+        nullGroup = addGroup(null);
+      }
+      return nullGroup;
+    }
+
+    /** Adds a group, and returns its number. */
+    private int addGroup(Object key) {
+      final int g = keys.size();
+      keys.add(key);
+      if (g >= capacity) {
+        grow(Math.max(capacity * 2, 16));
+      }
+      return g;
+    }
+
+    private Object key(ColumnBatch batch, int j) {
+      if (groupKeys.length == 1) {
+        return batch.get(groupKeys[0], j);
+      }
+      final Object[] values = new Object[groupKeys.length];
+      for (int k = 0; k < groupKeys.length; k++) {
+        values[k] = batch.get(groupKeys[k], j);
+      }
+      return Arrays.asList(values);
+    }
+
+    private void grow(int newCapacity) {
+      capacity = newCapacity;
+      for (Accumulator accumulator : accumulators) {
+        accumulator.grow(newCapacity);
+      }
+    }
+
+    /** Returns the results, in batches. */
+    List<ColumnBatch> results() {
+      final List<ColumnBatch> batches = new ArrayList<>();
+      final int groupCount = keys.size();
+      for (int start = 0; start < groupCount;
+           start += ColumnBatch.DEFAULT_SIZE) {
+        final int count =
+            Math.min(ColumnBatch.DEFAULT_SIZE, groupCount - start);
+        final Object[] columns = new Object[types.length];
+        final long[][] nulls = new long[types.length][];
+        for (int c = 0; c < types.length; c++) {
+          columns[c] = ColumnBatch.newColumn(types[c], count);
+        }
+        for (int i = 0; i < count; i++) {
+          final int g = start + i;
+          final Object key = keys.get(g);
+          for (int k = 0; k < groupKeys.length; k++) {
+            final Object value = groupKeys.length == 1
+                ? key
+                : ((List) key).get(k);
+            set(types[k], columns, nulls, k, i, count, value);
+          }
+          for (int a = 0; a < accumulators.length; a++) {
+            final int c = groupKeys.length + a;
+            set(types[c], columns, nulls, c, i, count,
+                accumulators[a].result(g, types[c]));
+          }
+        }
+        batches.add(new ColumnBatch(columns, nulls, count));
+      }
+      return batches;
+    }
+  }
+
+  /** Hash table from {@code long} keys to group numbers, used by
+   * {@link BatchAggregator} if the group key is a single {@code int} or
+   * {@code long} column.
+   *
+   * <p>Unlike {@link HashMap}, it does not box keys or allocate an entry
+   * object per key. It uses open addressing with linear probing over
+   * parallel arrays of keys and groups. */
+  private static class LongGroupIds {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    /** Group of each slot, plus one; 0 if the slot is empty. */
+    private int[] groups = new int[INITIAL_CAPACITY];
+    private int size;
+
+    private static int hash(long key) {
+      final long h = key * 0x9e3779b97f4a7c15L;
+      return (int) (h ^ (h >>> 32));
+    }
+
+    /** Returns the group of a key; if the key is not present, adds it with
+     * group {@code newGroup} and returns {@code newGroup}. */
+    int getOrAdd(long key, int newGroup) {
+      final int mask = keys.length - 1;
+      int i = hash(key) & mask;
+      while (groups[i] != 0) {
+        if (keys[i] == key) {
+          return groups[i] - 1;
+        }
+        i = (i + 1) & mask;
+      }
+      keys[i] = key;
+      groups[i] = newGroup + 1;
+      // Keep the table at most half full, so that probe sequences are short
+      if (++size * 2 > keys.length) {
+        grow();
+      }
+      return newGroup;
+    }
+
+    private void grow() {
+      final long[] oldKeys = keys;
+      final int[] oldGroups = groups;
+      keys = new long[oldKeys.length * 2];
+      groups = new int[oldKeys.length * 2];
+      final int mask = keys.length - 1;
+      for (int j = 0; j < oldKeys.length; j++) {
+        if (oldGroups[j] != 0) {
+          int i = hash(oldKeys[j]) & mask;
+          while (groups[i] != 0) {
+            i = (i + 1) & mask;
+          }
+          keys[i] = oldKeys[j];
+          groups[i] = oldGroups[j];
+        }
+      }
+    }
+  }
+
+  /** Aggregate function that {@link #aggregate} can compute. */
+  private enum Function {
+    COUNT, SUM, SUM0, MIN, MAX
+  }
+
+  /** Accumulates one aggregate function for all groups.
+   *
+   * <p>Integer arguments are accumulated in {@code long} values, floating
+   * point arguments in {@code double} values, and other arguments (such as
+   * {@link BigDecimal} or {@link String}) as objects. */
+  private static class Accumulator {
+    private final Function function;
+    private final int arg;
+    /** Number of non-null values of each group. */
+    private long[] counts = new long[0];
+    private long[] longs = new long[0];
+    private double[] doubles = new double[0];
+    private Object[] objects = new Object[0];
+    /** Which of {@link #longs}, {@link #doubles} and {@link #objects} holds
+     * the values; determined by the first batch. */
+    private Primitive kind;
+
+    Accumulator(Function function, int arg) {
+      this.function = function;
+      this.arg = arg;
+    }
+
+    void grow(int capacity) {
+      counts = Arrays.copyOf(counts, capacity);
+      longs = Arrays.copyOf(longs, capacity);
+      doubles = Arrays.copyOf(doubles, capacity);
+      objects = Arrays.copyOf(objects, capacity);
+    }
+
+    void add(ColumnBatch batch, int[] rowGroups) {
+      final int[] selection = batch.selection;
+      final int count = batch.count;
+      if (arg < 0) {
+        for (int j = 0; j < count; j++) {
+          ++counts[rowGroups == null ? 0 : rowGroups[j]];
+        }
+        return;
+      }
+      final Object column = batch.columns[arg];
+      final long[] nulls = batch.nulls[arg];
+      if (column instanceof int[]) {
+        kind = Primitive.LONG;
+        final int[] values = (int[]) column;
+        for (int j = 0; j < count; j++) {
+          final int i = selection == null ? j : selection[j];
+          if (!ColumnBatch.isNull(nulls, i)) {
+            addLong(rowGroups == null ? 0 : rowGroups[j], values[i]);
+          }
+        }
+      } else if (column instanceof long[]) {
+        kind = Primitive.LONG;
+        final long[] values = (long[]) column;
+        for (int j = 0; j < count; j++) {
+          final int i = selection == null ? j : selection[j];
+          if (!ColumnBatch.isNull(nulls, i)) {
+            addLong(rowGroups == null ? 0 : rowGroups[j], values[i]);
+          }
+        }
+      } else if (column instanceof double[]) {
+        kind = Primitive.DOUBLE;
+        final double[] values = (double[]) column;
+        for (int j = 0; j < count; j++) {
+          final int i = selection == null ? j : selection[j];
+          if (!ColumnBatch.isNull(nulls, i)) {
+            addDouble(rowGroups == null ? 0 : rowGroups[j], values[i]);
+          }
+        }
+      } else if (column instanceof short[] || column instanceof byte[]) {
+        kind = Primitive.LONG;
+        for (int j = 0; j < count; j++) {
+          final Object value = batch.get(arg, j);
+          if (value != null) {
+            addLong(rowGroups == null ? 0 : rowGroups[j],
+                ((Number) value).longValue());
+          }
+        }
+      } else if (column instanceof float[]) {
+        kind = Primitive.DOUBLE;
+        for (int j = 0; j < count; j++) {
+          final Object value = batch.get(arg, j);
+          if (value != null) {
+            addDouble(rowGroups == null ? 0 : rowGroups[j],
+                ((Number) value).doubleValue());
+          }
+        }
+      } else {
+        kind = Primitive.OTHER;
+        for (int j = 0; j < count; j++) {
+          final Object value = batch.get(arg, j);
+          if (value != null) {
+            addObject(rowGroups == null ? 0 : rowGroups[j], value);
+          }
+        }
+      }
+    }
+
+    private void addLong(int g, long v) {
+      switch (function) {
+      case SUM:
+      case SUM0:
+        longs[g] += v;
+        break;
+      case MIN:
+        if (counts[g] == 0 || v < longs[g]) {
+          longs[g] = v;
+        }
+        break;
+      case MAX:
+        if (counts[g] == 0 || v > longs[g]) {
+          longs[g] = v;
+        }
+        break;
+      default:
+        break;
+      }
+      ++counts[g];
+    }
+
+    private void addDouble(int g, double v) {
+      switch (function) {
+      case SUM:
+      case SUM0:
+        doubles[g] += v;
+        break;
+      case MIN:
+        if (counts[g] == 0 || v < doubles[g]) {
+          doubles[g] = v;
+        }
+        break;
+      case MAX:
+        if (counts[g] == 0 || v > doubles[g]) {
+          doubles[g] = v;
+        }
+        break;
+      default:
+        break;
+      }
+      ++counts[g];
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addObject(int g, Object v) {
+      switch (function) {
+      case SUM:
+      case SUM0:
+        objects[g] = counts[g] == 0
+            ? v
+            : ((BigDecimal) objects[g]).add((BigDecimal) v);
+        break;
+      case MIN:
+        if (counts[g] == 0 || ((Comparable) v).compareTo(objects[g]) < 0) {
+          objects[g] = v;
+        }
+        break;
+      case MAX:
+        if (counts[g] == 0 || ((Comparable) v).compareTo(objects[g]) > 0) {
+          objects[g] = v;
+        }
+        break;
+      default:
+        break;
+      }
+      ++counts[g];
+    }
+
+    /** Returns the value of the aggregate function for a group; null if
+     * the function is SUM, MIN or MAX and the group has no non-null
+     * values. */
+    Object result(int g, Primitive type) {
+      if (function == Function.COUNT) {
+        return counts[g];
+      }
+      if (counts[g] == 0) {
+        if (function != Function.SUM0) {
+          return null;
+        }
+        return type == Primitive.OTHER ? BigDecimal.ZERO : 0;
+      }
+      switch (kind) {
+      case LONG:
+        return longs[g];
+      case DOUBLE:
+        return doubles[g];
+      default:
+        return objects[g];
+      }
+    }
+  }
+}
+
+// End Batches.java
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.linq4j.tree.Primitive;
+
+import java.lang.reflect.Array;
+
+/**
+ * Set of rows stored column by column.
+ *
+ * <p>Each column is an array; a column whose values are of a primitive type
+ * (such as {@code int} or {@code double}) is a primitive array (such as
+ * {@code int[]} or {@code double[]}), and other columns are {@code Object[]}.
+ * A primitive column may have a null bitmap, in which bit {@code i} is set if
+ * the value in row {@code i} is null.
+ *
+ * <p>A batch may also have a selection vector, which contains the ordinals
+ * of the rows that are present, in order; a filter can then remove rows
+ * without copying the columns. Row {@code j} of the batch is
+ * {@code selection[j]} in the column arrays, or {@code j} if there is no
+ * selection vector.
+ *
+ * @see Batches
+ */
+public class ColumnBatch {
+  /** Number of rows in the batches that operators create. */
+  public static final int DEFAULT_SIZE = 1024;
+
+  /** Column arrays. */
+  public final Object[] columns;
+
+  /** Null bitmap of each column; an element is null if the column has no
+   * null values. */
+  public final long[][] nulls;
+
+  /** Ordinals of the rows that are present, or null if the first
+   * {@link #count} rows are present. */
+  public final int[] selection;
+
+  /** Number of rows. */
+  public final int count;
+
+  /** Creates a ColumnBatch. */
+  public ColumnBatch(Object[] columns, long[][] nulls, int[] selection,
+      int count) {
+    assert columns.length == nulls.length;
+    this.columns = columns;
+    this.nulls = nulls;
+    this.selection = selection;
+    this.count = count;
+  }
+
+  /** Creates a ColumnBatch without a selection vector. */
+  public ColumnBatch(Object[] columns, long[][] nulls, int count) {
+    this(columns, nulls, null, count);
+  }
+
+  /** Returns a batch with the same columns as this, containing only the
+   * given rows. */
+  public ColumnBatch select(int[] selection, int count) {
+    return new ColumnBatch(columns, nulls, selection, count);
+  }
+
+  /** Returns the ordinal in the column arrays of row {@code j}. */
+  public int row(int j) {
+    return selection == null ? j : selection[j];
+  }
+
+  /** Returns the value of a column in row {@code j}, boxed if the column is
+   * primitive, or null. */
+  public Object get(int column, int j) {
+    final int i = row(j);
+    if (isNull(nulls[column], i)) {
+      return null;
+    }
+    return Array.get(columns[column], i);
+  }
+
+  /** Returns whether the value in a given row of a column is null, given the
+   * column's null bitmap. */
+  public static boolean isNull(long[] nulls, int i) {
+    return nulls != null && (nulls[i >>> 6] & (1L << i)) != 0;
+  }
+
+  /** Sets the bit for a given row in a null bitmap. */
+  public static void setNull(long[] nulls, int i) {
+    nulls[i >>> 6] |= 1L << i;
+  }
+
+  /** Creates a null bitmap for {@code size} rows, in which no bit is set. */
+  public static long[] newNulls(int size) {
+    return new long[(size + 63) >>> 6];
+  }
+
+  /** Creates an array to hold {@code size} values of a given type;
+   * {@link Primitive#OTHER} means an {@code Object[]}. */
+  public static Object newColumn(Primitive primitive, int size) {
+    if (primitive == Primitive.OTHER) {
+      return new Object[size];
+    }
+    return Array.newInstance(primitive.primitiveClass, size);
+  }
+
+  /** Sets a value in a column, converting it to the column's type; if the
+   * value is null, sets the bit in the null bitmap instead. */
+  public static void set(Primitive primitive, Object column, long[] nulls,
+      int i, Object value) {
+    if (value == null) {
+      if (primitive == Primitive.OTHER) {
+        return;
+      }
+      setNull(nulls, i);
+    } else if (value instanceof Number
+        && primitive != Primitive.OTHER
+        && primitive != Primitive.CHAR) {
+      Array.set(column, i, primitive.number((Number) value));
+    } else {
+      Array.set(column, i, value);
+    }
+  }
+}
+
+// End ColumnBatch.java
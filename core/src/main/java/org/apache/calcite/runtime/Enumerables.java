@@ -16,10 +16,27 @@
  */
 package org.apache.calcite.runtime;
 
+import org.apache.calcite.DataContext;
 import org.apache.calcite.interpreter.Row;
+import org.apache.calcite.linq4j.AbstractEnumerable;
 import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.schema.Schemas;
+import org.apache.calcite.util.Util;
 
+import com.google.common.collect.ImmutableMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
 /**
@@ -30,6 +47,15 @@
  * Methods are subject to removal without notice.
  */
 public class Enumerables {
+  /** Threads that run the pipelines of {@link #gather}. They are daemon
+   * threads, so that they do not prevent the JVM from exiting, and are
+   * created on demand. */
+  private static final ExecutorService GATHER_EXECUTOR =
+      Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "calcite-gather");
+        thread.setDaemon(true);
+        return thread;
+      });
 
   private Enumerables() {}
 
@@ -60,6 +86,167 @@ public static com.google.common.base.Supplier<Enumerable<Row>> toRow(
     return () -> toRow(supplier.get());
   }
 
+  /** Runs a pipeline over each morsel of a table, using {@code parallelism}
+   * threads, and returns the rows that the pipeline produces, in no
+   * particular order.
+   *
+   * <p>The table is divided into {@code parallelism * 4} morsels, so that a
+   * thread that finishes early can take more work. Each thread repeatedly
+   * takes the next morsel and applies {@code pipeline} to a data context
+   * whose {@link DataContext.Variable#MORSEL} and
+   * {@link DataContext.Variable#MORSEL_COUNT} variables identify that
+   * morsel. */
+  public static <E> Enumerable<E> gather(final DataContext root,
+      final Function1<DataContext, Enumerable<E>> pipeline,
+      final int parallelism) {
+    return new AbstractEnumerable<E>() {
+      public Enumerator<E> enumerator() {
+        return new GatherEnumerator<>(root, pipeline, parallelism);
+      }
+    };
+  }
+
+  /** Enumerator that reads the rows that several threads produce.
+   *
+   * <p>Threads send rows in batches through a bounded queue, so that a slow
+   * consumer limits how far ahead they can run. Each thread sends
+   * {@link #END} when it has finished.
+   *
+   * @param <E> Element type */
+  private static class GatherEnumerator<E> implements Enumerator<E> {
+    private static final Object END = new Object();
+    private static final int BATCH_SIZE = 1024;
+    private static final int MORSELS_PER_THREAD = 4;
+
+    private final DataContext root;
+    private final Function1<DataContext, Enumerable<E>> pipeline;
+    private final int parallelism;
+    private final int morselCount;
+    private final AtomicInteger nextMorsel = new AtomicInteger();
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+    private final BlockingQueue<Object> queue;
+    private boolean started;
+    private int running;
+    private List<E> batch;
+    private int index;
+    private E current;
+
+    GatherEnumerator(DataContext root,
+        Function1<DataContext, Enumerable<E>> pipeline, int parallelism) {
+      this.root = root;
+      this.pipeline = pipeline;
+      this.parallelism = parallelism;
+      this.morselCount = parallelism * MORSELS_PER_THREAD;
+      this.queue = new ArrayBlockingQueue<>(parallelism * 2);
+    }
+
+    public E current() {
+      return current;
+    }
+
+    public boolean moveNext() {
+      if (!started) {
+        started = true;
+        running = parallelism;
+        for (int i = 0; i < parallelism; i++) {
+          GATHER_EXECUTOR.execute(this::work);
+        }
+      }
+      for (;;) {
+        if (batch != null && ++index < batch.size()) {
+          current = batch.get(index);
+          return true;
+        }
+        batch = null;
+        if (running == 0) {
+          return false;
+        }
+        final Object o;
+        try {
+          o = queue.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException(e);
+        }
+        if (o == END) {
+          --running;
+          final Throwable throwable = error.get();
+          if (throwable != null) {
+            close();
+            Util.throwIfUnchecked(throwable);
+            throw new RuntimeException(throwable);
+          }
+        } else {
+          //noinspection unchecked
+          batch = (List<E>) o;
+          index = -1;
+        }
+      }
+    }
+
+    public void reset() {
+      throw new UnsupportedOperationException();
+    }
+
+    public void close() {
+      cancelled.set(true);
+      queue.clear();
+    }
+
+    /** Runs in each thread; applies the pipeline to morsels until there are
+     * none left. */
+    private void work() {
+      try {
+        for (;;) {
+          final int morsel = nextMorsel.getAndIncrement();
+          if (morsel >= morselCount || cancelled.get()) {
+            break;
+          }
+          final DataContext dataContext =
+              Schemas.withVariables(root,
+                  ImmutableMap.of(DataContext.Variable.MORSEL.camelName,
+                      morsel,
+                      DataContext.Variable.MORSEL_COUNT.camelName,
+                      morselCount));
+          try (Enumerator<E> enumerator =
+                   pipeline.apply(dataContext).enumerator()) {
+            List<E> list = new ArrayList<>(BATCH_SIZE);
+            while (enumerator.moveNext()) {
+              list.add(enumerator.current());
+              if (list.size() == BATCH_SIZE) {
+                if (!put(list)) {
+                  return;
+                }
+                list = new ArrayList<>(BATCH_SIZE);
+              }
+            }
+            if (!list.isEmpty() && !put(list)) {
+              return;
+            }
+          }
+        }
+      } catch (Throwable e) {
+        error.compareAndSet(null, e);
+      }
+      put(END);
+    }
+
+    /** Adds an object to the queue, waiting for space, unless the consumer
+     * has closed the enumerator. Returns whether it was added. */
+    private boolean put(Object o) {
+      try {
+        while (!cancelled.get()) {
+          if (queue.offer(o, 100, TimeUnit.MILLISECONDS)) {
+            return true;
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return false;
+    }
+  }
 }
 
 // End Enumerables.java
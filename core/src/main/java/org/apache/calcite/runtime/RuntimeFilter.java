@@ -0,0 +1,542 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.DelegatingEnumerator;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.schema.Schemas;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Filter on the values of a column, built at run time from the keys of one
+ * input of a hash join, that allows the other input to discard rows that
+ * cannot match.
+ *
+ * <p>The filter consists of a Bloom filter of the keys and, if the keys are
+ * numbers, their minimum and maximum. {@link #mightContain} returns false only
+ * if no key is equal to a value; it may return true for a value that is not a
+ * key.
+ *
+ * <p>{@link #collect} populates the filter while an input is read. The
+ * filter is ready when the input has been read to the end; until then,
+ * {@link #mightContain} returns true for every value. If the input would be
+ * read after the one that is filtered, {@link #buffer} reads it first; if
+ * the input is too large to hold in memory, the filter is never ready.
+ *
+ * <p>While a table that is read by the filtered input is scanned,
+ * {@link #of(DataContext, int)} returns the filters on its columns, so that an
+ * adapter can skip rows before it converts them.
+ */
+public class RuntimeFilter {
+  /** Number of bits in the Bloom filter per key. */
+  private static final int BITS_PER_KEY = 10;
+
+  /** Number of bits that each key sets in the Bloom filter. */
+  private static final int HASH_COUNT = 5;
+
+  /** Maximum number of keys. If the build side has more, the filter never
+   * becomes ready. */
+  private static final int MAX_KEYS = 1 << 22;
+
+  /** Default maximum number of elements that {@link #buffer} holds in
+   * memory. */
+  public static final int DEFAULT_MAX_BUFFER_SIZE = 1 << 18;
+
+  private volatile State state;
+
+  /** Input that {@link #buffer} will read before the filter is applied, or
+   * null. */
+  private Buffer<?> pending;
+
+  /** Returns whether the build side has been read, so that
+   * {@link #mightContain} can reject values. */
+  public boolean isReady() {
+    return state != null;
+  }
+
+  /** Returns whether a value may be equal to one of the keys; false if it is
+   * certainly not, or true if the filter is not ready. */
+  public boolean mightContain(Object value) {
+    final State state = this.state;
+    return state == null || state.mightContain(value);
+  }
+
+  /** Returns whether an integer may be equal to one of the keys. Same as
+   * {@link #mightContain(Object)}, but does not box the value. */
+  public boolean mightContain(long value) {
+    final State state = this.state;
+    return state == null || state.mightContain(value);
+  }
+
+  /** Returns an enumerable that returns the same elements as
+   * {@code enumerable}, and when it reaches the end, makes this filter
+   * contain the key of each element. */
+  public <E> Enumerable<E> collect(final Enumerable<E> enumerable,
+      final Function1<E, Object> keySelector) {
+    return collect(enumerable, new RuntimeFilter[] {this},
+        keySelectors(keySelector));
+  }
+
+  /** As {@link #collect(Enumerable, Function1)}, but populates several
+   * filters, the {@code i}th with the keys that the {@code i}th key selector
+   * returns. */
+  private static <E> Enumerable<E> collect(final Enumerable<E> enumerable,
+      final RuntimeFilter[] filters, final Function1<E, Object>[] keySelectors) {
+    return new AbstractEnumerable<E>() {
+      public Enumerator<E> enumerator() {
+        // The keys of a previous enumeration may differ
+        for (RuntimeFilter filter : filters) {
+          filter.state = null;
+        }
+        return new DelegatingEnumerator<E>(enumerable.enumerator()) {
+          Builder[] builders = builders(filters.length);
+
+          @Override public boolean moveNext() {
+            if (delegate.moveNext()) {
+              if (builders != null) {
+                add(builders, keySelectors, delegate.current());
+              }
+              return true;
+            }
+            if (builders != null) {
+              for (int i = 0; i < filters.length; i++) {
+                final State state = builders[i].build();
+                if (state != null) {
+                  filters[i].state = state;
+                }
+              }
+              builders = null;
+            }
+            return false;
+          }
+
+          @Override public void reset() {
+            super.reset();
+            builders = builders(filters.length);
+          }
+        };
+      }
+    };
+  }
+
+  /** Returns an enumerable that returns the same elements as
+   * {@code enumerable}, and makes this filter contain the key of each
+   * element.
+   *
+   * <p>When the enumerable returned by {@link #filter} is enumerated, it
+   * first reads {@code enumerable} into memory, so that the filter is ready;
+   * the next enumeration of the buffered enumerable returns the elements that
+   * were read.
+   *
+   * <p>Holds at most {@link #DEFAULT_MAX_BUFFER_SIZE} elements in memory; see
+   * {@link #buffer(Enumerable, Function1, int)}. */
+  public <E> Enumerable<E> buffer(final Enumerable<E> enumerable,
+      final Function1<E, Object> keySelector) {
+    return buffer(enumerable, keySelector, DEFAULT_MAX_BUFFER_SIZE);
+  }
+
+  /** Returns an enumerable that returns the same elements as
+   * {@code enumerable}, and makes this filter contain the key of each
+   * element, reading at most {@code maxSize} elements into memory.
+   *
+   * <p>If {@code enumerable} has more than {@code maxSize} elements, the
+   * filter is not built, and never becomes ready. The next enumeration of
+   * the buffered enumerable returns the elements that were read, then reads
+   * the remaining elements of {@code enumerable} as it goes. */
+  public <E> Enumerable<E> buffer(final Enumerable<E> enumerable,
+      final Function1<E, Object> keySelector, int maxSize) {
+    return bufferAll(enumerable, new RuntimeFilter[] {this},
+        keySelectors(keySelector), maxSize);
+  }
+
+  /** As {@link #buffer(Enumerable, Function1)}, but populates several
+   * filters, the {@code i}th with the keys that the {@code i}th key selector
+   * returns, reading {@code enumerable} once for all of them. */
+  public static <E> Enumerable<E> bufferAll(final Enumerable<E> enumerable,
+      final RuntimeFilter[] filters,
+      final Function1<E, Object>[] keySelectors) {
+    return bufferAll(enumerable, filters, keySelectors,
+        DEFAULT_MAX_BUFFER_SIZE);
+  }
+
+  /** As {@link #buffer(Enumerable, Function1, int)}, but populates several
+   * filters, reading {@code enumerable} once for all of them. */
+  public static <E> Enumerable<E> bufferAll(final Enumerable<E> enumerable,
+      final RuntimeFilter[] filters, final Function1<E, Object>[] keySelectors,
+      int maxSize) {
+    assert filters.length == keySelectors.length;
+    final Buffer<E> buffer =
+        new Buffer<>(enumerable, filters, keySelectors, maxSize);
+    for (RuntimeFilter filter : filters) {
+      filter.pending = buffer;
+    }
+    return buffer;
+  }
+
+  /** Returns the elements of {@code enumerable} whose key might be contained
+   * in this filter. */
+  public <E> Enumerable<E> filter(final Enumerable<E> enumerable,
+      final Function1<E, Object> keySelector) {
+    return filterAll(enumerable, new RuntimeFilter[] {this},
+        keySelectors(keySelector));
+  }
+
+  /** Returns the elements of {@code enumerable} each of whose keys might be
+   * contained in the corresponding filter; the {@code i}th key selector
+   * returns the key for the {@code i}th filter.
+   *
+   * <p>If the filters are populated by {@link #bufferAll}, reads the buffered
+   * input once before it returns the first element. */
+  public static <E> Enumerable<E> filterAll(final Enumerable<E> enumerable,
+      final RuntimeFilter[] filters,
+      final Function1<E, Object>[] keySelectors) {
+    assert filters.length == keySelectors.length;
+    return new AbstractEnumerable<E>() {
+      public Enumerator<E> enumerator() {
+        final Set<Buffer<?>> filled =
+            Collections.newSetFromMap(new IdentityHashMap<>());
+        for (RuntimeFilter filter : filters) {
+          if (filter.pending != null && filled.add(filter.pending)) {
+            filter.pending.fill();
+          }
+        }
+        return enumerable.where(e -> {
+          for (int i = 0; i < filters.length; i++) {
+            if (!filters[i].mightContain(keySelectors[i].apply(e))) {
+              return false;
+            }
+          }
+          return true;
+        }).enumerator();
+      }
+    };
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <E> Function1<E, Object>[] keySelectors(
+      Function1<E, Object> keySelector) {
+    return new Function1[] {keySelector};
+  }
+
+  private static Builder[] builders(int count) {
+    final Builder[] builders = new Builder[count];
+    for (int i = 0; i < count; i++) {
+      builders[i] = new Builder();
+    }
+    return builders;
+  }
+
+  /** Adds the keys of an element to builders. */
+  private static <E> void add(Builder[] builders,
+      Function1<E, Object>[] keySelectors, E e) {
+    for (int i = 0; i < builders.length; i++) {
+      builders[i].add(keySelectors[i].apply(e));
+    }
+  }
+
+  /** Returns a data context in which {@link #of(DataContext, int)} returns a
+   * given filter for a given column. */
+  public static DataContext withFilter(DataContext root, int column,
+      RuntimeFilter filter) {
+    final Map<Integer, RuntimeFilter> filters = new HashMap<>(filters(root));
+    filters.put(column, filter);
+    return Schemas.withVariables(root,
+        ImmutableMap.of(DataContext.Variable.RUNTIME_FILTERS.camelName,
+            filters));
+  }
+
+  /** Returns the filter on a column of the table that is being scanned, or
+   * null if there is none. */
+  public static RuntimeFilter of(DataContext root, int column) {
+    return filters(root).get(column);
+  }
+
+  private static Map<Integer, RuntimeFilter> filters(DataContext root) {
+    final Map<Integer, RuntimeFilter> filters =
+        DataContext.Variable.RUNTIME_FILTERS.get(root);
+    return filters == null ? ImmutableMap.of() : filters;
+  }
+
+  /** Returns the hash code of a value. Numbers of different types that have
+   * the same value have the same hash code, so that the filter does not
+   * reject a value just because an adapter represents it differently. */
+  private static long hash(Object value) {
+    if (value instanceof Integer
+        || value instanceof Long
+        || value instanceof Short
+        || value instanceof Byte) {
+      return mix(((Number) value).longValue());
+    } else if (value instanceof Number) {
+      final double d = ((Number) value).doubleValue();
+      final long l = (long) d;
+      return mix(l == d ? l : Double.doubleToLongBits(d));
+    } else {
+      return mix(value.hashCode());
+    }
+  }
+
+  /** Returns a hash code of which every bit depends on every bit of a
+   * value; this is the finalization step of MurmurHash3. */
+  private static long mix(long value) {
+    long k = value;
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+
+  /** Enumerable that can be read into memory before it is enumerated,
+   * populating one or more filters.
+   *
+   * @param <E> Element type */
+  private static class Buffer<E> extends AbstractEnumerable<E> {
+    private final Enumerable<E> enumerable;
+    private final RuntimeFilter[] filters;
+    private final Function1<E, Object>[] keySelectors;
+    private final int maxSize;
+    private List<E> list;
+    /** Enumerator of the elements after those in {@link #list}, if there
+     * were too many to read into memory; otherwise null. */
+    private Enumerator<E> rest;
+
+    Buffer(Enumerable<E> enumerable, RuntimeFilter[] filters,
+        Function1<E, Object>[] keySelectors, int maxSize) {
+      this.enumerable = enumerable;
+      this.filters = filters;
+      this.keySelectors = keySelectors;
+      this.maxSize = maxSize;
+    }
+
+    /** Reads the elements, to be returned by the next enumeration, and builds
+     * the filters; or, if there are more than {@link #maxSize}, reads that
+     * many and leaves the filters not ready. */
+    void fill() {
+      // Discard the elements of a previous fill that were not enumerated
+      discard();
+      // The keys of a previous enumeration may differ
+      for (RuntimeFilter filter : filters) {
+        filter.state = null;
+      }
+      final List<E> list = new ArrayList<>();
+      final Enumerator<E> enumerator = enumerable.enumerator();
+      try {
+        final Builder[] builders = builders(filters.length);
+        while (enumerator.moveNext()) {
+          final E e = enumerator.current();
+          list.add(e);
+          if (list.size() > maxSize) {
+            // Too many to hold in memory. Stop building the filters, and
+            // return the remaining elements as they are read.
+            this.list = list;
+            this.rest = enumerator;
+            return;
+          }
+          add(builders, keySelectors, e);
+        }
+        enumerator.close();
+        for (int i = 0; i < filters.length; i++) {
+          filters[i].state = builders[i].build();
+        }
+        this.list = list;
+      } catch (RuntimeException | Error e) {
+        enumerator.close();
+        throw e;
+      }
+    }
+
+    private void discard() {
+      final Enumerator<E> rest = this.rest;
+      this.list = null;
+      this.rest = null;
+      if (rest != null) {
+        rest.close();
+      }
+    }
+
+    public Enumerator<E> enumerator() {
+      final List<E> list = this.list;
+      if (list == null) {
+        return collect(enumerable, filters, keySelectors).enumerator();
+      }
+      final Enumerator<E> rest = this.rest;
+      this.list = null;
+      this.rest = null;
+      if (rest == null) {
+        return Linq4j.enumerator(list);
+      }
+      return new Enumerator<E>() {
+        final Iterator<E> iterator = list.iterator();
+        E current;
+
+        public E current() {
+          return current;
+        }
+
+        public boolean moveNext() {
+          if (iterator.hasNext()) {
+            current = iterator.next();
+            return true;
+          }
+          if (rest.moveNext()) {
+            current = rest.current();
+            return true;
+          }
+          return false;
+        }
+
+        public void reset() {
+          throw new UnsupportedOperationException();
+        }
+
+        public void close() {
+          rest.close();
+        }
+      };
+    }
+  }
+
+  /** Accumulates the keys of an input. */
+  private static class Builder {
+    private long[] hashes = new long[64];
+    private int count;
+    private boolean hasNull;
+    private boolean numeric = true;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    void add(Object key) {
+      if (count > MAX_KEYS) {
+        return;
+      }
+      if (key == null) {
+        hasNull = true;
+        return;
+      }
+      if (count == hashes.length) {
+        hashes = Arrays.copyOf(hashes, count * 2);
+      }
+      hashes[count++] = hash(key);
+      if (numeric && key instanceof Number) {
+        final double d = ((Number) key).doubleValue();
+        if (d < min) {
+          min = d;
+        }
+        if (d > max) {
+          max = d;
+        }
+      } else {
+        numeric = false;
+      }
+    }
+
+    /** Returns the state of a filter that contains the keys, or null if there
+     * were too many keys. */
+    State build() {
+      if (count > MAX_KEYS) {
+        return null;
+      }
+      final int bitCount =
+          Integer.highestOneBit(Math.max(count * BITS_PER_KEY, 64) - 1) << 1;
+      final long[] bits = new long[bitCount / 64];
+      final int mask = bitCount - 1;
+      for (int i = 0; i < count; i++) {
+        final long h = hashes[i];
+        final int h1 = (int) h;
+        final int h2 = (int) (h >>> 32) | 1;
+        for (int j = 0; j < HASH_COUNT; j++) {
+          final int bit = (h1 + j * h2) & mask;
+          bits[bit >>> 6] |= 1L << bit;
+        }
+      }
+      return new State(bits, hasNull, numeric, min, max);
+    }
+  }
+
+  /** Contents of a filter that is ready. */
+  private static class State {
+    private final long[] bits;
+    private final int mask;
+    private final boolean hasNull;
+    private final boolean numeric;
+    private final double min;
+    private final double max;
+
+    State(long[] bits, boolean hasNull, boolean numeric, double min,
+        double max) {
+      this.bits = bits;
+      this.mask = bits.length * 64 - 1;
+      this.hasNull = hasNull;
+      this.numeric = numeric;
+      this.min = min;
+      this.max = max;
+    }
+
+    boolean mightContain(Object value) {
+      if (value == null) {
+        return hasNull;
+      }
+      if (numeric && value instanceof Number) {
+        // Rounding to double preserves order, so a value that is less than
+        // the minimum as a double is less than every key
+        final double d = ((Number) value).doubleValue();
+        if (d < min || d > max) {
+          return false;
+        }
+      }
+      return mightContainHash(hash(value));
+    }
+
+    boolean mightContain(long value) {
+      if (numeric && (value < min || value > max)) {
+        return false;
+      }
+      return mightContainHash(mix(value));
+    }
+
+    private boolean mightContainHash(long h) {
+      final int h1 = (int) h;
+      final int h2 = (int) (h >>> 32) | 1;
+      for (int j = 0; j < HASH_COUNT; j++) {
+        final int bit = (h1 + j * h2) & mask;
+        if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
+
+// End RuntimeFilter.java
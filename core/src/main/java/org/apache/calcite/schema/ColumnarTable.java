@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.schema;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.runtime.ColumnBatch;
+
+/**
+ * Table that can return its rows as batches of columns, without first
+ * creating a row object for each row.
+ *
+ * <p>If the {@link org.apache.calcite.config.CalciteConnectionProperty#VECTORIZE}
+ * connection property is true, operators in the batch calling convention
+ * read such a table by calling {@link #scanBatches(DataContext)}; other
+ * scannable tables are read by {@link #scan(DataContext)}, and their rows
+ * converted to batches.
+ */
+public interface ColumnarTable extends ScannableTable {
+  /** Returns the rows of this table in batches. Each column whose Java
+   * type is primitive (or the box of a primitive, if the column is
+   * nullable) must be a primitive array. */
+  Enumerable<ColumnBatch> scanBatches(DataContext root);
+}
+
+// End ColumnarTable.java
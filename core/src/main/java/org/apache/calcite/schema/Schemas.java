@@ -168,6 +168,12 @@ public static Expression tableExpression(SchemaPlus schema, Type elementType,
             Expressions.convert_(expression, ProjectableFilterableTable.class),
             DataContext.ROOT);
       }
+      if (SplittableTable.class.isAssignableFrom(clazz)) {
+        return Expressions.call(
+            BuiltInMethod.SCHEMAS_ENUMERABLE_SPLITTABLE.method,
+            Expressions.convert_(expression, SplittableTable.class),
+            DataContext.ROOT);
+      }
     } else {
       expression = Expressions.call(
           BuiltInMethod.SCHEMAS_QUERYABLE.method,
@@ -184,6 +190,20 @@ public static DataContext createDataContext(
     return new DummyDataContext((CalciteConnection) connection, rootSchema);
   }
 
+  /** Returns a data context that has the given variables, and otherwise
+   * delegates to an underlying data context.
+   *
+   * <p>Use this to bind a {@link org.apache.calcite.runtime.Bindable} to a
+   * data context that does not contain the internal parameters (such as
+   * stashed values) that were created while the statement was prepared. */
+  public static DataContext withVariables(DataContext dataContext,
+      Map<String, Object> variables) {
+    if (variables == null || variables.isEmpty()) {
+      return dataContext;
+    }
+    return new OverlayDataContext(dataContext, variables);
+  }
+
   /** Returns a {@link Queryable}, given a fully-qualified table name. */
   public static <E> Queryable<E> queryable(DataContext root, Class<E> clazz,
       String... names) {
@@ -236,6 +256,23 @@ public static Enumerable<Object[]> enumerable(
         identity(table.getRowType(root.getTypeFactory()).getFieldCount()));
   }
 
+  /** Returns an {@link org.apache.calcite.linq4j.Enumerable} over the rows of
+   * the morsel of a given table that is named by the
+   * {@link DataContext.Variable#MORSEL} and
+   * {@link DataContext.Variable#MORSEL_COUNT} variables, or over all rows if
+   * those variables are not set, representing each row as an object array. */
+  public static Enumerable<Object[]> enumerable(final SplittableTable table,
+      final DataContext root) {
+    final Integer morsel =
+        (Integer) root.get(DataContext.Variable.MORSEL.camelName);
+    final Integer morselCount =
+        (Integer) root.get(DataContext.Variable.MORSEL_COUNT.camelName);
+    if (morsel == null || morselCount == null) {
+      return table.scan(root, 0, 1);
+    }
+    return table.scan(root, morsel, morselCount);
+  }
+
   private static int[] identity(int count) {
     final int[] integers = new int[count];
     for (int i = 0; i < integers.length; i++) {
@@ -569,6 +606,38 @@ public Object get(String name) {
     }
   }
 
+  /** Data context that has a map of variables, and delegates to an
+   * underlying data context for everything else. */
+  private static class OverlayDataContext implements DataContext {
+    private final DataContext dataContext;
+    private final Map<String, Object> variables;
+
+    OverlayDataContext(DataContext dataContext,
+        Map<String, Object> variables) {
+      this.dataContext = dataContext;
+      this.variables = variables;
+    }
+
+    public SchemaPlus getRootSchema() {
+      return dataContext.getRootSchema();
+    }
+
+    public JavaTypeFactory getTypeFactory() {
+      return dataContext.getTypeFactory();
+    }
+
+    public QueryProvider getQueryProvider() {
+      return dataContext.getQueryProvider();
+    }
+
+    public Object get(String name) {
+      if (variables.containsKey(name)) {
+        return variables.get(name);
+      }
+      return dataContext.get(name);
+    }
+  }
+
   /** Implementation of {@link Path}. */
   private static class PathImpl
       extends AbstractList<Pair<String, Schema>> implements Path {
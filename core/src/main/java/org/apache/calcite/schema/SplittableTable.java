@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.schema;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.Enumerable;
+
+/**
+ * Table whose rows can be divided into parts, called morsels, that can be
+ * scanned independently, and therefore in parallel.
+ *
+ * <p>If the {@link org.apache.calcite.config.CalciteConnectionProperty#PARALLELISM}
+ * connection property is greater than 1, a query that filters, projects or
+ * aggregates such a table runs those operations on several threads, each
+ * thread scanning one morsel at a time.
+ *
+ * @see ScannableTable
+ */
+public interface SplittableTable extends Table {
+  /** Returns an enumerator over the rows of one morsel of this Table. Each
+   * row is represented as an array of its column values.
+   *
+   * <p>Morsels are numbered from 0 to {@code morselCount - 1}; between them,
+   * they must contain every row of the table exactly once.
+   *
+   * @param root Data context
+   * @param morsel Ordinal of the morsel to scan
+   * @param morselCount Number of morsels into which the table is divided
+   */
+  Enumerable<Object[]> scan(DataContext root, int morsel, int morselCount);
+}
+
+// End SplittableTable.java
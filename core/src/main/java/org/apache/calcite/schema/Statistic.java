@@ -48,6 +48,17 @@ public interface Statistic {
 
   /** Returns the distribution of the data in this table. */
   RelDistribution getDistribution();
+
+  /** Returns the version of these statistics, or null.
+   *
+   * <p>If not null, metadata derived from these statistics, such as the row
+   * count of a scan of the table, may be cached and shared between queries;
+   * see {@link org.apache.calcite.rel.metadata.RelMetadataCache}. A table
+   * must return a different version (for example, a counter or timestamp)
+   * each time its statistics change. */
+  default Object getVersion() {
+    return null;
+  }
 }
 
 // End Statistic.java
@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.tools;
 
+import org.apache.calcite.adapter.enumerable.EnumerableGather;
 import org.apache.calcite.adapter.enumerable.EnumerableRules;
 import org.apache.calcite.config.CalciteConnectionConfig;
 import org.apache.calcite.interpreter.NoneToBindableConverterRule;
@@ -53,6 +54,7 @@
 import org.apache.calcite.rel.rules.JoinToMultiJoinRule;
 import org.apache.calcite.rel.rules.LoptOptimizeJoinRule;
 import org.apache.calcite.rel.rules.MultiJoinOptimizeBushyRule;
+import org.apache.calcite.rel.rules.MultiJoinOptimizeDpRule;
 import org.apache.calcite.rel.rules.ProjectCalcMergeRule;
 import org.apache.calcite.rel.rules.ProjectMergeRule;
 import org.apache.calcite.rel.rules.ProjectToCalcRule;
@@ -112,8 +114,10 @@ public class Programs {
           EnumerableRules.ENUMERABLE_PROJECT_RULE,
           EnumerableRules.ENUMERABLE_FILTER_RULE,
           EnumerableRules.ENUMERABLE_AGGREGATE_RULE,
+          EnumerableRules.ENUMERABLE_SORTED_AGGREGATE_RULE,
           EnumerableRules.ENUMERABLE_SORT_RULE,
           EnumerableRules.ENUMERABLE_LIMIT_RULE,
+          EnumerableRules.ENUMERABLE_TOP_N_RULE,
           EnumerableRules.ENUMERABLE_UNION_RULE,
           EnumerableRules.ENUMERABLE_INTERSECT_RULE,
           EnumerableRules.ENUMERABLE_MINUS_RULE,
@@ -211,6 +215,39 @@ public static Program of(final HepProgram hepProgram, final boolean noDag,
   public static Program heuristicJoinOrder(
       final Iterable<? extends RelOptRule> rules,
       final boolean bushy, final int minJoinCount) {
+    return joinOrder(rules,
+        bushy
+            ? MultiJoinOptimizeBushyRule.INSTANCE
+            : LoptOptimizeJoinRule.INSTANCE,
+        minJoinCount);
+  }
+
+  /** Creates a program that orders joins by dynamic programming
+   * (via {@link org.apache.calcite.rel.rules.JoinToMultiJoinRule},
+   * {@link org.apache.calcite.rel.rules.MultiJoin} and
+   * {@link org.apache.calcite.rel.rules.MultiJoinOptimizeDpRule})
+   * if there are {@code minJoinCount} or more joins.
+   *
+   * <p>Joins of more than {@code maxFactors} relations are ordered by the
+   * greedy algorithm of
+   * {@link org.apache.calcite.rel.rules.MultiJoinOptimizeBushyRule}. */
+  public static Program dpJoinOrder(
+      final Iterable<? extends RelOptRule> rules,
+      final int minJoinCount, final int maxFactors) {
+    return joinOrder(rules,
+        maxFactors == MultiJoinOptimizeDpRule.DEFAULT_MAX_FACTORS
+            ? MultiJoinOptimizeDpRule.INSTANCE
+            : new MultiJoinOptimizeDpRule(RelFactories.LOGICAL_BUILDER,
+                maxFactors),
+        minJoinCount);
+  }
+
+  /** Creates a program that gathers joins into a
+   * {@link org.apache.calcite.rel.rules.MultiJoin} and expands it using a
+   * given join-order rule, if there are {@code minJoinCount} or more
+   * joins. */
+  private static Program joinOrder(final Iterable<? extends RelOptRule> rules,
+      final RelOptRule joinOrderRule, final int minJoinCount) {
     return (planner, rel, requiredOutputTraits, materializations, lattices) -> {
       final int joinCount = RelOptUtil.countJoins(rel);
       final Program program;
@@ -227,7 +264,7 @@ public static Program heuristicJoinOrder(
             of(hep, false, DefaultRelMetadataProvider.INSTANCE);
 
         // Create a program that contains a rule to expand a MultiJoin
-        // into heuristically ordered joins.
+        // into ordered joins.
         // We use the rule set passed in, but remove JoinCommuteRule and
         // JoinPushThroughJoinRule, because they cause exhaustive search.
         final List<RelOptRule> list = Lists.newArrayList(rules);
@@ -236,9 +273,7 @@ public static Program heuristicJoinOrder(
                 JoinAssociateRule.INSTANCE,
                 JoinPushThroughJoinRule.LEFT,
                 JoinPushThroughJoinRule.RIGHT));
-        list.add(bushy
-            ? MultiJoinOptimizeBushyRule.INSTANCE
-            : LoptOptimizeJoinRule.INSTANCE);
+        list.add(joinOrderRule);
         final Program program2 = ofRules(list);
 
         program = sequence(program1, program2);
@@ -308,7 +343,8 @@ public static Program standard(RelMetadataProvider metadataProvider) {
 
         // Second planner pass to do physical "tweaks". This the first time
         // that EnumerableCalcRel is introduced.
-        calc(metadataProvider));
+        calc(metadataProvider),
+        new ParallelProgram());
   }
 
   /** Program backed by a {@link RuleSet}. */
@@ -386,6 +422,23 @@ public RelNode run(RelOptPlanner planner, RelNode rel,
     }
   }
 
+  /** Program that runs pipelines over splittable tables on several threads,
+   * if the {@link CalciteConnectionConfig#parallelism()} connection property
+   * is greater than 1. */
+  private static class ParallelProgram implements Program {
+    public RelNode run(RelOptPlanner planner, RelNode rel,
+        RelTraitSet requiredOutputTraits,
+        List<RelOptMaterialization> materializations,
+        List<RelOptLattice> lattices) {
+      final CalciteConnectionConfig config =
+          planner.getContext().unwrap(CalciteConnectionConfig.class);
+      if (config != null && config.parallelism() > 1) {
+        return EnumerableGather.parallelize(rel, config.parallelism());
+      }
+      return rel;
+    }
+  }
+
   /** Program that trims fields. */
   private static class TrimFieldsProgram implements Program {
     public RelNode run(RelOptPlanner planner, RelNode rel,
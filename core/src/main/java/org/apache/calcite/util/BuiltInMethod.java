@@ -42,6 +42,7 @@
 import org.apache.calcite.linq4j.function.Function1;
 import org.apache.calcite.linq4j.function.Function2;
 import org.apache.calcite.linq4j.function.Functions;
+import org.apache.calcite.linq4j.function.LongFunction1;
 import org.apache.calcite.linq4j.function.Predicate1;
 import org.apache.calcite.linq4j.function.Predicate2;
 import org.apache.calcite.linq4j.tree.FunctionExpression;
@@ -73,12 +74,14 @@
 import org.apache.calcite.rel.metadata.Metadata;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.runtime.ArrayBindable;
+import org.apache.calcite.runtime.Batches;
 import org.apache.calcite.runtime.BinarySearch;
 import org.apache.calcite.runtime.Bindable;
 import org.apache.calcite.runtime.Enumerables;
 import org.apache.calcite.runtime.FlatLists;
 import org.apache.calcite.runtime.RandomFunction;
 import org.apache.calcite.runtime.ResultSetEnumerable;
+import org.apache.calcite.runtime.RuntimeFilter;
 import org.apache.calcite.runtime.SortedMultiMap;
 import org.apache.calcite.runtime.SqlFunctions;
 import org.apache.calcite.runtime.SqlFunctions.FlatProductInputType;
@@ -91,6 +94,8 @@
 import org.apache.calcite.schema.Schema;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.schema.Schemas;
+import org.apache.calcite.schema.SplittableTable;
+import org.apache.calcite.schema.Table;
 import org.apache.calcite.sql.SqlExplainLevel;
 import org.apache.calcite.sql.SqlJsonConstructorNullClause;
 import org.apache.calcite.sql.SqlJsonQueryEmptyOrErrorBehavior;
@@ -138,6 +143,9 @@ public enum BuiltInMethod {
       FilterableTable.class, DataContext.class),
   SCHEMAS_ENUMERABLE_PROJECTABLE_FILTERABLE(Schemas.class, "enumerable",
       ProjectableFilterableTable.class, DataContext.class),
+  SCHEMAS_ENUMERABLE_SPLITTABLE(Schemas.class, "enumerable",
+      SplittableTable.class, DataContext.class),
+  SCHEMAS_TABLE(Schemas.class, "table", DataContext.class, String[].class),
   SCHEMAS_QUERYABLE(Schemas.class, "queryable", DataContext.class,
       SchemaPlus.class, Class.class, String.class),
   REFLECTIVE_SCHEMA_GET_TARGET(ReflectiveSchema.class, "getTarget"),
@@ -161,8 +169,34 @@ public enum BuiltInMethod {
       Enumerable.class, Function1.class, Function1.class, Function2.class,
       boolean.class, boolean.class),
   SLICE0(Enumerables.class, "slice0", Enumerable.class),
+  GATHER(Enumerables.class, "gather", DataContext.class, Function1.class,
+      int.class),
+  RUNTIME_FILTER_COLLECT(RuntimeFilter.class, "collect", Enumerable.class,
+      Function1.class),
+  RUNTIME_FILTER_BUFFER(RuntimeFilter.class, "bufferAll", Enumerable.class,
+      RuntimeFilter[].class, Function1[].class),
+  RUNTIME_FILTER_FILTER(RuntimeFilter.class, "filterAll", Enumerable.class,
+      RuntimeFilter[].class, Function1[].class),
+  RUNTIME_FILTER_WITH_FILTER(RuntimeFilter.class, "withFilter",
+      DataContext.class, int.class, RuntimeFilter.class),
+  BATCHES_SCAN(Batches.class, "scan", Table.class, DataContext.class,
+      Primitive[].class),
+  BATCHES_FROM_ROWS(Batches.class, "fromRows", Enumerable.class,
+      Primitive[].class),
+  BATCHES_TO_ROWS(Batches.class, "toRows", Enumerable.class),
+  BATCHES_AGGREGATE(Batches.class, "aggregate", Enumerable.class,
+      int[].class, String[].class, int[].class, Primitive[].class),
   SEMI_JOIN(EnumerableDefaults.class, "semiJoin", Enumerable.class,
       Enumerable.class, Function1.class, Function1.class),
+  PRIMITIVE_SEMI_JOIN(EnumerableDefaults.class, "primitiveSemiJoin",
+      Enumerable.class, Enumerable.class, LongFunction1[].class,
+      LongFunction1[].class),
+  PRIMITIVE_JOIN(EnumerableDefaults.class, "primitiveJoin", Enumerable.class,
+      Enumerable.class, LongFunction1[].class, LongFunction1[].class,
+      Function2.class, boolean.class, boolean.class),
+  SPILLABLE_JOIN(EnumerableDefaults.class, "spillableJoin", Enumerable.class,
+      Enumerable.class, Function1.class, Function1.class, Function2.class,
+      EqualityComparer.class, boolean.class, boolean.class, long.class),
   THETA_JOIN(EnumerableDefaults.class, "thetaJoin", Enumerable.class,
       Enumerable.class, Predicate2.class, Function2.class, boolean.class,
       boolean.class),
@@ -175,9 +209,20 @@ public enum BuiltInMethod {
   WHERE2(ExtendedEnumerable.class, "where", Predicate2.class),
   DISTINCT(ExtendedEnumerable.class, "distinct"),
   DISTINCT2(ExtendedEnumerable.class, "distinct", EqualityComparer.class),
+  PRIMITIVE_DISTINCT(EnumerableDefaults.class, "primitiveDistinct",
+      Enumerable.class, LongFunction1[].class),
   GROUP_BY(ExtendedEnumerable.class, "groupBy", Function1.class),
   GROUP_BY2(ExtendedEnumerable.class, "groupBy", Function1.class,
       Function0.class, Function2.class, Function2.class),
+  SPILLABLE_GROUP_BY(EnumerableDefaults.class, "spillableGroupBy",
+      Enumerable.class, Function1.class, Function0.class, Function2.class,
+      Function2.class, EqualityComparer.class, long.class),
+  PRIMITIVE_GROUP_BY(EnumerableDefaults.class, "primitiveGroupBy",
+      Enumerable.class, Function1.class, LongFunction1[].class,
+      Function0.class, Function2.class, Function2.class, long.class),
+  SORTED_GROUP_BY(EnumerableDefaults.class, "sortedGroupBy",
+      Enumerable.class, Function1.class, Function0.class, Function2.class,
+      Function2.class, EqualityComparer.class),
   GROUP_BY_MULTIPLE(EnumerableDefaults.class, "groupByMultiple",
       Enumerable.class, List.class, Function0.class, Function2.class,
       Function2.class),
@@ -185,10 +230,20 @@ public enum BuiltInMethod {
       Function2.class, Function1.class),
   ORDER_BY(ExtendedEnumerable.class, "orderBy", Function1.class,
       Comparator.class),
+  SPILLABLE_ORDER_BY(EnumerableDefaults.class, "orderBy", Enumerable.class,
+      Function1.class, Comparator.class, long.class),
+  TOP_N(EnumerableDefaults.class, "topN", Enumerable.class, Function1.class,
+      Comparator.class, int.class, int.class),
   UNION(ExtendedEnumerable.class, "union", Enumerable.class),
   CONCAT(ExtendedEnumerable.class, "concat", Enumerable.class),
   INTERSECT(ExtendedEnumerable.class, "intersect", Enumerable.class),
   EXCEPT(ExtendedEnumerable.class, "except", Enumerable.class),
+  PRIMITIVE_UNION(EnumerableDefaults.class, "primitiveUnion",
+      Enumerable.class, Enumerable.class, LongFunction1[].class),
+  PRIMITIVE_INTERSECT(EnumerableDefaults.class, "primitiveIntersect",
+      Enumerable.class, Enumerable.class, LongFunction1[].class),
+  PRIMITIVE_EXCEPT(EnumerableDefaults.class, "primitiveExcept",
+      Enumerable.class, Enumerable.class, LongFunction1[].class),
   SKIP(ExtendedEnumerable.class, "skip", int.class),
   TAKE(ExtendedEnumerable.class, "take", int.class),
   SINGLETON_ENUMERABLE(Linq4j.class, "singletonEnumerable", Object.class),
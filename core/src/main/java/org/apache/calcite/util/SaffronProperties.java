@@ -109,6 +109,47 @@ public interface SaffronProperties {
   @Default("1000")
   IntProp metadataHandlerCacheMaximumSize();
 
+  /**
+   * The integer property "saffron.bindable.cache.maximum.size" is the
+   * maximum number of compiled classes that
+   * {@link org.apache.calcite.adapter.enumerable.EnumerableInterpretable}
+   * keeps, keyed by their generated source code, so that a statement that
+   * generates the same code as one prepared earlier does not compile it
+   * again.
+   *
+   * <p>If the value is 0, classes are not cached; if it is less than 0, there
+   * is no limit. The default is 1,000.
+   */
+  @Resource("saffron.bindable.cache.maximum.size")
+  @Default("1000")
+  IntProp bindableCacheMaximumSize();
+
+  /**
+   * The boolean property "saffron.enumerable.hoist.literals" determines
+   * whether the literals that an
+   * {@link org.apache.calcite.adapter.enumerable.EnumerableCalc} compares
+   * to other expressions, as in {@code WHERE deptno = 10}, are passed to the
+   * generated code as parameters rather than being inlined, so that
+   * statements that differ only in those literals generate the same code
+   * and share a compiled class. The default is true.
+   */
+  @Resource("saffron.enumerable.hoist.literals")
+  @Default("true")
+  BooleanProp hoistLiterals();
+
+  /**
+   * The integer property "saffron.enumerable.memory.budget" is the number
+   * of megabytes of rows that an enumerable operator, such as the build side
+   * of an {@link org.apache.calcite.adapter.enumerable.EnumerableJoin}, may
+   * hold in memory before it writes them to temporary files.
+   *
+   * <p>If the value is 0 or less, operators never spill to disk. The default
+   * is 256.
+   */
+  @Resource("saffron.enumerable.memory.budget")
+  @Default("256")
+  IntProp enumerableMemoryBudget();
+
   SaffronProperties INSTANCE = Helper.instance();
 
   /** Helper class. */
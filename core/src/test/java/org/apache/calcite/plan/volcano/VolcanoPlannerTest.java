@@ -18,6 +18,7 @@
 
 import org.apache.calcite.adapter.enumerable.EnumerableConvention;
 import org.apache.calcite.adapter.enumerable.EnumerableRules;
+import org.apache.calcite.plan.Contexts;
 import org.apache.calcite.plan.Convention;
 import org.apache.calcite.plan.ConventionTraitDef;
 import org.apache.calcite.plan.RelOptCluster;
@@ -34,7 +35,11 @@
 import org.apache.calcite.rel.core.RelFactories;
 import org.apache.calcite.rel.logical.LogicalProject;
 import org.apache.calcite.rel.rules.ProjectRemoveRule;
+import org.apache.calcite.runtime.CalciteException;
 import org.apache.calcite.tools.RelBuilder;
+import org.apache.calcite.util.CancelFlag;
+
+import com.google.common.collect.ImmutableSet;
 
 import org.junit.Ignore;
 import org.junit.Test;
@@ -43,6 +48,7 @@
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.apache.calcite.plan.volcano.PlannerTests.GoodSingleRule;
 import static org.apache.calcite.plan.volcano.PlannerTests.NoneLeafRel;
@@ -57,9 +63,11 @@
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Unit test for {@link VolcanoPlanner the optimizer}.
@@ -332,6 +340,80 @@ public RelNode convert(RelNode rel) {
         resultLeaf.label);
   }
 
+  /**
+   * Tests that a planner that reaches its rule limit returns the best plan
+   * it has found so far, and records statistics.
+   */
+  @Test public void testRuleLimit() {
+    VolcanoPlanner planner = new VolcanoPlanner();
+    planner.addRelTraitDef(ConventionTraitDef.INSTANCE);
+    planner.setRuleLimit(1);
+
+    planner.addRule(new PhysLeafRule());
+    planner.addRule(new GoodSingleRule());
+    planner.addRule(new GoodRemoveSingleRule());
+
+    RelOptCluster cluster = newCluster(planner);
+    NoneLeafRel leafRel =
+        new NoneLeafRel(
+            cluster,
+            "a");
+    NoneSingleRel singleRel =
+        new NoneSingleRel(
+            cluster,
+            leafRel);
+    RelNode convertedRel =
+        planner.changeTraits(
+            singleRel,
+            cluster.traitSetOf(PHYS_CALLING_CONVENTION));
+    planner.setRoot(convertedRel);
+    RelNode result = planner.chooseDelegate().findBestExp();
+
+    // After one rule has fired, there is no plan yet, so the planner fires
+    // rules until it has one. It does not fire GoodRemoveSingleRule, which
+    // would have found the plan that testRemoveSingleGood finds.
+    assertTrue(result instanceof PhysSingleRel);
+    final VolcanoPlannerStatistics statistics = planner.getStatistics();
+    assertTrue(statistics.limitReached);
+    assertThat(statistics.ruleFiringCount, equalTo(2));
+    assertThat(statistics.ruleStatistics.keySet(),
+        equalTo(ImmutableSet.of("PhysLeafRule", "GoodSingleRule")));
+    assertThat(statistics.ruleStatistics.get("PhysLeafRule").count,
+        equalTo(1));
+    assertThat(statistics.setCount, equalTo(2));
+  }
+
+  /**
+   * Tests that a planner whose cancel flag is set stops before it fires a
+   * rule.
+   */
+  @Test public void testCancel() {
+    final AtomicBoolean cancelFlag = new AtomicBoolean();
+    VolcanoPlanner planner =
+        new VolcanoPlanner(Contexts.of(new CancelFlag(cancelFlag)));
+    planner.addRelTraitDef(ConventionTraitDef.INSTANCE);
+    planner.addRule(new PhysLeafRule());
+
+    RelOptCluster cluster = newCluster(planner);
+    NoneLeafRel leafRel =
+        new NoneLeafRel(
+            cluster,
+            "a");
+    RelNode convertedRel =
+        planner.changeTraits(
+            leafRel,
+            cluster.traitSetOf(PHYS_CALLING_CONVENTION));
+    planner.setRoot(convertedRel);
+    cancelFlag.set(true);
+    try {
+      RelNode result = planner.chooseDelegate().findBestExp();
+      fail("expected error, got " + result);
+    } catch (CalciteException e) {
+      assertThat(e.getMessage(), equalTo("Statement preparation aborted"));
+    }
+    assertNull(planner.getStatistics());
+  }
+
   @Ignore("CALCITE-2592 EnumerableMergeJoin is never taken")
   @Test public void testMergeJoin() {
     VolcanoPlanner planner = new VolcanoPlanner();
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel;
+
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.test.RelBuilderTest;
+import org.apache.calcite.tools.RelBuilder;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test for {@link RelDigest}.
+ */
+public class RelDigestTest {
+  private RelNode project(RelBuilder b, RelNode input, int value) {
+    return b.push(input)
+        .filter(
+            b.call(SqlStdOperatorTable.GREATER_THAN, b.field("SAL"),
+                b.literal(value)))
+        .project(b.field("ENAME"), b.field("SAL"))
+        .build();
+  }
+
+  /** Tests that structural digests are equal if and only if string digests
+   * are equal. */
+  @Test public void testEquals() {
+    final RelBuilder b = RelBuilder.create(RelBuilderTest.config().build());
+    final RelNode scan = b.scan("EMP").build();
+    final RelNode scan2 = b.scan("EMP").build();
+    final RelNode rel1 = project(b, scan, 100);
+    final RelNode rel2 = project(b, scan, 100);
+    final RelNode rel3 = project(b, scan, 200);
+    final RelNode rel4 = project(b, scan2, 100);
+    for (RelNode rel : new RelNode[] {scan, scan2}) {
+      rel.recomputeRelDigest();
+    }
+    for (RelNode rel : new RelNode[] {rel1, rel2, rel3, rel4}) {
+      rel.getInput(0).recomputeRelDigest();
+      rel.recomputeRelDigest();
+    }
+
+    // Same expressions over the same input
+    assertThat(rel1.getInput(0), not(rel2.getInput(0)));
+    assertThat(rel1.getInput(0).getRelDigest(),
+        equalTo(rel2.getInput(0).getRelDigest()));
+    assertThat(rel1.getInput(0).getRelDigest().hashCode(),
+        is(rel2.getInput(0).getRelDigest().hashCode()));
+    assertThat(rel1.getInput(0).getDigest(),
+        is(rel2.getInput(0).getDigest()));
+
+    // Inputs are compared by identity
+    assertThat(rel1.getRelDigest(), not(equalTo(rel2.getRelDigest())));
+    assertThat(rel1.getDigest(), not(equalTo(rel2.getDigest())));
+
+    // Different literal
+    assertThat(rel1.getInput(0).getRelDigest(),
+        not(equalTo(rel3.getInput(0).getRelDigest())));
+    assertThat(rel1.getInput(0).getDigest(),
+        not(equalTo(rel3.getInput(0).getDigest())));
+
+    // Same expressions, but over different inputs
+    assertThat(rel1.getInput(0).getRelDigest(),
+        not(equalTo(rel4.getInput(0).getRelDigest())));
+    assertThat(rel1.getInput(0).getDigest(),
+        not(equalTo(rel4.getInput(0).getDigest())));
+
+    // Scans of the same table are equivalent
+    assertThat(scan.getRelDigest(), equalTo(scan2.getRelDigest()));
+    assertThat(scan.getDigest(), is(scan2.getDigest()));
+  }
+
+  /** Tests that the string digest is computed on demand, and is the same as
+   * before a relational expression was registered. */
+  @Test public void testStringDigest() {
+    final RelBuilder b = RelBuilder.create(RelBuilderTest.config().build());
+    final RelNode scan = b.scan("EMP").build();
+    final String digest0 = scan.getDigest();
+    assertThat(digest0, is("LogicalTableScan#" + scan.getId()));
+    assertThat(scan.getRelDigest(), equalTo(RelDigest.of(digest0)));
+
+    scan.recomputeRelDigest();
+    assertThat(scan.getDigest(),
+        is("LogicalTableScan.NONE.[0](table=[scott, EMP])"));
+    assertThat(scan.getDescription(),
+        is("rel#" + scan.getId() + ":" + scan.getDigest()));
+    assertThat(scan.recomputeDigest(), is(scan.getDigest()));
+  }
+}
+
+// End RelDigestTest.java
@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.metadata;
+
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelDistribution;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelReferentialConstraint;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.tools.Frameworks;
+import org.apache.calcite.tools.RelBuilder;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test for {@link RelMetadataCache}.
+ */
+public class RelMetadataCacheTest {
+  private static final JaninoRelMetadataProvider PROVIDER =
+      JaninoRelMetadataProvider.DEFAULT;
+
+  private final RelBuilder builder;
+
+  public RelMetadataCacheTest() {
+    final SchemaPlus rootSchema = Frameworks.createRootSchema(true);
+    rootSchema.add("T", new VersionedTable());
+    builder =
+        RelBuilder.create(
+            Frameworks.newConfigBuilder().defaultSchema(rootSchema).build());
+  }
+
+  private static List key(Object... values) {
+    return Arrays.asList(values);
+  }
+
+  /** Tests that a value is shared between equivalent scans, but not if its
+   * arguments include a predicate, which belongs to one query. */
+  @Test public void testPredicateIsNotShared() {
+    final RelMetadataCache cache = new RelMetadataCache(100);
+    final RelNode scan = builder.scan("T").build();
+    final RelNode scan2 = builder.scan("T").build();
+    final RexNode predicate =
+        builder.push(scan)
+            .equals(builder.field("id"), builder.literal(1));
+    builder.build();
+    final ImmutableBitSet id = ImmutableBitSet.of(0);
+    final MetadataDef def = BuiltInMetadata.DistinctRowCount.DEF;
+
+    cache.put(PROVIDER, key(def, scan, id, null), 100d);
+    assertThat(cache.get(PROVIDER, key(def, scan2, id, null)), is(100d));
+
+    cache.put(PROVIDER, key(def, scan, id, predicate), 15d);
+    assertThat(cache.get(PROVIDER, key(def, scan, id, predicate)),
+        nullValue());
+    assertThat(cache.size(), is(1L));
+  }
+
+  /** Tests that the key of a scan whose class overrides
+   * {@link org.apache.calcite.rel.AbstractRelNode#computeDigest()} uses that
+   * digest, so that scans that differ only in values that are not explained
+   * do not share values. */
+  @Test public void testDigestOfSubClass() {
+    final RelMetadataCache cache = new RelMetadataCache(100);
+    final RelNode scan = builder.scan("T").build();
+    final RelNode scanA = TaggedScan.of(scan, "a");
+    final RelNode scanA2 = TaggedScan.of(scan, "a");
+    final RelNode scanB = TaggedScan.of(scan, "b");
+    final MetadataDef def = BuiltInMetadata.RowCount.DEF;
+
+    cache.put(PROVIDER, key(def, scanA), 10d);
+    assertThat(cache.get(PROVIDER, key(def, scanA2)), is(10d));
+    assertThat(cache.get(PROVIDER, key(def, scanB)), nullValue());
+  }
+
+  /** Scan whose digest contains a tag that it does not explain. */
+  private static class TaggedScan extends TableScan {
+    private final String tag;
+
+    TaggedScan(RelOptCluster cluster, RelTraitSet traitSet,
+        RelOptTable table, String tag) {
+      super(cluster, traitSet, table);
+      this.tag = tag;
+    }
+
+    static TaggedScan of(RelNode scan, String tag) {
+      return new TaggedScan(scan.getCluster(), scan.getTraitSet(),
+          scan.getTable(), tag);
+    }
+
+    @Override protected String computeDigest() {
+      return super.computeDigest() + ":" + tag;
+    }
+  }
+
+  /** Table whose statistics have a version. */
+  private static class VersionedTable extends AbstractTable {
+    public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      return typeFactory.builder()
+          .add("id", SqlTypeName.INTEGER)
+          .add("name", SqlTypeName.VARCHAR, 20)
+          .build();
+    }
+
+    @Override public Statistic getStatistic() {
+      final Statistic statistic =
+          Statistics.of(100d, ImmutableList.of(ImmutableBitSet.of(0)));
+      return new Statistic() {
+        public Double getRowCount() {
+          return statistic.getRowCount();
+        }
+
+        public boolean isKey(ImmutableBitSet columns) {
+          return statistic.isKey(columns);
+        }
+
+        public List<RelReferentialConstraint> getReferentialConstraints() {
+          return statistic.getReferentialConstraints();
+        }
+
+        public List<RelCollation> getCollations() {
+          return statistic.getCollations();
+        }
+
+        public RelDistribution getDistribution() {
+          return statistic.getDistribution();
+        }
+
+        @Override public Object getVersion() {
+          return 1;
+        }
+      };
+    }
+  }
+}
+
+// End RelMetadataCacheTest.java
@@ -33,7 +33,9 @@
 import org.apache.calcite.prepare.LookupOperatorOverloadsTest;
 import org.apache.calcite.profile.ProfilerTest;
 import org.apache.calcite.rel.RelCollationTest;
+import org.apache.calcite.rel.RelDigestTest;
 import org.apache.calcite.rel.RelDistributionTest;
+import org.apache.calcite.rel.metadata.RelMetadataCacheTest;
 import org.apache.calcite.rel.rel2sql.RelToSqlConverterTest;
 import org.apache.calcite.rel.rules.DateRangeRulesTest;
 import org.apache.calcite.rel.rules.SortRemoveRuleTest;
@@ -54,7 +56,13 @@
 import org.apache.calcite.sql.type.SqlTypeUtilTest;
 import org.apache.calcite.sql.validate.LexCaseSensitiveTest;
 import org.apache.calcite.sql.validate.SqlValidatorUtilTest;
+import org.apache.calcite.test.enumerable.EnumerableAggregateTest;
+import org.apache.calcite.test.enumerable.EnumerableBatchTest;
 import org.apache.calcite.test.enumerable.EnumerableCorrelateTest;
+import org.apache.calcite.test.enumerable.EnumerableGatherTest;
+import org.apache.calcite.test.enumerable.EnumerableInterpretableTest;
+import org.apache.calcite.test.enumerable.EnumerableJoinTest;
+import org.apache.calcite.test.enumerable.EnumerableSortTest;
 import org.apache.calcite.test.fuzzer.RexProgramFuzzyTest;
 import org.apache.calcite.tools.FrameworksTest;
 import org.apache.calcite.tools.PlannerTest;
@@ -94,6 +102,8 @@
     ReflectVisitorTest.class,
     RelOptUtilTest.class,
     RelCollationTest.class,
+    RelDigestTest.class,
+    RelMetadataCacheTest.class,
     UtilTest.class,
     PrecedenceClimbingParserTest.class,
     SourceTest.class,
@@ -150,6 +160,12 @@
     ChunkListTest.class,
     FrameworksTest.class,
     EnumerableCorrelateTest.class,
+    EnumerableInterpretableTest.class,
+    EnumerableAggregateTest.class,
+    EnumerableGatherTest.class,
+    EnumerableBatchTest.class,
+    EnumerableJoinTest.class,
+    EnumerableSortTest.class,
     LookupOperatorOverloadsTest.class,
     LexCaseSensitiveTest.class,
     CollationConversionTest.class,
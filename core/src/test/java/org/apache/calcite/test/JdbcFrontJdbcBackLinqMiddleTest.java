@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.test;
 
+import org.apache.calcite.config.CalciteConnectionProperty;
 import org.apache.calcite.util.Bug;
 
 import org.junit.Ignore;
@@ -265,8 +266,10 @@ public class JdbcFrontJdbcBackLinqMiddleTest {
     // instead, and that would be wrong.
     //
     // inventory_fact_1997 is on the LHS because it is larger than store.
+    // Runtime filters are disabled, because they would wrap the inputs.
     that()
         .with(CalciteAssert.Config.FOODMART_CLONE)
+        .with(CalciteConnectionProperty.RUNTIME_FILTER, false)
         .query(
             "select \"store\".\"store_country\" as \"c0\", sum(\"inventory_fact_1997\".\"supply_time\") as \"m0\" from \"store\" as \"store\", \"inventory_fact_1997\" as \"inventory_fact_1997\" where \"inventory_fact_1997\".\"store_id\" = \"store\".\"store_id\" group by \"store\".\"store_country\"")
         .planContains(
@@ -1614,6 +1614,33 @@ private void checkResultSetMetaData(Connection connection, String sql)
             + "empid=110; name=Sales; name=Theodore\n");
   }
 
+  /** Tests that a query is planned and executed correctly if the planner
+   * reaches its rule limit, and that a canceled statement is not planned. */
+  @Test public void testPlannerRuleLimit() throws Exception {
+    final String sql = "select e.\"empid\", d.\"name\", e.\"name\"\n"
+        + "from \"hr\".\"emps\" as e\n"
+        + "join \"hr\".\"depts\" as d\n"
+        + "on e.\"deptno\" = d.\"deptno\"\n"
+        + "and e.\"name\" <> d.\"name\"\n";
+    CalciteAssert.hr()
+        .with(CalciteConnectionProperty.PLANNER_RULE_LIMIT, 1)
+        .query(sql)
+        .returnsUnordered("empid=100; name=Sales; name=Bill",
+            "empid=150; name=Sales; name=Sebastian",
+            "empid=110; name=Sales; name=Theodore");
+    CalciteAssert.hr()
+        .doWithConnection(connection -> {
+          try (Statement statement = connection.createStatement()) {
+            statement.cancel();
+            statement.executeQuery(sql);
+            fail("expected error");
+          } catch (SQLException e) {
+            assertThat(e.getMessage(),
+                containsString("Statement preparation aborted"));
+          }
+        });
+  }
+
   /** Test case for
    * <a href="https://issues.apache.org/jira/browse/CALCITE-451">[CALCITE-451]
    * Implement theta join, inner and outer, in enumerable convention</a>. */
@@ -2422,7 +2449,8 @@ private void checkNullableTimestamp(CalciteAssert.Config config) {
             + "!$L4J$C$org_apache_calcite_runtime_SqlFunctions_eq_sa_sa_;")
         .planContains("return inp2_ == null "
             + "|| $L4J$C$_org_apache_calcite_runtime_SqlFunctions_eq_sa_sa_ "
-            + "|| !v5 && inp1_ * 8 <= 8 "
+            // 8 is compared to a column, so it is a parameter, v1stashed
+            + "|| !v5 && inp1_ * v1stashed <= v1stashed "
             + "? (String) null "
             + ": org.apache.calcite.runtime.SqlFunctions.substring("
             + "org.apache.calcite.runtime.SqlFunctions.trim(true, true, \" \", "
@@ -2459,7 +2487,7 @@ private void checkNullableTimestamp(CalciteAssert.Config config) {
             + "!$L4J$C$org_apache_calcite_runtime_SqlFunctions_eq_sa_sa_;")
         .planContains("return inp2_ == null "
             + "|| $L4J$C$_org_apache_calcite_runtime_SqlFunctions_eq_sa_sa_ "
-            + "|| current.empid <= inp1_ && inp1_ * 8 <= 8 "
+            + "|| current.empid <= inp1_ && inp1_ * v1stashed <= v1stashed "
             + "? (String) null "
             + ": org.apache.calcite.runtime.SqlFunctions.substring("
             + "org.apache.calcite.runtime.SqlFunctions.trim(true, true, \" \", "
@@ -3504,8 +3532,9 @@ public void checkOrderBy(final boolean desc,
         .planContains("return new Object[] {\n"
             + "                  current[1],\n"
             + "                  current[0],\n"
-            // Float.valueOf(SqlFunctions.toFloat(current[5])) comes from SUM0
-            + "                  org.apache.calcite.runtime.SqlFunctions.toLong(current[4]) > 0L ? Float.valueOf(org.apache.calcite.runtime.SqlFunctions.toFloat(current[5])) : (Float) null,\n"
+            // Float.valueOf(SqlFunctions.toFloat(current[5])) comes from SUM0;
+            // the 0 that COUNT is compared to is a parameter, v1stashed
+            + "                  org.apache.calcite.runtime.SqlFunctions.toLong(current[4]) > v1stashed ? Float.valueOf(org.apache.calcite.runtime.SqlFunctions.toFloat(current[5])) : (Float) null,\n"
             + "                  5,\n"
             + "                  current[6],\n"
             + "                  current[7]};\n");
@@ -1581,7 +1581,7 @@ private void checkSatisfiable(RexNode e, String s) {
             + "group by \"dependents\".\"empid\"",
         HR_FKUK_MODEL,
         CalciteAssert.checkResultContains(
-            "EnumerableAggregate(group=[{0}], S=[$SUM0($2)])\n"
+            "EnumerableSortedAggregate(group=[{0}], S=[$SUM0($2)])\n"
                 + "  EnumerableJoin(condition=[=($1, $3)], joinType=[inner])\n"
                 + "    EnumerableTableScan(table=[[hr, m0]])\n"
                 + "    EnumerableTableScan(table=[[hr, depts]])"));
@@ -16,7 +16,10 @@
  */
 package org.apache.calcite.test;
 
+import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.enumerable.EnumerableMergeJoin;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Linq4j;
 import org.apache.calcite.linq4j.tree.Types;
 import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.plan.RelOptPlanner;
@@ -31,6 +34,7 @@
 import org.apache.calcite.rel.RelDistributions;
 import org.apache.calcite.rel.RelFieldCollation;
 import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelReferentialConstraint;
 import org.apache.calcite.rel.RelRoot;
 import org.apache.calcite.rel.SingleRel;
 import org.apache.calcite.rel.core.Aggregate;
@@ -71,6 +75,7 @@
 import org.apache.calcite.rel.metadata.RelMetadataProvider;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.rex.RexCall;
 import org.apache.calcite.rex.RexInputRef;
@@ -78,6 +83,13 @@
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.rex.RexTableInputRef;
 import org.apache.calcite.rex.RexTableInputRef.RelTableRef;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.schema.impl.AbstractTable;
 import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.SqlOperator;
 import org.apache.calcite.sql.SqlSpecialOperator;
@@ -93,6 +105,7 @@
 import org.apache.calcite.util.SaffronProperties;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
@@ -132,6 +145,7 @@
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.CoreMatchers.startsWith;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
@@ -2443,6 +2457,92 @@ private void checkNodeTypeCount(String sql, Map<Class<? extends RelNode>, Intege
         mq.getPulledUpPredicates(filter1).pulledUpPredicates.get(0).toString());
   }
 
+  /** Tests that metadata of a scan of a table whose statistics have a
+   * version is shared between queries, until the version changes. */
+  @Test public void testSharedMetadataCache() {
+    final VersionedTable table = new VersionedTable();
+    final SchemaPlus rootSchema = Frameworks.createRootSchema(true);
+    rootSchema.add("T", table);
+    final RelBuilder builder =
+        RelBuilder.create(
+            Frameworks.newConfigBuilder().defaultSchema(rootSchema).build());
+    final ImmutableBitSet id = ImmutableBitSet.of(0);
+    table.keyed = true;
+    table.version = 1;
+    final RelNode scan = builder.scan("T").build();
+    assertThat(RelMetadataQuery.instance().areColumnsUnique(scan, id),
+        is(true));
+
+    // Statistics change but the version does not, so a new query over a new
+    // scan sees the shared, stale value
+    table.keyed = false;
+    final RelNode scan2 = builder.scan("T").build();
+    assertThat(scan2, not(sameInstance(scan)));
+    assertThat(RelMetadataQuery.instance().areColumnsUnique(scan2, id),
+        is(true));
+
+    // New version; the shared value is not used
+    table.version = 2;
+    assertThat(RelMetadataQuery.instance().areColumnsUnique(scan2, id),
+        is(false));
+
+    // Null version; values are not shared
+    table.version = null;
+    table.keyed = true;
+    assertThat(RelMetadataQuery.instance().areColumnsUnique(scan2, id),
+        is(true));
+    table.keyed = false;
+    assertThat(RelMetadataQuery.instance().areColumnsUnique(scan2, id),
+        is(false));
+  }
+
+  /** Tests that a table that unwraps to a {@link RelMetadataProvider}
+   * supplies metadata of its scans when a query is prepared through a
+   * connection. */
+  @Test public void testTableMetadataProvider() {
+    final AbstractSchema schema = new AbstractSchema() {
+      @Override protected Map<String, Table> getTableMap() {
+        return ImmutableMap.of("T", new DistinctCountTable());
+      }
+    };
+    final String sql =
+        "select \"k\", count(*) from \"s\".\"T\" group by \"k\"";
+    CalciteAssert.that()
+        .withSchema("s", schema)
+        .query(sql)
+        .explainMatches("including all attributes ",
+            CalciteAssert.checkResultContains(
+                "EnumerableAggregate(group=[{0}], EXPR$1=[COUNT()]): "
+                    + "rowcount = 7.0"));
+  }
+
+  /** Tests that the metadata provider of a table is used only while
+   * preparing a query that reads the table, and not afterwards by metadata
+   * queries on the same thread. */
+  @Test public void testTableMetadataProviderIsRestored() {
+    final AbstractSchema schema = new AbstractSchema() {
+      @Override protected Map<String, Table> getTableMap() {
+        return ImmutableMap.of("T", new DistinctCountTable());
+      }
+    };
+    CalciteAssert.that()
+        .withSchema("s", schema)
+        .query("select \"k\", count(*) from \"s\".\"T\" group by \"k\"")
+        .explainContains("EnumerableAggregate");
+
+    // A later query on this thread that reads the same table
+    final SchemaPlus rootSchema = Frameworks.createRootSchema(true);
+    rootSchema.add("T", new DistinctCountTable());
+    final RelBuilder builder =
+        RelBuilder.create(
+            Frameworks.newConfigBuilder().defaultSchema(rootSchema).build());
+    final RelNode aggregate = builder.scan("T")
+        .aggregate(builder.groupKey("k"), builder.countStar("c"))
+        .build();
+    final RelMetadataQuery mq = RelMetadataQuery.instance();
+    assertThat(mq.getRowCount(aggregate), is(10d));
+  }
+
   /**
    * Matcher that succeeds for any collection that, when converted to strings
    * and sorted on those strings, matches the given reference string.
@@ -2563,6 +2663,97 @@ private class DummyRelNode extends SingleRel {
       super(cluster, traits, input);
     }
   }
+
+  /** Table whose statistics can be changed, and have a version. */
+  private static class VersionedTable extends AbstractTable {
+    boolean keyed;
+    Object version;
+
+    public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      return typeFactory.builder()
+          .add("id", SqlTypeName.INTEGER)
+          .add("name", SqlTypeName.VARCHAR, 20)
+          .build();
+    }
+
+    @Override public Statistic getStatistic() {
+      final Statistic statistic =
+          Statistics.of(100d,
+              keyed ? ImmutableList.of(ImmutableBitSet.of(0))
+                  : ImmutableList.of());
+      final Object version = this.version;
+      return new Statistic() {
+        public Double getRowCount() {
+          return statistic.getRowCount();
+        }
+
+        public boolean isKey(ImmutableBitSet columns) {
+          return statistic.isKey(columns);
+        }
+
+        public List<RelReferentialConstraint> getReferentialConstraints() {
+          return statistic.getReferentialConstraints();
+        }
+
+        public List<RelCollation> getCollations() {
+          return statistic.getCollations();
+        }
+
+        public RelDistribution getDistribution() {
+          return statistic.getDistribution();
+        }
+
+        @Override public Object getVersion() {
+          return version;
+        }
+      };
+    }
+  }
+
+  /** Table whose metadata provider says that each of its columns has 7
+   * distinct values. */
+  private static class DistinctCountTable extends AbstractTable
+      implements ScannableTable {
+    static final RelMetadataProvider SOURCE =
+        ReflectiveRelMetadataProvider.reflectiveSource(
+            BuiltInMethod.DISTINCT_ROW_COUNT.method,
+            new DistinctCountHandler());
+
+    public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      return typeFactory.builder()
+          .add("k", SqlTypeName.INTEGER)
+          .add("v", SqlTypeName.INTEGER)
+          .build();
+    }
+
+    @Override public Statistic getStatistic() {
+      return Statistics.of(100d, ImmutableList.of());
+    }
+
+    public Enumerable<Object[]> scan(DataContext root) {
+      return Linq4j.emptyEnumerable();
+    }
+
+    @Override public <C> C unwrap(Class<C> aClass) {
+      if (aClass == RelMetadataProvider.class) {
+        return aClass.cast(SOURCE);
+      }
+      return super.unwrap(aClass);
+    }
+  }
+
+  /** Handler for {@link DistinctCountTable}. */
+  public static class DistinctCountHandler
+      implements MetadataHandler<BuiltInMetadata.DistinctRowCount> {
+    public MetadataDef<BuiltInMetadata.DistinctRowCount> getDef() {
+      return BuiltInMetadata.DistinctRowCount.DEF;
+    }
+
+    public Double getDistinctRowCount(TableScan rel, RelMetadataQuery mq,
+        ImmutableBitSet groupKey, RexNode predicate) {
+      return 7d;
+    }
+  }
 }
 
 // End RelMetadataTest.java
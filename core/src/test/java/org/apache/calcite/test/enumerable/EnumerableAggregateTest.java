@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.test.CalciteAssert;
+
+import org.junit.Test;
+
+/**
+ * Unit test for
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableAggregate}.
+ */
+public class EnumerableAggregateTest {
+  private static final String SQL = "select deptno, count(*) as c,"
+      + " sum(empid) as s\n"
+      + "from emps\n"
+      + "group by deptno";
+
+  /** Query whose group key is not of a primitive type. */
+  private static final String OBJECT_KEY_SQL =
+      "select cast(deptno as varchar(10)) as d, count(*) as c\n"
+      + "from emps\n"
+      + "group by cast(deptno as varchar(10))";
+
+  /** Tests that an aggregate that is estimated to have more groups than fit
+   * in the memory budget uses an aggregation that can spill to disk, and
+   * still returns the right rows when the groups fit in memory after
+   * all. */
+  @Test public void spillableGroupByForManyGroups() {
+    tester(1E9)
+        .query(OBJECT_KEY_SQL)
+        .planContains("spillableGroupBy(")
+        .returnsUnordered("d=10; c=3", "d=20; c=1");
+  }
+
+  /** As {@link #spillableGroupByForManyGroups()}, but the group key is of a
+   * primitive type, so the aggregation does not box keys. */
+  @Test public void primitiveGroupByForManyGroups() {
+    tester(1E9)
+        .query(SQL)
+        .planContains("primitiveGroupBy(")
+        .returnsUnordered("deptno=10; c=3; s=360",
+            "deptno=20; c=1; s=200");
+  }
+
+  /** Tests that an aggregate whose groups do not fit in the memory budget
+   * writes rows to disk and aggregates them later. The budget of 16 bytes
+   * holds only one group, so 9 of the 10 groups spill. */
+  @Test public void spillableGroupBySpills() {
+    tester(1E6)
+        .with(CalciteConnectionProperty.MEMORY_BUDGET, 16)
+        .query("select grp, count(*) as c, sum(id) as s\n"
+            + "from unsorted_nums\n"
+            + "group by grp")
+        .planContains("primitiveGroupBy(")
+        .planContains(", 1L)")
+        .returnsUnordered("grp=1; c=10; s=45",
+            "grp=2; c=10; s=145",
+            "grp=3; c=10; s=245",
+            "grp=4; c=10; s=345",
+            "grp=5; c=10; s=445",
+            "grp=6; c=10; s=545",
+            "grp=7; c=10; s=645",
+            "grp=8; c=10; s=745",
+            "grp=9; c=10; s=845",
+            "grp=10; c=10; s=945");
+  }
+
+  /** As {@link #spillableGroupBySpills()}, but the input rows are not
+   * arrays: the input has a single column, so each row is an
+   * {@link Integer}. */
+  @Test public void spillableGroupBySpillsScalarRows() {
+    tester(1E6)
+        .with(CalciteConnectionProperty.MEMORY_BUDGET, 16)
+        .query("select v, count(*) as c\n"
+            + "from (select grp * 2 as v from unsorted_nums)\n"
+            + "group by v")
+        .planContains("primitiveGroupBy(")
+        .planContains(", 1L)")
+        .returnsUnordered("v=2; c=10",
+            "v=4; c=10",
+            "v=6; c=10",
+            "v=8; c=10",
+            "v=10; c=10",
+            "v=12; c=10",
+            "v=14; c=10",
+            "v=16; c=10",
+            "v=18; c=10",
+            "v=20; c=10");
+  }
+
+  @Test public void inMemoryGroupByForFewGroups() {
+    tester(100D)
+        .query(OBJECT_KEY_SQL)
+        .planContains(".groupBy(")
+        .returnsUnordered("d=10; c=3", "d=20; c=1");
+  }
+
+  /** Tests that an aggregate whose groups fit in memory, and whose keys are
+   * primitive, holds all groups in a table that does not box the keys. */
+  @Test public void inMemoryPrimitiveGroupByForFewGroups() {
+    tester(100D)
+        .query(SQL)
+        .planContains("primitiveGroupBy(")
+        .planContains(", -1L)")
+        .returnsUnordered("deptno=10; c=3; s=360",
+            "deptno=20; c=1; s=200");
+  }
+
+  /** Tests a primitive group-by on two keys. */
+  @Test public void primitiveGroupByTwoKeys() {
+    tester(1E6)
+        .with(CalciteConnectionProperty.MEMORY_BUDGET, 16)
+        .query("select grp, id / 50 as h, count(*) as c\n"
+            + "from unsorted_nums\n"
+            + "where grp > 4 and grp < 7\n"
+            + "group by grp, id / 50")
+        .planContains("primitiveGroupBy(")
+        .returnsUnordered("grp=5; h=0; c=10",
+            "grp=6; h=1; c=10");
+  }
+
+  /** Tests that an aggregate over a table that is sorted on the group key
+   * aggregates one group at a time, rather than building a hash table, and
+   * that its output is sorted without another sort. */
+  @Test public void sortedAggregateForSortedInput() {
+    sortedTester()
+        .query(SQL + "\norder by deptno")
+        .explainContains("EnumerableSortedAggregate(group=[{1}], c=[COUNT()], "
+            + "s=[$SUM0($0)])\n"
+            + "  EnumerableInterpreter\n"
+            + "    BindableTableScan(table=[[s, emps]])")
+        .planContains("sortedGroupBy(")
+        .returnsOrdered("deptno=10; c=3; s=360",
+            "deptno=20; c=1; s=200");
+  }
+
+  /** Tests that a sorted aggregate feeds a limit directly, so that the first
+   * groups are returned without reading the whole input. */
+  @Test public void sortedAggregateWithLimit() {
+    sortedTester()
+        .query(SQL + "\norder by deptno\nlimit 1")
+        .explainContains("EnumerableLimit(fetch=[1])\n"
+            + "  EnumerableSortedAggregate(group=[{1}]")
+        .returnsOrdered("deptno=10; c=3; s=360");
+  }
+
+  /** Tests that an aggregate over unsorted input whose output must be sorted
+   * may also sort its input and then aggregate one group at a time. */
+  @Test public void sortedAggregateOrHashAggregate() {
+    tester(1E6)
+        .query(SQL + "\norder by deptno")
+        .returnsOrdered("deptno=10; c=3; s=360",
+            "deptno=20; c=1; s=200");
+  }
+
+  private CalciteAssert.AssertThat sortedTester() {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .withSchema("s", new EstimatedSchema(1E6, true));
+  }
+
+  private CalciteAssert.AssertThat tester(double rowCount) {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .withSchema("s", new EstimatedSchema(rowCount));
+  }
+}
+
+// End EnumerableAggregateTest.java
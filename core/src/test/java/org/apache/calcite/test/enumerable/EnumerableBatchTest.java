@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.test.CalciteAssert;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test for operators in the batch calling convention,
+ * {@link org.apache.calcite.adapter.enumerable.BatchConvention}.
+ */
+public class EnumerableBatchTest {
+  private CalciteAssert.AssertThat with(boolean vectorize) {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.VECTORIZE, vectorize)
+        .withSchema("s", new NumbersSchema());
+  }
+
+  private CalciteAssert.AssertThat foodmart() {
+    return CalciteAssert.that()
+        .with(CalciteAssert.Config.FOODMART_CLONE)
+        .with(CalciteConnectionProperty.VECTORIZE, true);
+  }
+
+  /** Tests a filter over a table that returns rows, and that a null value
+   * fails the condition. */
+  @Test public void filter() {
+    final String sql = "select \"n\", \"m\" from \"s\".\"numbers\"\n"
+        + "where \"m\" > 7 and \"n\" < 30";
+    with(true)
+        .query(sql)
+        .explainContains("BatchToEnumerableConverter\n"
+            + "  BatchCalc(")
+        .explainContains("BatchTableScan(table=[[s, numbers]])")
+        .returnsUnordered("n=8; m=8", "n=9; m=9", "n=18; m=8", "n=19; m=9",
+            "n=28; m=8", "n=29; m=9");
+  }
+
+  /** Tests expressions, including expressions whose value is null. */
+  @Test public void project() {
+    final String sql = "select \"n\" * 2 as d, \"m\" + 1 as m1,\n"
+        + " cast(\"n\" as varchar(5)) as s\n"
+        + "from \"s\".\"numbers\"\n"
+        + "where \"n\" between 19 and 21";
+    with(true)
+        .query(sql)
+        .explainContains("BatchCalc(")
+        .returnsUnordered("D=38; M1=10; S=19",
+            "D=40; M1=null; S=20",
+            "D=42; M1=2; S=21");
+  }
+
+  /** Tests an aggregate, including aggregate functions of a column that has
+   * null values. */
+  @Test public void aggregate() {
+    final String sql = "select \"m\", count(*) as c, count(\"m\") as cm,\n"
+        + " sum(\"n\") as s, min(\"n\") as mi, max(\"n\") as ma\n"
+        + "from \"s\".\"numbers\"\n"
+        + "where \"m\" is null or \"m\" < 2\n"
+        + "group by \"m\"";
+    with(true)
+        .query(sql)
+        .explainContains("BatchAggregate(group=[{1}]")
+        .returnsUnordered("m=null; C=100; CM=0; S=49500; MI=0; MA=990",
+            "m=1; C=100; CM=100; S=49600; MI=1; MA=991");
+  }
+
+  /** Tests an aggregate whose group key is a single {@code INTEGER} or
+   * {@code BIGINT} column with more groups than the initial size of the
+   * hash table that assigns rows to groups. */
+  @Test public void aggregateManyGroups() {
+    final String sql = "select count(*) as g, sum(c) as s, max(c) as m\n"
+        + "from (\n"
+        + "  select \"n\" / 3 as k, count(*) as c\n"
+        + "  from \"s\".\"numbers\"\n"
+        + "  group by \"n\" / 3)";
+    with(true)
+        .query(sql)
+        .explainContains("BatchAggregate(group=[{0}]")
+        .returns("G=334; S=1000; M=3\n");
+    with(true)
+        .query(sql.replace("\"n\" / 3", "cast(\"n\" as bigint) / 3"))
+        .explainContains("BatchAggregate(group=[{0}]")
+        .returns("G=334; S=1000; M=3\n");
+  }
+
+  /** Tests an aggregate whose group key has more than one column. */
+  @Test public void aggregateTwoKeys() {
+    final String sql = "select \"m\", \"n\" / 500 as h, count(*) as c\n"
+        + "from \"s\".\"numbers\"\n"
+        + "where \"m\" is null or \"m\" = 1\n"
+        + "group by \"m\", \"n\" / 500";
+    with(true)
+        .query(sql)
+        .explainContains("BatchAggregate(group=[{0, 1}]")
+        .returnsUnordered("m=null; H=0; C=50", "m=null; H=1; C=50",
+            "m=1; H=0; C=50", "m=1; H=1; C=50");
+  }
+
+  /** Tests an aggregate without GROUP BY over an empty input. */
+  @Test public void aggregateEmpty() {
+    final String sql = "select count(*) as c, sum(\"n\") as s\n"
+        + "from \"s\".\"numbers\"\n"
+        + "where \"n\" < 0";
+    with(true)
+        .query(sql)
+        .explainContains("BatchAggregate(group=[{}]")
+        .returns("C=0; S=null\n");
+  }
+
+  /** Tests that the batch operators are not used unless
+   * {@link CalciteConnectionProperty#VECTORIZE} is true. */
+  @Test public void disabled() {
+    final String sql = "select \"n\" from \"s\".\"numbers\"\n"
+        + "where \"n\" < 2";
+    with(false)
+        .query(sql)
+        .explainMatches("", resultSet -> {
+          try {
+            assertThat(resultSet.next(), is(true));
+            assertThat(resultSet.getString(1), not(containsString("Batch")));
+          } catch (SQLException e) {
+            throw new RuntimeException(e);
+          }
+        })
+        .returnsUnordered("n=0", "n=1");
+  }
+
+  /** Tests operators over an
+   * {@link org.apache.calcite.adapter.clone.ArrayTable}, which returns its
+   * columns as batches. */
+  @Test public void arrayTable() {
+    final String sql = "select \"day\" * 10 as d, upper(\"week_day\") as w\n"
+        + "from \"foodmart2\".\"days\"\n"
+        + "where \"day\" between 2 and 4";
+    foodmart()
+        .query(sql)
+        .explainContains("BatchTableScan(table=[[foodmart2, days]])")
+        .returnsUnordered("D=20; W=MONDAY", "D=30; W=TUESDAY",
+            "D=40; W=WEDNESDAY");
+  }
+
+  /** Tests an aggregate over an
+   * {@link org.apache.calcite.adapter.clone.ArrayTable}. */
+  @Test public void arrayTableAggregate() {
+    final String sql = "select count(*) as c, sum(\"day\") as s,\n"
+        + " min(\"week_day\") as mi, max(\"week_day\") as ma\n"
+        + "from \"foodmart2\".\"days\"";
+    foodmart()
+        .query(sql)
+        .explainContains("BatchAggregate(group=[{}]")
+        .returns("C=7; S=28; MI=Friday; MA=Wednesday\n");
+  }
+
+  /** Schema that contains a table of numbers. */
+  private static class NumbersSchema extends AbstractSchema {
+    @Override protected Map<String, Table> getTableMap() {
+      return ImmutableMap.of("numbers", new NumbersTable(1000));
+    }
+  }
+
+  /** Table whose rows are (n, n % 10) for n from 0 to {@code size - 1},
+   * except that the second column is null if {@code n % 10} is 0. It
+   * returns rows, so the batch operators convert them to batches. */
+  private static class NumbersTable extends AbstractTable
+      implements ScannableTable {
+    private final int size;
+
+    NumbersTable(int size) {
+      this.size = size;
+    }
+
+    public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      return typeFactory.builder()
+          .add("n", SqlTypeName.INTEGER)
+          .add("m", SqlTypeName.INTEGER).nullable(true)
+          .build();
+    }
+
+    public Enumerable<Object[]> scan(DataContext root) {
+      final List<Object[]> rows = new ArrayList<>();
+      for (int n = 0; n < size; n++) {
+        rows.add(new Object[] {n, n % 10 == 0 ? null : n % 10});
+      }
+      return Linq4j.asEnumerable(rows);
+    }
+  }
+}
+
+// End EnumerableBatchTest.java
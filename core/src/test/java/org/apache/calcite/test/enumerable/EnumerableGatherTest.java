@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.SplittableTable;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.test.CalciteAssert;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit test for
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableGather}.
+ */
+public class EnumerableGatherTest {
+  private CalciteAssert.AssertThat with(int parallelism) {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.PARALLELISM, parallelism)
+        .withSchema("s", new NumbersSchema());
+  }
+
+  /** Tests a filter that runs on several threads. */
+  @Test public void parallelFilter() {
+    final String sql = "select \"n\" from \"s\".\"numbers\"\n"
+        + "where \"n\" < 5 or \"n\" > 996";
+    with(4)
+        .query(sql)
+        .explainContains("EnumerableGather(parallelism=[4])\n"
+            + "  EnumerableCalc(")
+        .returnsUnordered("n=0", "n=1", "n=2", "n=3", "n=4", "n=997",
+            "n=998", "n=999");
+  }
+
+  /** Tests an aggregate that is split into partial aggregates, which run on
+   * several threads, and a final aggregate that combines them. */
+  @Test public void parallelAggregate() {
+    final String sql = "select \"m\", count(*) as c, sum(\"n\") as s,\n"
+        + " min(\"n\") as mi, max(\"n\") as ma\n"
+        + "from \"s\".\"numbers\"\n"
+        + "where \"m\" < 3\n"
+        + "group by \"m\"";
+    with(4)
+        .query(sql)
+        .explainContains("EnumerableAggregate(group=[{0}], C=[$SUM0($1)], "
+            + "S=[$SUM0($2)], MI=[MIN($3)], MA=[MAX($4)])\n"
+            + "  EnumerableGather(parallelism=[4])\n"
+            + "    EnumerableAggregate(group=[{1}]")
+        .returnsUnordered("m=0; C=100; S=49500; MI=0; MA=990",
+            "m=1; C=100; S=49600; MI=1; MA=991",
+            "m=2; C=100; S=49700; MI=2; MA=992");
+  }
+
+  /** Tests that a pipeline below a sort runs in parallel, and that the sort
+   * puts its output in order. */
+  @Test public void parallelFilterThenSort() {
+    final String sql = "select \"n\" from \"s\".\"numbers\"\n"
+        + "where \"n\" < 5\n"
+        + "order by \"n\" desc";
+    with(4)
+        .query(sql)
+        .explainContains("EnumerableGather(parallelism=[4])")
+        .returnsOrdered("n=4", "n=3", "n=2", "n=1", "n=0");
+  }
+
+  /** Tests that a distinct aggregate is not split, but its input still runs
+   * in parallel. */
+  @Test public void distinctAggregate() {
+    final String sql = "select count(distinct \"m\") as c\n"
+        + "from \"s\".\"numbers\"";
+    with(4)
+        .query(sql)
+        .explainContains("EnumerableGather(parallelism=[4])")
+        .returns("C=10\n");
+  }
+
+  /** Tests that if parallelism is 1 (the default), there is no gather. */
+  @Test public void serial() {
+    final String sql = "select sum(\"n\") as s from \"s\".\"numbers\"";
+    with(1)
+        .query(sql)
+        .explainContains("EnumerableAggregate(group=[{}], S=[SUM($0)])\n"
+            + "  EnumerableInterpreter\n"
+            + "    BindableTableScan(table=[[s, numbers]])")
+        .returns("S=499500\n");
+  }
+
+  /** Schema that contains a splittable table. */
+  private static class NumbersSchema extends AbstractSchema {
+    @Override protected Map<String, Table> getTableMap() {
+      return ImmutableMap.of("numbers", new NumbersTable(1000));
+    }
+  }
+
+  /** Table whose rows are (n, n % 10) for n from 0 to {@code size - 1}. */
+  private static class NumbersTable extends AbstractTable
+      implements ScannableTable, SplittableTable {
+    private final int size;
+
+    NumbersTable(int size) {
+      this.size = size;
+    }
+
+    public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      final RelDataType intType = typeFactory.createSqlType(SqlTypeName.INTEGER);
+      return typeFactory.builder()
+          .add("n", intType)
+          .add("m", intType)
+          .build();
+    }
+
+    public Enumerable<Object[]> scan(DataContext root) {
+      return scan(root, 0, 1);
+    }
+
+    public Enumerable<Object[]> scan(DataContext root, int morsel,
+        int morselCount) {
+      final List<Object[]> rows = new ArrayList<>();
+      for (int n = morsel; n < size; n += morselCount) {
+        rows.add(new Object[] {n, n % 10});
+      }
+      return Linq4j.asEnumerable(rows);
+    }
+  }
+}
+
+// End EnumerableGatherTest.java
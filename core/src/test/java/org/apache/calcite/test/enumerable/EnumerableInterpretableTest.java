@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.adapter.enumerable.EnumerableInterpretable;
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.test.JdbcTest;
+
+import com.google.common.cache.CacheStats;
+
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test for the cache of compiled classes in
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableInterpretable}.
+ */
+public class EnumerableInterpretableTest {
+  /** Queries that differ only in the literals that a filter compares to
+   * columns generate the same code, and the second reuses the class compiled
+   * for the first. */
+  @Test public void literalsShareCompiledClass() {
+    final List<String> plans = new ArrayList<>();
+    final CacheStats before = EnumerableInterpretable.getBindableCacheStats();
+    assertThat(before, notNullValue());
+    tester()
+        .query("select empid, name from emps\n"
+            + "where deptno = 10 and empid > 105")
+        .withHook(Hook.JAVA_PLAN, (Consumer<String>) plans::add)
+        .returnsUnordered("empid=110; name=Theodore",
+            "empid=150; name=Sebastian");
+    tester()
+        .query("select empid, name from emps\n"
+            + "where deptno = 20 and empid > 150")
+        .withHook(Hook.JAVA_PLAN, (Consumer<String>) plans::add)
+        .returnsUnordered("empid=200; name=Eric");
+    assertThat(plans.size(), is(2));
+    assertThat(plans.get(1), is(plans.get(0)));
+    final CacheStats after = EnumerableInterpretable.getBindableCacheStats();
+    assertThat(after.minus(before).hitCount() >= 1, is(true));
+  }
+
+  /** Queries whose code differs are not confused by the cache. */
+  @Test public void differentCodeIsNotShared() {
+    final List<String> plans = new ArrayList<>();
+    tester()
+        .query("select empid from emps where deptno = 20")
+        .withHook(Hook.JAVA_PLAN, (Consumer<String>) plans::add)
+        .returnsUnordered("empid=200");
+    tester()
+        .query("select empid from emps where name = 'Eric'")
+        .withHook(Hook.JAVA_PLAN, (Consumer<String>) plans::add)
+        .returnsUnordered("empid=200");
+    tester()
+        .query("select name from emps where empid = 200")
+        .withHook(Hook.JAVA_PLAN, (Consumer<String>) plans::add)
+        .returnsUnordered("name=Eric");
+    assertThat(plans.size(), is(3));
+    assertThat(plans.get(1), not(plans.get(0)));
+    assertThat(plans.get(2), not(plans.get(1)));
+  }
+
+  /** A class whose only static fields hold constants, such as a
+   * {@code DECIMAL} literal, is cached. */
+  @Test public void decimalLiteralSharesCompiledClass() {
+    final List<String> plans = new ArrayList<>();
+    final CacheStats before = EnumerableInterpretable.getBindableCacheStats();
+    for (int i = 0; i < 2; i++) {
+      tester()
+          .query("select empid, cast(empid as decimal(10, 2)) * 1.5 as d\n"
+              + "from emps where deptno = 20")
+          .withHook(Hook.JAVA_PLAN, (Consumer<String>) plans::add)
+          .returnsUnordered("empid=200; d=300.0");
+    }
+    assertThat(plans.size(), is(2));
+    assertThat(plans.get(0), containsString("static final java.math.BigDecimal"));
+    final CacheStats after = EnumerableInterpretable.getBindableCacheStats();
+    assertThat(after.minus(before).hitCount() >= 1, is(true));
+  }
+
+  /** A class that has a static field that holds the state of a statement,
+   * such as the generator of {@code RAND(seed)}, is not cached, so each
+   * statement starts its own sequence. */
+  @Test public void randomSeedIsNotShared() {
+    final String sql = "select rand_integer(1, 1000000) as r from emps\n"
+        + "where empid = 100";
+    final List<String> results = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      tester()
+          .query(sql)
+          .returns(resultSet -> {
+            try {
+              assertThat(resultSet.next(), is(true));
+              results.add(resultSet.getString(1));
+            } catch (SQLException e) {
+              throw new RuntimeException(e);
+            }
+          });
+    }
+    assertThat(results.get(1), is(results.get(0)));
+  }
+
+  private CalciteAssert.AssertThat tester() {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .withSchema("s", new ReflectiveSchema(new JdbcTest.HrSchema()));
+  }
+}
+
+// End EnumerableInterpretableTest.java
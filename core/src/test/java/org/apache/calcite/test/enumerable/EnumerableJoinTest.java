@@ -0,0 +1,365 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.DelegatingEnumerator;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.runtime.RuntimeFilter;
+import org.apache.calcite.schema.ProjectableFilterableTable;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.test.CalciteAssert;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Unit test for
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableJoin}.
+ */
+public class EnumerableJoinTest {
+  /** Tests that a join whose build side is estimated to exceed the memory
+   * budget uses a join that can spill to disk, and still returns the right
+   * rows when the build side fits in memory after all. */
+  @Test public void spillableJoinForLargeBuildSide() {
+    tester(1E9)
+        .query("select e.empid, d.name\n"
+            + "from emps e\n"
+            + "join depts d on e.deptno = d.deptno")
+        .planContains("spillableJoin(")
+        .returnsUnordered(
+            "empid=100; name=Sales",
+            "empid=110; name=Sales",
+            "empid=150; name=Sales");
+  }
+
+  @Test public void spillableFullJoin() {
+    tester(1E9)
+        .query("select e.empid, d.name\n"
+            + "from emps e\n"
+            + "full join depts d on e.deptno = d.deptno")
+        .planContains("spillableJoin(")
+        .returnsUnordered(
+            "empid=100; name=Sales",
+            "empid=110; name=Sales",
+            "empid=150; name=Sales",
+            "empid=200; name=null",
+            "empid=null; name=Marketing",
+            "empid=null; name=HR");
+  }
+
+  /** Tests that a join whose build side spills to disk, and so returns its
+   * rows one partition at a time, does not claim to keep the order of its
+   * left input; the sort above it must remain. */
+  @Test public void spillableJoinOrderBy() {
+    // Each of the 10 rows of "nums" in group 1 matches 10 rows
+    CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .with(CalciteConnectionProperty.MEMORY_BUDGET, 16)
+        .withSchema("s", new EstimatedSchema(1E6, true))
+        .query("select n.grp\n"
+            + "from nums n\n"
+            + "join unsorted_nums m on n.grp = m.grp\n"
+            + "order by n.grp limit 12")
+        .planContains("spillableJoin(")
+        .returnsOrdered(
+            Collections.nCopies(12, "grp=1").toArray(new String[0]));
+  }
+
+  /** Tests that a join whose build side fits in memory, and whose keys are
+   * primitive, uses a hash table that does not box the keys. */
+  @Test public void inMemoryJoinForSmallBuildSide() {
+    tester(100D)
+        .query("select e.empid, d.name\n"
+            + "from emps e\n"
+            + "join depts d on e.deptno = d.deptno")
+        .planContains("primitiveJoin(")
+        .returnsUnordered(
+            "empid=100; name=Sales",
+            "empid=110; name=Sales",
+            "empid=150; name=Sales");
+  }
+
+  @Test public void inMemoryFullJoin() {
+    tester(100D)
+        .query("select e.empid, d.name\n"
+            + "from emps e\n"
+            + "full join depts d on e.deptno = d.deptno")
+        .planContains("primitiveJoin(")
+        .returnsUnordered(
+            "empid=100; name=Sales",
+            "empid=110; name=Sales",
+            "empid=150; name=Sales",
+            "empid=200; name=null",
+            "empid=null; name=Marketing",
+            "empid=null; name=HR");
+  }
+
+  /** Tests that a join whose keys are not primitive uses a hash table of
+   * boxed keys. */
+  @Test public void inMemoryJoinOnObjectKeys() {
+    tester(100D)
+        .query("select e.empid, d.name\n"
+            + "from emps e\n"
+            + "join depts d\n"
+            + "on cast(e.deptno as varchar(10))"
+            + " = cast(d.deptno as varchar(10))")
+        .planContains(".join(")
+        .returnsUnordered(
+            "empid=100; name=Sales",
+            "empid=110; name=Sales",
+            "empid=150; name=Sales");
+  }
+
+  /** Tests that a join one of whose inputs has few of the other's keys
+   * builds a runtime filter, and that the scan of the other input uses it to
+   * skip rows that cannot match. */
+  @Test public void runtimeFilter() {
+    final String sql = "select f.id, d.name\n"
+        + "from facts f\n"
+        + "join dims d on f.dim = d.id\n"
+        + "where d.name = 'b'";
+    runtimeFilterTester(new FactsSchema(), true)
+        .query(sql)
+        .planContains("RuntimeFilter.bufferAll(");
+    final FactsSchema schema = new FactsSchema();
+    runtimeFilterTester(schema, true)
+        .query(sql)
+        .returnsUnordered("id=1; name=b", "id=101; name=b", "id=201; name=b",
+            "id=301; name=b", "id=401; name=b", "id=501; name=b",
+            "id=601; name=b", "id=701; name=b", "id=801; name=b",
+            "id=901; name=b");
+    assertThat(schema.facts.returnedRowCount, is(10));
+  }
+
+  /** Tests that a join on two keys whose left input populates the runtime
+   * filters reads that input once, not once per key. */
+  @Test public void runtimeFilterTwoKeys() {
+    final String sql = "select f.id, d.k\n"
+        + "from pairs d\n"
+        + "join facts f on f.dim = d.id and f.id = d.k";
+    runtimeFilterTester(new FactsSchema(), true)
+        .query(sql)
+        .planContains("RuntimeFilter.bufferAll(");
+    final FactsSchema schema = new FactsSchema();
+    runtimeFilterTester(schema, true)
+        .query(sql)
+        .returnsUnordered("id=101; k=101", "id=202; k=202", "id=303; k=303");
+    assertThat(schema.pairs.enumeratorCount, is(1));
+  }
+
+  /** Tests that if runtime filters are disabled, the probe side reads every
+   * row. */
+  @Test public void runtimeFilterDisabled() {
+    final FactsSchema schema = new FactsSchema();
+    runtimeFilterTester(schema, false)
+        .query("select f.id, d.name\n"
+            + "from facts f\n"
+            + "join dims d on f.dim = d.id\n"
+            + "where d.name = 'b'")
+        .returnsUnordered("id=1; name=b", "id=101; name=b", "id=201; name=b",
+            "id=301; name=b", "id=401; name=b", "id=501; name=b",
+            "id=601; name=b", "id=701; name=b", "id=801; name=b",
+            "id=901; name=b");
+    assertThat(schema.facts.returnedRowCount, is(1000));
+  }
+
+  /** Tests that a runtime filter holds at most a given number of elements of
+   * its build side in memory; if there are more, it is not built, and the
+   * elements are still returned, in order. */
+  @Test public void runtimeFilterBufferLimit() {
+    final List<Integer> keys = Arrays.asList(3, 1, 4, 1, 5, 9, 2, 6);
+    final Enumerable<Integer> probe = Linq4j.asEnumerable(Arrays.asList(7, 9));
+
+    final RuntimeFilter filter = new RuntimeFilter();
+    final Enumerable<Integer> buffered =
+        filter.buffer(Linq4j.asEnumerable(keys), k -> k, 8);
+    assertThat(filter.filter(probe, k -> k).toList(), is(Arrays.asList(9)));
+    assertThat(filter.isReady(), is(true));
+    assertThat(buffered.toList(), is(keys));
+
+    final RuntimeFilter filter2 = new RuntimeFilter();
+    final Enumerable<Integer> buffered2 =
+        filter2.buffer(Linq4j.asEnumerable(keys), k -> k, 5);
+    assertThat(filter2.filter(probe, k -> k).toList(),
+        is(Arrays.asList(7, 9)));
+    assertThat(filter2.isReady(), is(false));
+    assertThat(buffered2.toList(), is(keys));
+  }
+
+  /** Tests that if a runtime filter's build side is too large to buffer,
+   * and is read again before the buffered elements are enumerated, the
+   * enumerator of the remaining elements is closed. */
+  @Test public void runtimeFilterBufferOverflowCloses() {
+    final List<Integer> keys = Arrays.asList(3, 1, 4, 1, 5, 9, 2, 6);
+    final int[] openCount = {0};
+    final Enumerable<Integer> build = new AbstractEnumerable<Integer>() {
+      public Enumerator<Integer> enumerator() {
+        ++openCount[0];
+        return new DelegatingEnumerator<Integer>(Linq4j.enumerator(keys)) {
+          @Override public void close() {
+            --openCount[0];
+            super.close();
+          }
+        };
+      }
+    };
+    final Enumerable<Integer> probe = Linq4j.asEnumerable(Arrays.asList(7, 9));
+    final RuntimeFilter filter = new RuntimeFilter();
+    final Enumerable<Integer> buffered = filter.buffer(build, k -> k, 5);
+    filter.filter(probe, k -> k).toList();
+    assertThat(openCount[0], is(1));
+    filter.filter(probe, k -> k).toList();
+    assertThat(openCount[0], is(1));
+    assertThat(buffered.toList(), is(keys));
+    assertThat(openCount[0], is(0));
+  }
+
+  private CalciteAssert.AssertThat runtimeFilterTester(FactsSchema schema,
+      boolean runtimeFilter) {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .with(CalciteConnectionProperty.RUNTIME_FILTER, runtimeFilter)
+        .withSchema("s", schema);
+  }
+
+  private CalciteAssert.AssertThat tester(double rowCount) {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .withSchema("s", new EstimatedSchema(rowCount));
+  }
+
+  /** Schema that contains a large table, "facts", whose "dim" column
+   * references the "id" column of a small table, "dims". */
+  private static class FactsSchema extends AbstractSchema {
+    final FactsTable facts = new FactsTable(1000);
+    final CountingTable pairs =
+        new CountingTable(3D, ImmutableList.of("id", "k"),
+            ImmutableList.of(new Object[] {1, 101},
+                new Object[] {2, 202},
+                new Object[] {3, 303}));
+
+    @Override protected Map<String, Table> getTableMap() {
+      return ImmutableMap.of(
+          "facts", facts,
+          "pairs", pairs,
+          "dims",
+          new EstimatedSchema.EstimatedTable(100D, ImmutableList.of("id", "name"),
+              ImmutableList.of(),
+              ImmutableList.of(new Object[] {0, "a"},
+                  new Object[] {1, "b"},
+                  new Object[] {2, "c"})));
+    }
+  }
+
+  /** Table that counts how many times its rows are enumerated. */
+  private static class CountingTable extends EstimatedSchema.EstimatedTable {
+    int enumeratorCount;
+
+    CountingTable(double rowCount, List<String> names, List<Object[]> rows) {
+      super(rowCount, names, ImmutableList.of(), rows);
+    }
+
+    @Override public Enumerable<Object[]> scan(DataContext root) {
+      final Enumerable<Object[]> rows = super.scan(root);
+      return new AbstractEnumerable<Object[]>() {
+        public Enumerator<Object[]> enumerator() {
+          ++enumeratorCount;
+          return rows.enumerator();
+        }
+      };
+    }
+  }
+
+  /** Table whose rows are (id, id % 100) for id from 0 to
+   * {@code size - 1}. It skips rows that the runtime filter on its "dim"
+   * column rejects, and counts the rows it returns. */
+  private static class FactsTable extends AbstractTable
+      implements ProjectableFilterableTable {
+    private final int size;
+    int returnedRowCount;
+
+    FactsTable(int size) {
+      this.size = size;
+    }
+
+    public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      final RelDataType intType = typeFactory.createSqlType(SqlTypeName.INTEGER);
+      return typeFactory.builder()
+          .add("id", intType)
+          .add("dim", intType)
+          .build();
+    }
+
+    @Override public Statistic getStatistic() {
+      return Statistics.of(size, ImmutableList.of());
+    }
+
+    public Enumerable<Object[]> scan(DataContext root, List<RexNode> filters,
+        int[] projects) {
+      final RuntimeFilter runtimeFilter = RuntimeFilter.of(root, 1);
+      return new AbstractEnumerable<Object[]>() {
+        public Enumerator<Object[]> enumerator() {
+          final List<Object[]> rows = new ArrayList<>();
+          for (int id = 0; id < size; id++) {
+            final int dim = id % 100;
+            if (runtimeFilter == null || runtimeFilter.mightContain(dim)) {
+              final Object[] row = {id, dim};
+              rows.add(projects == null ? row : project(row, projects));
+            }
+          }
+          returnedRowCount += rows.size();
+          return Linq4j.enumerator(rows);
+        }
+      };
+    }
+
+    private static Object[] project(Object[] row, int[] projects) {
+      final Object[] projected = new Object[projects.length];
+      for (int i = 0; i < projects.length; i++) {
+        projected[i] = row[projects[i]];
+      }
+      return projected;
+    }
+  }
+}
+
+// End EnumerableJoinTest.java
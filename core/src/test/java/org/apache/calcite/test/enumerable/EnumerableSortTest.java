@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.test.CalciteAssert;
+
+import org.junit.Test;
+
+/**
+ * Unit test for
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableSort}.
+ */
+public class EnumerableSortTest {
+  private static final String SQL = "select \"empid\", \"name\"\n"
+      + "from \"hr\".\"emps\"\n"
+      + "order by upper(\"name\") desc, \"empid\"";
+
+  /** Tests a sort whose memory budget holds only one row, so that it writes
+   * each row to a run on disk and merges the runs. */
+  @Test public void externalSort() {
+    CalciteAssert.hr()
+        .with(CalciteConnectionProperty.SORT_MEMORY_BUDGET, 1)
+        .query(SQL)
+        .planContains("EnumerableDefaults.orderBy(")
+        .returnsOrdered("empid=110; name=Theodore",
+            "empid=150; name=Sebastian",
+            "empid=200; name=Eric",
+            "empid=100; name=Bill");
+  }
+
+  /** Tests that a sort whose memory budget is 0 sorts in memory. */
+  @Test public void inMemorySort() {
+    CalciteAssert.hr()
+        .with(CalciteConnectionProperty.SORT_MEMORY_BUDGET, 0)
+        .query(SQL)
+        .planContains(".orderBy(org.apache.calcite.linq4j.function.Functions"
+            + ".identitySelector(), comparator)")
+        .returnsOrdered("empid=110; name=Theodore",
+            "empid=150; name=Sebastian",
+            "empid=200; name=Eric",
+            "empid=100; name=Bill");
+  }
+}
+
+// End EnumerableSortTest.java
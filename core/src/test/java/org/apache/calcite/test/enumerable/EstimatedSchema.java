@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelCollations;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.sql.type.SqlTypeName;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Schema whose tables claim to have a given number of rows, whatever their
+ * actual size.
+ *
+ * <p>Used by tests of the enumerable operators that choose an algorithm,
+ * such as one that spills to disk, based on the estimated size of their
+ * input.
+ */
+class EstimatedSchema extends AbstractSchema {
+  private final double rowCount;
+  private final List<RelCollation> sortedCollations;
+  private final List<Object[]> nums = new ArrayList<>();
+
+  EstimatedSchema(double rowCount) {
+    this(rowCount, false);
+  }
+
+  /** Creates an EstimatedSchema; if {@code sorted}, the "emps" and "nums"
+   * tables declare that they are sorted on their second column. The
+   * "unsorted_nums" table has the same rows as "nums", and never declares
+   * that it is sorted. */
+  EstimatedSchema(double rowCount, boolean sorted) {
+    this.rowCount = rowCount;
+    this.sortedCollations = sorted
+        ? ImmutableList.of(RelCollations.of(1))
+        : ImmutableList.of();
+    for (int i = 0; i < 100; i++) {
+      nums.add(new Object[] {i, i / 10 + 1});
+    }
+  }
+
+  @Override protected Map<String, Table> getTableMap() {
+    return ImmutableMap.of(
+        "emps",
+        new EstimatedTable(rowCount, ImmutableList.of("empid", "deptno"),
+            sortedCollations,
+            ImmutableList.of(new Object[] {100, 10},
+                new Object[] {110, 10},
+                new Object[] {150, 10},
+                new Object[] {200, 20})),
+        "depts",
+        new EstimatedTable(rowCount, ImmutableList.of("deptno", "name"),
+            ImmutableList.of(),
+            ImmutableList.of(new Object[] {10, "Sales"},
+                new Object[] {30, "Marketing"},
+                new Object[] {40, "HR"})),
+        "nums",
+        new EstimatedTable(rowCount, ImmutableList.of("id", "grp"),
+            sortedCollations, nums),
+        "unsorted_nums",
+        new EstimatedTable(rowCount, ImmutableList.of("id", "grp"),
+            ImmutableList.of(), nums));
+  }
+
+  /** Table of (integer, string) or (integer, integer) rows with a given row
+   * count estimate and collations. */
+  static class EstimatedTable extends AbstractTable
+      implements ScannableTable {
+    private final double rowCount;
+    private final List<String> names;
+    private final List<RelCollation> collations;
+    private final List<Object[]> rows;
+
+    EstimatedTable(double rowCount, List<String> names,
+        List<RelCollation> collations, List<Object[]> rows) {
+      this.rowCount = rowCount;
+      this.names = names;
+      this.collations = collations;
+      this.rows = rows;
+    }
+
+    public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      final RelDataType intType = typeFactory.createSqlType(SqlTypeName.INTEGER);
+      final RelDataType nameType =
+          typeFactory.createTypeWithNullability(
+              typeFactory.createSqlType(SqlTypeName.VARCHAR, 20), true);
+      return typeFactory.builder()
+          .add(names.get(0), intType)
+          .add(names.get(1),
+              rows.get(0)[1] instanceof String ? nameType : intType)
+          .build();
+    }
+
+    @Override public Statistic getStatistic() {
+      return Statistics.of(rowCount, ImmutableList.of(), collations);
+    }
+
+    public Enumerable<Object[]> scan(DataContext root) {
+      return Linq4j.asEnumerable(rows);
+    }
+  }
+}
+
+// End EstimatedSchema.java
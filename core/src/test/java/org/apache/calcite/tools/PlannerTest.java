@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.tools;
 
+import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.enumerable.EnumerableConvention;
 import org.apache.calcite.adapter.enumerable.EnumerableProject;
 import org.apache.calcite.adapter.enumerable.EnumerableRules;
@@ -26,6 +27,8 @@
 import org.apache.calcite.adapter.jdbc.JdbcRel;
 import org.apache.calcite.adapter.jdbc.JdbcRules;
 import org.apache.calcite.config.Lex;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Linq4j;
 import org.apache.calcite.plan.ConventionTraitDef;
 import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.plan.RelOptPlanner;
@@ -36,16 +39,22 @@
 import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.plan.RelTraitDef;
 import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.plan.hep.HepMatchOrder;
+import org.apache.calcite.plan.hep.HepPlanner;
+import org.apache.calcite.plan.hep.HepProgram;
 import org.apache.calcite.rel.RelCollationTraitDef;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelRoot;
 import org.apache.calcite.rel.convert.ConverterRule;
+import org.apache.calcite.rel.core.JoinRelType;
 import org.apache.calcite.rel.core.RelFactories;
 import org.apache.calcite.rel.core.TableScan;
 import org.apache.calcite.rel.logical.LogicalFilter;
 import org.apache.calcite.rel.logical.LogicalProject;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.rules.FilterMergeRule;
+import org.apache.calcite.rel.rules.JoinToMultiJoinRule;
+import org.apache.calcite.rel.rules.MultiJoinOptimizeDpRule;
 import org.apache.calcite.rel.rules.ProjectMergeRule;
 import org.apache.calcite.rel.rules.ProjectToWindowRule;
 import org.apache.calcite.rel.rules.SortJoinTransposeRule;
@@ -53,7 +62,12 @@
 import org.apache.calcite.rel.rules.SortRemoveRule;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.ScannableTable;
 import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
+import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.schema.impl.AbstractTable;
 import org.apache.calcite.sql.SqlAggFunction;
 import org.apache.calcite.sql.SqlCall;
 import org.apache.calcite.sql.SqlDialect;
@@ -972,9 +986,166 @@ private void checkHeuristic(String sql, String expected) throws Exception {
     checkBushy(sql, expected);
   }
 
+  /** Plans a 5-table join query on the FoodMart schema using
+   * {@link MultiJoinOptimizeDpRule}. Unlike the greedy plan in
+   * {@link #testBushy5()}, the plan is bushy at the top:
+   * (product_class x product) x (customer x (store x sales)). */
+  @Test public void testDpBushy5() throws Exception {
+    final String sql = "select *\n"
+        + "from \"sales_fact_1997\" as s\n"
+        + "join \"customer\" as c\n"
+        + "  on s.\"customer_id\" = c.\"customer_id\"\n"
+        + "join \"product\" as p\n"
+        + "  on s.\"product_id\" = p.\"product_id\"\n"
+        + "join \"product_class\" as pc\n"
+        + "  on p.\"product_class_id\" = pc.\"product_class_id\"\n"
+        + "join \"store\" as st\n"
+        + "  on s.\"store_id\" = st.\"store_id\"\n"
+        + "where c.\"city\" = 'San Francisco'\n";
+    final String expected = ""
+        + "    EnumerableJoin(condition=[=($6, $73)], joinType=[inner])\n"
+        + "      EnumerableJoin(condition=[=($0, $5)], joinType=[inner])\n"
+        + "        EnumerableTableScan(table=[[foodmart2, product_class]])\n"
+        + "        EnumerableTableScan(table=[[foodmart2, product]])\n"
+        + "      EnumerableJoin(condition=[=($0, $55)], joinType=[inner])\n"
+        + "        EnumerableFilter(condition=[=($9, 'San Francisco')])\n"
+        + "          EnumerableTableScan(table=[[foodmart2, customer]])\n"
+        + "        EnumerableJoin(condition=[=($0, $28)], joinType=[inner])\n"
+        + "          EnumerableTableScan(table=[[foodmart2, store]])\n"
+        + "          EnumerableTableScan(table=[[foodmart2, sales_fact_1997]])\n";
+    checkDp(sql, expected, MultiJoinOptimizeDpRule.DEFAULT_MAX_FACTORS);
+  }
+
+  /** Tests that the dynamic programming join algorithm falls back to the
+   * greedy algorithm if not all tables have a join condition to the
+   * others; the plan is the same as in {@link #testBushyCrossJoin2()}. */
+  @Test public void testDpCrossJoin() throws Exception {
+    final String sql = "select * from \"sales_fact_1997\" as s\n"
+        + "join \"customer\" as c\n"
+        + "  on s.\"customer_id\" = c.\"customer_id\"\n"
+        + "cross join \"department\" as d\n"
+        + "join \"employee\" as e\n"
+        + "  on d.\"department_id\" = e.\"department_id\"";
+    final String expected = ""
+        + "    EnumerableJoin(condition=[true], joinType=[inner])\n"
+        + "      EnumerableJoin(condition=[=($0, $9)], joinType=[inner])\n"
+        + "        EnumerableTableScan(table=[[foodmart2, department]])\n"
+        + "        EnumerableTableScan(table=[[foodmart2, employee]])\n"
+        + "      EnumerableJoin(condition=[=($0, $31)], joinType=[inner])\n"
+        + "        EnumerableTableScan(table=[[foodmart2, customer]])\n"
+        + "        EnumerableTableScan(table=[[foodmart2, sales_fact_1997]])\n";
+    checkDp(sql, expected, MultiJoinOptimizeDpRule.DEFAULT_MAX_FACTORS);
+  }
+
+  /** Tests that the dynamic programming join algorithm falls back to the
+   * greedy algorithm if there are more tables than its limit; the plan is
+   * the same as in {@link #testBushy5()}. */
+  @Test public void testDpMaxFactors() throws Exception {
+    final String sql = "select *\n"
+        + "from \"sales_fact_1997\" as s\n"
+        + "join \"customer\" as c\n"
+        + "  on s.\"customer_id\" = c.\"customer_id\"\n"
+        + "join \"product\" as p\n"
+        + "  on s.\"product_id\" = p.\"product_id\"\n"
+        + "join \"product_class\" as pc\n"
+        + "  on p.\"product_class_id\" = pc.\"product_class_id\"\n"
+        + "join \"store\" as st\n"
+        + "  on s.\"store_id\" = st.\"store_id\"\n"
+        + "where c.\"city\" = 'San Francisco'\n";
+    final String expected = ""
+        + "    EnumerableJoin(condition=[=($0, $77)], joinType=[inner])\n"
+        + "      EnumerableTableScan(table=[[foodmart2, store]])\n"
+        + "      EnumerableJoin(condition=[=($0, $51)], joinType=[inner])\n"
+        + "        EnumerableFilter(condition=[=($9, 'San Francisco')])\n"
+        + "          EnumerableTableScan(table=[[foodmart2, customer]])\n"
+        + "        EnumerableJoin(condition=[=($6, $20)], joinType=[inner])\n"
+        + "          EnumerableJoin(condition=[=($0, $5)], joinType=[inner])\n"
+        + "            EnumerableTableScan(table=[[foodmart2, product_class]])\n"
+        + "            EnumerableTableScan(table=[[foodmart2, product]])\n"
+        + "          EnumerableTableScan(table=[[foodmart2, sales_fact_1997]])\n";
+    checkDp(sql, expected, 4);
+  }
+
+  /** Tests that the dynamic programming join algorithm builds a plan when
+   * the row counts of joins overflow to infinity, and so every candidate
+   * plan has the same, infinite, cost. */
+  @Test public void testDpInfiniteRowCount() {
+    final SchemaPlus rootSchema = Frameworks.createRootSchema(true);
+    final SchemaPlus schema = rootSchema.add("s", new AbstractSchema());
+    for (String name : new String[] {"a", "b", "c"}) {
+      schema.add(name, new HugeTable());
+    }
+    final RelBuilder b =
+        RelBuilder.create(
+            Frameworks.newConfigBuilder().defaultSchema(schema).build());
+    final RelNode rel = b.scan("a")
+        .scan("b")
+        .join(JoinRelType.INNER,
+            b.equals(b.field(2, 0, "x"), b.field(2, 1, "id")))
+        .scan("c")
+        .join(JoinRelType.INNER,
+            b.equals(b.field(2, 0, 3), b.field(2, 1, "id")))
+        .build();
+    final HepProgram program = HepProgram.builder()
+        .addMatchOrder(HepMatchOrder.BOTTOM_UP)
+        .addRuleInstance(JoinToMultiJoinRule.INSTANCE)
+        .addRuleInstance(MultiJoinOptimizeDpRule.INSTANCE)
+        .build();
+    final HepPlanner hepPlanner = new HepPlanner(program);
+    hepPlanner.setRoot(rel);
+    final String expected = ""
+        + "LogicalJoin(condition=[=($1, $2)], joinType=[inner])\n"
+        + "  LogicalTableScan(table=[[s, a]])\n"
+        + "  LogicalJoin(condition=[=($1, $2)], joinType=[inner])\n"
+        + "    LogicalTableScan(table=[[s, b]])\n"
+        + "    LogicalTableScan(table=[[s, c]])\n";
+    assertThat(RelOptUtil.toString(hepPlanner.findBestExp()), is(expected));
+  }
+
+  /** Tests that the dynamic programming join algorithm does not move a
+   * relation into or out of an outer join. */
+  @Test public void testDpLeftJoin() throws Exception {
+    final String sql = "select * from \"emps\" as e\n"
+        + "left join \"depts\" as d on e.\"deptno\" = d.\"deptno\"\n"
+        + "join \"dependents\" as p on e.\"empid\" = p.\"empid\"";
+    final String expected = ""
+        + "  EnumerableJoin(condition=[=($0, $10)], joinType=[inner])\n"
+        + "    EnumerableJoin(condition=[=($1, $5)], joinType=[left])\n"
+        + "      EnumerableTableScan(table=[[hr, emps]])\n"
+        + "      EnumerableProject(deptno=[$0], name=[$1], employees=[$2], x=[$3.x], y=[$3.y])\n"
+        + "        EnumerableTableScan(table=[[hr, depts]])\n"
+        + "    EnumerableTableScan(table=[[hr, dependents]])\n";
+    Planner planner = getPlanner(null,
+        Programs.dpJoinOrder(Programs.RULE_SET, 0,
+            MultiJoinOptimizeDpRule.DEFAULT_MAX_FACTORS));
+    SqlNode parse = planner.parse(sql);
+    SqlNode validate = planner.validate(parse);
+    RelNode convert = planner.rel(validate).rel;
+    RelTraitSet traitSet = convert.getTraitSet()
+        .replace(EnumerableConvention.INSTANCE);
+    RelNode transform = planner.transform(0, traitSet, convert);
+    assertThat(toString(transform), containsString(expected));
+  }
+
+  /** Checks that a query returns a particular plan, using a planner with
+   * MultiJoinOptimizeDpRule enabled. */
+  private void checkDp(String sql, String expected, int maxFactors)
+      throws Exception {
+    checkJoinOrder(sql, expected,
+        Programs.dpJoinOrder(Programs.RULE_SET, 2, maxFactors));
+  }
+
   /** Checks that a query returns a particular plan, using a planner with
    * MultiJoinOptimizeBushyRule enabled. */
   private void checkBushy(String sql, String expected) throws Exception {
+    checkJoinOrder(sql, expected,
+        Programs.heuristicJoinOrder(Programs.RULE_SET, true, 2));
+  }
+
+  /** Checks that a query on the FoodMart schema returns a particular plan,
+   * using a planner with a given join-order program. */
+  private void checkJoinOrder(String sql, String expected, Program program)
+      throws Exception {
     final SchemaPlus rootSchema = Frameworks.createRootSchema(true);
     final FrameworkConfig config = Frameworks.newConfigBuilder()
         .parserConfig(SqlParser.Config.DEFAULT)
@@ -982,7 +1153,7 @@ private void checkBushy(String sql, String expected) throws Exception {
             CalciteAssert.addSchema(rootSchema,
                 CalciteAssert.SchemaSpec.CLONE_FOODMART))
         .traitDefs((List<RelTraitDef>) null)
-        .programs(Programs.heuristicJoinOrder(Programs.RULE_SET, true, 2))
+        .programs(program)
         .build();
     Planner planner = Frameworks.getPlanner(config);
     SqlNode parse = planner.parse(sql);
@@ -995,6 +1166,26 @@ private void checkBushy(String sql, String expected) throws Exception {
     assertThat(toString(transform), containsString(expected));
   }
 
+  /** Table that claims to have 10<sup>200</sup> rows, so that the row count
+   * of a join of two such tables overflows to infinity. */
+  private static class HugeTable extends AbstractTable
+      implements ScannableTable {
+    public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      return typeFactory.builder()
+          .add("id", SqlTypeName.INTEGER)
+          .add("x", SqlTypeName.INTEGER)
+          .build();
+    }
+
+    @Override public Statistic getStatistic() {
+      return Statistics.of(1e200, ImmutableList.of());
+    }
+
+    public Enumerable<Object[]> scan(DataContext root) {
+      return Linq4j.emptyEnumerable();
+    }
+  }
+
   /**
    * Rule to convert a
    * {@link org.apache.calcite.adapter.enumerable.EnumerableProject} to an
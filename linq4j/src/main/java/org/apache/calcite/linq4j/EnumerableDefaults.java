@@ -54,6 +54,7 @@
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.PriorityQueue;
 import java.util.RandomAccess;
 import java.util.Set;
 import java.util.TreeMap;
@@ -67,6 +68,26 @@
  */
 public abstract class EnumerableDefaults {
 
+  /** Number of bits of a key's hash that choose its partition when an
+   * operator spills to disk. */
+  private static final int SPILL_PARTITION_BITS = 5;
+
+  /** Number of partitions into which an operator splits its input when it
+   * spills to disk. */
+  private static final int SPILL_PARTITIONS = 1 << SPILL_PARTITION_BITS;
+
+  /** Maximum number of times that the rows of a join are partitioned. A
+   * partition that is still too large after that, for example because most
+   * rows have the same key, is joined in memory. */
+  private static final int MAX_SPILL_DEPTH = 3;
+
+  /** Maximum number of sorted runs that a sort merges at a time. A sort
+   * closes each run as soon as it has written it, and whenever it has
+   * written this many runs of the same length, merges them into one longer
+   * run; so it never has more than this many runs open, and keeps few files
+   * even for a large input. */
+  private static final int MAX_MERGE_RUNS = 64;
+
   /**
    * Applies an accumulator function over a sequence.
    */
@@ -463,6 +484,27 @@ public static <TSource> Enumerable<TSource> distinct(
     return Linq4j.asEnumerable(set).select(unwrapper);
   }
 
+  /**
+   * Returns distinct elements from a sequence, comparing the primitive
+   * values that {@code keySelectors} compute from each element, without
+   * boxing them.
+   */
+  public static <TSource> Enumerable<TSource> primitiveDistinct(
+      Enumerable<TSource> enumerable, LongFunction1<TSource>[] keySelectors) {
+    final LongHashTable table = new LongHashTable(keySelectors.length);
+    final long[] key = new long[keySelectors.length];
+    final List<TSource> list = new ArrayList<>();
+    try (Enumerator<TSource> os = enumerable.enumerator()) {
+      while (os.moveNext()) {
+        final TSource o = os.current();
+        if (table.addKey(LongHashTable.key(o, keySelectors, key))) {
+          list.add(o);
+        }
+      }
+    }
+    return Linq4j.asEnumerable(list);
+  }
+
   /**
    * Returns the element at a specified index in a
    * sequence.
@@ -567,6 +609,35 @@ public static <TSource> Enumerable<TSource> except(
     return Linq4j.asEnumerable(set).select(unwrapper);
   }
 
+  /**
+   * Produces the set difference of two sequences, comparing the primitive
+   * values that {@code keySelectors} compute from each element, without
+   * boxing them.
+   */
+  public static <TSource> Enumerable<TSource> primitiveExcept(
+      Enumerable<TSource> source0, Enumerable<TSource> source1,
+      LongFunction1<TSource>[] keySelectors) {
+    final LongHashTable table1 = new LongHashTable(keySelectors.length);
+    final long[] key = new long[keySelectors.length];
+    try (Enumerator<TSource> os = source1.enumerator()) {
+      while (os.moveNext()) {
+        table1.addKey(LongHashTable.key(os.current(), keySelectors, key));
+      }
+    }
+    final LongHashTable table0 = new LongHashTable(keySelectors.length);
+    final List<TSource> list = new ArrayList<>();
+    try (Enumerator<TSource> os = source0.enumerator()) {
+      while (os.moveNext()) {
+        final TSource o = os.current();
+        LongHashTable.key(o, keySelectors, key);
+        if (!table1.containsKey(key) && table0.addKey(key)) {
+          list.add(o);
+        }
+      }
+    }
+    return Linq4j.asEnumerable(list);
+  }
+
   /**
    * Returns the first element of a sequence. (Defined
    * by Enumerable.)
@@ -790,6 +861,229 @@ public static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult> groupBy(
         resultSelector);
   }
 
+  /**
+   * Groups the elements of a sequence according to a key, as
+   * {@link #groupBy(Enumerable, Function1, Function0, Function2, Function2, EqualityComparer)}
+   * does, but holding at most about {@code maxGroups} groups in memory.
+   *
+   * <p>Groups are held in a compact open-addressing hash table. Once the
+   * table is full, elements whose keys are already in the table are still
+   * added to their accumulators, but elements of new groups are partitioned
+   * by the hash of their key into temporary files (a hybrid hash
+   * aggregation). The groups in memory are then complete, because no
+   * element of them was written to disk, and each partition is aggregated
+   * in turn, partitioning again if it still has too many groups. Spilled
+   * elements must be {@link java.io.Serializable}; if they are not, all
+   * groups are kept in memory.
+   *
+   * <p>If {@code comparer} is null, keys are compared using their
+   * {@code equals} and {@code hashCode} methods.
+   */
+  public static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult> spillableGroupBy(
+      final Enumerable<TSource> enumerable,
+      final Function1<TSource, TKey> keySelector,
+      final Function0<TAccumulate> accumulatorInitializer,
+      final Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      final Function2<TKey, TAccumulate, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer, final long maxGroups) {
+    return spillableGroupBy_(enumerable, keySelector, accumulatorInitializer,
+        accumulatorAdder, resultSelector, comparer, maxGroups, 0);
+  }
+
+  private static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult> spillableGroupBy_(
+      final Enumerable<TSource> enumerable,
+      final Function1<TSource, TKey> keySelector,
+      final Function0<TAccumulate> accumulatorInitializer,
+      final Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      final Function2<TKey, TAccumulate, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer, final long maxGroups,
+      final int depth) {
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        final GroupTable<TKey, TAccumulate> table = new GroupTable<>(comparer);
+        final List<SpillFile<TSource>> files = new ArrayList<>();
+        boolean spill = depth < MAX_SPILL_DEPTH;
+        try (Enumerator<TSource> os = enumerable.enumerator()) {
+          while (os.moveNext()) {
+            final TSource o = os.current();
+            final TKey key = keySelector.apply(o);
+            final int hash = table.hash(key);
+            final int slot = table.find(key, hash);
+            if (slot >= 0) {
+              final TAccumulate accumulator = table.get(slot);
+              final TAccumulate accumulator2 =
+                  accumulatorAdder.apply(accumulator, o);
+              if (accumulator2 != accumulator) {
+                table.set(slot, accumulator2);
+              }
+            } else if (table.size() < maxGroups || !spill) {
+              table.add(slot, key, hash,
+                  accumulatorAdder.apply(accumulatorInitializer.apply(), o));
+            } else if (files.isEmpty() && !SpillFile.canSpill(o)) {
+              // Elements cannot be written to disk; keep all groups in memory
+              spill = false;
+              table.add(slot, key, hash,
+                  accumulatorAdder.apply(accumulatorInitializer.apply(), o));
+            } else {
+              if (files.isEmpty()) {
+                for (int i = 0; i < SPILL_PARTITIONS; i++) {
+                  files.add(new SpillFile<>());
+                }
+              }
+              files.get(spillPartition(hash, depth)).add(o);
+            }
+          }
+        } catch (RuntimeException | Error e) {
+          closeAll(files);
+          throw e;
+        }
+        return groupsThenSpilled(table.results(resultSelector), files,
+            file -> spillableGroupBy_(file, keySelector,
+                accumulatorInitializer, accumulatorAdder, resultSelector,
+                comparer, maxGroups, depth + 1));
+      }
+    };
+  }
+
+  /** Returns an enumerator over the groups that a hybrid hash aggregation
+   * held in memory, followed by the groups of each non-empty file of
+   * spilled elements, which {@code aggregate} computes; closing the
+   * enumerator deletes the files. */
+  private static <TSource, TResult> Enumerator<TResult> groupsThenSpilled(
+      List<TResult> results, final List<SpillFile<TSource>> files,
+      Function1<SpillFile<TSource>, Enumerable<TResult>> aggregate) {
+    if (files.isEmpty()) {
+      return Linq4j.enumerator(results);
+    }
+    final List<Enumerable<TResult>> list = new ArrayList<>();
+    list.add(Linq4j.asEnumerable(results));
+    for (SpillFile<TSource> file : files) {
+      if (file.size() > 0) {
+        list.add(aggregate.apply(file));
+      }
+    }
+    return new DelegatingEnumerator<TResult>(
+        Linq4j.concat(list).enumerator()) {
+      @Override public void close() {
+        try {
+          super.close();
+        } finally {
+          closeAll(files);
+        }
+      }
+    };
+  }
+
+  /**
+   * Groups the elements of a sequence according to a key, as
+   * {@link #spillableGroupBy} does, but compares the primitive values that
+   * {@code keySelectors} compute from each element, without boxing them.
+   *
+   * <p>{@code keySelector} computes the key that is passed to
+   * {@code resultSelector}; it is called once per group, not once per
+   * element. If {@code maxGroups} is negative, all groups are held in
+   * memory.
+   */
+  public static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult> primitiveGroupBy(
+      final Enumerable<TSource> enumerable,
+      final Function1<TSource, TKey> keySelector,
+      final LongFunction1<TSource>[] keySelectors,
+      final Function0<TAccumulate> accumulatorInitializer,
+      final Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      final Function2<TKey, TAccumulate, TResult> resultSelector,
+      final long maxGroups) {
+    return primitiveGroupBy_(enumerable, keySelector, keySelectors,
+        accumulatorInitializer, accumulatorAdder, resultSelector, maxGroups,
+        0);
+  }
+
+  private static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult> primitiveGroupBy_(
+      final Enumerable<TSource> enumerable,
+      final Function1<TSource, TKey> keySelector,
+      final LongFunction1<TSource>[] keySelectors,
+      final Function0<TAccumulate> accumulatorInitializer,
+      final Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      final Function2<TKey, TAccumulate, TResult> resultSelector,
+      final long maxGroups, final int depth) {
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        final LongGroupTable<TKey, TAccumulate> table =
+            new LongGroupTable<>(keySelectors.length);
+        final long[] key = new long[keySelectors.length];
+        final List<SpillFile<TSource>> files = new ArrayList<>();
+        boolean spill = maxGroups >= 0 && depth < MAX_SPILL_DEPTH;
+        try (Enumerator<TSource> os = enumerable.enumerator()) {
+          while (os.moveNext()) {
+            final TSource o = os.current();
+            LongHashTable.key(o, keySelectors, key);
+            final int hash = LongHashTable.hash(key);
+            final int slot = table.find(key, hash);
+            if (slot >= 0) {
+              final TAccumulate accumulator = table.get(slot);
+              final TAccumulate accumulator2 =
+                  accumulatorAdder.apply(accumulator, o);
+              if (accumulator2 != accumulator) {
+                table.set(slot, accumulator2);
+              }
+            } else if (!spill || table.size() < maxGroups) {
+              table.add(slot, key, keySelector.apply(o), hash,
+                  accumulatorAdder.apply(accumulatorInitializer.apply(), o));
+            } else if (files.isEmpty() && !SpillFile.canSpill(o)) {
+              // Elements cannot be written to disk; keep all groups in memory
+              spill = false;
+              table.add(slot, key, keySelector.apply(o), hash,
+                  accumulatorAdder.apply(accumulatorInitializer.apply(), o));
+            } else {
+              if (files.isEmpty()) {
+                for (int i = 0; i < SPILL_PARTITIONS; i++) {
+                  files.add(new SpillFile<>());
+                }
+              }
+              files.get(spillPartition(hash, depth)).add(o);
+            }
+          }
+        } catch (RuntimeException | Error e) {
+          closeAll(files);
+          throw e;
+        }
+        return groupsThenSpilled(table.results(resultSelector), files,
+            file -> primitiveGroupBy_(file, keySelector, keySelectors,
+                accumulatorInitializer, accumulatorAdder, resultSelector,
+                maxGroups, depth + 1));
+      }
+    };
+  }
+
+  /**
+   * Groups the elements of a sequence according to a key, as
+   * {@link #groupBy(Enumerable, Function1, Function0, Function2, Function2, EqualityComparer)}
+   * does, but requires that elements with equal keys are adjacent, as they
+   * are if the sequence is sorted on the key.
+   *
+   * <p>Only the accumulator of the current group is held in memory, and each
+   * group is emitted as soon as the key changes; so the first groups are
+   * available before the whole sequence has been read, and the groups are
+   * in the same order as the sequence.
+   *
+   * <p>If {@code comparer} is null, keys are compared using their
+   * {@code equals} method.
+   */
+  public static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult> sortedGroupBy(
+      final Enumerable<TSource> enumerable,
+      final Function1<TSource, TKey> keySelector,
+      final Function0<TAccumulate> accumulatorInitializer,
+      final Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+      final Function2<TKey, TAccumulate, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer) {
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        return new SortedAggregateEnumerator<>(enumerable.enumerator(),
+            keySelector, accumulatorInitializer, accumulatorAdder,
+            resultSelector, comparer);
+      }
+    };
+  }
+
   private static <TSource, TKey, TAccumulate, TResult> Enumerable<TResult> groupBy_(
       final Map<TKey, TAccumulate> map, Enumerable<TSource> enumerable,
       Function1<TSource, TKey> keySelector,
@@ -989,6 +1283,35 @@ public static <TSource> Enumerable<TSource> intersect(
     return Linq4j.asEnumerable(set1).select(unwrapper);
   }
 
+  /**
+   * Produces the set intersection of two sequences, comparing the primitive
+   * values that {@code keySelectors} compute from each element, without
+   * boxing them.
+   */
+  public static <TSource> Enumerable<TSource> primitiveIntersect(
+      Enumerable<TSource> source0, Enumerable<TSource> source1,
+      LongFunction1<TSource>[] keySelectors) {
+    final LongHashTable table0 = new LongHashTable(keySelectors.length);
+    final long[] key = new long[keySelectors.length];
+    try (Enumerator<TSource> os = source0.enumerator()) {
+      while (os.moveNext()) {
+        table0.addKey(LongHashTable.key(os.current(), keySelectors, key));
+      }
+    }
+    final LongHashTable table1 = new LongHashTable(keySelectors.length);
+    final List<TSource> list = new ArrayList<>();
+    try (Enumerator<TSource> os = source1.enumerator()) {
+      while (os.moveNext()) {
+        final TSource o = os.current();
+        LongHashTable.key(o, keySelectors, key);
+        if (table0.containsKey(key) && table1.addKey(key)) {
+          list.add(o);
+        }
+      }
+    }
+    return Linq4j.asEnumerable(list);
+  }
+
   /**
    * Correlates the elements of two sequences based on
    * matching keys. The default equality comparer is used to compare
@@ -1148,6 +1471,181 @@ public void close() {
     };
   }
 
+  /**
+   * Correlates the elements of two sequences based on matching keys, as
+   * {@link #join(Enumerable, Enumerable, Function1, Function1, Function2, EqualityComparer, boolean, boolean)}
+   * does, but the keys are tuples of primitive values, which are compared
+   * without boxing them.
+   *
+   * <p>The inner sequence is read into a hash table whose keys and elements
+   * are stored in flat arrays, so it uses less memory than a
+   * {@link Lookup}, and probing it does not allocate.
+   */
+  public static <TSource, TInner, TResult> Enumerable<TResult> primitiveJoin(
+      final Enumerable<TSource> outer, final Enumerable<TInner> inner,
+      final LongFunction1<TSource>[] outerKeySelectors,
+      final LongFunction1<TInner>[] innerKeySelectors,
+      final Function2<TSource, TInner, TResult> resultSelector,
+      final boolean generateNullsOnLeft, final boolean generateNullsOnRight) {
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        final LongHashTable table =
+            new LongHashTable(innerKeySelectors.length);
+        final long[] key = new long[innerKeySelectors.length];
+        try (Enumerator<TInner> os = inner.enumerator()) {
+          while (os.moveNext()) {
+            final TInner o = os.current();
+            table.put(LongHashTable.key(o, innerKeySelectors, key), o);
+          }
+        }
+        return new PrimitiveJoinEnumerator<>(outer.enumerator(), table,
+            outerKeySelectors, resultSelector, generateNullsOnLeft,
+            generateNullsOnRight);
+      }
+    };
+  }
+
+  /**
+   * Correlates the elements of two sequences based on matching keys, as
+   * {@link #join(Enumerable, Enumerable, Function1, Function1, Function2, EqualityComparer, boolean, boolean)}
+   * does, but holding at most about {@code maxInnerRows} elements of the inner
+   * sequence in memory.
+   *
+   * <p>If the inner sequence is larger, both sequences are partitioned by
+   * the hash of their keys into temporary files, and each pair of partitions
+   * is joined in turn, partitioning again if a partition is still too large
+   * (a grace hash join). Spilled elements must be
+   * {@link java.io.Serializable}; if elements of the inner sequence are not,
+   * they are all kept in memory.
+   */
+  public static <TSource, TInner, TKey, TResult> Enumerable<TResult> spillableJoin(
+      final Enumerable<TSource> outer, final Enumerable<TInner> inner,
+      final Function1<TSource, TKey> outerKeySelector,
+      final Function1<TInner, TKey> innerKeySelector,
+      final Function2<TSource, TInner, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer, final boolean generateNullsOnLeft,
+      final boolean generateNullsOnRight, final long maxInnerRows) {
+    return spillableJoin_(outer, inner, outerKeySelector, innerKeySelector,
+        resultSelector, comparer, generateNullsOnLeft, generateNullsOnRight,
+        maxInnerRows, 0);
+  }
+
+  private static <TSource, TInner, TKey, TResult> Enumerable<TResult> spillableJoin_(
+      final Enumerable<TSource> outer, final Enumerable<TInner> inner,
+      final Function1<TSource, TKey> outerKeySelector,
+      final Function1<TInner, TKey> innerKeySelector,
+      final Function2<TSource, TInner, TResult> resultSelector,
+      final EqualityComparer<TKey> comparer, final boolean generateNullsOnLeft,
+      final boolean generateNullsOnRight, final long maxInnerRows,
+      final int depth) {
+    return new AbstractEnumerable<TResult>() {
+      public Enumerator<TResult> enumerator() {
+        final List<TInner> innerList = new ArrayList<>();
+        try (Enumerator<TInner> inners = inner.enumerator()) {
+          while (inners.moveNext()) {
+            final TInner tInner = inners.current();
+            innerList.add(tInner);
+            if (innerList.size() > maxInnerRows
+                && depth < MAX_SPILL_DEPTH
+                && SpillFile.canSpill(tInner)) {
+              return spillJoin(innerList, inners);
+            }
+          }
+        }
+        return join_(outer, Linq4j.asEnumerable(innerList), outerKeySelector,
+            innerKeySelector, resultSelector, comparer, generateNullsOnLeft,
+            generateNullsOnRight).enumerator();
+      }
+
+      /** Writes the inner elements read so far, the rest of the inner
+       * sequence and the outer sequence to partition files, and returns an
+       * enumerator that joins each pair of partitions. */
+      private Enumerator<TResult> spillJoin(List<TInner> innerList,
+          Enumerator<TInner> inners) {
+        final List<SpillFile<TInner>> innerFiles = new ArrayList<>();
+        final List<SpillFile<TSource>> outerFiles = new ArrayList<>();
+        try {
+          for (int i = 0; i < SPILL_PARTITIONS; i++) {
+            innerFiles.add(new SpillFile<>());
+            outerFiles.add(new SpillFile<>());
+          }
+          for (TInner tInner : innerList) {
+            innerFiles.get(spillPartition(innerKeySelector.apply(tInner)))
+                .add(tInner);
+          }
+          innerList.clear();
+          while (inners.moveNext()) {
+            final TInner tInner = inners.current();
+            innerFiles.get(spillPartition(innerKeySelector.apply(tInner)))
+                .add(tInner);
+          }
+          try (Enumerator<TSource> outers = outer.enumerator()) {
+            while (outers.moveNext()) {
+              final TSource tSource = outers.current();
+              final TKey key =
+                  tSource == null ? null : outerKeySelector.apply(tSource);
+              outerFiles.get(spillPartition(key)).add(tSource);
+            }
+          }
+        } catch (RuntimeException | Error e) {
+          closeAll(innerFiles);
+          closeAll(outerFiles);
+          throw e;
+        }
+        final List<Enumerable<TResult>> joins = new ArrayList<>();
+        for (int i = 0; i < SPILL_PARTITIONS; i++) {
+          final SpillFile<TSource> outerFile = outerFiles.get(i);
+          final SpillFile<TInner> innerFile = innerFiles.get(i);
+          if (outerFile.size() == 0 && !generateNullsOnLeft
+              || innerFile.size() == 0 && !generateNullsOnRight) {
+            continue;
+          }
+          joins.add(
+              spillableJoin_(outerFile, innerFile, outerKeySelector,
+                  innerKeySelector, resultSelector, comparer,
+                  generateNullsOnLeft, generateNullsOnRight, maxInnerRows,
+                  depth + 1));
+        }
+        return new DelegatingEnumerator<TResult>(
+            Linq4j.concat(joins).enumerator()) {
+          @Override public void close() {
+            try {
+              super.close();
+            } finally {
+              closeAll(innerFiles);
+              closeAll(outerFiles);
+            }
+          }
+        };
+      }
+
+      /** Returns the partition of a key. */
+      private int spillPartition(TKey key) {
+        if (key == null) {
+          return 0;
+        }
+        return EnumerableDefaults.spillPartition(
+            comparer == null ? key.hashCode() : comparer.hashCode(key), depth);
+      }
+    };
+  }
+
+  /** Returns the partition of a key with a given hash code, when an operator
+   * spills to disk. Each depth uses different bits of the hash, so that the
+   * keys of a partition that spills again are spread among the next depth's
+   * partitions. */
+  private static int spillPartition(int hash, int depth) {
+    final int h = (hash ^ (hash >>> 16)) * 0x9E3779B9;
+    return (h >>> (32 - SPILL_PARTITION_BITS * (depth + 1)))
+        & (SPILL_PARTITIONS - 1);
+  }
+
+  private static void closeAll(List<? extends SpillFile<?>> files) {
+    for (SpillFile<?> file : files) {
+      file.close();
+    }
+  }
+
   /**
    * Returns elements of {@code outer} for which there is a member of
    * {@code inner} with a matching key. A specified
@@ -1311,6 +1809,33 @@ public Enumerator<TSource> enumerator() {
     };
   }
 
+  /**
+   * Returns elements of {@code outer} for which there is a member of
+   * {@code inner} with a matching key. Keys are tuples of primitive values,
+   * which are compared without boxing them.
+   */
+  public static <TSource, TInner> Enumerable<TSource> primitiveSemiJoin(
+      final Enumerable<TSource> outer, final Enumerable<TInner> inner,
+      final LongFunction1<TSource>[] outerKeySelectors,
+      final LongFunction1<TInner>[] innerKeySelectors) {
+    return new AbstractEnumerable<TSource>() {
+      public Enumerator<TSource> enumerator() {
+        final LongHashTable table =
+            new LongHashTable(innerKeySelectors.length);
+        final long[] key = new long[innerKeySelectors.length];
+        try (Enumerator<TInner> os = inner.enumerator()) {
+          while (os.moveNext()) {
+            table.addKey(
+                LongHashTable.key(os.current(), innerKeySelectors, key));
+          }
+        }
+        return EnumerableDefaults.where(outer.enumerator(), v0 ->
+            table.containsKey(
+                LongHashTable.key(v0, outerKeySelectors, key)));
+      }
+    };
+  }
+
   /**
    * Correlates the elements of two sequences based on a predicate.
    */
@@ -1817,6 +2342,298 @@ public static <TSource, TKey> Enumerable<TSource> orderBy(
     return lookup.valuesEnumerable();
   }
 
+  /**
+   * Sorts the elements of a sequence according to a key, as
+   * {@link #orderBy(Enumerable, Function1, Comparator)} does, but holding at
+   * most about {@code maxRowsInMemory} elements in memory.
+   *
+   * <p>Elements are read in chunks of {@code maxRowsInMemory}, and each chunk
+   * is sorted in an array. If the sequence is larger than one chunk, each
+   * sorted chunk (a run) is written to a temporary file, and the runs are
+   * merged (an external merge sort). Elements whose keys are equal are
+   * returned in the order they were read. Spilled elements must be
+   * {@link java.io.Serializable}; if an element is not, the remaining
+   * elements are all kept in memory.
+   *
+   * <p>If {@code maxRowsInMemory} is 0 or less, the sequence is sorted in
+   * memory, as by {@link #orderBy(Enumerable, Function1, Comparator)}. If
+   * {@code comparator} is null, keys must implement {@link Comparable}.
+   */
+  public static <TSource, TKey> Enumerable<TSource> orderBy(
+      final Enumerable<TSource> source,
+      final Function1<TSource, TKey> keySelector,
+      final Comparator<TKey> comparator, final long maxRowsInMemory) {
+    if (maxRowsInMemory <= 0) {
+      return orderBy(source, keySelector, comparator);
+    }
+    //noinspection unchecked
+    final Comparator<TKey> keyComparator = comparator != null
+        ? comparator
+        : (Comparator<TKey>) (Comparator) Comparator.naturalOrder();
+    final Comparator<SortEntry<TSource, TKey>> entryComparator =
+        (e0, e1) -> keyComparator.compare(e0.key, e1.key);
+    return new AbstractEnumerable<TSource>() {
+      public Enumerator<TSource> enumerator() {
+        final List<SpillFile<TSource>> runs = new ArrayList<>();
+        // Number of times that the elements of each run have been merged;
+        // never increases along the list
+        final List<Integer> levels = new ArrayList<>();
+        final List<SortEntry<TSource, TKey>> chunk = new ArrayList<>();
+        boolean spill = true;
+        try (Enumerator<TSource> os = source.enumerator()) {
+          while (os.moveNext()) {
+            final TSource o = os.current();
+            chunk.add(new SortEntry<>(o, keySelector.apply(o)));
+            if (spill && chunk.size() >= maxRowsInMemory) {
+              spill = spillRun(chunk, runs);
+              if (spill) {
+                levels.add(0);
+                mergeLevels(runs, levels);
+              }
+            }
+          }
+          // List.sort is stable, so elements with equal keys keep their
+          // input order
+          chunk.sort(entryComparator);
+          while (runs.size() >= MAX_MERGE_RUNS) {
+            mergeRuns(runs);
+          }
+        } catch (RuntimeException | Error e) {
+          closeAll(runs);
+          throw e;
+        }
+        final Enumerable<TSource> lastRun =
+            Linq4j.asEnumerable(chunk).select(e -> e.element);
+        if (runs.isEmpty()) {
+          return lastRun.enumerator();
+        }
+        // The in-memory run holds the last elements read, so it comes last
+        final List<Enumerable<TSource>> allRuns = new ArrayList<>(runs);
+        allRuns.add(lastRun);
+        return new DelegatingEnumerator<TSource>(
+            mergeEnumerator(allRuns, keySelector, keyComparator)) {
+          @Override public void close() {
+            try {
+              super.close();
+            } finally {
+              closeAll(runs);
+            }
+          }
+        };
+      }
+
+      /** Sorts a full chunk and writes it to a new run, and returns whether
+       * the sort should continue to spill. If an element cannot be written,
+       * leaves the chunk in memory, and returns false. */
+      private boolean spillRun(List<SortEntry<TSource, TKey>> chunk,
+          List<SpillFile<TSource>> runs) {
+        for (SortEntry<TSource, TKey> entry : chunk) {
+          if (!SpillFile.canSpill(entry.element)) {
+            return false;
+          }
+        }
+        chunk.sort(entryComparator);
+        final SpillFile<TSource> run = new SpillFile<>();
+        runs.add(run);
+        for (SortEntry<TSource, TKey> entry : chunk) {
+          run.add(entry.element);
+        }
+        run.finish();
+        chunk.clear();
+        return true;
+      }
+
+      /** While the last {@link #MAX_MERGE_RUNS} runs have the same level,
+       * merges them into one run of the next level. */
+      private void mergeLevels(List<SpillFile<TSource>> runs,
+          List<Integer> levels) {
+        for (;;) {
+          final int n = runs.size();
+          if (n < MAX_MERGE_RUNS
+              || !levels.get(n - MAX_MERGE_RUNS).equals(levels.get(n - 1))) {
+            return;
+          }
+          final int level = levels.get(n - 1);
+          final List<SpillFile<TSource>> group =
+              runs.subList(n - MAX_MERGE_RUNS, n);
+          final SpillFile<TSource> mergedRun = mergeRun(group);
+          closeAll(group);
+          group.clear();
+          levels.subList(n - MAX_MERGE_RUNS, n).clear();
+          runs.add(mergedRun);
+          levels.add(level + 1);
+        }
+      }
+
+      /** Merges each group of {@link #MAX_MERGE_RUNS} consecutive runs into
+       * one run. Runs are merged in input order, so that the sort remains
+       * stable. */
+      private void mergeRuns(List<SpillFile<TSource>> runs) {
+        final List<SpillFile<TSource>> mergedRuns = new ArrayList<>();
+        for (int i = 0; i < runs.size(); i += MAX_MERGE_RUNS) {
+          try {
+            mergedRuns.add(
+                mergeRun(
+                    runs.subList(i,
+                        Math.min(i + MAX_MERGE_RUNS, runs.size()))));
+          } catch (RuntimeException | Error e) {
+            closeAll(mergedRuns);
+            throw e;
+          }
+        }
+        closeAll(runs);
+        runs.clear();
+        runs.addAll(mergedRuns);
+      }
+
+      /** Merges runs into a new run, and closes its output. */
+      private SpillFile<TSource> mergeRun(List<SpillFile<TSource>> group) {
+        final SpillFile<TSource> mergedRun = new SpillFile<>();
+        try (Enumerator<TSource> merged =
+                 mergeEnumerator(group, keySelector, keyComparator)) {
+          while (merged.moveNext()) {
+            mergedRun.add(merged.current());
+          }
+          mergedRun.finish();
+        } catch (RuntimeException | Error e) {
+          mergedRun.close();
+          throw e;
+        }
+        return mergedRun;
+      }
+    };
+  }
+
+  /** Returns an enumerator that merges sequences that are each sorted by
+   * key. If keys are equal, elements of an earlier sequence come first. */
+  private static <TSource, TKey> Enumerator<TSource> mergeEnumerator(
+      List<? extends Enumerable<TSource>> runs,
+      final Function1<TSource, TKey> keySelector,
+      final Comparator<TKey> keyComparator) {
+    final PriorityQueue<MergeCursor<TSource, TKey>> queue =
+        new PriorityQueue<>(Math.max(runs.size(), 1), (c0, c1) -> {
+          final int c = keyComparator.compare(c0.key, c1.key);
+          return c != 0 ? c : Integer.compare(c0.ordinal, c1.ordinal);
+        });
+    try {
+      for (int i = 0; i < runs.size(); i++) {
+        final MergeCursor<TSource, TKey> cursor =
+            new MergeCursor<>(runs.get(i).enumerator(), i);
+        if (cursor.moveNext(keySelector)) {
+          queue.add(cursor);
+        } else {
+          cursor.enumerator.close();
+        }
+      }
+    } catch (RuntimeException | Error e) {
+      for (MergeCursor<TSource, TKey> cursor : queue) {
+        cursor.enumerator.close();
+      }
+      throw e;
+    }
+    return new Enumerator<TSource>() {
+      private MergeCursor<TSource, TKey> cursor;
+
+      public TSource current() {
+        return cursor.element;
+      }
+
+      public boolean moveNext() {
+        if (cursor != null) {
+          // Put back the run that supplied the previous element
+          if (cursor.moveNext(keySelector)) {
+            queue.add(cursor);
+          } else {
+            cursor.enumerator.close();
+          }
+        }
+        cursor = queue.poll();
+        return cursor != null;
+      }
+
+      public void reset() {
+        throw new UnsupportedOperationException();
+      }
+
+      public void close() {
+        if (cursor != null) {
+          cursor.enumerator.close();
+          cursor = null;
+        }
+        for (MergeCursor<TSource, TKey> c : queue) {
+          c.enumerator.close();
+        }
+        queue.clear();
+      }
+    };
+  }
+
+  /**
+   * Sorts the elements of a sequence according to a key, skips
+   * {@code offset} elements, and returns at most {@code fetch} of the
+   * remaining elements.
+   *
+   * <p>The result is the same as
+   * {@code take(skip(orderBy(source, keySelector, comparator), offset),
+   * fetch)}, including the order of elements whose keys are equal, but only
+   * {@code offset + fetch} elements are held in memory, in a bounded heap,
+   * and the sort takes O(n log k) rather than O(n log n) time.
+   *
+   * <p>If {@code comparator} is null, keys must implement
+   * {@link Comparable}.
+   */
+  public static <TSource, TKey> Enumerable<TSource> topN(
+      final Enumerable<TSource> source,
+      final Function1<TSource, TKey> keySelector,
+      final Comparator<TKey> comparator, final int offset, final int fetch) {
+    final long limit = (long) offset + fetch;
+    if (fetch <= 0) {
+      return Linq4j.emptyEnumerable();
+    }
+    if (limit >= Integer.MAX_VALUE) {
+      return take(skip(orderBy(source, keySelector, comparator), offset),
+          fetch);
+    }
+    //noinspection unchecked
+    final Comparator<TKey> keyComparator = comparator != null
+        ? comparator
+        : (Comparator<TKey>) (Comparator) Comparator.naturalOrder();
+    // Orders entries by key, then by their position in the input; the heap
+    // is ordered the opposite way, so that its head is the entry to evict.
+    final Comparator<TopNEntry<TSource, TKey>> entryComparator = (e0, e1) -> {
+      final int c = keyComparator.compare(e0.key, e1.key);
+      return c != 0 ? c : Long.compare(e0.ordinal, e1.ordinal);
+    };
+    return new AbstractEnumerable<TSource>() {
+      public Enumerator<TSource> enumerator() {
+        final PriorityQueue<TopNEntry<TSource, TKey>> heap =
+            new PriorityQueue<>(11, entryComparator.reversed());
+        try (Enumerator<TSource> os = source.enumerator()) {
+          for (long ordinal = 0; os.moveNext(); ordinal++) {
+            final TSource o = os.current();
+            final TKey key = keySelector.apply(o);
+            if (heap.size() < limit) {
+              heap.add(new TopNEntry<>(o, key, ordinal));
+            } else if (keyComparator.compare(key, heap.peek().key) < 0) {
+              // The new element precedes the last of the current top k.
+              // (If keys are equal, the element already in the heap came
+              // first, and wins.)
+              heap.poll();
+              heap.add(new TopNEntry<>(o, key, ordinal));
+            }
+          }
+        }
+        final List<TopNEntry<TSource, TKey>> entries = new ArrayList<>(heap);
+        entries.sort(entryComparator);
+        final List<TSource> list = new ArrayList<>();
+        for (int i = offset; i < entries.size(); i++) {
+          list.add(entries.get(i).element);
+        }
+        return Linq4j.enumerator(list);
+      }
+    };
+  }
+
   /**
    * Sorts the elements of a sequence in descending
    * order according to a key.
@@ -2728,6 +3545,17 @@ public static <TSource> Enumerable<TSource> union(Enumerable<TSource> source0,
     return Linq4j.asEnumerable(set).select(unwrapper);
   }
 
+  /**
+   * Produces the set union of two sequences, comparing the primitive values
+   * that {@code keySelectors} compute from each element, without boxing
+   * them.
+   */
+  public static <TSource> Enumerable<TSource> primitiveUnion(
+      Enumerable<TSource> source0, Enumerable<TSource> source1,
+      LongFunction1<TSource>[] keySelectors) {
+    return primitiveDistinct(source0.concat(source1), keySelectors);
+  }
+
   private static <TSource> Function1<Wrapped<TSource>, TSource> unwrapper() {
     return a0 -> a0.element;
   }
@@ -3044,6 +3872,65 @@ public void close() {
     }
   }
 
+  /** Element of a chunk that {@link #orderBy(Enumerable, Function1, Comparator, long)}
+   * sorts in memory.
+   *
+   * @param <TSource> element type
+   * @param <TKey> key type */
+  private static class SortEntry<TSource, TKey> {
+    final TSource element;
+    final TKey key;
+
+    SortEntry(TSource element, TKey key) {
+      this.element = element;
+      this.key = key;
+    }
+  }
+
+  /** Position in one of the sorted runs that
+   * {@link #mergeEnumerator} merges.
+   *
+   * @param <TSource> element type
+   * @param <TKey> key type */
+  private static class MergeCursor<TSource, TKey> {
+    final Enumerator<TSource> enumerator;
+    final int ordinal;
+    TSource element;
+    TKey key;
+
+    MergeCursor(Enumerator<TSource> enumerator, int ordinal) {
+      this.enumerator = enumerator;
+      this.ordinal = ordinal;
+    }
+
+    /** Moves to the next element of the run, and returns whether there is
+     * one. */
+    boolean moveNext(Function1<TSource, TKey> keySelector) {
+      if (!enumerator.moveNext()) {
+        return false;
+      }
+      element = enumerator.current();
+      key = keySelector.apply(element);
+      return true;
+    }
+  }
+
+  /** Element of the heap in {@link #topN}.
+   *
+   * @param <TSource> element type
+   * @param <TKey> key type */
+  private static class TopNEntry<TSource, TKey> {
+    final TSource element;
+    final TKey key;
+    final long ordinal;
+
+    TopNEntry(TSource element, TKey key, long ordinal) {
+      this.element = element;
+      this.key = key;
+      this.ordinal = ordinal;
+    }
+  }
+
   /** Value wrapped with a comparer.
    *
    * @param <T> element type */
@@ -3181,6 +4068,202 @@ public void remove() {
     }
   }
 
+  /** Enumerator that aggregates a sequence whose elements with equal keys are
+   * adjacent, emitting each group when the key changes.
+   *
+   * @param <TSource> element type
+   * @param <TKey> key type
+   * @param <TAccumulate> accumulator type
+   * @param <TResult> result type */
+  private static class SortedAggregateEnumerator<TSource, TKey, TAccumulate,
+      TResult> implements Enumerator<TResult> {
+    private final Enumerator<TSource> enumerator;
+    private final Function1<TSource, TKey> keySelector;
+    private final Function0<TAccumulate> accumulatorInitializer;
+    private final Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder;
+    private final Function2<TKey, TAccumulate, TResult> resultSelector;
+    private final EqualityComparer<TKey> comparer;
+    /** Whether {@link #enumerator} is positioned on an element that has not
+     * yet been added to a group. */
+    private boolean pending;
+    private boolean done;
+    private TResult current;
+
+    SortedAggregateEnumerator(Enumerator<TSource> enumerator,
+        Function1<TSource, TKey> keySelector,
+        Function0<TAccumulate> accumulatorInitializer,
+        Function2<TAccumulate, TSource, TAccumulate> accumulatorAdder,
+        Function2<TKey, TAccumulate, TResult> resultSelector,
+        EqualityComparer<TKey> comparer) {
+      this.enumerator = enumerator;
+      this.keySelector = keySelector;
+      this.accumulatorInitializer = accumulatorInitializer;
+      this.accumulatorAdder = accumulatorAdder;
+      this.resultSelector = resultSelector;
+      this.comparer = comparer;
+    }
+
+    public TResult current() {
+      return current;
+    }
+
+    public boolean moveNext() {
+      if (done) {
+        return false;
+      }
+      if (!pending && !enumerator.moveNext()) {
+        done = true;
+        return false;
+      }
+      TSource o = enumerator.current();
+      final TKey key = keySelector.apply(o);
+      TAccumulate accumulator = accumulatorInitializer.apply();
+      for (;;) {
+        accumulator = accumulatorAdder.apply(accumulator, o);
+        if (!enumerator.moveNext()) {
+          pending = false;
+          done = true;
+          break;
+        }
+        o = enumerator.current();
+        if (!equal(key, keySelector.apply(o))) {
+          pending = true;
+          break;
+        }
+      }
+      current = resultSelector.apply(key, accumulator);
+      return true;
+    }
+
+    private boolean equal(TKey key, TKey key2) {
+      if (key == null || key2 == null) {
+        return key == key2;
+      }
+      return comparer == null
+          ? key.equals(key2)
+          : comparer.equal(key, key2);
+    }
+
+    public void reset() {
+      enumerator.reset();
+      pending = false;
+      done = false;
+      current = null;
+    }
+
+    public void close() {
+      enumerator.close();
+    }
+  }
+
+  /** Enumerator that probes a hash table of the inner input's elements
+   * with the key of each element of the outer input.
+   *
+   * @param <TSource> left input record type
+   * @param <TInner> right input record type
+   * @param <TResult> result type */
+  private static class PrimitiveJoinEnumerator<TSource, TInner, TResult>
+      implements Enumerator<TResult> {
+    private final Enumerator<TSource> outers;
+    private final LongHashTable table;
+    private final LongFunction1<TSource>[] outerKeySelectors;
+    private final Function2<TSource, TInner, TResult> resultSelector;
+    private final boolean generateNullsOnLeft;
+    private final boolean generateNullsOnRight;
+    private final long[] key;
+    /** Whether each slot of the table has been matched, if unmatched inner
+     * elements are to be returned; null otherwise. */
+    private boolean[] matched;
+    private boolean outersDone;
+    /** Slot whose unmatched elements are being returned. */
+    private int slot;
+    /** Next inner element that matches the current outer element, or -1. */
+    private int next;
+    private TSource outer;
+    private TInner inner;
+
+    PrimitiveJoinEnumerator(Enumerator<TSource> outers, LongHashTable table,
+        LongFunction1<TSource>[] outerKeySelectors,
+        Function2<TSource, TInner, TResult> resultSelector,
+        boolean generateNullsOnLeft, boolean generateNullsOnRight) {
+      this.outers = outers;
+      this.table = table;
+      this.outerKeySelectors = outerKeySelectors;
+      this.resultSelector = resultSelector;
+      this.generateNullsOnLeft = generateNullsOnLeft;
+      this.generateNullsOnRight = generateNullsOnRight;
+      this.key = new long[outerKeySelectors.length];
+      start();
+    }
+
+    private void start() {
+      matched = generateNullsOnLeft ? new boolean[table.capacity()] : null;
+      outersDone = false;
+      slot = -1;
+      next = -1;
+    }
+
+    public TResult current() {
+      return resultSelector.apply(outer, inner);
+    }
+
+    public boolean moveNext() {
+      for (;;) {
+        if (next >= 0) {
+          //noinspection unchecked
+          inner = (TInner) table.element(next);
+          next = table.next(next);
+          return true;
+        }
+        if (outersDone) {
+          // Return the inner elements whose key no outer element matched
+          if (matched == null) {
+            return false;
+          }
+          while (++slot < table.capacity()) {
+            if (table.isUsed(slot) && !matched[slot]) {
+              break;
+            }
+          }
+          if (slot == table.capacity()) {
+            matched = null;
+            return false;
+          }
+          outer = null;
+          next = table.first(slot);
+          continue;
+        }
+        if (!outers.moveNext()) {
+          outersDone = true;
+          continue;
+        }
+        outer = outers.current();
+        final int s = outer == null
+            ? -1
+            : table.find(LongHashTable.key(outer, outerKeySelectors, key),
+                LongHashTable.hash(key));
+        if (s >= 0) {
+          if (matched != null) {
+            matched[s] = true;
+          }
+          next = table.first(s);
+        } else if (generateNullsOnRight) {
+          inner = null;
+          return true;
+        }
+      }
+    }
+
+    public void reset() {
+      outers.reset();
+      start();
+    }
+
+    public void close() {
+      outers.close();
+    }
+  }
+
   /** Enumerator that performs a merge join on its sorted inputs.
    *
    * @param <TResult> result type
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.Function2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Hash table from group keys to accumulators, used by aggregation.
+ *
+ * <p>Unlike {@link java.util.HashMap}, it does not allocate an entry object
+ * per group. It uses open addressing with linear probing over parallel
+ * arrays of keys, accumulators and key hash codes; the hash codes are kept
+ * so that growing the table does not recompute them, and so that most
+ * probes that miss do not call {@code equals}. Keys may be null, and are
+ * compared using an {@link EqualityComparer} if one is given.
+ *
+ * @param <TKey> Key type
+ * @param <TAccumulate> Accumulator type
+ */
+class GroupTable<TKey, TAccumulate> {
+  /** Stands in for a null key, because a null slot is empty. */
+  private static final Object NULL_KEY = new Object();
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final EqualityComparer<TKey> comparer;
+  private Object[] keys;
+  private Object[] accumulators;
+  private int[] hashes;
+  private int size;
+
+  GroupTable(EqualityComparer<TKey> comparer) {
+    this.comparer = comparer;
+    this.keys = new Object[INITIAL_CAPACITY];
+    this.accumulators = new Object[INITIAL_CAPACITY];
+    this.hashes = new int[INITIAL_CAPACITY];
+  }
+
+  /** Returns the number of groups. */
+  int size() {
+    return size;
+  }
+
+  /** Returns the hash code of a key. */
+  int hash(TKey key) {
+    if (key == null) {
+      return 0;
+    }
+    final int h = comparer == null ? key.hashCode() : comparer.hashCode(key);
+    return h ^ (h >>> 16);
+  }
+
+  /** Returns the slot that holds a key, or if the key is not present, the
+   * negative of one more than the slot where it would be inserted. */
+  int find(TKey key, int hash) {
+    final Object k = key == null ? NULL_KEY : key;
+    final int mask = keys.length - 1;
+    for (int i = hash & mask;; i = (i + 1) & mask) {
+      final Object k2 = keys[i];
+      if (k2 == null) {
+        return -(i + 1);
+      }
+      if (hashes[i] == hash && equal(k, k2)) {
+        return i;
+      }
+    }
+  }
+
+  private boolean equal(Object k, Object k2) {
+    if (k == k2) {
+      return true;
+    }
+    if (k == NULL_KEY || k2 == NULL_KEY) {
+      return false;
+    }
+    //noinspection unchecked
+    return comparer == null
+        ? Objects.equals(k, k2)
+        : comparer.equal((TKey) k, (TKey) k2);
+  }
+
+  /** Returns the accumulator in a slot. */
+  TAccumulate get(int slot) {
+    //noinspection unchecked
+    return (TAccumulate) accumulators[slot];
+  }
+
+  /** Replaces the accumulator in a slot. */
+  void set(int slot, TAccumulate accumulator) {
+    accumulators[slot] = accumulator;
+  }
+
+  /** Adds a group whose key is not present; {@code slot} is the value that
+   * {@link #find} returned. */
+  void add(int slot, TKey key, int hash, TAccumulate accumulator) {
+    assert slot < 0;
+    final int i = -(slot + 1);
+    keys[i] = key == null ? NULL_KEY : key;
+    accumulators[i] = accumulator;
+    hashes[i] = hash;
+    // Keep the table at most half full, so that probe sequences are short
+    if (++size * 2 > keys.length) {
+      grow();
+    }
+  }
+
+  private void grow() {
+    final Object[] oldKeys = keys;
+    final Object[] oldAccumulators = accumulators;
+    final int[] oldHashes = hashes;
+    keys = new Object[oldKeys.length * 2];
+    accumulators = new Object[oldKeys.length * 2];
+    hashes = new int[oldKeys.length * 2];
+    final int mask = keys.length - 1;
+    for (int j = 0; j < oldKeys.length; j++) {
+      if (oldKeys[j] != null) {
+        int i = oldHashes[j] & mask;
+        while (keys[i] != null) {
+          i = (i + 1) & mask;
+        }
+        keys[i] = oldKeys[j];
+        accumulators[i] = oldAccumulators[j];
+        hashes[i] = oldHashes[j];
+      }
+    }
+  }
+
+  /** Applies a function to the key and accumulator of each group, and
+   * returns the results. */
+  <TResult> List<TResult> results(
+      Function2<TKey, TAccumulate, TResult> resultSelector) {
+    final List<TResult> list = new ArrayList<>(size);
+    for (int i = 0; i < keys.length; i++) {
+      final Object k = keys[i];
+      if (k != null) {
+        //noinspection unchecked
+        list.add(
+            resultSelector.apply(k == NULL_KEY ? null : (TKey) k,
+                (TAccumulate) accumulators[i]));
+      }
+    }
+    return list;
+  }
+}
+
+// End GroupTable.java
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import org.apache.calcite.linq4j.function.Function2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hash table from group keys that are tuples of {@code long} values to
+ * accumulators, used by aggregation whose keys are primitive.
+ *
+ * <p>It is laid out as {@link GroupTable}, but compares keys as
+ * {@link LongHashTable} does: the columns of the keys are stored in one flat
+ * array, {@code width} values per slot, so that finding the group of an
+ * element neither boxes its key nor calls {@code equals}. Each group also
+ * holds its key as an object, which is computed once, when the group is
+ * added, and passed to the result selector.
+ *
+ * @param <TKey> Key type
+ * @param <TAccumulate> Accumulator type
+ */
+class LongGroupTable<TKey, TAccumulate> {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final int width;
+  private long[] keys;
+  private Object[] keyObjects;
+  private Object[] accumulators;
+  private int[] hashes;
+  private boolean[] used;
+  private int size;
+
+  LongGroupTable(int width) {
+    assert width > 0;
+    this.width = width;
+    allocate(INITIAL_CAPACITY);
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity * width];
+    keyObjects = new Object[capacity];
+    accumulators = new Object[capacity];
+    hashes = new int[capacity];
+    used = new boolean[capacity];
+  }
+
+  /** Returns the number of groups. */
+  int size() {
+    return size;
+  }
+
+  /** Returns the slot that holds a key, or if the key is not present, the
+   * negative of one more than the slot where it would be inserted. */
+  int find(long[] key, int hash) {
+    final int mask = used.length - 1;
+    for (int i = hash & mask;; i = (i + 1) & mask) {
+      if (!used[i]) {
+        return -(i + 1);
+      }
+      if (hashes[i] == hash && equal(key, i)) {
+        return i;
+      }
+    }
+  }
+
+  private boolean equal(long[] key, int slot) {
+    final int offset = slot * width;
+    for (int j = 0; j < width; j++) {
+      if (keys[offset + j] != key[j]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the accumulator in a slot. */
+  TAccumulate get(int slot) {
+    //noinspection unchecked
+    return (TAccumulate) accumulators[slot];
+  }
+
+  /** Replaces the accumulator in a slot. */
+  void set(int slot, TAccumulate accumulator) {
+    accumulators[slot] = accumulator;
+  }
+
+  /** Adds a group whose key is not present; {@code slot} is the value that
+   * {@link #find} returned. */
+  void add(int slot, long[] key, TKey keyObject, int hash,
+      TAccumulate accumulator) {
+    assert slot < 0;
+    final int i = -(slot + 1);
+    System.arraycopy(key, 0, keys, i * width, width);
+    keyObjects[i] = keyObject;
+    accumulators[i] = accumulator;
+    hashes[i] = hash;
+    used[i] = true;
+    // Keep the table at most half full, so that probe sequences are short
+    if (++size * 2 > used.length) {
+      grow();
+    }
+  }
+
+  private void grow() {
+    final long[] oldKeys = keys;
+    final Object[] oldKeyObjects = keyObjects;
+    final Object[] oldAccumulators = accumulators;
+    final int[] oldHashes = hashes;
+    final boolean[] oldUsed = used;
+    allocate(oldUsed.length * 2);
+    final int mask = used.length - 1;
+    for (int j = 0; j < oldUsed.length; j++) {
+      if (oldUsed[j]) {
+        int i = oldHashes[j] & mask;
+        while (used[i]) {
+          i = (i + 1) & mask;
+        }
+        System.arraycopy(oldKeys, j * width, keys, i * width, width);
+        keyObjects[i] = oldKeyObjects[j];
+        accumulators[i] = oldAccumulators[j];
+        hashes[i] = oldHashes[j];
+        used[i] = true;
+      }
+    }
+  }
+
+  /** Applies a function to the key and accumulator of each group, and
+   * returns the results. */
+  <TResult> List<TResult> results(
+      Function2<TKey, TAccumulate, TResult> resultSelector) {
+    final List<TResult> list = new ArrayList<>(size);
+    for (int i = 0; i < used.length; i++) {
+      if (used[i]) {
+        //noinspection unchecked
+        list.add(
+            resultSelector.apply((TKey) keyObjects[i],
+                (TAccumulate) accumulators[i]));
+      }
+    }
+    return list;
+  }
+}
+
+// End LongGroupTable.java
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import org.apache.calcite.linq4j.function.LongFunction1;
+
+import java.util.Arrays;
+
+/**
+ * Hash table whose keys are tuples of {@code long} values, used by joins and
+ * set operations whose keys are primitive.
+ *
+ * <p>Unlike {@link java.util.HashMap}, it does not box keys or allocate an
+ * entry object per key. It uses open addressing with linear probing; the
+ * columns of the keys are stored in one flat array, {@code width} values per
+ * slot. The elements are stored in one array too, and the elements that have
+ * the same key are chained, in the order that they were added, through an
+ * array of indexes.
+ *
+ * <p>A key column of type {@code int} or {@code long} is represented by its
+ * value, and a column of type {@code double} by
+ * {@link Double#doubleToLongBits}, so that two keys are equal if and only if
+ * their boxed values are equal.
+ */
+class LongHashTable {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final int width;
+  private long[] keys;
+  private int[] hashes;
+  private boolean[] used;
+  /** For each slot, the first and last element with its key, or -1. */
+  private int[] firsts;
+  private int[] lasts;
+  private int size;
+
+  private Object[] elements = new Object[INITIAL_CAPACITY];
+  /** For each element, the next element with the same key, or -1. */
+  private int[] nexts = new int[INITIAL_CAPACITY];
+  private int elementCount;
+
+  LongHashTable(int width) {
+    assert width > 0;
+    this.width = width;
+    allocate(INITIAL_CAPACITY);
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity * width];
+    hashes = new int[capacity];
+    used = new boolean[capacity];
+    firsts = new int[capacity];
+    lasts = new int[capacity];
+  }
+
+  /** Evaluates key selectors on a row, writing the key into {@code key}. */
+  static <T> long[] key(T row, LongFunction1<T>[] keySelectors,
+      long[] key) {
+    for (int i = 0; i < keySelectors.length; i++) {
+      key[i] = keySelectors[i].apply(row);
+    }
+    return key;
+  }
+
+  /** Returns the hash code of a key. */
+  static int hash(long[] key) {
+    long h = 0;
+    for (long k : key) {
+      h = (h ^ k) * 0x9e3779b97f4a7c15L;
+    }
+    return (int) (h ^ (h >>> 32));
+  }
+
+  /** Returns the number of slots; slots are numbered from 0. */
+  int capacity() {
+    return used.length;
+  }
+
+  /** Returns the number of keys. */
+  int size() {
+    return size;
+  }
+
+  /** Returns the slot that holds a key, or if the key is not present, the
+   * negative of one more than the slot where it would be inserted. */
+  int find(long[] key, int hash) {
+    final int mask = used.length - 1;
+    for (int i = hash & mask;; i = (i + 1) & mask) {
+      if (!used[i]) {
+        return -(i + 1);
+      }
+      if (hashes[i] == hash && equal(key, i)) {
+        return i;
+      }
+    }
+  }
+
+  private boolean equal(long[] key, int slot) {
+    final int offset = slot * width;
+    for (int j = 0; j < width; j++) {
+      if (keys[offset + j] != key[j]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns whether a key is present. */
+  boolean containsKey(long[] key) {
+    return find(key, hash(key)) >= 0;
+  }
+
+  /** Adds a key if it is not present, and returns whether it was added. */
+  boolean addKey(long[] key) {
+    final int hash = hash(key);
+    final int slot = find(key, hash);
+    if (slot >= 0) {
+      return false;
+    }
+    add(slot, key, hash);
+    return true;
+  }
+
+  /** Adds an element with a given key. */
+  void put(long[] key, Object element) {
+    final int hash = hash(key);
+    int slot = find(key, hash);
+    if (slot < 0) {
+      slot = add(slot, key, hash);
+    }
+    if (elementCount == elements.length) {
+      elements = Arrays.copyOf(elements, elementCount * 2);
+      nexts = Arrays.copyOf(nexts, elementCount * 2);
+    }
+    final int e = elementCount++;
+    elements[e] = element;
+    nexts[e] = -1;
+    if (firsts[slot] < 0) {
+      firsts[slot] = e;
+    } else {
+      nexts[lasts[slot]] = e;
+    }
+    lasts[slot] = e;
+  }
+
+  /** Adds a key that is not present, and returns its slot; {@code slot} is
+   * the value that {@link #find} returned. */
+  private int add(int slot, long[] key, int hash) {
+    assert slot < 0;
+    int i = -(slot + 1);
+    System.arraycopy(key, 0, keys, i * width, width);
+    hashes[i] = hash;
+    used[i] = true;
+    firsts[i] = -1;
+    lasts[i] = -1;
+    // Keep the table at most half full, so that probe sequences are short
+    if (++size * 2 > used.length) {
+      grow();
+      i = find(key, hash);
+    }
+    return i;
+  }
+
+  private void grow() {
+    final long[] oldKeys = keys;
+    final int[] oldHashes = hashes;
+    final boolean[] oldUsed = used;
+    final int[] oldFirsts = firsts;
+    final int[] oldLasts = lasts;
+    allocate(oldUsed.length * 2);
+    final int mask = used.length - 1;
+    for (int j = 0; j < oldUsed.length; j++) {
+      if (oldUsed[j]) {
+        int i = oldHashes[j] & mask;
+        while (used[i]) {
+          i = (i + 1) & mask;
+        }
+        System.arraycopy(oldKeys, j * width, keys, i * width, width);
+        hashes[i] = oldHashes[j];
+        used[i] = true;
+        firsts[i] = oldFirsts[j];
+        lasts[i] = oldLasts[j];
+      }
+    }
+  }
+
+  /** Returns whether a slot holds a key. */
+  boolean isUsed(int slot) {
+    return used[slot];
+  }
+
+  /** Returns the first element whose key is in a slot, or -1. */
+  int first(int slot) {
+    return firsts[slot];
+  }
+
+  /** Returns the next element with the same key as a given element, or
+   * -1. */
+  int next(int element) {
+    return nexts[element];
+  }
+
+  /** Returns an element. */
+  Object element(int element) {
+    return elements[element];
+  }
+}
+
+// End LongHashTable.java
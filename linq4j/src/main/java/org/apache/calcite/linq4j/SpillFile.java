@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+
+/**
+ * Temporary file that holds elements that an operator cannot keep in memory.
+ *
+ * <p>Elements are written with Java serialization, so they must be
+ * {@link Serializable}, and are read back in the order they were written.
+ * The file is created when the first element is added. Once
+ * {@link #enumerator()} has been called, no more elements can be added.
+ * Closing the file deletes it.
+ *
+ * @param <E> Element type
+ */
+class SpillFile<E> extends AbstractEnumerable<E> implements Closeable {
+  /** Number of elements after which the output stream forgets the objects it
+   * has written, so that it does not keep every element in memory. */
+  private static final int RESET_INTERVAL = 1024;
+
+  private File file;
+  private ObjectOutputStream out;
+  /** Class loader of the first element, which may be of a class generated
+   * at run time that the system class loader cannot load. */
+  private ClassLoader classLoader;
+  private boolean finished;
+  private int size;
+
+  /** Returns whether an element can be written to a spill file. */
+  static boolean canSpill(Object o) {
+    return o == null || o instanceof Serializable;
+  }
+
+  /** Returns the number of elements in this file. */
+  int size() {
+    return size;
+  }
+
+  void add(E e) {
+    if (finished) {
+      throw new IllegalStateException("spill file is finished");
+    }
+    try {
+      if (out == null) {
+        file = File.createTempFile("linq4j", ".spill");
+        out = new ObjectOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file)));
+      }
+      if (classLoader == null && e != null) {
+        classLoader = e.getClass().getClassLoader();
+      }
+      out.writeObject(e);
+      if (++size % RESET_INTERVAL == 0) {
+        out.reset();
+      }
+    } catch (IOException ex) {
+      throw new RuntimeException("Error writing to spill file " + file, ex);
+    }
+  }
+
+  /** Closes the output of this file; no more elements can be added. Call it
+   * as soon as the last element has been added, so that the file does not
+   * stay open until it is read. */
+  void finish() {
+    finished = true;
+    if (out != null) {
+      try {
+        out.close();
+      } catch (IOException e) {
+        throw new RuntimeException("Error writing to spill file " + file, e);
+      }
+      out = null;
+    }
+  }
+
+  public Enumerator<E> enumerator() {
+    finish();
+    if (size == 0) {
+      return Linq4j.emptyEnumerator();
+    }
+    final ObjectInputStream in;
+    try {
+      in = new SpillInputStream(
+          new BufferedInputStream(new FileInputStream(file)), classLoader);
+    } catch (IOException e) {
+      throw new RuntimeException("Error reading spill file " + file, e);
+    }
+    return new Enumerator<E>() {
+      private int i;
+      private E current;
+
+      public E current() {
+        return current;
+      }
+
+      public boolean moveNext() {
+        if (i == size) {
+          return false;
+        }
+        try {
+          //noinspection unchecked
+          current = (E) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+          throw new RuntimeException("Error reading spill file " + file, e);
+        }
+        ++i;
+        return true;
+      }
+
+      public void reset() {
+        throw new UnsupportedOperationException();
+      }
+
+      public void close() {
+        try {
+          in.close();
+        } catch (IOException e) {
+          throw new RuntimeException("Error closing spill file " + file, e);
+        }
+      }
+    };
+  }
+
+  public void close() {
+    try {
+      if (out != null) {
+        out.close();
+        out = null;
+      }
+    } catch (IOException e) {
+      // The file is being discarded; nothing more to do.
+    } finally {
+      if (file != null) {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+      }
+    }
+  }
+
+  /** Stream that reads elements, resolving their classes with the class
+   * loader of the elements that were written, then with the context class
+   * loader of the current thread. */
+  private static class SpillInputStream extends ObjectInputStream {
+    private final ClassLoader classLoader;
+
+    SpillInputStream(InputStream in, ClassLoader classLoader)
+        throws IOException {
+      super(in);
+      this.classLoader = classLoader;
+    }
+
+    @Override protected Class<?> resolveClass(ObjectStreamClass desc)
+        throws IOException, ClassNotFoundException {
+      for (ClassLoader loader
+          : new ClassLoader[] {classLoader,
+              Thread.currentThread().getContextClassLoader()}) {
+        if (loader != null) {
+          try {
+            return Class.forName(desc.getName(), false, loader);
+          } catch (ClassNotFoundException e) {
+            // try the next loader
+          }
+        }
+      }
+      return super.resolveClass(desc);
+    }
+  }
+}
+
+// End SpillFile.java
@@ -123,7 +123,8 @@ public Expression visit(FunctionExpression functionExpression,
       BlockStatement body) {
     return functionExpression.body.equals(body)
         ? functionExpression
-        : Expressions.lambda(body, functionExpression.parameterList);
+        : Expressions.lambda((Class) functionExpression.getType(), body,
+            functionExpression.parameterList);
   }
 
   public Shuttle preVisit(BinaryExpression binaryExpression) {
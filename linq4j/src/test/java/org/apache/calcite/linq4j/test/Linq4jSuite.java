@@ -38,7 +38,9 @@
     FunctionTest.class,
     TypeTest.class,
     CorrelateJoinTest.class,
-    JoinPreserveOrderTest.class
+    JoinPreserveOrderTest.class,
+    SpillableJoinTest.class,
+    SpillableGroupByTest.class
     })
 public class Linq4jSuite {
 }
@@ -32,6 +32,7 @@
 import org.apache.calcite.linq4j.function.Function2;
 import org.apache.calcite.linq4j.function.Functions;
 import org.apache.calcite.linq4j.function.IntegerFunction1;
+import org.apache.calcite.linq4j.function.LongFunction1;
 import org.apache.calcite.linq4j.function.Predicate1;
 import org.apache.calcite.linq4j.function.Predicate2;
 import org.apache.calcite.linq4j.tree.ConstantExpression;
@@ -55,6 +56,7 @@
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Random;
 import java.util.TreeSet;
 
 import static org.hamcrest.CoreMatchers.endsWith;
@@ -1071,6 +1073,111 @@ public int hashCode(Integer integer) {
         s);
   }
 
+  /** Tests {@link EnumerableDefaults#primitiveJoin}, which should return the
+   * same rows as {@link EnumerableDefaults#join}. */
+  @Test public void testPrimitiveJoin() {
+    final LongFunction1<Employee>[] empKeys = keys(e -> e.deptno);
+    final LongFunction1<Department>[] deptKeys = keys(d -> d.deptno);
+    final Function2<Employee, Department, String> resultSelector =
+        (v1, v2) -> (v1 == null ? null : v1.name)
+            + " works in " + (v2 == null ? null : v2.name);
+    assertEquals(
+        "[Fred works in Sales, "
+            + "Bill works in Marketing, "
+            + "Eric works in Sales, "
+            + "Janet works in Sales]",
+        EnumerableDefaults.primitiveJoin(
+            Linq4j.asEnumerable(emps).concat(Linq4j.asEnumerable(badEmps)),
+            Linq4j.asEnumerable(depts), empKeys, deptKeys, resultSelector,
+            false, false)
+            .toList().toString());
+    assertEquals(
+        "[Bill works in Marketing, "
+            + "Cedric works in null, "
+            + "Eric works in Sales, "
+            + "Fred works in Sales, "
+            + "Janet works in Sales, "
+            + "null works in HR]",
+        EnumerableDefaults.primitiveJoin(
+            Linq4j.asEnumerable(emps).concat(Linq4j.asEnumerable(badEmps)),
+            Linq4j.asEnumerable(depts), empKeys, deptKeys, resultSelector,
+            true, true)
+            .orderBy(Functions.identitySelector())
+            .toList().toString());
+
+    // Enough keys that the hash table grows; several rows per key, whose
+    // order is preserved
+    final Enumerable<Integer> range = Linq4j.asEnumerable(range(0, 1000));
+    final LongFunction1<Integer>[] mod100 = keys(i -> i % 100);
+    final LongFunction1<Integer>[] identity = keys(i -> i);
+    assertEquals("[7:7, 7:107, 7:207, 7:307, 7:407, 7:507, 7:607, 7:707, "
+            + "7:807, 7:907]",
+        EnumerableDefaults.primitiveJoin(
+            Linq4j.asEnumerable(Collections.singletonList(7)), range,
+            identity, mod100, (i, j) -> i + ":" + j, false, false)
+            .toList().toString());
+  }
+
+  /** Tests {@link EnumerableDefaults#primitiveSemiJoin}. */
+  @Test public void testPrimitiveSemiJoin() {
+    assertEquals("[Fred, Bill, Eric, Janet]",
+        EnumerableDefaults.primitiveSemiJoin(
+            Linq4j.asEnumerable(emps).concat(Linq4j.asEnumerable(badEmps)),
+            Linq4j.asEnumerable(depts), keys(e -> e.deptno),
+            keys(d -> d.deptno))
+            .select(e -> e.name)
+            .toList().toString());
+  }
+
+  /** Tests {@link EnumerableDefaults#primitiveDistinct},
+   * {@link EnumerableDefaults#primitiveUnion},
+   * {@link EnumerableDefaults#primitiveIntersect} and
+   * {@link EnumerableDefaults#primitiveExcept}, whose keys have two columns,
+   * one of them a {@code double}. */
+  @Test public void testPrimitiveSetOperations() {
+    final LongFunction1<Object[]>[] keys =
+        keys(row -> (Integer) row[0],
+            row -> Double.doubleToLongBits((Double) row[1]));
+    final Enumerable<Object[]> e0 =
+        Linq4j.asEnumerable(
+            Arrays.asList(new Object[] {1, 1.5}, new Object[] {1, 2.5},
+                new Object[] {2, 1.5}, new Object[] {1, 1.5}));
+    final Enumerable<Object[]> e1 =
+        Linq4j.asEnumerable(
+            Arrays.asList(new Object[] {2, 1.5}, new Object[] {3, 0d},
+                new Object[] {3, -0d}, new Object[] {2, 1.5}));
+    assertEquals("[[1, 1.5], [1, 2.5], [2, 1.5]]",
+        rowsToString(EnumerableDefaults.primitiveDistinct(e0, keys)));
+    assertEquals("[[1, 1.5], [1, 2.5], [2, 1.5], [3, 0.0], [3, -0.0]]",
+        rowsToString(EnumerableDefaults.primitiveUnion(e0, e1, keys)));
+    assertEquals("[[2, 1.5]]",
+        rowsToString(EnumerableDefaults.primitiveIntersect(e0, e1, keys)));
+    assertEquals("[[1, 1.5], [1, 2.5]]",
+        rowsToString(EnumerableDefaults.primitiveExcept(e0, e1, keys)));
+
+    final Enumerable<Integer> range = Linq4j.asEnumerable(range(0, 1000));
+    final LongFunction1<Integer>[] mod300 = keys(i -> i % 300);
+    assertEquals(300,
+        EnumerableDefaults.primitiveDistinct(range, mod300).count());
+  }
+
+  @SafeVarargs
+  private static <T> LongFunction1<T>[] keys(LongFunction1<T>... keys) {
+    return keys;
+  }
+
+  private static List<Integer> range(int start, int end) {
+    final List<Integer> list = new ArrayList<>();
+    for (int i = start; i < end; i++) {
+      list.add(i);
+    }
+    return list;
+  }
+
+  private static String rowsToString(Enumerable<Object[]> rows) {
+    return rows.select(Arrays::toString).toList().toString();
+  }
+
   @Test public void testJoinCartesianProduct() {
     int n =
         Linq4j.asEnumerable(emps)
@@ -1436,6 +1543,100 @@ public boolean apply(Department v1, Integer v2) {
             .toList().toString());
   }
 
+  @Test public void testTopN() {
+    // Like orderBy, topN is stable: Fred and Eric are the first two of the
+    // three employees in department 10.
+    assertEquals(
+        "[Employee(name: Fred, deptno:10),"
+            + " Employee(name: Eric, deptno:10)]",
+        EnumerableDefaults.topN(Linq4j.asEnumerable(emps),
+            EMP_DEPTNO_SELECTOR, null, 0, 2)
+            .toList().toString());
+    assertEquals(
+        "[Employee(name: Janet, deptno:10),"
+            + " Employee(name: Bill, deptno:30)]",
+        EnumerableDefaults.topN(Linq4j.asEnumerable(emps),
+            EMP_DEPTNO_SELECTOR, null, 2, 5)
+            .toList().toString());
+    assertEquals(
+        "[Employee(name: Bill, deptno:30)]",
+        EnumerableDefaults.topN(Linq4j.asEnumerable(emps),
+            EMP_DEPTNO_SELECTOR, Collections.reverseOrder(), 0, 1)
+            .toList().toString());
+    assertEquals(0,
+        EnumerableDefaults.topN(Linq4j.asEnumerable(emps),
+            EMP_DEPTNO_SELECTOR, null, 1, 0).count());
+  }
+
+  /** Tests that {@link EnumerableDefaults#topN} returns the same rows as
+   * sorting, skipping and taking, including for ties. */
+  @Test public void testTopNSameAsOrderBy() {
+    final List<Integer> list = new ArrayList<>();
+    final Random random = new Random(1);
+    for (int i = 0; i < 1000; i++) {
+      list.add(random.nextInt(50));
+    }
+    final Enumerable<Integer> source = Linq4j.asEnumerable(list);
+    final Function1<Integer, Integer> keySelector = i -> i / 3;
+    for (int[] offsetFetch : new int[][] {{0, 1}, {0, 10}, {5, 10},
+        {990, 20}, {0, 2000}, {1500, 10}}) {
+      final int offset = offsetFetch[0];
+      final int fetch = offsetFetch[1];
+      assertEquals(
+          source.orderBy(keySelector).skip(offset).take(fetch).toList(),
+          EnumerableDefaults.topN(source, keySelector, null, offset, fetch)
+              .toList());
+    }
+  }
+
+  /** Tests that {@link EnumerableDefaults#orderBy} with a limit on the
+   * number of elements in memory returns the same elements, in the same
+   * order, as sorting in memory, whether it sorts in one chunk, merges
+   * runs, or has to merge groups of runs first. */
+  @Test public void testOrderBySpill() {
+    final List<Integer> list = new ArrayList<>();
+    final Random random = new Random(2);
+    for (int i = 0; i < 1000; i++) {
+      list.add(random.nextInt(50));
+    }
+    final Enumerable<Integer> source = Linq4j.asEnumerable(list);
+    final Function1<Integer, Integer> keySelector = i -> i / 3;
+    final List<Integer> expected = source.orderBy(keySelector).toList();
+    for (long maxRowsInMemory : new long[] {0, 1, 3, 100, 999, 1000, 5000}) {
+      assertEquals(expected,
+          EnumerableDefaults.orderBy(source, keySelector, null,
+              maxRowsInMemory).toList());
+    }
+    assertEquals(
+        source.orderBy(keySelector, Collections.reverseOrder()).toList(),
+        EnumerableDefaults.orderBy(source, keySelector,
+            Collections.reverseOrder(), 7).toList());
+
+    // More than 64 * 64 runs, so that runs that are themselves the result of
+    // merging are merged while the input is being read
+    final List<Integer> list2 = new ArrayList<>();
+    for (int i = 0; i < 4200; i++) {
+      list2.add(random.nextInt(50));
+    }
+    final Enumerable<Integer> source2 = Linq4j.asEnumerable(list2);
+    assertEquals(source2.orderBy(keySelector).toList(),
+        EnumerableDefaults.orderBy(source2, keySelector, null, 1).toList());
+  }
+
+  /** Tests that {@link EnumerableDefaults#orderBy} with a limit on the
+   * number of elements in memory sorts in memory elements that cannot be
+   * written to disk. */
+  @Test public void testOrderBySpillNotSerializable() {
+    assertEquals(
+        "[Employee(name: Fred, deptno:10),"
+            + " Employee(name: Eric, deptno:10),"
+            + " Employee(name: Janet, deptno:10),"
+            + " Employee(name: Bill, deptno:30)]",
+        EnumerableDefaults.orderBy(Linq4j.asEnumerable(emps),
+            EMP_DEPTNO_SELECTOR, null, 1)
+            .toList().toString());
+  }
+
   @Test public void testOrderByDescending() {
     assertEquals(
         "[Employee(name: Janet, deptno:10),"
@@ -1996,6 +2197,30 @@ public int hashCode(Integer integer) {
         s);
   }
 
+  /** Tests {@link EnumerableDefaults#sortedGroupBy}, which starts a new group
+   * each time the key changes; so it is only equivalent to
+   * {@link ExtendedEnumerable#groupBy} if the input is sorted on the key. */
+  @Test public void testSortedGroupBy() {
+    final Function2<Integer, String, String> resultSelector =
+        (key, names) -> key + ": " + names;
+    assertEquals("[10: +Fred, 30: +Bill, 10: +Eric+Janet]",
+        EnumerableDefaults.sortedGroupBy(Linq4j.asEnumerable(emps),
+            EMP_DEPTNO_SELECTOR, () -> "", (names, e) -> names + "+" + e.name,
+            resultSelector, null)
+            .toList().toString());
+    assertEquals("[10: +Fred+Eric+Janet, 30: +Bill]",
+        EnumerableDefaults.sortedGroupBy(
+            Linq4j.asEnumerable(emps).orderBy(EMP_DEPTNO_SELECTOR),
+            EMP_DEPTNO_SELECTOR, () -> "", (names, e) -> names + "+" + e.name,
+            resultSelector, null)
+            .toList().toString());
+    assertEquals(0,
+        EnumerableDefaults.sortedGroupBy(Linq4j.<Employee>emptyEnumerable(),
+            EMP_DEPTNO_SELECTOR, () -> "", (names, e) -> names + "+" + e.name,
+            resultSelector, null)
+            .count());
+  }
+
   @Test public void testZip() {
     final Enumerable<String> e1 = Linq4j.asEnumerable(Arrays.asList("a", "b", "c"));
     final Enumerable<String> e2 = Linq4j.asEnumerable(Arrays.asList("1", "2", "3"));
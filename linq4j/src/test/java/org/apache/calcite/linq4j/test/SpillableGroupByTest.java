@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j.test;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Functions;
+import org.apache.calcite.linq4j.function.LongFunction1;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests {@link EnumerableDefaults#spillableGroupBy} and
+ * {@link EnumerableDefaults#primitiveGroupBy}.
+ */
+public class SpillableGroupByTest {
+  private static final Function1<Integer[], Integer> KEY = row -> row[0];
+  private static final LongFunction1<Integer[]> LONG_KEY = row -> row[0];
+  @SuppressWarnings("unchecked")
+  private static final LongFunction1<Integer[]>[] LONG_KEYS =
+      new LongFunction1[] {LONG_KEY};
+
+  @Test public void testManyGroups() {
+    checkGroupBy(rows(2000, 500), null, 8);
+  }
+
+  /** Tests a table that is full after a single group, so that each
+   * partition spills again, up to the maximum depth. */
+  @Test public void testOneGroupInMemory() {
+    checkGroupBy(rows(300, 100), null, 1);
+  }
+
+  @Test public void testNullKeys() {
+    final List<Integer[]> rows = rows(200, 50);
+    rows.add(new Integer[] {null, -1});
+    rows.add(0, new Integer[] {null, -2});
+    checkGroupBy(rows, null, 8);
+  }
+
+  @Test public void testFitsInMemory() {
+    checkGroupBy(rows(200, 10), null, 8);
+  }
+
+  /** Tests a group-by whose keys are compared by a comparer that considers
+   * keys equal if they are equal modulo 7. */
+  @Test public void testComparer() {
+    final EqualityComparer<Integer> comparer =
+        new EqualityComparer<Integer>() {
+          public boolean equal(Integer v1, Integer v2) {
+            return v1 % 7 == v2 % 7;
+          }
+
+          public int hashCode(Integer v) {
+            return v % 7;
+          }
+        };
+    checkGroupBy(rows(300, 50), comparer, 2);
+  }
+
+  /** Tests that elements that cannot be written to disk are aggregated in
+   * memory. */
+  @Test public void testNotSerializable() {
+    final List<Object> list = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      list.add(new Object());
+    }
+    assertThat(
+        EnumerableDefaults.spillableGroupBy(Linq4j.asEnumerable(list),
+            Functions.identitySelector(), () -> 0, (acc, o) -> acc + 1,
+            (key, acc) -> acc, null, 8).count(),
+        is(100));
+  }
+
+  @Test public void testPrimitiveManyGroups() {
+    checkPrimitiveGroupBy(rows(2000, 500), 8);
+  }
+
+  @Test public void testPrimitiveOneGroupInMemory() {
+    checkPrimitiveGroupBy(rows(300, 100), 1);
+  }
+
+  /** Tests a primitive group-by that holds all groups in memory. */
+  @Test public void testPrimitiveInMemory() {
+    checkPrimitiveGroupBy(rows(2000, 500), -1);
+  }
+
+  /** Tests that a primitive group-by computes the key that it passes to the
+   * result selector once per group. */
+  @Test public void testPrimitiveKeyPerGroup() {
+    final int[] keyCount = {0};
+    final Function1<Integer[], Integer> key = row -> {
+      ++keyCount[0];
+      return row[0];
+    };
+    final List<String> actual =
+        sorted(
+            EnumerableDefaults.primitiveGroupBy(
+                Linq4j.asEnumerable(rows(100, 10)), key, LONG_KEYS,
+                () -> new long[2], SpillableGroupByTest::add,
+                SpillableGroupByTest::toString, -1));
+    assertThat(actual.size(), is(10));
+    assertThat(keyCount[0], is(10));
+  }
+
+  /** Returns rows whose keys are {@code i % modulo}, for {@code i} in
+   * {@code [0, count)}, with a value {@code i}. */
+  private static List<Integer[]> rows(int count, int modulo) {
+    final List<Integer[]> rows = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      rows.add(new Integer[] {i % modulo, i});
+    }
+    return rows;
+  }
+
+  /** Checks that a group-by that holds at most {@code maxGroups} groups in
+   * memory returns the same groups as an in-memory group-by. Each group's
+   * accumulator is the count and sum of the values in the group. */
+  private void checkGroupBy(List<Integer[]> rows,
+      EqualityComparer<Integer> comparer, int maxGroups) {
+    final Enumerable<Integer[]> source = Linq4j.asEnumerable(rows);
+    final Enumerable<String> expected = comparer == null
+        ? EnumerableDefaults.groupBy(source, KEY, () -> new long[2],
+            SpillableGroupByTest::add, SpillableGroupByTest::toString)
+        : EnumerableDefaults.groupBy(source, KEY, () -> new long[2],
+            SpillableGroupByTest::add, SpillableGroupByTest::toString,
+            comparer);
+    final Enumerable<String> actual =
+        EnumerableDefaults.spillableGroupBy(source, KEY, () -> new long[2],
+            SpillableGroupByTest::add, SpillableGroupByTest::toString,
+            comparer, maxGroups);
+    assertThat(sorted(actual), is(sorted(expected)));
+  }
+
+  /** Checks that a primitive group-by that holds at most
+   * {@code maxGroups} groups in memory returns the same groups as an
+   * in-memory group-by. */
+  private void checkPrimitiveGroupBy(List<Integer[]> rows, int maxGroups) {
+    final Enumerable<Integer[]> source = Linq4j.asEnumerable(rows);
+    final Enumerable<String> expected =
+        EnumerableDefaults.groupBy(source, KEY, () -> new long[2],
+            SpillableGroupByTest::add, SpillableGroupByTest::toString);
+    final Enumerable<String> actual =
+        EnumerableDefaults.primitiveGroupBy(source, KEY, LONG_KEYS,
+            () -> new long[2], SpillableGroupByTest::add,
+            SpillableGroupByTest::toString, maxGroups);
+    assertThat(sorted(actual), is(sorted(expected)));
+  }
+
+  private static long[] add(long[] acc, Integer[] row) {
+    ++acc[0];
+    acc[1] += row[1];
+    return acc;
+  }
+
+  private static String toString(Integer key, long[] acc) {
+    return (key == null ? null : key % 7) + ":" + acc[0] + ":" + acc[1];
+  }
+
+  private static List<String> sorted(Enumerable<String> enumerable) {
+    final List<String> list = enumerable.toList();
+    Collections.sort(list);
+    return list;
+  }
+}
+
+// End SpillableGroupByTest.java
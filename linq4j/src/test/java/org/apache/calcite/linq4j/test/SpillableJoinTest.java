@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.linq4j.test;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.Function0;
+import org.apache.calcite.linq4j.function.Function1;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests {@link EnumerableDefaults#spillableJoin}.
+ */
+public class SpillableJoinTest {
+  private static final Function1<Integer[], Integer> KEY = row -> row[0];
+
+  @Test public void testInner() {
+    checkJoin(rows(200, 10, 7), rows(300, 10, 3), false, false);
+  }
+
+  @Test public void testLeft() {
+    checkJoin(rows(200, 10, 7), rows(300, 20, 3), false, true);
+  }
+
+  @Test public void testRight() {
+    checkJoin(rows(200, 20, 7), rows(300, 10, 3), true, false);
+  }
+
+  @Test public void testFull() {
+    checkJoin(rows(200, 10, 7), rows(300, 20, 3), true, true);
+  }
+
+  @Test public void testNullKeys() {
+    final List<Integer[]> outer = rows(100, 10, 7);
+    final List<Integer[]> inner = rows(150, 10, 3);
+    outer.add(new Integer[] {null, -1});
+    inner.add(new Integer[] {null, -2});
+    checkJoin(outer, inner, true, true);
+  }
+
+  /** Tests a join whose inner rows all have the same key, so partitioning
+   * cannot split them; the join gives up spilling after a few levels. */
+  @Test public void testSkew() {
+    checkJoin(rows(20, 1, 1), rows(300, 1, 1), true, true);
+  }
+
+  @Test public void testFitsInMemory() {
+    checkJoin(rows(20, 10, 7), rows(5, 10, 3), true, true);
+  }
+
+  /** Tests a join whose rows are of a class that linq4j's class loader
+   * cannot load, such as the row classes that Janino generates; the rows
+   * read back from disk must be of that class. */
+  @Test public void testRowsOfIsolatedClass() throws Exception {
+    final ClassLoader loader = new IsolatingClassLoader(Row.class);
+    final Class<?> rowClass = loader.loadClass(Row.class.getName());
+    assertThat(rowClass == Row.class, is(false));
+    final Constructor<?> constructor =
+        rowClass.getConstructor(int.class, int.class);
+    final List<Object> outer = new ArrayList<>();
+    final List<Object> inner = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      outer.add(constructor.newInstance(i % 10, i));
+      inner.add(constructor.newInstance(i % 10, -i));
+    }
+    final Function1<Object, Integer> key =
+        row -> ((Function0<Integer>) row).apply();
+    final List<Boolean> sameClass =
+        EnumerableDefaults.spillableJoin(Linq4j.asEnumerable(outer),
+            Linq4j.asEnumerable(inner), key, key,
+            (left, right) -> left.getClass() == rowClass
+                && right.getClass() == rowClass,
+            null, false, false, 8)
+            .distinct()
+            .toList();
+    assertThat(sameClass, is(Collections.singletonList(true)));
+  }
+
+  /** Returns rows whose keys are {@code i % modulo}, for {@code i} in
+   * {@code [0, count)}, with a value that identifies the row. */
+  private static List<Integer[]> rows(int count, int modulo, int salt) {
+    final List<Integer[]> rows = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      rows.add(new Integer[] {i % modulo, i * salt});
+    }
+    return rows;
+  }
+
+  /** Checks that a join that holds at most 8 inner rows in memory returns
+   * the same rows as an in-memory join. */
+  private void checkJoin(List<Integer[]> outer, List<Integer[]> inner,
+      boolean generateNullsOnLeft, boolean generateNullsOnRight) {
+    final Enumerable<String> expected =
+        EnumerableDefaults.join(Linq4j.asEnumerable(outer),
+            Linq4j.asEnumerable(inner), KEY, KEY, SpillableJoinTest::toString,
+            null, generateNullsOnLeft, generateNullsOnRight);
+    final Enumerable<String> actual =
+        EnumerableDefaults.spillableJoin(Linq4j.asEnumerable(outer),
+            Linq4j.asEnumerable(inner), KEY, KEY, SpillableJoinTest::toString,
+            null, generateNullsOnLeft, generateNullsOnRight, 8);
+    assertThat(sorted(actual), is(sorted(expected)));
+  }
+
+  private static String toString(Integer[] left, Integer[] right) {
+    return Arrays.toString(left) + Arrays.toString(right);
+  }
+
+  private static List<String> sorted(Enumerable<String> enumerable) {
+    final List<String> list = enumerable.toList();
+    Collections.sort(list);
+    return list;
+  }
+
+  /** Row whose key is its first field. */
+  public static class Row implements Function0<Integer>, Serializable {
+    public final int key;
+    public final int value;
+
+    public Row(int key, int value) {
+      this.key = key;
+      this.value = value;
+    }
+
+    public Integer apply() {
+      return key;
+    }
+  }
+
+  /** Class loader that loads its own copy of a class, and delegates to its
+   * parent for every other class. */
+  private static class IsolatingClassLoader extends ClassLoader {
+    private final String className;
+
+    IsolatingClassLoader(Class<?> clazz) {
+      super(clazz.getClassLoader());
+      this.className = clazz.getName();
+    }
+
+    @Override protected Class<?> loadClass(String name, boolean resolve)
+        throws ClassNotFoundException {
+      if (!name.equals(className)) {
+        return super.loadClass(name, resolve);
+      }
+      synchronized (getClassLoadingLock(name)) {
+        final Class<?> loaded = findLoadedClass(name);
+        if (loaded != null) {
+          return loaded;
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = getParent()
+            .getResourceAsStream(name.replace('.', '/') + ".class")) {
+          final byte[] buffer = new byte[4096];
+          for (int n; (n = in.read(buffer)) > 0;) {
+            out.write(buffer, 0, n);
+          }
+        } catch (IOException e) {
+          throw new ClassNotFoundException(name, e);
+        }
+        final byte[] bytes = out.toByteArray();
+        return defineClass(name, bytes, 0, bytes.length);
+      }
+    }
+  }
+}
+
+// End SpillableJoinTest.java
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.enumerable.EnumerableConvention;
+import org.apache.calcite.adapter.enumerable.EnumerableRules;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelRoot;
+import org.apache.calcite.rel.rules.MultiJoinOptimizeDpRule;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
+import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.parser.SqlParser;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.tools.FrameworkConfig;
+import org.apache.calcite.tools.Frameworks;
+import org.apache.calcite.tools.Planner;
+import org.apache.calcite.tools.Program;
+import org.apache.calcite.tools.Programs;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import com.google.common.collect.ImmutableList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks planning of queries that join many tables.
+ *
+ * <p>Each query joins a chain of tables of different sizes. It is planned by
+ * a join-order program, which is what Calcite uses for queries with many
+ * joins, and then by the Volcano planner. Queries of more than
+ * {@link MultiJoinOptimizeDpRule#DEFAULT_MAX_FACTORS} tables are ordered
+ * greedily even by the "dp" program.
+ */
+@Fork(value = 1, jvmArgsPrepend = "-Xmx1g")
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Threads(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JoinPlanningBenchmark {
+
+  /** Number of tables in the query. */
+  @Param({ "10", "15", "20" })
+  int tableCount;
+
+  /** Join-order algorithm: "left-deep" (LoptOptimizeJoinRule), "bushy"
+   * (MultiJoinOptimizeBushyRule) or "dp" (MultiJoinOptimizeDpRule). */
+  @Param({ "left-deep", "bushy", "dp" })
+  String joinOrder;
+
+  FrameworkConfig config;
+  String sql;
+
+  @Setup
+  public void setup() {
+    final SchemaPlus rootSchema = Frameworks.createRootSchema(true);
+    final SchemaPlus schema = rootSchema.add("s", new AbstractSchema());
+    final StringBuilder sb = new StringBuilder("select t0.name");
+    final StringBuilder from = new StringBuilder("\nfrom t0");
+    for (int i = 0; i < tableCount; i++) {
+      // Sizes vary, so that the join order matters
+      schema.add("t" + i, new ChainTable(100 * (1 + (i * 7) % tableCount)));
+      if (i > 0) {
+        sb.append(", t").append(i).append(".name");
+        from.append("\njoin t").append(i)
+            .append(" on t").append(i - 1).append(".fk = t").append(i)
+            .append(".id");
+      }
+    }
+    sql = sb.append(from).toString();
+    config = Frameworks.newConfigBuilder()
+        .parserConfig(SqlParser.configBuilder().setLex(Lex.JAVA).build())
+        .defaultSchema(schema)
+        .programs(program())
+        .build();
+  }
+
+  private Program program() {
+    final List<RelOptRule> rules = ImmutableList.<RelOptRule>builder()
+        .addAll(Programs.RULE_SET)
+        .add(EnumerableRules.ENUMERABLE_TABLE_SCAN_RULE)
+        .build();
+    switch (joinOrder) {
+    case "left-deep":
+      return Programs.heuristicJoinOrder(rules, false, 2);
+    case "bushy":
+      return Programs.heuristicJoinOrder(rules, true, 2);
+    case "dp":
+      return Programs.dpJoinOrder(rules, 2,
+          MultiJoinOptimizeDpRule.DEFAULT_MAX_FACTORS);
+    default:
+      throw new AssertionError(joinOrder);
+    }
+  }
+
+  @Benchmark
+  public RelNode plan() throws Exception {
+    final Planner planner = Frameworks.getPlanner(config);
+    try {
+      final SqlNode parse = planner.parse(sql);
+      final SqlNode validate = planner.validate(parse);
+      final RelRoot root = planner.rel(validate);
+      return planner.transform(0,
+          root.rel.getTraitSet().replace(EnumerableConvention.INSTANCE),
+          root.rel);
+    } finally {
+      planner.close();
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(JoinPlanningBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .detectJvmArgs()
+        .build();
+
+    new Runner(opt).run();
+  }
+
+  /** Table with columns (id, fk, name) and a given row count; "id" is
+   * unique. It contains no rows, because the benchmark does not execute
+   * queries. */
+  private static class ChainTable extends AbstractTable
+      implements ScannableTable {
+    private final double rowCount;
+
+    ChainTable(double rowCount) {
+      this.rowCount = rowCount;
+    }
+
+    public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      return typeFactory.builder()
+          .add("id", SqlTypeName.INTEGER)
+          .add("fk", SqlTypeName.INTEGER)
+          .add("name", SqlTypeName.VARCHAR, 20)
+          .build();
+    }
+
+    @Override public Statistic getStatistic() {
+      return Statistics.of(rowCount, ImmutableList.of(ImmutableBitSet.of(0)));
+    }
+
+    public Enumerable<Object[]> scan(DataContext root) {
+      return Linq4j.emptyEnumerable();
+    }
+  }
+}
+
+// End JoinPlanningBenchmark.java